@@ -162,6 +162,55 @@ public final class Crontab implements Instance {
         return lag;
     }
 
+    /**
+     * The closest moment when execution is allowed, not earlier than
+     * the given date (seconds and milliseconds are ignored).
+     * @param date The date to start searching from
+     * @return The moment, with seconds and milliseconds set to zero
+     */
+    public Time next(@NotNull(message = "date can't be NULL")
+        final Time date) {
+        final Calendar cal = Crontab.calendar(date);
+        final Calendar horizon = Calendar.class.cast(cal.clone());
+        horizon.add(Calendar.YEAR, Tv.HUNDRED);
+        Time next = null;
+        while (next == null) {
+            Validate.validState(
+                cal.before(horizon),
+                "crontab `%s` never allows execution", this.rules()
+            );
+            if (!this.daily(cal)) {
+                cal.add(Calendar.DAY_OF_MONTH, 1);
+                cal.set(Calendar.HOUR_OF_DAY, 0);
+                cal.set(Calendar.MINUTE, 0);
+            } else if (!this.gates.get(1).pass(cal)) {
+                cal.add(Calendar.HOUR_OF_DAY, 1);
+                cal.set(Calendar.MINUTE, 0);
+            } else if (!this.gates.get(0).pass(cal)) {
+                cal.add(Calendar.MINUTE, 1);
+            } else {
+                next = new Time(cal.getTimeInMillis());
+            }
+        }
+        return next;
+    }
+
+    /**
+     * All day-level gates (day of month, month, day of week) pass?
+     * @param cal Calendar to check
+     * @return TRUE if this day is good for execution
+     */
+    private boolean daily(final Calendar cal) {
+        boolean pass = true;
+        for (int idx = 2; idx < this.gates.size(); ++idx) {
+            if (!this.gates.get(idx).pass(cal)) {
+                pass = false;
+                break;
+            }
+        }
+        return pass;
+    }
+
     /**
      * Execution allowed?
      * @return TRUE if allowed
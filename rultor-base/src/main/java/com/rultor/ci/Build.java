@@ -34,12 +34,10 @@ import com.jcabi.aspects.Loggable;
 import com.jcabi.log.Logger;
 import com.rultor.shell.Batch;
 import com.rultor.snapshot.Snapshot;
+import com.rultor.snapshot.SnapshotStream;
 import com.rultor.snapshot.XemblyLine;
 import com.rultor.tools.Exceptions;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.SequenceInputStream;
 import java.io.StringWriter;
 import java.util.Map;
 import java.util.logging.Level;
@@ -96,20 +94,18 @@ public final class Build {
     @Loggable(value = Loggable.DEBUG, limit = Integer.MAX_VALUE)
     public Snapshot exec(@NotNull(message = "args can't be NULL")
         final Map<String, Object> args) throws IOException {
-        final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        final SnapshotStream stdout = new SnapshotStream();
         final long start = System.currentTimeMillis();
         final int code = this.batch.exec(args, stdout);
+        stdout.write('\n');
+        IOUtils.write(
+            this.makeTag(code, System.currentTimeMillis() - start),
+            stdout, Charsets.UTF_8
+        );
+        stdout.close();
         Snapshot snapshot;
         try {
-            snapshot = new Snapshot(
-                new SequenceInputStream(
-                    new ByteArrayInputStream(stdout.toByteArray()),
-                    IOUtils.toInputStream(
-                        this.makeTag(code, System.currentTimeMillis() - start),
-                        Charsets.UTF_8
-                    )
-                )
-            );
+            snapshot = stdout.snapshot();
         } catch (XemblySyntaxException ex) {
             snapshot = new Snapshot(
                 new Directives().add("error").set(Exceptions.stacktrace(ex))
@@ -240,8 +240,7 @@ final class GhRequest implements MergeRequest {
             summary = new SimpleXml(
                 new DOMSource(
                     new XSLT(
-                        snapshot,
-                        this.getClass().getResourceAsStream("summary.xsl")
+                        snapshot, this.getClass(), "summary.xsl"
                     ).dom()
                 )
             ).xpath("/markdown/text()").get(0);
@@ -34,6 +34,7 @@ import com.jcabi.aspects.ScheduleWithFixedDelay;
 import com.rultor.spi.Drain;
 import com.rultor.tools.Exceptions;
 import com.rultor.tools.Time;
+import java.io.Closeable;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.concurrent.BlockingQueue;
@@ -42,24 +43,22 @@ import java.util.concurrent.TimeUnit;
 import javax.validation.constraints.NotNull;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
-import org.apache.log4j.Appender;
-import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.Level;
-import org.apache.log4j.spi.LoggingEvent;
 
 /**
- * Log4j log appender used solely in Conveyer.
+ * Sink of log lines of one pulse, flushing them to the drain every second.
+ *
+ * <p>Registered in {@link GroupRouter} by {@link ThreadGroupSpy}.
  *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
  */
 @ToString
-@EqualsAndHashCode(callSuper = false, of = { "group", "start", "drain" })
+@EqualsAndHashCode(of = { "start", "drain" })
 @SuppressWarnings("PMD.DoNotUseThreads")
 @ScheduleWithFixedDelay(delay = 1, unit = TimeUnit.SECONDS)
-final class GroupAppender extends AppenderSkeleton
-    implements Runnable, Appender {
+final class GroupAppender implements GroupRouter.Sink, Runnable, Closeable {
 
     /**
      * Map of levels.
@@ -82,12 +81,6 @@ final class GroupAppender extends AppenderSkeleton
     private final transient BlockingQueue<String> lines =
         new LinkedBlockingQueue<String>();
 
-    /**
-     * The group we're in.
-     */
-    private final transient ThreadGroup group =
-        Thread.currentThread().getThreadGroup();
-
     /**
      * When the work was scheduled.
      */
@@ -106,7 +99,6 @@ final class GroupAppender extends AppenderSkeleton
     protected GroupAppender(@NotNull(message = "date can't be NULL")
         final Time date, @NotNull(message = "drain can't be NULL")
         final Drain drn) {
-        super();
         this.start = date;
         this.drain = drn;
     }
@@ -129,22 +121,16 @@ final class GroupAppender extends AppenderSkeleton
 
     /**
      * {@inheritDoc}
-     *
-     * <p>We swallow exception here in order to enable normal processing
-     * of a logging event through LOG4j even when this particular drain
-     * fails (this may happen and often).
      */
     @Override
-    protected void append(final LoggingEvent event) {
-        if (Thread.currentThread().getThreadGroup().equals(this.group)) {
-            this.lines.add(
-                new Drain.Line.Simple(
-                    new Time().delta(this.start),
-                    GroupAppender.LEVELS.get(event.getLevel()),
-                    this.layout.format(event)
-                ).toString()
-            );
-        }
+    public void append(final Level level, final String text) {
+        this.lines.add(
+            new Drain.Line.Simple(
+                new Time().delta(this.start),
+                GroupAppender.LEVELS.get(level),
+                text
+            ).toString()
+        );
     }
 
     /**
@@ -155,12 +141,4 @@ final class GroupAppender extends AppenderSkeleton
         this.run();
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public boolean requiresLayout() {
-        return true;
-    }
-
 }
@@ -0,0 +1,360 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.log4j;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.validation.constraints.NotNull;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.apache.log4j.Appender;
+import org.apache.log4j.Layout;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.ErrorHandler;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Single log4j root appender, routing events to sinks registered
+ * for thread groups.
+ *
+ * <p>An event goes only to sinks of the thread group of its thread,
+ * found in one hash map lookup, no matter how many groups are
+ * registered. Sinks with the same pattern get the same text, formatted
+ * once. The appender is not synchronized as a whole (unlike
+ * {@link org.apache.log4j.AppenderSkeleton}), only formatting is
+ * synchronized on the layout of the sink.
+ *
+ * <p>The appender adds itself to the root logger when a sink
+ * is registered (if it is not there yet).
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ * @checkstyle ClassDataAbstractionCoupling (500 lines)
+ */
+@ToString(of = "routes")
+@EqualsAndHashCode(of = "routes")
+@SuppressWarnings({ "PMD.DoNotUseThreads", "PMD.TooManyMethods" })
+public final class GroupRouter implements Appender {
+
+    /**
+     * Name of the appender in log4j.
+     */
+    public static final String NAME = "rultor-group-router";
+
+    /**
+     * The only instance of it.
+     */
+    private static final GroupRouter INSTANCE = new GroupRouter();
+
+    /**
+     * Routes by thread groups.
+     */
+    private final transient ConcurrentMap<ThreadGroup, Collection<Route>>
+        routes = new ConcurrentHashMap<ThreadGroup, Collection<Route>>(0);
+
+    /**
+     * Error handler.
+     */
+    private transient ErrorHandler handler;
+
+    /**
+     * Private ctor.
+     */
+    private GroupRouter() {
+        // intentionally empty
+    }
+
+    /**
+     * Sink of formatted log lines.
+     */
+    public interface Sink {
+        /**
+         * Append a formatted line.
+         * @param level Level of the event
+         * @param text Text formatted by the layout of the sink
+         */
+        void append(@NotNull(message = "level can't be NULL") Level level,
+            @NotNull(message = "text can't be NULL") String text);
+    }
+
+    /**
+     * Register a sink for all events in the thread group.
+     * @param group Thread group
+     * @param layout Layout to format events with
+     * @param threshold Minimum level of events to accept
+     * @param sink The sink
+     * @checkstyle ParameterNumber (4 lines)
+     */
+    public static void register(@NotNull final ThreadGroup group,
+        @NotNull final Layout layout, @NotNull final Level threshold,
+        @NotNull final GroupRouter.Sink sink) {
+        GroupRouter.install();
+        final ConcurrentMap<ThreadGroup, Collection<Route>> all =
+            GroupRouter.INSTANCE.routes;
+        synchronized (GroupRouter.INSTANCE) {
+            Collection<Route> routes = all.get(group);
+            if (routes == null) {
+                routes = new CopyOnWriteArrayList<Route>();
+                all.put(group, routes);
+            }
+            routes.add(new Route(layout, threshold, sink));
+        }
+    }
+
+    /**
+     * Unregister a sink.
+     * @param group Thread group
+     * @param sink The sink
+     */
+    public static void unregister(@NotNull final ThreadGroup group,
+        @NotNull final GroupRouter.Sink sink) {
+        synchronized (GroupRouter.INSTANCE) {
+            final Collection<Route> routes =
+                GroupRouter.INSTANCE.routes.get(group);
+            if (routes != null) {
+                for (Route route : routes) {
+                    if (route.sink().equals(sink)) {
+                        routes.remove(route);
+                    }
+                }
+                if (routes.isEmpty()) {
+                    GroupRouter.INSTANCE.routes.remove(group);
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void doAppend(final LoggingEvent event) {
+        final Collection<Route> group = this.routes.get(
+            Thread.currentThread().getThreadGroup()
+        );
+        if (group != null) {
+            Route last = null;
+            String text = null;
+            for (Route route : group) {
+                if (!route.accepts(event)) {
+                    continue;
+                }
+                if (last == null || !last.same(route)) {
+                    text = route.format(event);
+                    last = route;
+                }
+                route.sink().append(event.getLevel(), text);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addFilter(final Filter filter) {
+        throw new UnsupportedOperationException("filters are not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Filter getFilter() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearFilters() {
+        // nothing to clear
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        // nothing to close
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return GroupRouter.NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setErrorHandler(final ErrorHandler hdlr) {
+        this.handler = hdlr;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ErrorHandler getErrorHandler() {
+        return this.handler;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setLayout(final Layout layout) {
+        throw new UnsupportedOperationException("sinks have their layouts");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Layout getLayout() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setName(final String name) {
+        throw new UnsupportedOperationException("name can't be changed");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean requiresLayout() {
+        return false;
+    }
+
+    /**
+     * Add the appender to the root logger, if it is not there yet.
+     */
+    private static void install() {
+        final Logger root = Logger.getRootLogger();
+        synchronized (GroupRouter.INSTANCE) {
+            if (root.getAppender(GroupRouter.NAME) == null) {
+                root.addAppender(GroupRouter.INSTANCE);
+            }
+        }
+    }
+
+    /**
+     * Sink with its layout and threshold.
+     */
+    @ToString
+    @EqualsAndHashCode(of = { "layout", "threshold", "target" })
+    private static final class Route {
+        /**
+         * Layout.
+         */
+        private final transient Layout layout;
+        /**
+         * Pattern of the layout, if it is a pattern layout.
+         */
+        private final transient String pattern;
+        /**
+         * Threshold.
+         */
+        private final transient Level threshold;
+        /**
+         * Sink.
+         */
+        private final transient GroupRouter.Sink target;
+        /**
+         * Ctor.
+         * @param lyt Layout
+         * @param level Threshold
+         * @param sink Sink
+         */
+        Route(final Layout lyt, final Level level,
+            final GroupRouter.Sink sink) {
+            this.layout = lyt;
+            if (lyt instanceof PatternLayout) {
+                this.pattern = PatternLayout.class.cast(lyt)
+                    .getConversionPattern();
+            } else {
+                this.pattern = null;
+            }
+            this.threshold = level;
+            this.target = sink;
+        }
+        /**
+         * Get its sink.
+         * @return Sink
+         */
+        public GroupRouter.Sink sink() {
+            return this.target;
+        }
+        /**
+         * Does it accept this event?
+         * @param event The event
+         * @return TRUE if the level of the event is high enough
+         */
+        public boolean accepts(final LoggingEvent event) {
+            return event.getLevel().isGreaterOrEqual(this.threshold);
+        }
+        /**
+         * Does it format events exactly as another route?
+         * @param route Another route
+         * @return TRUE if they have the same layout or pattern
+         */
+        public boolean same(final Route route) {
+            return this.layout.equals(route.layout)
+                || this.pattern != null && this.pattern.equals(route.pattern);
+        }
+        /**
+         * Format the event.
+         * @param event The event
+         * @return Text
+         */
+        public String format(final LoggingEvent event) {
+            synchronized (this.layout) {
+                return this.layout.format(event);
+            }
+        }
+    }
+
+}
@@ -36,7 +36,6 @@ import com.rultor.spi.Instance;
 import com.rultor.tools.Exceptions;
 import javax.validation.constraints.NotNull;
 import lombok.EqualsAndHashCode;
-import org.apache.log4j.Appender;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PatternLayout;
@@ -136,21 +135,21 @@ public final class ThreadGroupSpy implements Instance, Drain.Source {
         final GroupAppender appender = new GroupAppender(
             this.work.scheduled(), this.drn
         );
-        appender.setThreshold(this.level);
-        appender.setLayout(new PatternLayout(this.pattern));
-        final Logger root = Logger.getRootLogger();
-        if (!root.isInfoEnabled()) {
+        if (!Logger.getRootLogger().isInfoEnabled()) {
             throw new IllegalStateException(
                 // @checkstyle LineLength (1 line)
                 "INFO logging level is not enabled in log4j, check log4j.properties file in classpath"
             );
         }
-        root.addAppender(appender);
+        final ThreadGroup group = Thread.currentThread().getThreadGroup();
+        GroupRouter.register(
+            group, new PatternLayout(this.pattern), this.level, appender
+        );
         try {
             this.origin.pulse();
         } finally {
+            GroupRouter.unregister(group, appender);
             this.close(appender);
-            root.removeAppender(appender);
         }
     }
 
@@ -180,7 +179,7 @@ public final class ThreadGroupSpy implements Instance, Drain.Source {
      * @param appender The appender to close
      */
     @SuppressWarnings("PMD.AvoidCatchingThrowable")
-    private void close(final Appender appender) {
+    private void close(final GroupAppender appender) {
         try {
             appender.close();
         // @checkstyle IllegalCatch (1 line)
@@ -37,12 +37,17 @@ import com.rultor.shell.Shell;
 import com.rultor.shell.Shells;
 import com.rultor.shell.Terminal;
 import com.rultor.snapshot.Step;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
 import javax.validation.constraints.NotNull;
 import lombok.EqualsAndHashCode;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.CharEncoding;
@@ -50,12 +55,18 @@ import org.apache.commons.lang3.CharEncoding;
 /**
  * Bash batch.
  *
+ * <p>In bulk mode all files are shipped in one gzipped TAR archive,
+ * extracted by one remote {@code tar} command. MD5 hashes of uploaded
+ * files are recorded in {@code .rultor-prerequisites} manifest on the
+ * target, and files that are already there with the same content
+ * are not uploaded again.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
  */
 @Immutable
-@EqualsAndHashCode(of = { "origin", "map" })
+@EqualsAndHashCode(of = { "origin", "map", "bulk" })
 @Loggable(Loggable.DEBUG)
 public final class Prerequisites implements Shells {
 
@@ -64,11 +75,21 @@ public final class Prerequisites implements Shells {
      */
     private final transient Shells origin;
 
+    /**
+     * Manifest of uploaded files, on the target.
+     */
+    private static final String MANIFEST = ".rultor-prerequisites";
+
     /**
      * Prerequisites.
      */
     private final transient ArrayMap<String, Object> map;
 
+    /**
+     * Upload all files in one archive?
+     */
+    private final transient boolean bulk;
+
     /**
      * Public ctor.
      * @param shls Shells
@@ -78,8 +99,22 @@ public final class Prerequisites implements Shells {
         @NotNull(message = "shells can't be NULL") final Shells shls,
         @NotNull(message = "prerequisites can't be NULL")
         final Map<String, Object> pres) {
+        this(shls, pres, false);
+    }
+
+    /**
+     * Public ctor.
+     * @param shls Shells
+     * @param pres Prerequisites
+     * @param blk Upload all files in one archive
+     */
+    public Prerequisites(
+        @NotNull(message = "shells can't be NULL") final Shells shls,
+        @NotNull(message = "prerequisites can't be NULL")
+        final Map<String, Object> pres, final boolean blk) {
         this.origin = shls;
         this.map = new ArrayMap<String, Object>(pres);
+        this.bulk = blk;
     }
 
     /**
@@ -88,11 +123,15 @@ public final class Prerequisites implements Shells {
     @Override
     public Shell acquire() throws IOException {
         final Shell shell = this.origin.acquire();
-        for (Map.Entry<String, Object> pair : this.map.entrySet()) {
-            this.upload(
-                shell, pair.getKey(),
-                Prerequisites.toInputStream(pair.getValue())
-            );
+        if (this.bulk) {
+            this.uploadAll(shell);
+        } else {
+            for (Map.Entry<String, Object> pair : this.map.entrySet()) {
+                this.upload(
+                    shell, pair.getKey(),
+                    Prerequisites.toInputStream(pair.getValue())
+                );
+            }
         }
         return shell;
     }
@@ -103,8 +142,8 @@ public final class Prerequisites implements Shells {
     @Override
     public String toString() {
         return Logger.format(
-            "%s with %d bash prerequisite(s)",
-            this.origin, this.map.size()
+            "%s with %d bash prerequisite(s)%s",
+            this.origin, this.map.size(), this.bulk ? " in bulk" : ""
         );
     }
 
@@ -126,6 +165,117 @@ public final class Prerequisites implements Shells {
         );
     }
 
+    /**
+     * Upload all files that are not on the target yet, in one archive.
+     *
+     * <p>Files with names that don't fit into TAR header are uploaded
+     * one by one.
+     *
+     * @param shell Shell to use
+     * @throws IOException If fails
+     */
+    private void uploadAll(final Shell shell) throws IOException {
+        final Map<String, String> manifest = Prerequisites.manifest(shell);
+        final ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        final Tarball tar = new Tarball(new GZIPOutputStream(archive));
+        int total = 0;
+        boolean changed = false;
+        for (Map.Entry<String, Object> pair : this.map.entrySet()) {
+            final String path = pair.getKey();
+            final byte[] bytes = IOUtils.toByteArray(
+                Prerequisites.toInputStream(pair.getValue())
+            );
+            final String hash = DigestUtils.md5Hex(bytes);
+            if (hash.equals(manifest.get(path))) {
+                Logger.info(this, "`%s` is already uploaded", path);
+                continue;
+            }
+            if (Tarball.fits(path)) {
+                tar.add(path, bytes);
+                ++total;
+            } else {
+                this.upload(shell, path, new ByteArrayInputStream(bytes));
+            }
+            manifest.put(path, hash);
+            changed = true;
+        }
+        if (changed) {
+            final StringBuilder text = new StringBuilder();
+            for (Map.Entry<String, String> line : manifest.entrySet()) {
+                text.append(line.getValue()).append(' ')
+                    .append(line.getKey()).append('\n');
+            }
+            tar.add(
+                Prerequisites.MANIFEST,
+                text.toString().getBytes(CharEncoding.UTF_8)
+            );
+        }
+        tar.close();
+        if (changed) {
+            this.extract(shell, total, archive.toByteArray());
+        }
+    }
+
+    /**
+     * Upload and extract the archive.
+     * @param shell Shell to use
+     * @param total Total files in it
+     * @param archive The archive, gzipped
+     * @throws IOException If fails
+     */
+    @Step("uploaded ${args[1]} file(s) in one archive")
+    private void extract(final Shell shell, final int total,
+        final byte[] archive) throws IOException {
+        final int code = shell.exec(
+            "tar --no-same-owner -xzPf -",
+            new ByteArrayInputStream(archive),
+            Logger.stream(Level.INFO, this),
+            Logger.stream(Level.WARNING, this)
+        );
+        if (code != 0) {
+            throw new IOException(
+                String.format(
+                    "failed to extract %d prerequisite(s) at %s, exit code %d",
+                    total, shell, code
+                )
+            );
+        }
+        Logger.info(
+            this, "%d prerequisite(s) uploaded in %d bytes",
+            total, archive.length
+        );
+    }
+
+    /**
+     * Read manifest of files already uploaded to the target.
+     *
+     * <p>Files that are gone since they were uploaded are ignored.
+     *
+     * @param shell Shell to use
+     * @return Hashes of files, by their paths
+     * @throws IOException If fails
+     */
+    private static Map<String, String> manifest(final Shell shell)
+        throws IOException {
+        final String text = new Terminal(shell).exec(
+            new StringBuilder()
+                .append("if [ -f ").append(Prerequisites.MANIFEST)
+                .append(" ]; then while read -r h p; do")
+                .append(" if [ -f \"$p\" ]; then echo \"$h $p\"; fi;")
+                .append(" done < ").append(Prerequisites.MANIFEST)
+                .append("; fi")
+                .toString()
+        );
+        final Map<String, String> manifest = new TreeMap<String, String>();
+        for (String line : text.split("\n")) {
+            final String[] parts = line.split(" ", 2);
+            if (parts.length == 2) {
+                manifest.put(parts[1], parts[0]);
+            }
+        }
+        return manifest;
+    }
+
     /**
      * Make bash command that saves input stream to the path specified.
      * @param path Path specified
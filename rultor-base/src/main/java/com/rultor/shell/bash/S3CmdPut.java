@@ -48,13 +48,21 @@ import org.xembly.Directives;
 /**
  * Put file(s) using s3cmd command line tool.
  *
+ * <p>When content store is specified, every file is uploaded there
+ * once, named by SHA-256 hash of its content, and then copied inside
+ * S3 to its place under the prefix. Files that are already in the store
+ * are not uploaded again, so the store must never be shared between
+ * owners, who can't trust each other's blobs.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
  * @see <a href="http://s3tools.org/s3cmd">s3cmd</a>
  */
 @Immutable
-@EqualsAndHashCode(of = { "name", "path", "bucket", "prefix", "key", "secret" })
+@EqualsAndHashCode(
+    of = { "name", "path", "bucket", "prefix", "store", "key", "secret" }
+)
 @Loggable(Loggable.DEBUG)
 public final class S3CmdPut implements Sequel {
 
@@ -78,6 +86,11 @@ public final class S3CmdPut implements Sequel {
      */
     private final transient String prefix;
 
+    /**
+     * S3 prefix of content store, or empty if not used.
+     */
+    private final transient String store;
+
     /**
      * S3 key.
      */
@@ -105,10 +118,33 @@ public final class S3CmdPut implements Sequel {
         @NotNull(message = "prefix can't be NULL") final String pfx,
         @NotNull(message = "key can't be NULL") final String akey,
         @NotNull(message = "secret can't be NULL") final String scrt) {
+        this(label, pth, bkt, pfx, "", akey, scrt);
+    }
+
+    /**
+     * Public ctor.
+     * @param label Name of the product to discover
+     * @param pth Path to use
+     * @param bkt Bucket name
+     * @param pfx Prefix in S3 bucket
+     * @param str Prefix of content store in S3 bucket, or empty
+     * @param akey S3 authorization key
+     * @param scrt S3 authorization secret
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    public S3CmdPut(
+        @NotNull(message = "name can't be NULL") final String label,
+        @NotNull(message = "path can't be NULL") final String pth,
+        @NotNull(message = "bucket can't be NULL") final String bkt,
+        @NotNull(message = "prefix can't be NULL") final String pfx,
+        @NotNull(message = "store can't be NULL") final String str,
+        @NotNull(message = "key can't be NULL") final String akey,
+        @NotNull(message = "secret can't be NULL") final String scrt) {
         this.name = label;
         this.bucket = bkt;
         this.path = pth;
         this.prefix = pfx;
+        this.store = str;
         this.key = akey;
         this.secret = scrt;
     }
@@ -149,7 +185,9 @@ public final class S3CmdPut implements Sequel {
                 .append(" && FILES=$(find ")
                 .append(mask)
                 // @checkstyle LineLength (1 line)
-                .append(" -type f) && for f in $FILES; do s3cmd --config=$CONFIG put $f \"$HEAD$f\" > /dev/null; echo $f; done")
+                .append(" -type f) && for f in $FILES; do ")
+                .append(this.upload())
+                .append("; echo $f; done")
                 .toString(),
             new StringBuilder()
                 .append("[default]\n")
@@ -166,6 +204,31 @@ public final class S3CmdPut implements Sequel {
         }
     }
 
+    /**
+     * Bash command that uploads file {@code $f} to {@code $HEAD$f}.
+     * @return Bash command
+     */
+    private String upload() {
+        final StringBuilder cmd = new StringBuilder();
+        if (this.store.isEmpty()) {
+            cmd.append("s3cmd --config=$CONFIG put $f \"$HEAD$f\" > /dev/null");
+        } else {
+            cmd.append("BLOB=")
+                .append(
+                    Terminal.escape(
+                        String.format("s3://%s/%s", this.bucket, this.store)
+                    )
+                )
+                .append("$(sha256sum < $f | cut -c1-64)")
+                .append(" && if ! s3cmd --config=$CONFIG info \"$BLOB\"")
+                .append(" > /dev/null 2>&1; then")
+                .append(" s3cmd --config=$CONFIG put $f \"$BLOB\" > /dev/null;")
+                .append(" fi && s3cmd --config=$CONFIG cp")
+                .append(" \"$BLOB\" \"$HEAD$f\" > /dev/null");
+        }
+        return cmd.toString();
+    }
+
     /**
      * Log a tag.
      * @param desc Markdown description
@@ -37,7 +37,14 @@ import com.rultor.shell.Sequel;
 import com.rultor.shell.Shell;
 import com.rultor.spi.Coordinates;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.validation.constraints.NotNull;
 import lombok.EqualsAndHashCode;
 import org.apache.commons.lang3.Validate;
@@ -45,6 +52,13 @@ import org.apache.commons.lang3.Validate;
 /**
  * Collection of S3Cmd relics.
  *
+ * <p>Relics are uploaded concurrently, by up to {@code threads} s3cmd
+ * processes at a time. Their content goes to {@code cas/} directory
+ * of the owner under the prefix, named by SHA-256 hashes, and every
+ * pulse gets a copy made inside S3, so an unchanged artifact is never
+ * uploaded twice. The store is not shared between owners, since any
+ * of them could plant a blob there under someone else's hash.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
@@ -52,11 +66,16 @@ import org.apache.commons.lang3.Validate;
 @Immutable
 @EqualsAndHashCode(
     callSuper = false,
-    of = { "work", "names", "bucket", "prefix", "key", "secret" }
+    of = { "work", "names", "bucket", "prefix", "key", "secret", "threads" }
 )
 @Loggable(Loggable.DEBUG)
 public final class S3CmdRelics implements Sequel {
 
+    /**
+     * How many relics to upload concurrently, by default.
+     */
+    private static final int THREADS = 4;
+
     /**
      * Coordinates we're in.
      */
@@ -87,6 +106,11 @@ public final class S3CmdRelics implements Sequel {
      */
     private final transient String secret;
 
+    /**
+     * Maximum number of concurrent uploads.
+     */
+    private final transient int threads;
+
     /**
      * Public ctor.
      * @param wrk Coordinates we're in
@@ -104,6 +128,28 @@ public final class S3CmdRelics implements Sequel {
         @NotNull(message = "prefix can't be NULL") final String pfx,
         @NotNull(message = "key can't be NULL") final String akey,
         @NotNull(message = "secret can't be NULL") final String scrt) {
+        this(wrk, map, bkt, pfx, akey, scrt, S3CmdRelics.THREADS);
+    }
+
+    /**
+     * Public ctor.
+     * @param wrk Coordinates we're in
+     * @param map Map of names/paths
+     * @param bkt Bucket name
+     * @param pfx Prefix in S3 bucket
+     * @param akey S3 authorization key
+     * @param scrt S3 authorization secret
+     * @param max Maximum number of concurrent uploads
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    public S3CmdRelics(
+        @NotNull(message = "map can't be NULL") final Coordinates wrk,
+        @NotNull(message = "map can't be NULL") final Map<String, String> map,
+        @NotNull(message = "bucket can't be NULL") final String bkt,
+        @NotNull(message = "prefix can't be NULL") final String pfx,
+        @NotNull(message = "key can't be NULL") final String akey,
+        @NotNull(message = "secret can't be NULL") final String scrt,
+        final int max) {
         super();
         this.work = wrk;
         this.names = new ArrayMap<String, String>(map);
@@ -115,6 +161,8 @@ public final class S3CmdRelics implements Sequel {
         this.prefix = pfx;
         this.key = akey;
         this.secret = scrt;
+        Validate.isTrue(max > 0, "number of threads must be positive");
+        this.threads = max;
     }
 
     /**
@@ -130,21 +178,79 @@ public final class S3CmdRelics implements Sequel {
 
     /**
      * {@inheritDoc}
+     *
+     * <p>Threads of the pool are created in the thread group of the
+     * caller, so their log lines stay in the log of the pulse.
      */
     @Override
-    @SuppressWarnings("PMD.AvoidInstantiatingObjectsInLoops")
+    @SuppressWarnings({
+        "PMD.AvoidInstantiatingObjectsInLoops", "PMD.DoNotUseThreads"
+    })
     public void exec(final Shell shell) throws IOException {
-        for (Map.Entry<String, String> entry : this.names.entrySet()) {
-            new S3CmdPut(
-                entry.getKey(), entry.getValue(),
-                this.bucket,
-                String.format(
-                    "%s%s/%s/%s/%s/", this.prefix,
-                    this.work.owner(), this.work.rule(),
-                    entry.getKey(), this.work.scheduled()
-                ),
-                this.key, this.secret
-            ).exec(shell);
+        final ExecutorService svc = Executors.newFixedThreadPool(
+            Math.min(this.threads, Math.max(this.names.size(), 1))
+        );
+        try {
+            final Collection<Future<Void>> futures =
+                new LinkedList<Future<Void>>();
+            for (Map.Entry<String, String> entry : this.names.entrySet()) {
+                final S3CmdPut put = this.put(entry.getKey(), entry.getValue());
+                futures.add(
+                    svc.submit(
+                        new Callable<Void>() {
+                            @Override
+                            public Void call() throws IOException {
+                                put.exec(shell);
+                                return null;
+                            }
+                        }
+                    )
+                );
+            }
+            for (Future<Void> future : futures) {
+                S3CmdRelics.await(future);
+            }
+        } finally {
+            svc.shutdownNow();
+        }
+    }
+
+    /**
+     * Make a put for one relic.
+     * @param name Name of the relic
+     * @param path Path of its files
+     * @return Put
+     */
+    private S3CmdPut put(final String name, final String path) {
+        return new S3CmdPut(
+            name, path,
+            this.bucket,
+            String.format(
+                "%s%s/%s/%s/%s/", this.prefix,
+                this.work.owner(), this.work.rule(),
+                name, this.work.scheduled()
+            ),
+            String.format("%s%s/cas/", this.prefix, this.work.owner()),
+            this.key, this.secret
+        );
+    }
+
+    /**
+     * Wait for the upload to finish.
+     * @param future The upload
+     * @throws IOException If it failed
+     */
+    private static void await(final Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw IOException.class.cast(ex.getCause());
+            }
+            throw new IOException(ex.getCause());
         }
     }
 
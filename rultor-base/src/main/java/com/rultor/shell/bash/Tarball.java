@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.shell.bash;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import org.apache.commons.lang3.CharEncoding;
+
+/**
+ * Writer of POSIX (ustar) TAR archive into an output stream.
+ *
+ * <p>Only regular files are supported, and their names have to fit
+ * into ustar header (see {@link #fits(String)}). Parent directories
+ * are created by {@code tar} on extraction.
+ *
+ * <p>The class is NOT thread-safe.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ * @checkstyle MagicNumber (500 lines)
+ */
+final class Tarball implements Closeable {
+
+    /**
+     * Size of one block.
+     */
+    private static final int BLOCK = 512;
+
+    /**
+     * Maximum length of name field.
+     */
+    private static final int NAME = 100;
+
+    /**
+     * Maximum length of prefix field.
+     */
+    private static final int PREFIX = 155;
+
+    /**
+     * Stream to write to.
+     */
+    private final transient OutputStream output;
+
+    /**
+     * Modification time of all files, in seconds.
+     */
+    private final transient long mtime;
+
+    /**
+     * Public ctor.
+     * @param stream Stream to write to
+     */
+    Tarball(final OutputStream stream) {
+        this.output = stream;
+        this.mtime = System.currentTimeMillis() / 1000L;
+    }
+
+    /**
+     * Can this path be stored in ustar header?
+     * @param path File path
+     * @return TRUE if it fits
+     */
+    public static boolean fits(final String path) {
+        boolean fits;
+        try {
+            Tarball.split(Tarball.utf(path));
+            fits = true;
+        } catch (IllegalArgumentException ex) {
+            fits = false;
+        }
+        return fits;
+    }
+
+    /**
+     * Add a file.
+     * @param path File path
+     * @param content File content
+     * @throws IOException If fails
+     */
+    public void add(final String path, final byte[] content)
+        throws IOException {
+        final byte[] header = new byte[Tarball.BLOCK];
+        final byte[][] parts = Tarball.split(Tarball.utf(path));
+        System.arraycopy(parts[1], 0, header, 0, parts[1].length);
+        Tarball.octal(header, 100, 8, 0644);
+        Tarball.octal(header, 108, 8, 0);
+        Tarball.octal(header, 116, 8, 0);
+        Tarball.octal(header, 124, 12, content.length);
+        Tarball.octal(header, 136, 12, this.mtime);
+        header[156] = '0';
+        System.arraycopy(Tarball.utf("ustar\u0000"), 0, header, 257, 6);
+        header[263] = '0';
+        header[264] = '0';
+        System.arraycopy(parts[0], 0, header, 345, parts[0].length);
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long sum = 0;
+        for (byte bte : header) {
+            sum += bte & 0xff;
+        }
+        Tarball.octal(header, 148, 7, sum);
+        this.output.write(header);
+        this.output.write(content);
+        this.pad(content.length);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Writes two empty blocks, which mark the end of archive, and
+     * closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        this.output.write(new byte[Tarball.BLOCK * 2]);
+        this.output.close();
+    }
+
+    /**
+     * Pad the content to the full block.
+     * @param length Length of the content
+     * @throws IOException If fails
+     */
+    private void pad(final int length) throws IOException {
+        final int tail = length % Tarball.BLOCK;
+        if (tail > 0) {
+            this.output.write(new byte[Tarball.BLOCK - tail]);
+        }
+    }
+
+    /**
+     * Split name into prefix and name fields.
+     * @param name Name in bytes
+     * @return Prefix and name
+     */
+    private static byte[][] split(final byte[] name) {
+        if (name.length == 0) {
+            throw new IllegalArgumentException("empty file name");
+        }
+        byte[][] parts = null;
+        if (name.length <= Tarball.NAME) {
+            parts = new byte[][] {new byte[0], name};
+        } else {
+            for (int pos = name.length - 1; pos > 0; --pos) {
+                if (name[pos] == '/' && pos <= Tarball.PREFIX
+                    && name.length - pos - 1 <= Tarball.NAME) {
+                    parts = new byte[][] {
+                        Arrays.copyOfRange(name, 0, pos),
+                        Arrays.copyOfRange(name, pos + 1, name.length),
+                    };
+                    break;
+                }
+            }
+        }
+        if (parts == null) {
+            throw new IllegalArgumentException(
+                String.format("file name is too long: %d bytes", name.length)
+            );
+        }
+        return parts;
+    }
+
+    /**
+     * Write octal number into the field, terminated by NUL.
+     * @param header Header
+     * @param offset Offset of the field
+     * @param length Length of the field
+     * @param value The value
+     */
+    private static void octal(final byte[] header, final int offset,
+        final int length, final long value) {
+        final String text = String.format(
+            String.format("%%0%do", length - 1), value
+        );
+        if (text.length() >= length) {
+            throw new IllegalArgumentException(
+                String.format("%d is too big for TAR header", value)
+            );
+        }
+        for (int pos = 0; pos < text.length(); ++pos) {
+            header[offset + pos] = (byte) text.charAt(pos);
+        }
+        header[offset + text.length()] = 0;
+    }
+
+    /**
+     * Encode text in UTF-8.
+     * @param text Text
+     * @return Bytes
+     */
+    private static byte[] utf(final String text) {
+        try {
+            return text.getBytes(CharEncoding.UTF_8);
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
@@ -42,10 +42,12 @@ import com.jcraft.jsch.Session;
 import com.jcraft.jsch.UserInfo;
 import com.rultor.shell.Shell;
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetAddress;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import javax.validation.constraints.NotNull;
@@ -55,6 +57,9 @@ import org.apache.commons.lang3.Validate;
 /**
  * Single SSH Channel.
  *
+ * <p>Authenticated sessions are pooled and shared by all instances
+ * of this class connecting to the same server with the same login and key.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
@@ -128,6 +133,11 @@ public final class SSHChannel implements Shell {
         }
     };
 
+    /**
+     * Pool of sessions, shared by all channels.
+     */
+    private static final SessionPool POOL = new SessionPool();
+
     /**
      * IP address of the server.
      */
@@ -188,29 +198,50 @@ public final class SSHChannel implements Shell {
         @NotNull(message = "stdout can't be NULL") final OutputStream stdout,
         @NotNull(message = "stderr can't be NULL") final OutputStream stderr)
         throws IOException {
-        try {
-            final Session session = this.session();
+        SessionPool.Lease lease;
+        ChannelExec channel;
+        CountDownLatch closed;
+        int attempt = 0;
+        while (true) {
+            lease = SSHChannel.POOL.acquire(this, this.connector());
+            closed = new CountDownLatch(1);
             try {
-                final ChannelExec channel = ChannelExec.class.cast(
-                    session.openChannel("exec")
+                channel = ChannelExec.class.cast(
+                    lease.session().openChannel("exec")
+                );
+                channel.setErrStream(
+                    new SSHChannel.Latched(stderr, closed), false
                 );
-                channel.setErrStream(stderr, false);
                 channel.setOutputStream(stdout, false);
                 channel.setInputStream(stdin, false);
                 channel.setCommand(command);
                 channel.connect();
-                Logger.info(this, "$ %s", command);
-                return this.exec(channel, session);
-            } finally {
-                session.disconnect();
+                break;
+            } catch (JSchException ex) {
+                lease.close(false);
+                ++attempt;
+                if (attempt > 1) {
+                    throw new IOException(ex);
+                }
+                Logger.warn(this, "pooled SSH session is stale: %s", ex);
             }
-        } catch (JSchException ex) {
-            throw new IOException(ex);
+        }
+        Logger.info(this, "$ %s", command);
+        boolean healthy = false;
+        try {
+            final int code = this.exec(channel, lease.session(), closed);
+            healthy = true;
+            return code;
+        } finally {
+            lease.close(healthy);
         }
     }
 
     /**
      * {@inheritDoc}
+     *
+     * <p>Sessions stay in the pool, shared with other channels to the
+     * same server, and are disconnected when idle.
      */
     @Override
     public void close() throws IOException {
@@ -221,13 +252,14 @@ public final class SSHChannel implements Shell {
      * Exec this channel and return its exit code.
      * @param channel The channel to exec
      * @param session The session
+     * @param closed Latch to be released when the channel is closed
      * @return Exit code (zero in case of success)
      * @throws IOException If fails
      */
-    private int exec(final ChannelExec channel, final Session session)
-        throws IOException {
+    private int exec(final ChannelExec channel, final Session session,
+        final CountDownLatch closed) throws IOException {
         try {
-            return this.code(channel, session);
+            return SSHChannel.code(channel, session, closed);
         } finally {
             channel.disconnect();
         }
@@ -235,23 +267,25 @@ public final class SSHChannel implements Shell {
 
     /**
      * Wait until it's done and return its code.
+     *
+     * <p>JSch closes the stderr stream of the channel right after the
+     * server closes the channel, having reported its exit status before,
+     * so we wait for that event instead of polling.
+     *
      * @param exec The channel
      * @param session The session
+     * @param closed Latch to be released when the channel is closed
      * @return The exit code
      * @throws IOException If some IO problem inside
      */
-    @SuppressWarnings("PMD.AvoidCatchingGenericException")
-    private int code(final ChannelExec exec, final Session session)
-        throws IOException {
+    private static int code(final ChannelExec exec, final Session session,
+        final CountDownLatch closed) throws IOException {
         while (!exec.isClosed()) {
-            try {
-                session.sendKeepAliveMsg();
-            // @checkstyle IllegalCatch (1 line)
-            } catch (Exception ex) {
-                throw new IOException(ex);
+            if (!session.isConnected()) {
+                throw new IOException("SSH session is lost");
             }
             try {
-                TimeUnit.SECONDS.sleep(1);
+                closed.await(1, TimeUnit.MINUTES);
             } catch (InterruptedException ex) {
                 Thread.currentThread().interrupt();
                 throw new IOException(ex);
@@ -260,6 +294,19 @@ public final class SSHChannel implements Shell {
         return exec.getExitStatus();
     }
 
+    /**
+     * Connector of new sessions for the pool.
+     * @return Connector
+     */
+    private SessionPool.Connector connector() {
+        return new SessionPool.Connector() {
+            @Override
+            public Session connect() throws IOException {
+                return SSHChannel.this.session();
+            }
+        };
+    }
+
     /**
      * Create and return a session, connected.
      * @return JSch session
@@ -297,4 +344,42 @@ public final class SSHChannel implements Shell {
         }
     }
 
+    /**
+     * Output stream that releases a latch when closed.
+     */
+    private static final class Latched extends FilterOutputStream {
+        /**
+         * Latch to release.
+         */
+        private final transient CountDownLatch latch;
+        /**
+         * Public ctor.
+         * @param stream Stream to write to
+         * @param ltch Latch to release on close
+         */
+        Latched(final OutputStream stream, final CountDownLatch ltch) {
+            super(stream);
+            this.latch = ltch;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final byte[] bytes, final int off, final int len)
+            throws IOException {
+            this.out.write(bytes, off, len);
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                this.latch.countDown();
+            }
+        }
+    }
+
 }
@@ -0,0 +1,352 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.shell.ssh;
+
+import com.jcabi.aspects.ScheduleWithFixedDelay;
+import com.jcabi.aspects.Tv;
+import com.jcabi.log.Logger;
+import com.jcraft.jsch.Session;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import lombok.ToString;
+
+/**
+ * Pool of authenticated SSH sessions, keyed by host, login and key.
+ *
+ * <p>Every session carries up to {@link #PER_SESSION} exec channels at
+ * the same time, while the total number of channels to one key is
+ * limited by {@link #PER_HOST}. Sessions that stay unused longer
+ * than {@link #IDLE} are disconnected in background.
+ *
+ * <p>The class is thread-safe.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@ToString(of = "hosts")
+@SuppressWarnings("PMD.DoNotUseThreads")
+@ScheduleWithFixedDelay(delay = 1, unit = TimeUnit.MINUTES)
+final class SessionPool implements Runnable, Closeable {
+
+    /**
+     * Maximum number of channels opened in one session (sshd
+     * allows ten by default, in its MaxSessions).
+     */
+    private static final int PER_SESSION = Tv.FIVE;
+
+    /**
+     * Maximum number of channels opened to one key, in all sessions.
+     */
+    private static final int PER_HOST = Tv.TWENTY;
+
+    /**
+     * How long an unused session stays connected, in milliseconds.
+     */
+    private static final long IDLE = TimeUnit.MINUTES.toMillis(Tv.FIVE);
+
+    /**
+     * Connector of new sessions.
+     */
+    interface Connector {
+        /**
+         * Open and authenticate a new session.
+         * @return Connected session
+         * @throws IOException If fails
+         */
+        Session connect() throws IOException;
+    }
+
+    /**
+     * Hosts, by their keys.
+     */
+    private final transient ConcurrentMap<Object, SessionPool.Host> hosts =
+        new ConcurrentHashMap<Object, SessionPool.Host>(0);
+
+    /**
+     * Take a session for one exec channel, waiting for a free slot if
+     * the key is busy already.
+     * @param key Key of the host (address, login and private key)
+     * @param connector Connector of new sessions
+     * @return Lease, which has to be closed when the channel is done
+     * @throws IOException If fails
+     */
+    public SessionPool.Lease acquire(final Object key,
+        final SessionPool.Connector connector) throws IOException {
+        SessionPool.Host host = this.hosts.get(key);
+        if (host == null) {
+            this.hosts.putIfAbsent(key, new SessionPool.Host());
+            host = this.hosts.get(key);
+        }
+        try {
+            host.permits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(ex.getMessage());
+        }
+        boolean done = false;
+        try {
+            final SessionPool.Lease lease =
+                new SessionPool.Lease(host, host.borrow(connector));
+            done = true;
+            return lease;
+        } finally {
+            if (!done) {
+                host.permits.release();
+            }
+        }
+    }
+
+    /**
+     * Total number of pooled sessions.
+     * @return Number of sessions
+     */
+    public int size() {
+        int size = 0;
+        for (SessionPool.Host host : this.hosts.values()) {
+            size += host.size();
+        }
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        for (SessionPool.Host host : this.hosts.values()) {
+            host.evict(System.currentTimeMillis() - SessionPool.IDLE);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        for (SessionPool.Host host : this.hosts.values()) {
+            host.evict(Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Session taken from the pool.
+     */
+    static final class Lease {
+        /**
+         * Host it belongs to.
+         */
+        private final transient SessionPool.Host host;
+        /**
+         * Pooled session.
+         */
+        private final transient SessionPool.Pooled pooled;
+        /**
+         * Is it returned already?
+         */
+        private transient boolean returned;
+        /**
+         * Public ctor.
+         * @param hst Host
+         * @param pld Pooled session
+         */
+        Lease(final SessionPool.Host hst, final SessionPool.Pooled pld) {
+            this.host = hst;
+            this.pooled = pld;
+        }
+        /**
+         * Get the session.
+         * @return Session, connected
+         */
+        public Session session() {
+            return this.pooled.session;
+        }
+        /**
+         * Return the session to the pool.
+         * @param healthy TRUE if the session can be used again
+         */
+        public void close(final boolean healthy) {
+            synchronized (this) {
+                if (!this.returned) {
+                    this.returned = true;
+                    this.host.giveBack(this.pooled, healthy);
+                    this.host.permits.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Session in the pool.
+     */
+    private static final class Pooled {
+        /**
+         * The session.
+         */
+        private final transient Session session;
+        /**
+         * How many channels use it now.
+         */
+        private transient int users;
+        /**
+         * When it was used last time.
+         */
+        private transient long touched;
+        /**
+         * Is it broken and should not be used any more?
+         */
+        private transient boolean broken;
+        /**
+         * Public ctor.
+         * @param ssn Session
+         */
+        Pooled(final Session ssn) {
+            this.session = ssn;
+            this.users = 1;
+            this.touched = System.currentTimeMillis();
+        }
+        /**
+         * Can it take one more channel?
+         * @return TRUE if it can
+         */
+        public boolean available() {
+            return !this.broken && this.users < SessionPool.PER_SESSION
+                && this.session.isConnected();
+        }
+    }
+
+    /**
+     * Sessions of one key.
+     */
+    private static final class Host {
+        /**
+         * Permits for channels.
+         */
+        private final transient Semaphore permits =
+            new Semaphore(SessionPool.PER_HOST, true);
+        /**
+         * Sessions, guarded by this object.
+         */
+        private final transient Collection<SessionPool.Pooled> sessions =
+            new LinkedList<SessionPool.Pooled>();
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return Logger.format(
+                "%d session(s), %d free channel(s)",
+                this.size(), this.permits.availablePermits()
+            );
+        }
+        /**
+         * Take an available session or connect a new one.
+         * @param connector Connector of new sessions
+         * @return Pooled session, with one more user
+         * @throws IOException If fails
+         */
+        public SessionPool.Pooled borrow(final SessionPool.Connector connector)
+            throws IOException {
+            synchronized (this) {
+                for (SessionPool.Pooled pooled : this.sessions) {
+                    if (pooled.available()) {
+                        ++pooled.users;
+                        pooled.touched = System.currentTimeMillis();
+                        return pooled;
+                    }
+                }
+            }
+            final SessionPool.Pooled fresh =
+                new SessionPool.Pooled(connector.connect());
+            synchronized (this) {
+                this.sessions.add(fresh);
+            }
+            return fresh;
+        }
+        /**
+         * Give the session back.
+         * @param pooled The session
+         * @param healthy TRUE if it can be used again
+         */
+        public void giveBack(final SessionPool.Pooled pooled,
+            final boolean healthy) {
+            synchronized (this) {
+                --pooled.users;
+                pooled.touched = System.currentTimeMillis();
+                if (!healthy) {
+                    pooled.broken = true;
+                }
+            }
+            this.evict(0L);
+        }
+        /**
+         * Disconnect unused sessions, which are either broken or
+         * not touched since the given moment.
+         * @param since Moment of time, in milliseconds
+         */
+        public void evict(final long since) {
+            final Collection<Session> dead = new LinkedList<Session>();
+            synchronized (this) {
+                final Iterator<SessionPool.Pooled> iterator =
+                    this.sessions.iterator();
+                while (iterator.hasNext()) {
+                    final SessionPool.Pooled pooled = iterator.next();
+                    if (pooled.users == 0 && (pooled.broken
+                        || pooled.touched < since
+                        || !pooled.session.isConnected())) {
+                        iterator.remove();
+                        dead.add(pooled.session);
+                    }
+                }
+            }
+            for (Session session : dead) {
+                session.disconnect();
+            }
+        }
+        /**
+         * Number of sessions.
+         * @return Size
+         */
+        public int size() {
+            synchronized (this) {
+                return this.sessions.size();
+            }
+        }
+    }
+
+}
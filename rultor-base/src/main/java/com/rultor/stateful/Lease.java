@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.stateful;
+
+import com.jcabi.aspects.Immutable;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Lease of a distributed lock, with expiration time.
+ *
+ * <p>Implementations must make {@link #acquire(String,long)} atomic,
+ * as much as their storage allows: only one owner can hold a lease at
+ * any moment, unless it is expired. Used by {@link LeasedLineup}.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@Immutable
+public interface Lease {
+
+    /**
+     * Acquire the lease, if it is free or expired.
+     * @param owner Unique name of the owner
+     * @param expires When the lease expires, in milliseconds since epoch
+     * @return TRUE if acquired
+     */
+    boolean acquire(@NotNull(message = "owner can't be NULL") String owner,
+        long expires);
+
+    /**
+     * Extend the lease, if it is still ours.
+     * @param owner Unique name of the owner
+     * @param expires When the lease expires, in milliseconds since epoch
+     * @return TRUE if extended, FALSE if it is lost
+     */
+    boolean renew(@NotNull(message = "owner can't be NULL") String owner,
+        long expires);
+
+    /**
+     * Release the lease, if it is still ours.
+     * @param owner Unique name of the owner
+     */
+    void release(@NotNull(message = "owner can't be NULL") String owner);
+
+}
@@ -0,0 +1,354 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.stateful;
+
+import com.jcabi.aspects.Immutable;
+import com.jcabi.aspects.Loggable;
+import com.jcabi.aspects.Tv;
+import com.jcabi.log.Logger;
+import com.jcabi.log.VerboseRunnable;
+import com.jcabi.log.VerboseThreads;
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.validation.constraints.NotNull;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.apache.commons.lang3.RandomStringUtils;
+
+/**
+ * Lineup that holds a {@link Lease} while executing.
+ *
+ * <p>The lease is acquired for one minute and renewed in background
+ * every twenty seconds, until execution is finished. If the holder
+ * dies, the lease expires and somebody else acquires it. While the
+ * lease is busy we retry with exponential backoff, from 100 msec up to
+ * ten seconds. Threads of this JVM, waiting for the same lineup, are
+ * queued in FIFO order and only the first of them talks to the storage.
+ * If a renewal fails, the lease is lost and somebody else may be running
+ * already, so the executing thread is interrupted and {@code exec()}
+ * fails with {@link IllegalStateException}.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ * @checkstyle ClassDataAbstractionCoupling (500 lines)
+ */
+@Immutable
+@ToString
+@EqualsAndHashCode(of = { "name", "lease" })
+@Loggable(Loggable.DEBUG)
+@SuppressWarnings("PMD.DoNotUseThreads")
+public final class LeasedLineup implements Lineup {
+
+    /**
+     * Default lifetime of a lease, in milliseconds.
+     */
+    private static final long TTL = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Maximum delay between attempts to acquire, in milliseconds.
+     */
+    private static final long MAX_DELAY =
+        TimeUnit.SECONDS.toMillis(Tv.TEN);
+
+    /**
+     * Local FIFO queues of waiting threads, by lineup names.
+     */
+    private static final ConcurrentMap<String, Semaphore> QUEUES =
+        new ConcurrentHashMap<String, Semaphore>(0);
+
+    /**
+     * Renewals of leases.
+     */
+    private static final ScheduledExecutorService RENEWALS =
+        Executors.newSingleThreadScheduledExecutor(
+            new VerboseThreads("lineup")
+        );
+
+    /**
+     * Randomizer.
+     */
+    private static final Random RAND = new SecureRandom();
+
+    /**
+     * Unique name of the lineup.
+     */
+    private final transient String name;
+
+    /**
+     * Lease to hold.
+     */
+    private final transient Lease lease;
+
+    /**
+     * Lifetime of the lease, in milliseconds.
+     */
+    private final transient long ttl;
+
+    /**
+     * Public ctor.
+     * @param label Unique name of the lineup, among all lineups in JVM
+     * @param lse Lease to hold
+     */
+    public LeasedLineup(
+        @NotNull(message = "name can't be NULL") final String label,
+        @NotNull(message = "lease can't be NULL") final Lease lse) {
+        this(label, lse, LeasedLineup.TTL);
+    }
+
+    /**
+     * Ctor.
+     * @param label Unique name of the lineup, among all lineups in JVM
+     * @param lse Lease to hold
+     * @param msec Lifetime of the lease, in milliseconds
+     */
+    LeasedLineup(final String label, final Lease lse, final long msec) {
+        this.name = label;
+        this.lease = lse;
+        this.ttl = msec;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    @Loggable(value = Loggable.DEBUG, limit = Integer.MAX_VALUE)
+    public <T> T exec(final Callable<T> callable) throws Exception {
+        final Semaphore queue = LeasedLineup.queue(this.name);
+        queue.acquire();
+        try {
+            final String owner = this.acquire();
+            final LeasedLineup.Holding holding =
+                new LeasedLineup.Holding(Thread.currentThread());
+            final Future<?> renewal = LeasedLineup.RENEWALS
+                .scheduleWithFixedDelay(
+                    new VerboseRunnable(
+                        this.renewal(owner, holding), true, false
+                    ),
+                    this.ttl / Tv.THREE, this.ttl / Tv.THREE,
+                    TimeUnit.MILLISECONDS
+                );
+            T result = null;
+            Exception error = null;
+            try {
+                result = callable.call();
+            // @checkstyle IllegalCatch (1 line)
+            } catch (Exception ex) {
+                error = ex;
+            } finally {
+                renewal.cancel(false);
+                this.lease.release(owner);
+            }
+            if (!holding.finish()) {
+                throw new IllegalStateException(
+                    String.format(
+                        "lease of `%s` was lost during execution", this.name
+                    ),
+                    error
+                );
+            }
+            if (error != null) {
+                throw error;
+            }
+            return result;
+        } finally {
+            queue.release();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    @Loggable(value = Loggable.DEBUG, limit = Integer.MAX_VALUE)
+    public void exec(final Runnable runnable) {
+        try {
+            this.exec(
+                new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        runnable.run();
+                        return null;
+                    }
+                    @Override
+                    public String toString() {
+                        return runnable.toString();
+                    }
+                }
+            );
+        // @checkstyle IllegalCatch (1 line)
+        } catch (Exception ex) {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+
+    /**
+     * Acquire the lease, waiting for it as long as necessary.
+     * @return Unique name of the owner
+     * @throws InterruptedException If interrupted while waiting
+     */
+    private String acquire() throws InterruptedException {
+        final String owner = String.format(
+            "%d-%s",
+            System.nanoTime(),
+            RandomStringUtils.randomAlphanumeric(Tv.TWENTY)
+        );
+        final long start = System.currentTimeMillis();
+        long delay = Tv.HUNDRED;
+        while (!this.lease.acquire(
+            owner, System.currentTimeMillis() + this.ttl)) {
+            final long msec = delay / 2
+                + (long) LeasedLineup.RAND.nextInt((int) delay / 2 + 1);
+            Logger.info(
+                this, "`%s` is busy for %[ms]s already, waiting %[ms]s...",
+                this.name, System.currentTimeMillis() - start, msec
+            );
+            TimeUnit.MILLISECONDS.sleep(msec);
+            delay = Math.min(delay * 2, LeasedLineup.MAX_DELAY);
+        }
+        return owner;
+    }
+
+    /**
+     * Make a runnable that renews the lease.
+     * @param owner Unique name of the owner
+     * @param holding Holding to interrupt if the lease is lost
+     * @return Runnable
+     */
+    private Runnable renewal(final String owner,
+        final LeasedLineup.Holding holding) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                if (holding.active() && !LeasedLineup.this.lease.renew(
+                    owner, System.currentTimeMillis() + LeasedLineup.this.ttl
+                ) && holding.lose()) {
+                    Logger.error(
+                        this, "lease of `%s` is lost by `%s`, interrupting %s",
+                        LeasedLineup.this.name, owner, holding
+                    );
+                }
+            }
+        };
+    }
+
+    /**
+     * Get local queue for the given lineup.
+     * @param label Name of the lineup
+     * @return Semaphore with fair FIFO ordering
+     */
+    private static Semaphore queue(final String label) {
+        Semaphore queue = LeasedLineup.QUEUES.get(label);
+        if (queue == null) {
+            LeasedLineup.QUEUES.putIfAbsent(label, new Semaphore(1, true));
+            queue = LeasedLineup.QUEUES.get(label);
+        }
+        return queue;
+    }
+
+    /**
+     * Execution holding the lease.
+     */
+    private static final class Holding {
+        /**
+         * Thread executing.
+         */
+        private final transient Thread worker;
+        /**
+         * Is it finished, guarded by this object?
+         */
+        private transient boolean finished;
+        /**
+         * Is the lease lost, guarded by this object?
+         */
+        private transient boolean lost;
+        /**
+         * Ctor.
+         * @param thread Thread executing
+         */
+        Holding(final Thread thread) {
+            this.worker = thread;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return this.worker.getName();
+        }
+        /**
+         * Is it still running with the lease?
+         * @return TRUE if it is
+         */
+        public boolean active() {
+            synchronized (this) {
+                return !this.finished && !this.lost;
+            }
+        }
+        /**
+         * The lease is lost, interrupt the execution if it is running.
+         * @return TRUE if it was running and is interrupted now
+         */
+        public boolean lose() {
+            synchronized (this) {
+                final boolean running = !this.finished && !this.lost;
+                if (running) {
+                    this.lost = true;
+                    this.worker.interrupt();
+                }
+                return running;
+            }
+        }
+        /**
+         * Finish the execution, to be called by the executing thread.
+         * @return TRUE if the lease was held till the end
+         */
+        public boolean finish() {
+            synchronized (this) {
+                this.finished = true;
+                if (this.lost) {
+                    Thread.interrupted();
+                }
+                return !this.lost;
+            }
+        }
+    }
+
+}
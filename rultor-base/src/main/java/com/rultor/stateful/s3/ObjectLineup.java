@@ -31,32 +31,33 @@ package com.rultor.stateful.s3;
 
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
-import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectResult;
 import com.amazonaws.services.s3.model.S3Object;
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
-import com.jcabi.aspects.Tv;
 import com.jcabi.log.Logger;
 import com.rultor.aws.S3Client;
+import com.rultor.stateful.Lease;
+import com.rultor.stateful.LeasedLineup;
 import com.rultor.stateful.Lineup;
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.SecureRandom;
-import java.util.Random;
 import java.util.concurrent.Callable;
-import java.util.concurrent.TimeUnit;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.core.MediaType;
 import lombok.EqualsAndHashCode;
 import org.apache.commons.codec.CharEncoding;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.RandomStringUtils;
 
 /**
  * Lineup with synchronization through S3 object/lock.
  *
+ * <p>The object holds a lease: the identifier of its owner and the time
+ * when it expires, in two lines. S3 doesn't support conditional writes,
+ * so the lease is saved and then loaded back, to make sure that nobody
+ * else saved it in the meantime.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
@@ -65,12 +66,7 @@ import org.apache.commons.lang3.RandomStringUtils;
 @EqualsAndHashCode(of = { "client", "key" })
 @Loggable(Loggable.DEBUG)
 @SuppressWarnings("PMD.DoNotUseThreads")
-public final class ObjectLineup implements Lineup {
-
-    /**
-     * Randomizer.
-     */
-    private static final Random RAND = new SecureRandom();
+public final class ObjectLineup implements Lineup, Lease {
 
     /**
      * S3 client.
@@ -123,90 +119,102 @@ public final class ObjectLineup implements Lineup {
      */
     @Override
     public <T> T exec(final Callable<T> callable) throws Exception {
-        while (true) {
-            while (this.exists()) {
-                try {
-                    TimeUnit.MILLISECONDS.sleep(
-                        ObjectLineup.RAND.nextInt(Tv.TEN * Tv.THOUSAND)
-                    );
-                } catch (InterruptedException ex) {
-                    Thread.currentThread().interrupt();
-                    throw new IllegalStateException(ex);
-                }
-            }
-            final String marker = String.format(
-                "%d-%s",
-                System.nanoTime(),
-                RandomStringUtils.randomAlphanumeric(Tv.HUNDRED)
-            );
-            this.save(marker);
-            final String saved = this.load();
-            if (saved.equals(marker)) {
-                Logger.debug(
-                    this,
-                    "S3 object `%s/%s` is locked by us with `%s`",
-                    this.client.bucket(),
-                    this.key,
-                    saved
-                );
-                break;
-            }
+        return this.lineup().exec(callable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void exec(final Runnable runnable) {
+        this.lineup().exec(runnable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean acquire(final String owner, final long expires) {
+        final String[] lease = ObjectLineup.parse(this.load());
+        boolean acquired = false;
+        if (lease[0].isEmpty() || lease[0].equals(owner)
+            || Long.parseLong(lease[1]) < System.currentTimeMillis()) {
+            this.save(ObjectLineup.lease(owner, expires));
+            final String saved = ObjectLineup.parse(this.load())[0];
+            acquired = saved.equals(owner);
             Logger.debug(
                 this,
-                "S3 object `%s/%s` is locked by `%s`, let's wait...",
+                "S3 object `%s/%s` is locked by `%s`",
                 this.client.bucket(),
                 this.key,
                 saved
             );
         }
-        try {
-            return callable.call();
-        } finally {
-            this.remove();
+        return acquired;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean renew(final String owner, final long expires) {
+        final boolean ours = ObjectLineup.parse(this.load())[0].equals(owner);
+        if (ours) {
+            this.save(ObjectLineup.lease(owner, expires));
         }
+        return ours;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    @SuppressWarnings("PMD.AvoidCatchingGenericException")
-    public void exec(final Runnable runnable) {
-        try {
-            this.exec(
-                new Callable<Void>() {
-                    @Override
-                    public Void call() throws Exception {
-                        runnable.run();
-                        return null;
-                    }
-                }
+    public void release(final String owner) {
+        if (ObjectLineup.parse(this.load())[0].equals(owner)) {
+            this.remove();
+        } else {
+            Logger.warn(
+                this, "S3 object `%s/%s` is not ours any more",
+                this.client.bucket(), this.key
             );
-        // @checkstyle IllegalCatch (1 line)
-        } catch (Exception ex) {
-            throw new IllegalArgumentException(ex);
         }
     }
 
     /**
-     * Object exists in S3.
-     * @return TRUE if it exists
+     * Make lineup that holds the lease in this object.
+     * @return Lineup
      */
-    private boolean exists() {
-        final AmazonS3 aws = this.client.get();
-        final ObjectListing listing =
-            aws.listObjects(this.client.bucket(), this.key);
-        final boolean exists = !listing.getObjectSummaries().isEmpty();
-        if (exists) {
-            Logger.debug(
-                this,
-                "S3 object `%s/%s` exists: %s",
-                this.client.bucket(),
-                this.key,
-                this.load()
-            );
+    private Lineup lineup() {
+        return new LeasedLineup(
+            String.format("s3:%s/%s", this.client.bucket(), this.key),
+            this
+        );
+    }
+
+    /**
+     * Make text of a lease.
+     * @param owner Owner of it
+     * @param expires When it expires
+     * @return Text to save
+     */
+    private static String lease(final String owner, final long expires) {
+        return String.format("%s\n%d", owner, expires);
+    }
+
+    /**
+     * Parse text of a lease.
+     * @param text Text saved (possibly empty)
+     * @return Owner and expiration time (zero if absent)
+     */
+    private static String[] parse(final String text) {
+        final String[] lease = text.split("\n", 2);
+        final String[] parsed;
+        if (lease.length == 2 && lease[1].matches("\\d+")) {
+            parsed = lease;
+        } else {
+            parsed = new String[] {lease[0], "0"};
         }
-        return exists;
+        return parsed;
     }
 
     /**
@@ -29,11 +29,14 @@
  */
 package com.rultor.stateful.sdb;
 
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.simpledb.model.Attribute;
 import com.amazonaws.services.simpledb.model.DeleteAttributesRequest;
 import com.amazonaws.services.simpledb.model.GetAttributesRequest;
 import com.amazonaws.services.simpledb.model.GetAttributesResult;
 import com.amazonaws.services.simpledb.model.PutAttributesRequest;
 import com.amazonaws.services.simpledb.model.ReplaceableAttribute;
+import com.amazonaws.services.simpledb.model.UpdateCondition;
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
 import com.jcabi.aspects.RetryOnFailure;
@@ -41,19 +44,21 @@ import com.jcabi.aspects.Tv;
 import com.jcabi.log.Logger;
 import com.rultor.aws.SDBClient;
 import com.rultor.spi.Wallet;
+import com.rultor.stateful.Lease;
+import com.rultor.stateful.LeasedLineup;
 import com.rultor.stateful.Lineup;
 import com.rultor.tools.Dollars;
-import com.rultor.tools.Time;
-import java.security.SecureRandom;
-import java.util.Random;
 import java.util.concurrent.Callable;
-import java.util.concurrent.TimeUnit;
 import javax.validation.constraints.NotNull;
 import lombok.EqualsAndHashCode;
 
 /**
  * Lineup with synchronization through Amazon SimpleDB item.
  *
+ * <p>The item holds a lease: the identifier of its owner and the time
+ * when it expires. It is acquired and renewed with conditional puts
+ * and released with a conditional delete, so only one owner can hold it.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
@@ -63,7 +68,7 @@ import lombok.EqualsAndHashCode;
 @EqualsAndHashCode(of = { "client", "name" })
 @Loggable(Loggable.DEBUG)
 @SuppressWarnings("PMD.DoNotUseThreads")
-public final class ItemLineup implements Lineup {
+public final class ItemLineup implements Lineup, Lease {
 
     /**
      * Attribute name.
@@ -71,9 +76,9 @@ public final class ItemLineup implements Lineup {
     private static final String IDENTIFIER = "identifier";
 
     /**
-     * Randomizer.
+     * Attribute with expiration time.
      */
-    private static final Random RAND = new SecureRandom();
+    private static final String EXPIRES = "expires";
 
     /**
      * Wallet to charge.
@@ -122,126 +127,160 @@ public final class ItemLineup implements Lineup {
      * {@inheritDoc}
      */
     @Override
-    @SuppressWarnings("PMD.AvoidInstantiatingObjectsInLoops")
     @Loggable(value = Loggable.DEBUG, limit = Integer.MAX_VALUE)
     public <T> T exec(final Callable<T> callable) throws Exception {
-        final long start = System.currentTimeMillis();
-        while (true) {
-            final String marker = String.format(
-                "%s %d %s", new Time(), System.nanoTime(), callable.toString()
-            );
-            final String saved = this.saveAndLoad(marker);
-            if (saved.equals(marker)) {
-                break;
-            }
-            Logger.info(
-                this,
-                "SimpleDB item `%s/%s` is locked by `%s` for %[ms]s already...",
-                this.client.domain(), this.name,
-                saved, System.currentTimeMillis() - start
-            );
-        }
-        try {
-            return callable.call();
-        } finally {
-            this.remove();
-        }
+        return this.lineup().exec(callable);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    @SuppressWarnings("PMD.AvoidCatchingGenericException")
     @Loggable(value = Loggable.DEBUG, limit = Integer.MAX_VALUE)
     public void exec(final Runnable runnable) {
-        try {
-            this.exec(
-                new Callable<Void>() {
-                    @Override
-                    public Void call() throws Exception {
-                        runnable.run();
-                        return null;
-                    }
-                    @Override
-                    public String toString() {
-                        return runnable.toString();
-                    }
-                }
-            );
-        // @checkstyle IllegalCatch (1 line)
-        } catch (Exception ex) {
-            throw new IllegalArgumentException(ex);
-        }
+        this.lineup().exec(runnable);
     }
 
     /**
-     * Save this marker when possible and load it back.
-     * @param marker Marker to save
-     * @return What we have in the notepad after saving
+     * {@inheritDoc}
      */
-    private String saveAndLoad(final String marker) {
-        while (this.exists()) {
-            final long msec = ItemLineup.RAND.nextInt(Tv.THOUSAND);
-            Logger.info(this, "sleeping for %[ms]s...", msec);
-            try {
-                TimeUnit.MILLISECONDS.sleep(msec);
-            } catch (InterruptedException ex) {
-                Thread.currentThread().interrupt();
-                throw new IllegalStateException(ex);
+    @Override
+    public boolean acquire(final String owner, final long expires) {
+        boolean acquired = this.put(
+            owner, expires,
+            new UpdateCondition()
+                .withName(ItemLineup.IDENTIFIER)
+                .withExists(false)
+        );
+        if (!acquired) {
+            final GetAttributesResult result = this.load();
+            String holder = null;
+            String until = null;
+            for (Attribute attr : result.getAttributes()) {
+                if (ItemLineup.IDENTIFIER.equals(attr.getName())) {
+                    holder = attr.getValue();
+                } else if (ItemLineup.EXPIRES.equals(attr.getName())) {
+                    until = attr.getValue();
+                }
+            }
+            if (holder != null && (until == null
+                || Long.parseLong(until) < System.currentTimeMillis())) {
+                Logger.warn(
+                    this, "SimpleDB item `%s/%s` expired, taking it from `%s`",
+                    this.client.domain(), this.name, holder
+                );
+                // any renewal changes EXPIRES, and the takeover fails
+                final UpdateCondition cond = new UpdateCondition()
+                    .withName(ItemLineup.EXPIRES);
+                if (until == null) {
+                    cond.setExists(false);
+                } else {
+                    cond.setValue(until);
+                    cond.setExists(true);
+                }
+                acquired = this.put(owner, expires, cond);
             }
         }
-        this.save(marker);
-        return this.load();
+        return acquired;
     }
 
     /**
-     * Item exists in SimpleDB.
-     * @return TRUE if it exists
+     * {@inheritDoc}
      */
-    @RetryOnFailure(verbose = false)
-    private boolean exists() {
-        final long start = System.currentTimeMillis();
-        final GetAttributesResult result = this.client.get().getAttributes(
-            new GetAttributesRequest()
-                .withConsistentRead(true)
-                .withDomainName(this.client.domain())
-                .withItemName(this.name)
+    @Override
+    public boolean renew(final String owner, final long expires) {
+        return this.put(
+            owner, expires,
+            new UpdateCondition()
+                .withName(ItemLineup.IDENTIFIER)
+                .withValue(owner)
+                .withExists(true)
         );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void release(final String owner) {
+        final long start = System.currentTimeMillis();
+        try {
+            this.client.get().deleteAttributes(
+                new DeleteAttributesRequest()
+                    .withDomainName(this.client.domain())
+                    .withItemName(this.name)
+                    .withExpected(
+                        new UpdateCondition()
+                            .withName(ItemLineup.IDENTIFIER)
+                            .withValue(owner)
+                            .withExists(true)
+                    )
+            );
+        } catch (AmazonServiceException ex) {
+            if (!ItemLineup.conditional(ex)) {
+                throw ex;
+            }
+            Logger.warn(
+                this, "SimpleDB item `%s/%s` is not ours any more",
+                this.client.domain(), this.name
+            );
+        }
         this.wallet.charge(
             Logger.format(
-                // @checkstyle LineLength (1 line)
-                "checked existence of AWS SimpleDB item `%s` in `%s` domain in %[ms]s",
+                "removed AWS SimpleDB item `%s` from `%s` domain in %[ms]s",
                 this.name, this.client.domain(),
                 System.currentTimeMillis() - start
             ),
             new Dollars(Tv.FIVE)
         );
-        return !result.getAttributes().isEmpty();
     }
 
     /**
-     * Save text to SimpleDB object.
-     * @param content Content to save
+     * Make lineup that holds the lease in this item.
+     * @return Lineup
      */
-    @RetryOnFailure(verbose = false)
-    private void save(final String content) {
-        final long start = System.currentTimeMillis();
-        this.client.get().putAttributes(
-            new PutAttributesRequest()
-                .withDomainName(this.client.domain())
-                .withItemName(this.name)
-                .withAttributes(
-                    new ReplaceableAttribute()
-                        .withName(ItemLineup.IDENTIFIER)
-                        .withValue(content)
-                        .withReplace(true),
-                    new ReplaceableAttribute()
-                        .withName("time")
-                        .withValue(new Time().toString())
-                        .withReplace(true)
-                )
+    private Lineup lineup() {
+        return new LeasedLineup(
+            String.format("sdb:%s/%s", this.client.domain(), this.name),
+            this
         );
+    }
+
+    /**
+     * Save owner and expiration time to SimpleDB item, if the condition
+     * is met.
+     * @param owner Owner of the lease
+     * @param expires When it expires
+     * @param condition Condition to check
+     * @return TRUE if saved, FALSE if condition is not met
+     */
+    private boolean put(final String owner, final long expires,
+        final UpdateCondition condition) {
+        final long start = System.currentTimeMillis();
+        boolean saved = true;
+        try {
+            this.client.get().putAttributes(
+                new PutAttributesRequest()
+                    .withDomainName(this.client.domain())
+                    .withItemName(this.name)
+                    .withExpected(condition)
+                    .withAttributes(
+                        new ReplaceableAttribute()
+                            .withName(ItemLineup.IDENTIFIER)
+                            .withValue(owner)
+                            .withReplace(true),
+                        new ReplaceableAttribute()
+                            .withName(ItemLineup.EXPIRES)
+                            .withValue(String.format("%020d", expires))
+                            .withReplace(true)
+                    )
+            );
+        } catch (AmazonServiceException ex) {
+            if (!ItemLineup.conditional(ex)) {
+                throw ex;
+            }
+            saved = false;
+        }
         this.wallet.charge(
             Logger.format(
                 "put AWS SimpleDB item `%s` into `%s` domain in %[ms]s",
@@ -250,21 +289,22 @@ public final class ItemLineup implements Lineup {
             ),
             new Dollars(Tv.FIVE)
         );
+        return saved;
     }
 
     /**
-     * Load text from SimpleDB item (or empty if it doesn't exist).
-     * @return The content loaded
+     * Load attributes of SimpleDB item (empty if it doesn't exist).
+     * @return The attributes loaded
      */
     @RetryOnFailure(verbose = false)
-    private String load() {
+    private GetAttributesResult load() {
         final long start = System.currentTimeMillis();
         final GetAttributesResult result = this.client.get().getAttributes(
             new GetAttributesRequest()
                 .withConsistentRead(true)
                 .withDomainName(this.client.domain())
                 .withItemName(this.name)
-                .withAttributeNames(ItemLineup.IDENTIFIER)
+                .withAttributeNames(ItemLineup.IDENTIFIER, ItemLineup.EXPIRES)
         );
         this.wallet.charge(
             Logger.format(
@@ -274,34 +314,17 @@ public final class ItemLineup implements Lineup {
             ),
             new Dollars(Tv.FIVE)
         );
-        final String text;
-        if (result.getAttributes().isEmpty()) {
-            text = "";
-        } else {
-            text = result.getAttributes().get(0).getValue();
-        }
-        return text;
+        return result;
     }
 
     /**
-     * Remove object from SimpleDB.
+     * This exception means that a condition was not met.
+     * @param exp Exception from SimpleDB
+     * @return TRUE if this is the reason of the exception
      */
-    @RetryOnFailure(verbose = false)
-    private void remove() {
-        final long start = System.currentTimeMillis();
-        this.client.get().deleteAttributes(
-            new DeleteAttributesRequest()
-                .withDomainName(this.client.domain())
-                .withItemName(this.name)
-        );
-        this.wallet.charge(
-            Logger.format(
-                "removed AWS SimpleDB item `%s` from `%s` domain in %[ms]s",
-                this.name, this.client.domain(),
-                System.currentTimeMillis() - start
-            ),
-            new Dollars(Tv.FIVE)
-        );
+    private static boolean conditional(final AmazonServiceException exp) {
+        return "ConditionalCheckFailed".equals(exp.getErrorCode())
+            || "AttributeDoesNotExist".equals(exp.getErrorCode());
     }
 
 }
@@ -161,6 +161,36 @@ public final class CrontabTest {
         );
     }
 
+    /**
+     * Crontab can calculate the next moment of execution.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void calculatesNextMoment() throws Exception {
+        final Instance org = Mockito.mock(Instance.class);
+        final Coordinates work = new Coordinates.Simple();
+        MatcherAssert.assertThat(
+            new Crontab(work, "* * * * *", org)
+                .next(new Time("2013-05-03T10:10:00Z")),
+            Matchers.equalTo(new Time("2013-05-03T10:10:00Z"))
+        );
+        MatcherAssert.assertThat(
+            new Crontab(work, "*/15 * * * *", org)
+                .next(new Time("2013-05-04T10:13:00Z")),
+            Matchers.equalTo(new Time("2013-05-04T10:15:00Z"))
+        );
+        MatcherAssert.assertThat(
+            new Crontab(work, "30 2 * * *", org)
+                .next(new Time("2013-05-04T10:13:00Z")),
+            Matchers.equalTo(new Time("2013-05-05T02:30:00Z"))
+        );
+        MatcherAssert.assertThat(
+            new Crontab(work, "@yearly", org)
+                .next(new Time("2013-05-04T10:13:00Z")),
+            Matchers.equalTo(new Time("2014-01-01T00:00:00Z"))
+        );
+    }
+
     /**
      * Crontab can print encapsulated rules as text.
      * @throws Exception If some problem inside
@@ -33,18 +33,12 @@ import com.jcabi.aspects.Tv;
 import com.jcabi.log.VerboseRunnable;
 import com.rultor.spi.Drain;
 import com.rultor.tools.Time;
-import java.util.Collection;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
-import org.apache.log4j.Logger;
-import org.apache.log4j.PatternLayout;
-import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.Level;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.Test;
@@ -60,7 +54,7 @@ import org.mockito.Mockito;
 public final class GroupAppenderTest {
 
     /**
-     * GroupAppender can log slf4j messages.
+     * GroupAppender can log messages.
      * @throws Exception If some problem inside
      */
     @Test
@@ -68,20 +62,10 @@ public final class GroupAppenderTest {
         final Drain drain = Mockito.mock(Drain.class);
         final GroupAppender appender =
             new GroupAppender(new Time(), drain);
-        appender.setLayout(new PatternLayout("%m"));
-        final String text = "test message to see in log";
         final Thread publisher = new Thread() {
             @Override
             public void run() {
-                appender.append(
-                    new LoggingEvent(
-                        "",
-                        Logger.getLogger(this.getClass()),
-                        org.apache.log4j.Level.INFO,
-                        text,
-                        new IllegalArgumentException()
-                    )
-                );
+                appender.append(Level.INFO, "test message to see in log");
             }
         };
         publisher.start();
@@ -99,30 +83,30 @@ public final class GroupAppenderTest {
     }
 
     /**
-     * GroupAppender can log slf4j messages in the same thread.
+     * GroupAppender can receive messages through the router.
      * @throws Exception If some problem inside
      */
     @Test
-    @SuppressWarnings("unchecked")
-    public void logsMessagesInSameThread() throws Exception {
+    public void logsMessagesThroughRouter() throws Exception {
         final Drain drain = Mockito.mock(Drain.class);
         final GroupAppender appender =
             new GroupAppender(new Time(), drain);
-        appender.setLayout(new PatternLayout(" %m"));
-        Logger.getRootLogger().addAppender(appender);
-        appender.append(
-            new LoggingEvent(
-                "",
-                Logger.getLogger(this.getClass()),
-                org.apache.log4j.Level.INFO,
-                "some text to log",
-                new IllegalArgumentException()
-            )
+        final ThreadGroup group = Thread.currentThread().getThreadGroup();
+        GroupRouter.register(
+            group, new org.apache.log4j.PatternLayout("%m"),
+            Level.INFO, appender
         );
-        Logger.getRootLogger().removeAppender(appender);
+        try {
+            org.apache.log4j.Logger.getLogger(this.getClass())
+                .info("some text to log");
+        } finally {
+            GroupRouter.unregister(group, appender);
+        }
         appender.close();
         Mockito.verify(drain).append(
-            (Iterable<String>) Mockito.any(Object.class)
+            Mockito.argThat(
+                Matchers.hasItem(Matchers.endsWith(" INFO some text to log"))
+            )
         );
     }
 
@@ -137,8 +121,6 @@ public final class GroupAppenderTest {
         final int threads = Tv.TEN;
         final CountDownLatch done = new CountDownLatch(threads);
         final CountDownLatch ready = new CountDownLatch(threads);
-        final Collection<GroupAppender> appenders =
-            new CopyOnWriteArrayList<GroupAppender>();
         final Runnable runnable = new VerboseRunnable(
             // @checkstyle AnonInnerLength (50 lines)
             new Callable<Void>() {
@@ -147,21 +129,10 @@ public final class GroupAppenderTest {
                     final Drain drain = Mockito.mock(Drain.class);
                     final GroupAppender appender =
                         new GroupAppender(new Time(), drain);
-                    appender.setLayout(new PatternLayout("%m%n"));
-                    appenders.add(appender);
                     ready.countDown();
                     assert start.await(1, TimeUnit.SECONDS);
-                    final LoggingEvent event = new LoggingEvent(
-                        "",
-                        Logger.getLogger(this.getClass()),
-                        org.apache.log4j.Level.INFO,
-                        text,
-                        new IllegalArgumentException()
-                    );
-                    for (GroupAppender app : appenders) {
-                        app.append(event);
-                        app.run();
-                    }
+                    appender.append(Level.INFO, text);
+                    appender.run();
                     Mockito.verify(drain).append(
                         Mockito.argThat(Matchers.<String>iterableWithSize(1))
                     );
@@ -170,22 +141,7 @@ public final class GroupAppenderTest {
                 }
             }
         );
-        final ExecutorService svc = Executors.newFixedThreadPool(
-            threads,
-            new ThreadFactory() {
-                private final transient AtomicLong group = new AtomicLong();
-                @Override
-                public Thread newThread(final Runnable runnable) {
-                    return new Thread(
-                        new ThreadGroup(
-                            Long.toString(this.group.incrementAndGet())
-                        ),
-                        runnable,
-                        String.format("app-%d", this.group.get())
-                    );
-                }
-            }
-        );
+        final ExecutorService svc = Executors.newFixedThreadPool(threads);
         for (int thread = 0; thread < threads; ++thread) {
             svc.submit(runnable);
         }
@@ -198,6 +154,7 @@ public final class GroupAppenderTest {
             done.await(1, TimeUnit.SECONDS),
             Matchers.is(true)
         );
+        svc.shutdown();
     }
 
 }
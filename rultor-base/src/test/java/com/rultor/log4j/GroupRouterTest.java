@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.log4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Layout;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.LoggingEvent;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Test case for {@link GroupRouter}.
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+public final class GroupRouterTest {
+
+    /**
+     * GroupRouter can route events only to sinks of the current group.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void routesToCurrentGroupOnly() throws Exception {
+        final GroupRouter.Sink mine = Mockito.mock(GroupRouter.Sink.class);
+        final GroupRouter.Sink other = Mockito.mock(GroupRouter.Sink.class);
+        final ThreadGroup group = Thread.currentThread().getThreadGroup();
+        final ThreadGroup alien = new ThreadGroup("alien");
+        GroupRouter.register(group, new PatternLayout("%m"), Level.ALL, mine);
+        GroupRouter.register(alien, new PatternLayout("%m"), Level.ALL, other);
+        try {
+            Logger.getLogger(this.getClass()).info("hello, group");
+        } finally {
+            GroupRouter.unregister(group, mine);
+            GroupRouter.unregister(alien, other);
+        }
+        Logger.getLogger(this.getClass()).info("nobody listens");
+        Mockito.verify(mine).append(Level.INFO, "hello, group");
+        Mockito.verifyNoMoreInteractions(mine);
+        Mockito.verifyZeroInteractions(other);
+    }
+
+    /**
+     * GroupRouter can filter events by threshold of a sink.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void filtersByThreshold() throws Exception {
+        final GroupRouter.Sink sink = Mockito.mock(GroupRouter.Sink.class);
+        final ThreadGroup group = Thread.currentThread().getThreadGroup();
+        GroupRouter.register(group, new PatternLayout("%m"), Level.WARN, sink);
+        try {
+            Logger.getLogger(this.getClass()).info("too low");
+            Logger.getLogger(this.getClass()).error("high enough");
+        } finally {
+            GroupRouter.unregister(group, sink);
+        }
+        Mockito.verify(sink).append(Level.ERROR, "high enough");
+        Mockito.verifyNoMoreInteractions(sink);
+    }
+
+    /**
+     * GroupRouter can format an event once for sinks with one pattern.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void formatsOnceForSamePattern() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final Layout layout = new PatternLayout("%p %m") {
+            @Override
+            public String format(final LoggingEvent event) {
+                count.incrementAndGet();
+                return super.format(event);
+            }
+        };
+        final GroupRouter.Sink first = Mockito.mock(GroupRouter.Sink.class);
+        final GroupRouter.Sink second = Mockito.mock(GroupRouter.Sink.class);
+        final ThreadGroup group = Thread.currentThread().getThreadGroup();
+        GroupRouter.register(group, layout, Level.ALL, first);
+        GroupRouter.register(group, layout, Level.ALL, second);
+        try {
+            Logger.getLogger(this.getClass()).info("once");
+        } finally {
+            GroupRouter.unregister(group, first);
+            GroupRouter.unregister(group, second);
+        }
+        Mockito.verify(first).append(Level.INFO, "INFO once");
+        Mockito.verify(second).append(Level.INFO, "INFO once");
+        MatcherAssert.assertThat(count.get(), Matchers.equalTo(1));
+    }
+
+}
@@ -77,4 +77,43 @@ public final class PrerequisitesTest {
         );
     }
 
+    /**
+     * Prerequisites can upload files in one archive, skipping the
+     * files that are already there.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void uploadsFilesInBulk() throws Exception {
+        final File dir = Files.createTempDir();
+        new Prerequisites(
+            new Permanent(new ShellMocker.Bash(dir)),
+            new ImmutableMap.Builder<String, Object>()
+                .put("./a/b/f.txt", "hello, \u0434\u0440\u0443\u0433!")
+                .put("y.txt", "first")
+                .build(),
+            true
+        ).acquire();
+        MatcherAssert.assertThat(
+            FileUtils.readFileToString(new File(dir, "a/b/f.txt"), "UTF-8"),
+            Matchers.equalTo("hello, \u0434\u0440\u0443\u0433!")
+        );
+        FileUtils.write(new File(dir, "a/b/f.txt"), "touched");
+        new Prerequisites(
+            new Permanent(new ShellMocker.Bash(dir)),
+            new ImmutableMap.Builder<String, Object>()
+                .put("./a/b/f.txt", "hello, \u0434\u0440\u0443\u0433!")
+                .put("y.txt", "second")
+                .build(),
+            true
+        ).acquire();
+        MatcherAssert.assertThat(
+            FileUtils.readFileToString(new File(dir, "a/b/f.txt")),
+            Matchers.equalTo("touched")
+        );
+        MatcherAssert.assertThat(
+            FileUtils.readFileToString(new File(dir, "y.txt")),
+            Matchers.equalTo("second")
+        );
+    }
+
 }
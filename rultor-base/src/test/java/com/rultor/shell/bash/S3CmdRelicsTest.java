@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.shell.bash;
+
+import com.google.common.collect.ImmutableMap;
+import com.jcabi.urn.URN;
+import com.rultor.shell.Shell;
+import com.rultor.spi.Coordinates;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Test case for {@link S3CmdRelics}.
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ */
+public final class S3CmdRelicsTest {
+
+    /**
+     * S3CmdRelics can upload relics concurrently, through content store.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void uploadsRelicsConcurrently() throws Exception {
+        final int total = 3;
+        final CyclicBarrier barrier = new CyclicBarrier(total);
+        final Collection<String> commands =
+            new CopyOnWriteArrayList<String>();
+        final Shell shell = Mockito.mock(Shell.class);
+        Mockito.doAnswer(
+            new Answer<Integer>() {
+                @Override
+                public Integer answer(final InvocationOnMock inv)
+                    throws Exception {
+                    commands.add(inv.getArguments()[0].toString());
+                    barrier.await(1, TimeUnit.MINUTES);
+                    OutputStream.class.cast(inv.getArguments()[2])
+                        .write("file.txt\n".getBytes("UTF-8"));
+                    return 0;
+                }
+            }
+        ).when(shell).exec(
+            Mockito.anyString(), Mockito.any(InputStream.class),
+            Mockito.any(OutputStream.class), Mockito.any(OutputStream.class)
+        );
+        new S3CmdRelics(
+            new Coordinates.Simple(new URN("urn:test:1"), "rule"),
+            new ImmutableMap.Builder<String, String>()
+                .put("alpha", "./a/file.txt")
+                .put("beta", "./b/file.txt")
+                .put("gamma", "./c/file.txt")
+                .build(),
+            "bucket", "pfx/", "key", "secret", total
+        ).exec(shell);
+        MatcherAssert.assertThat(commands, Matchers.hasSize(total));
+        MatcherAssert.assertThat(
+            commands,
+            Matchers.everyItem(
+                Matchers.allOf(
+                    Matchers.containsString("s3://bucket/pfx/urn:test:1/cas/"),
+                    Matchers.containsString("sha256sum")
+                )
+            )
+        );
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.shell.bash;
+
+import com.jcabi.aspects.Tv;
+import java.io.ByteArrayOutputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Test case for {@link Tarball}.
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ */
+public final class TarballTest {
+
+    /**
+     * Tarball can write files in blocks.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void writesFilesInBlocks() throws Exception {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final Tarball tar = new Tarball(baos);
+        tar.add("a/b.txt", "hello".getBytes("UTF-8"));
+        tar.add("c.txt", new byte[0]);
+        tar.close();
+        final byte[] bytes = baos.toByteArray();
+        // @checkstyle MagicNumber (3 lines)
+        MatcherAssert.assertThat(bytes.length, Matchers.equalTo(512 * 5));
+        MatcherAssert.assertThat(
+            new String(bytes, 0, 7, "UTF-8"), Matchers.equalTo("a/b.txt")
+        );
+    }
+
+    /**
+     * Tarball can detect names that don't fit into header.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void detectsTooLongNames() throws Exception {
+        MatcherAssert.assertThat(
+            Tarball.fits(
+                String.format(
+                    "%s/%s", StringUtils.repeat('x', Tv.HUNDRED),
+                    StringUtils.repeat('y', Tv.HUNDRED)
+                )
+            ),
+            Matchers.is(true)
+        );
+        MatcherAssert.assertThat(
+            Tarball.fits(StringUtils.repeat('z', Tv.HUNDRED * 2)),
+            Matchers.is(false)
+        );
+        MatcherAssert.assertThat(Tarball.fits(""), Matchers.is(false));
+    }
+
+}
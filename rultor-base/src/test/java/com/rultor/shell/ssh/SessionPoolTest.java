@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.shell.ssh;
+
+import com.jcraft.jsch.Session;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Test case for {@link SessionPool}.
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ */
+public final class SessionPoolTest {
+
+    /**
+     * SessionPool can share one session between channels.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void sharesSessionBetweenChannels() throws Exception {
+        final SessionPool pool = new SessionPool();
+        final SessionPoolTest.Counting connector =
+            new SessionPoolTest.Counting();
+        final SessionPool.Lease first = pool.acquire("a", connector);
+        final SessionPool.Lease second = pool.acquire("a", connector);
+        MatcherAssert.assertThat(
+            first.session(), Matchers.sameInstance(second.session())
+        );
+        first.close(true);
+        second.close(true);
+        pool.acquire("a", connector).close(true);
+        pool.acquire("b", connector).close(true);
+        MatcherAssert.assertThat(connector.total(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(pool.size(), Matchers.equalTo(2));
+        pool.close();
+        MatcherAssert.assertThat(pool.size(), Matchers.equalTo(0));
+    }
+
+    /**
+     * SessionPool can drop broken and disconnected sessions.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void dropsBrokenSessions() throws Exception {
+        final SessionPool pool = new SessionPool();
+        final SessionPoolTest.Counting connector =
+            new SessionPoolTest.Counting();
+        final SessionPool.Lease broken = pool.acquire("x", connector);
+        broken.close(false);
+        Mockito.verify(broken.session()).disconnect();
+        final SessionPool.Lease lost = pool.acquire("x", connector);
+        MatcherAssert.assertThat(
+            lost.session(), Matchers.not(broken.session())
+        );
+        Mockito.doReturn(false).when(lost.session()).isConnected();
+        lost.close(true);
+        pool.acquire("x", connector).close(true);
+        MatcherAssert.assertThat(connector.total(), Matchers.equalTo(2 + 1));
+        MatcherAssert.assertThat(pool.size(), Matchers.equalTo(1));
+        pool.close();
+    }
+
+    /**
+     * Connector that counts sessions.
+     */
+    private static final class Counting implements SessionPool.Connector {
+        /**
+         * Total sessions connected.
+         */
+        private final transient AtomicInteger count = new AtomicInteger();
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Session connect() throws IOException {
+            this.count.incrementAndGet();
+            final Session session = Mockito.mock(Session.class);
+            Mockito.doReturn(true).when(session).isConnected();
+            return session;
+        }
+        /**
+         * How many sessions were connected.
+         * @return Total
+         */
+        public int total() {
+            return this.count.get();
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.stateful;
+
+import com.jcabi.aspects.Tv;
+import com.jcabi.log.VerboseThreads;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Test case for {@link LeasedLineup}.
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @checkstyle ClassDataAbstractionCoupling (500 lines)
+ */
+public final class LeasedLineupTest {
+
+    /**
+     * LeasedLineup can run code in parallel, one by one.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void runsInParallel() throws Exception {
+        final AtomicReference<String> holder = new AtomicReference<String>();
+        final Lease lease = new Lease() {
+            @Override
+            public boolean acquire(final String owner, final long expires) {
+                return holder.compareAndSet(null, owner);
+            }
+            @Override
+            public boolean renew(final String owner, final long expires) {
+                return owner.equals(holder.get());
+            }
+            @Override
+            public void release(final String owner) {
+                holder.compareAndSet(owner, null);
+            }
+        };
+        final int threads = Tv.TEN;
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final Callable<Integer> callable = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                start.await();
+                return new LeasedLineup("runsInParallel", lease).exec(
+                    new Callable<Integer>() {
+                        @Override
+                        public Integer call() throws Exception {
+                            final int num = count.get();
+                            TimeUnit.MILLISECONDS.sleep(1);
+                            count.set(num + 1);
+                            return count.get();
+                        }
+                    }
+                );
+            }
+        };
+        final ExecutorService svc =
+            Executors.newFixedThreadPool(threads, new VerboseThreads());
+        for (int thread = 0; thread < threads; ++thread) {
+            svc.submit(callable);
+        }
+        start.countDown();
+        svc.shutdown();
+        MatcherAssert.assertThat(
+            svc.awaitTermination(1, TimeUnit.MINUTES),
+            Matchers.is(true)
+        );
+        MatcherAssert.assertThat(count.get(), Matchers.equalTo(threads));
+        MatcherAssert.assertThat(holder.get(), Matchers.nullValue());
+    }
+
+    /**
+     * LeasedLineup can wait until the lease is available.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void waitsForBusyLease() throws Exception {
+        final Lease lease = Mockito.mock(Lease.class);
+        Mockito.doReturn(false).doReturn(false).doReturn(true)
+            .when(lease).acquire(Mockito.anyString(), Mockito.anyLong());
+        MatcherAssert.assertThat(
+            new LeasedLineup("waitsForBusyLease", lease).exec(
+                new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return "done";
+                    }
+                }
+            ),
+            Matchers.equalTo("done")
+        );
+        Mockito.verify(lease, Mockito.times(Tv.THREE))
+            .acquire(Mockito.anyString(), Mockito.anyLong());
+        Mockito.verify(lease).release(Mockito.anyString());
+    }
+
+    /**
+     * LeasedLineup can interrupt execution when the lease is lost.
+     * @throws Exception If some problem inside
+     */
+    @Test(expected = IllegalStateException.class)
+    public void interruptsWhenLeaseIsLost() throws Exception {
+        final Lease lease = Mockito.mock(Lease.class);
+        Mockito.doReturn(true)
+            .when(lease).acquire(Mockito.anyString(), Mockito.anyLong());
+        Mockito.doReturn(false)
+            .when(lease).renew(Mockito.anyString(), Mockito.anyLong());
+        new LeasedLineup("interruptsWhenLeaseIsLost", lease, Tv.HUNDRED).exec(
+            new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    TimeUnit.MINUTES.sleep(1);
+                    return null;
+                }
+            }
+        );
+    }
+
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.benchmarks;
+
+import com.jcabi.urn.URN;
+import com.rultor.conveyer.fake.FakeUsers;
+import com.rultor.repo.ClasspathRepo;
+import com.rultor.spi.Arguments;
+import com.rultor.spi.Coordinates;
+import com.rultor.spi.Repo;
+import com.rultor.spi.Spec;
+import com.rultor.spi.SpecException;
+import com.rultor.spi.User;
+import com.rultor.spi.Users;
+import com.rultor.spi.Variable;
+import com.rultor.spi.Wallet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Spec parsing and instantiation, the way every conveyer thread does
+ * it for every pulse.
+ *
+ * <p>Foreign references are resolved against {@link FakeUsers}, which
+ * return the same rule for any name. Parsed specs are cached by
+ * {@link ClasspathRepo}, so {@link #parse()} measures a cache hit,
+ * while {@link #parseCold(SpecBench.Cold)} empties the cache before
+ * every call and goes through the ANTLR parser, nested specs included.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ * @checkstyle ClassDataAbstractionCoupling (500 lines)
+ * @checkstyle VisibilityModifier (500 lines)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@SuppressWarnings("PMD.BeanMembersShouldSerialize")
+public class SpecBench {
+
+    /**
+     * Owner of all rules.
+     */
+    private static final URN OWNER = URN.create("urn:github:526301");
+
+    /**
+     * Spec of the foreign rule, as in "git-on-commit" template.
+     */
+    private static final String TEMPLATE = new StringBuilder()
+        .append("[${0:URL of Git repository}, ${1:bash script},")
+        .append(" ${2:emails}, ${3:EC2 instance type}, ${4:name},")
+        .append(" ${5:password}, ${6:files}, ${work}]")
+        .toString();
+
+    /**
+     * Spec to benchmark: "small", "nested" or "foreign".
+     */
+    @Param({ "small", "nested", "foreign" })
+    public transient String kind;
+
+    /**
+     * Repo.
+     */
+    private transient Repo repo;
+
+    /**
+     * Users.
+     */
+    private transient Users users;
+
+    /**
+     * User.
+     */
+    private transient User user;
+
+    /**
+     * Spec to parse.
+     */
+    private transient Spec spec;
+
+    /**
+     * Spec parsed already.
+     */
+    private transient Variable<?> var;
+
+    /**
+     * Arguments for instantiation.
+     */
+    private transient Arguments args;
+
+    /**
+     * Prepare everything.
+     * @throws SpecException If fails
+     */
+    @Setup
+    public void setup() throws SpecException {
+        final Coordinates work = new Coordinates.Simple(
+            SpecBench.OWNER, "benchmark"
+        );
+        this.repo = new ClasspathRepo();
+        this.users = new FakeUsers(work, new Spec.Simple(SpecBench.TEMPLATE));
+        this.user = this.users.get(SpecBench.OWNER);
+        this.spec = new Spec.Simple(SpecBench.text(this.kind));
+        this.var = this.repo.make(this.user, this.spec);
+        this.args = new Arguments(work, new Wallet.Empty());
+    }
+
+    /**
+     * Parse the spec, which is in cache already.
+     * @return Variable
+     * @throws SpecException If fails
+     */
+    @Benchmark
+    public Variable<?> parse() throws SpecException {
+        return this.repo.make(this.user, this.spec);
+    }
+
+    /**
+     * Parse the spec, which is not in cache yet.
+     * @param cold State that empties the cache
+     * @return Variable
+     * @throws SpecException If fails
+     */
+    @Benchmark
+    public Variable<?> parseCold(final SpecBench.Cold cold)
+        throws SpecException {
+        return this.repo.make(this.user, this.spec);
+    }
+
+    /**
+     * Instantiate parsed spec.
+     * @return Object made
+     * @throws SpecException If fails
+     */
+    @Benchmark
+    public Object instantiate() throws SpecException {
+        return this.var.instantiate(this.users, this.args);
+    }
+
+    /**
+     * Parse and instantiate.
+     * @return Object made
+     * @throws SpecException If fails
+     */
+    @Benchmark
+    public Object endToEnd() throws SpecException {
+        return this.repo.make(this.user, this.spec)
+            .instantiate(this.users, this.args);
+    }
+
+    /**
+     * Text of the spec to benchmark.
+     * @param name Kind of spec
+     * @return Text
+     */
+    private static String text(final String name) {
+        final String text;
+        if ("small".equals(name)) {
+            text = "java.lang.Long(-44L)";
+        } else if ("nested".equals(name)) {
+            text = new StringBuilder()
+                .append("{\"name\": java.lang.String(\"test\"),")
+                .append(" \"items\": [java.lang.Integer(1),")
+                .append(" java.lang.Long(2L), \"text\",")
+                .append(" [java.lang.Double(-1.5), FALSE]],")
+                .append(" \"flag\": java.lang.Boolean(TRUE),")
+                .append(" \"more\": {\"a\": 1, \"b\": [\"c\", \"d\"]}}")
+                .toString();
+        } else if ("foreign".equals(name)) {
+            text = new StringBuilder()
+                .append("urn:github:526301:git-on-commit(\n")
+                .append("  \"https://github.com/jcabi/jcabi.git\",\n")
+                .append("  \"mvn test -e -Pci --settings settings.xml\",\n")
+                .append("  [\"me@example.com\", \"you@example.com\"],\n")
+                .append("  \"m1.small\",\n  \"example\",\n  \"secret\",\n")
+                .append("  {\n    \"settings.xml\": \"\"\"\n")
+                .append("    <settings><profiles><profile><id>ci</id>\n")
+                .append("    </profile></profiles></settings>\n")
+                .append("    \"\"\",\n")
+                .append("    \"key\": urn:github:526301:nested-ref(\n")
+                .append("      1, 2L, \"3\", [4], {\"5\": 6}, TRUE, \"x\"\n")
+                .append("    )\n  }\n)")
+                .toString();
+        } else {
+            throw new IllegalArgumentException(name);
+        }
+        return text;
+    }
+
+    /**
+     * State that empties the cache of parsed specs before every call,
+     * out of the measured time.
+     */
+    @State(Scope.Thread)
+    public static class Cold {
+        /**
+         * Forget all parsed specs.
+         */
+        @Setup(Level.Invocation)
+        public void forget() {
+            ClasspathRepo.forget();
+        }
+    }
+
+}
@@ -29,20 +29,37 @@
  */
 package com.rultor.conveyer;
 
-import java.util.NoSuchElementException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 
 /**
- * Thread-safe circular buffer of bytes.
+ * Circular buffer of bytes, with many writers and many readers.
+ *
+ * <p>Bytes are written in bulk, one writer at a time, under the write
+ * lock, while readers copy them out under the read lock, so a copy never
+ * overlaps with a write and sees all of its bytes. Every reader gets its own {@link CircularBuffer.Cursor}, which
+ * moves independently from others. A reader that falls behind the writer
+ * by more than the size of the buffer loses the oldest bytes and
+ * continues from the oldest available one. A reader waiting for new
+ * bytes is parked until the writer wakes it up.
  *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
  * @checkstyle ClassDataAbstractionCoupling (500 lines)
  */
-@ToString
-@EqualsAndHashCode(of = { "data", "head", "tail" })
+@ToString(of = "written")
+@EqualsAndHashCode(of = { "data", "written" })
+@SuppressWarnings("PMD.DoNotUseThreads")
 final class CircularBuffer {
 
     /**
@@ -51,14 +68,21 @@ final class CircularBuffer {
     private final transient byte[] data;
 
     /**
-     * Next byte to write to.
+     * Total number of bytes written.
      */
-    private transient int head;
+    private final transient AtomicLong written = new AtomicLong();
 
     /**
-     * Next byte to read from.
+     * Lock of the bytes.
      */
-    private transient int tail;
+    private final transient ReadWriteLock lock =
+        new ReentrantReadWriteLock();
+
+    /**
+     * Readers waiting for new bytes.
+     */
+    private final transient Queue<Thread> waiting =
+        new ConcurrentLinkedQueue<Thread>();
 
     /**
      * Ctor.
@@ -69,55 +93,153 @@ final class CircularBuffer {
     }
 
     /**
-     * Add byte.
-     * @param item Byte to write
+     * Add bytes.
+     * @param bytes Bytes to take data from
+     * @param off Offset in the array
+     * @param len How many bytes to write
      */
-    public void write(final byte item) {
-        synchronized (this.data) {
-            this.data[this.head] = item;
-            ++this.head;
-            if (this.head == this.data.length) {
-                this.head = 0;
-            }
-            if (this.head == this.tail) {
-                ++this.tail;
-            }
-            if (this.tail == this.data.length) {
-                this.tail = 0;
+    public void write(final byte[] bytes, final int off, final int len) {
+        int start = off;
+        int count = len;
+        if (count > this.data.length) {
+            start += count - this.data.length;
+            count = this.data.length;
+        }
+        this.lock.writeLock().lock();
+        try {
+            final long pos = this.written.get();
+            final int idx = (int) (pos % this.data.length);
+            final int first = Math.min(count, this.data.length - idx);
+            System.arraycopy(bytes, start, this.data, idx, first);
+            System.arraycopy(
+                bytes, start + first, this.data, 0, count - first
+            );
+            this.written.set(pos + count);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        if (!this.waiting.isEmpty()) {
+            for (Thread thread : this.waiting) {
+                LockSupport.unpark(thread);
             }
         }
     }
 
     /**
-     * Does it have any bytes to read?
-     * @return TRUE if it's empty
+     * Make a new reader, starting from the oldest byte available.
+     * @return Cursor
      */
-    public boolean isEmpty() {
-        synchronized (this.data) {
-            return this.head == this.tail;
-        }
+    public CircularBuffer.Cursor cursor() {
+        return new CircularBuffer.Cursor(
+            Math.max(0L, this.written.get() - this.data.length)
+        );
     }
 
     /**
-     * Read the next available byte.
-     * @return The byte
+     * Reader of the buffer, not thread-safe.
      */
-    public byte read() {
-        synchronized (this.data) {
-            if (this.isEmpty()) {
-                throw new NoSuchElementException(
-                    String.format(
-                        "circular buffer is empty, size=%d, head=%d, tail=%d",
-                        this.data.length, this.head, this.tail
-                    )
+    final class Cursor extends InputStream {
+        /**
+         * Position of the next byte to read.
+         */
+        private transient long pos;
+        /**
+         * Buffer for single-byte reads.
+         */
+        private final transient byte[] single = new byte[1];
+        /**
+         * Ctor.
+         * @param start Position to start from
+         */
+        protected Cursor(final long start) {
+            super();
+            this.pos = start;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read() throws InterruptedIOException {
+            this.read(this.single, 0, 1);
+            return this.single[0] & 0xff;
+        }
+        /**
+         * {@inheritDoc}
+         *
+         * <p>Waits until at least one byte is available.
+         */
+        @Override
+        public int read(final byte[] bytes, final int off, final int len)
+            throws InterruptedIOException {
+            int count = 0;
+            while (count == 0 && len > 0) {
+                if (CircularBuffer.this.written.get() <= this.pos) {
+                    this.await();
+                    continue;
+                }
+                count = this.copy(bytes, off, len);
+            }
+            return count;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int available() {
+            return (int) Math.min(
+                (long) CircularBuffer.this.data.length,
+                CircularBuffer.this.written.get() - this.pos
+            );
+        }
+        /**
+         * Copy available bytes, skipping the ones already overwritten.
+         * @param bytes Array to copy to
+         * @param off Offset in the array
+         * @param len Maximum number of bytes to copy
+         * @return How many bytes were copied
+         */
+        private int copy(final byte[] bytes, final int off, final int len) {
+            CircularBuffer.this.lock.readLock().lock();
+            try {
+                final long top = CircularBuffer.this.written.get();
+                final int size = CircularBuffer.this.data.length;
+                final long start = Math.max(this.pos, top - size);
+                final int total = (int) Math.min((long) len, top - start);
+                final int idx = (int) (start % size);
+                final int first = Math.min(total, size - idx);
+                System.arraycopy(
+                    CircularBuffer.this.data, idx, bytes, off, first
                 );
+                System.arraycopy(
+                    CircularBuffer.this.data, 0, bytes, off + first,
+                    total - first
+                );
+                this.pos = start + total;
+                return total;
+            } finally {
+                CircularBuffer.this.lock.readLock().unlock();
+            }
+        }
+        /**
+         * Wait for new bytes.
+         * @throws InterruptedIOException If interrupted
+         */
+        private void await() throws InterruptedIOException {
+            final Thread thread = Thread.currentThread();
+            CircularBuffer.this.waiting.add(thread);
+            try {
+                if (CircularBuffer.this.written.get() <= this.pos) {
+                    LockSupport.parkNanos(this, TimeUnit.SECONDS.toNanos(1));
+                }
+            } finally {
+                CircularBuffer.this.waiting.remove(thread);
             }
-            final byte item = this.data[this.tail];
-            ++this.tail;
-            if (this.tail == this.data.length) {
-                this.tail = 0;
+            if (Thread.interrupted()) {
+                thread.interrupt();
+                throw new InterruptedIOException(
+                    "interrupted while waiting for bytes"
+                );
             }
-            return item;
         }
     }
 
@@ -36,7 +36,7 @@ import com.jcabi.urn.URN;
 import com.rultor.aws.SQSClient;
 import com.rultor.conveyer.audit.AuditUsers;
 import com.rultor.conveyer.fake.FakeUsers;
-import com.rultor.queue.SQSQueue;
+import com.rultor.queue.SQSPrefetchQueue;
 import com.rultor.repo.ClasspathRepo;
 import com.rultor.spi.Coordinates;
 import com.rultor.spi.Queue;
@@ -45,6 +45,7 @@ import com.rultor.users.AwsUsers;
 import com.rultor.users.pgsql.PgClient;
 import com.rultor.users.pgsql.PgUsers;
 import java.io.File;
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import joptsimple.OptionSet;
@@ -105,7 +106,7 @@ final class ConveyerBuilder {
         final String sqs = this.options.valueOf("sqs-url").toString();
         final Queue queue;
         if (this.options.has("sqs-key")) {
-            queue = new SQSQueue(
+            queue = new SQSPrefetchQueue(
                 new SQSClient.Simple(
                     this.options.valueOf("sqs-key").toString(),
                     this.options.valueOf("sqs-secret").toString(),
@@ -113,7 +114,7 @@ final class ConveyerBuilder {
                 )
             );
         } else {
-            queue = new SQSQueue(new SQSClient.Assumed(sqs));
+            queue = new SQSPrefetchQueue(new SQSClient.Assumed(sqs));
         }
         final SQSClient receipts;
         if (this.options.has("sqs-key")) {
@@ -151,7 +152,12 @@ final class ConveyerBuilder {
                 new PgUsers(
                     new PgClient.Simple(
                         this.options.valueOf("pgsql-url").toString(),
-                        this.options.valueOf("pgsql-password").toString()
+                        this.options.valueOf("pgsql-password").toString(),
+                        1,
+                        Integer.parseInt(
+                            this.options.valueOf("pgsql-connections")
+                                .toString()
+                        )
                     ),
                     receipts,
                     new AwsUsers(region, receipts)
@@ -179,6 +185,12 @@ final class ConveyerBuilder {
                     throw new UnsupportedOperationException();
                 }
                 @Override
+                public void pushAll(final Collection<Coordinates> works) {
+                    for (Coordinates item : works) {
+                        this.push(item);
+                    }
+                }
+                @Override
                 public Coordinates pull(final int limit, final TimeUnit unit) {
                     final Coordinates pulled;
                     if (done.compareAndSet(false, true)) {
@@ -32,6 +32,7 @@ package com.rultor.conveyer;
 import com.google.common.collect.ImmutableBiMap;
 import com.jcabi.aspects.Tv;
 import com.rultor.conveyer.http.Streams;
+import com.rultor.log4j.GroupRouter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.SequenceInputStream;
@@ -39,27 +40,28 @@ import java.io.UnsupportedEncodingException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.TimeUnit;
 import lombok.EqualsAndHashCode;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.CharEncoding;
 import org.apache.commons.lang3.RandomStringUtils;
-import org.apache.log4j.AppenderSkeleton;
-import org.apache.log4j.Logger;
+import org.apache.log4j.Layout;
+import org.apache.log4j.Level;
 import org.apache.log4j.PatternLayout;
-import org.apache.log4j.spi.LoggingEvent;
 
 /**
  * Streams from Log4j.
  *
+ * <p>Every registered thread group gets its own sink in
+ * {@link GroupRouter}, which writes formatted lines into the buffer.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
  * @checkstyle ClassDataAbstractionCoupling (500 lines)
  */
-@EqualsAndHashCode(callSuper = false, of = { "groups", "buffers" })
-final class Log4jStreams extends AppenderSkeleton implements Streams {
+@EqualsAndHashCode(of = { "groups", "buffers" })
+final class Log4jStreams implements Streams {
 
     /**
      * Thread groups to keys.
@@ -74,12 +76,22 @@ final class Log4jStreams extends AppenderSkeleton implements Streams {
         new ConcurrentHashMap<String, CircularBuffer>(0);
 
     /**
-     * Public ctor.
+     * Keys to sinks registered in the router.
+     */
+    private final transient ConcurrentMap<String, GroupRouter.Sink> sinks =
+        new ConcurrentHashMap<String, GroupRouter.Sink>(0);
+
+    /**
+     * Layout for all new registrations.
      */
-    protected Log4jStreams() {
-        super();
-        Logger.getRootLogger().addAppender(this);
-        this.setLayout(new PatternLayout("%p %m%n"));
+    private transient volatile Layout layout = new PatternLayout("%p %m%n");
+
+    /**
+     * Set layout to use for thread groups registered later.
+     * @param lyt Layout
+     */
+    public void setLayout(final Layout lyt) {
+        this.layout = lyt;
     }
 
     /**
@@ -87,7 +99,12 @@ final class Log4jStreams extends AppenderSkeleton implements Streams {
      */
     @Override
     public void close() {
-        Logger.getRootLogger().removeAppender(this);
+        for (Map.Entry<ThreadGroup, String> entry : this.groups.entrySet()) {
+            final GroupRouter.Sink sink = this.sinks.remove(entry.getValue());
+            if (sink != null) {
+                GroupRouter.unregister(entry.getKey(), sink);
+            }
+        }
     }
 
     /**
@@ -102,7 +119,13 @@ final class Log4jStreams extends AppenderSkeleton implements Streams {
         if (this.groups.put(group, key) != null) {
             throw new IllegalStateException("call unregister() first");
         }
-        this.buffers.put(key, new CircularBuffer(Tv.FIFTY * Tv.THOUSAND));
+        final CircularBuffer buffer = new CircularBuffer(
+            Tv.FIFTY * Tv.THOUSAND
+        );
+        this.buffers.put(key, buffer);
+        final GroupRouter.Sink sink = new Log4jStreams.BufferSink(buffer);
+        this.sinks.put(key, sink);
+        GroupRouter.register(group, this.layout, Level.ALL, sink);
         return key;
     }
 
@@ -115,6 +138,10 @@ final class Log4jStreams extends AppenderSkeleton implements Streams {
         if (!this.groups.remove(group, key)) {
             throw new IllegalStateException("call register() first");
         }
+        final GroupRouter.Sink sink = this.sinks.remove(key);
+        if (sink != null) {
+            GroupRouter.unregister(group, sink);
+        }
         this.buffers.remove(key);
     }
 
@@ -146,12 +173,7 @@ final class Log4jStreams extends AppenderSkeleton implements Streams {
                     ),
                     CharEncoding.UTF_8
                 ),
-                new InputStream() {
-                    @Override
-                    public int read() throws IOException {
-                        return Log4jStreams.this.read(buffer);
-                    }
-                }
+                buffer.cursor()
             );
         }
         return stream;
@@ -174,31 +196,6 @@ final class Log4jStreams extends AppenderSkeleton implements Streams {
         return response;
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    protected void append(final LoggingEvent event) {
-        final String key = this.groups.get(
-            Thread.currentThread().getThreadGroup()
-        );
-        if (key != null) {
-            final CircularBuffer buffer = this.buffers.get(key);
-            if (buffer != null) {
-                final byte[] bytes;
-                try {
-                    bytes = this.getLayout().format(event)
-                        .getBytes(CharEncoding.UTF_8);
-                } catch (UnsupportedEncodingException ex) {
-                    throw new IllegalStateException(ex);
-                }
-                for (byte data : bytes) {
-                    buffer.write(data);
-                }
-            }
-        }
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -219,28 +216,36 @@ final class Log4jStreams extends AppenderSkeleton implements Streams {
     }
 
     /**
-     * {@inheritDoc}
+     * Sink writing into a buffer.
+     *
+     * <p>All threads of the group append to the same sink at the same
+     * time, which {@link CircularBuffer} is safe for.
      */
-    @Override
-    public boolean requiresLayout() {
-        return true;
-    }
-
-    /**
-     * Read next byte from the buffer.
-     * @param buffer The buffer to read from
-     * @return The byte
-     */
-    private byte read(final CircularBuffer buffer) {
-        while (buffer.isEmpty()) {
+    private static final class BufferSink implements GroupRouter.Sink {
+        /**
+         * The buffer.
+         */
+        private final transient CircularBuffer buffer;
+        /**
+         * Ctor.
+         * @param buf Buffer to write to
+         */
+        BufferSink(final CircularBuffer buf) {
+            this.buffer = buf;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void append(final Level level, final String text) {
+            final byte[] bytes;
             try {
-                TimeUnit.SECONDS.sleep(1);
-            } catch (InterruptedException ex) {
-                Thread.currentThread().interrupt();
+                bytes = text.getBytes(CharEncoding.UTF_8);
+            } catch (UnsupportedEncodingException ex) {
                 throw new IllegalStateException(ex);
             }
+            this.buffer.write(bytes, 0, bytes.length);
         }
-        return buffer.read();
     }
 
 }
@@ -44,6 +44,7 @@ import com.rultor.spi.Rule;
 import com.rultor.spi.User;
 import com.rultor.spi.Users;
 import com.rultor.spi.Variable;
+import com.rultor.users.Charges;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Random;
@@ -189,8 +190,12 @@ final class SimpleConveyer implements Closeable {
             Thread.currentThread().interrupt();
             throw new IOException(ex);
         }
+        Charges.flush();
         this.server.close();
         this.streams.close();
+        if (this.queue instanceof Closeable) {
+            Closeable.class.cast(this.queue).close();
+        }
     }
 
     /**
@@ -202,9 +207,12 @@ final class SimpleConveyer implements Closeable {
         if (!work.equals(new Coordinates.None())) {
             this.threads.label(work.toString());
             final String key = this.streams.register();
+            final Coordinates stdout =
+                new StdoutWork(SimpleConveyer.PORT, key, work);
             try {
-                this.process(new StdoutWork(SimpleConveyer.PORT, key, work));
+                this.process(stdout);
             } finally {
+                Charges.flush(stdout);
                 this.streams.unregister(key);
                 this.threads.label("free");
             }
@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.conveyer.http;
+
+import com.jcabi.aspects.Tv;
+import com.jcabi.log.Logger;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * One stream delivered to all its viewers.
+ *
+ * <p>The stream is read by one thread, in chunks, and every chunk is
+ * queued to all connections listening to it, without copying. The
+ * most recent chunks are kept, in order to give them to viewers joining
+ * later.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@ToString(of = { "key", "size", "done" })
+@EqualsAndHashCode(of = "key")
+@SuppressWarnings("PMD.DoNotUseThreads")
+final class Broadcast implements Runnable {
+
+    /**
+     * Maximum size of one chunk.
+     */
+    private static final int CHUNK = Tv.FOUR * Tv.THOUSAND;
+
+    /**
+     * Maximum total size of chunks to keep for new viewers.
+     */
+    private static final int HISTORY = Tv.FIFTY * Tv.THOUSAND;
+
+    /**
+     * Key of the stream.
+     */
+    private final transient String key;
+
+    /**
+     * Streams.
+     */
+    private final transient Streams streams;
+
+    /**
+     * Selector thread to notify about new chunks.
+     */
+    private final transient HttpThread selector;
+
+    /**
+     * Connections listening (guarded by this).
+     */
+    private final transient Collection<Connection> viewers =
+        new HashSet<Connection>(0);
+
+    /**
+     * Recent chunks (guarded by this).
+     */
+    private final transient LinkedList<byte[]> history =
+        new LinkedList<byte[]>();
+
+    /**
+     * Total size of recent chunks (guarded by this).
+     */
+    private transient int size;
+
+    /**
+     * Thread reading the stream, or NULL (guarded by this).
+     */
+    private transient Thread pump;
+
+    /**
+     * Stream is over or nobody listens any more (guarded by this).
+     */
+    private transient boolean done;
+
+    /**
+     * Public ctor.
+     * @param name Key of the stream
+     * @param strms Streams
+     * @param thread Selector thread
+     */
+    protected Broadcast(final String name, final Streams strms,
+        final HttpThread thread) {
+        this.key = name;
+        this.streams = strms;
+        this.selector = thread;
+    }
+
+    /**
+     * Add new viewer, if the broadcast is not over yet.
+     * @param conn Connection of the viewer
+     * @return TRUE if added
+     */
+    public synchronized boolean join(final Connection conn) {
+        final boolean joined = !this.done;
+        if (joined) {
+            for (byte[] chunk : this.history) {
+                conn.offer(chunk);
+            }
+            this.viewers.add(conn);
+            conn.listen(this);
+        }
+        return joined;
+    }
+
+    /**
+     * Remove a viewer, and stop reading the stream if it was the last one.
+     * @param conn Connection of the viewer
+     */
+    public synchronized void leave(final Connection conn) {
+        this.viewers.remove(conn);
+        if (this.viewers.isEmpty() && !this.done) {
+            this.done = true;
+            this.selector.forget(this.key, this);
+            if (this.pump != null) {
+                this.pump.interrupt();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (this.done) {
+                return;
+            }
+            this.pump = Thread.currentThread();
+        }
+        InputStream input = null;
+        try {
+            input = this.streams.stream(this.key);
+            final byte[] buffer = new byte[Broadcast.CHUNK];
+            while (true) {
+                final int len = input.read(buffer);
+                if (len < 0) {
+                    break;
+                }
+                this.publish(Arrays.copyOf(buffer, len));
+            }
+        } catch (InterruptedIOException ex) {
+            Logger.debug(this, "#run(): %s interrupted", this.key);
+        } catch (IOException ex) {
+            Logger.warn(this, "#run(): %s failed: %s", this.key, ex);
+        } finally {
+            IOUtils.closeQuietly(input);
+            this.finish();
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Deliver new chunk to all viewers.
+     * @param chunk The chunk
+     */
+    private void publish(final byte[] chunk) {
+        final Collection<Connection> conns;
+        synchronized (this) {
+            this.history.add(chunk);
+            this.size += chunk.length;
+            while (this.size > Broadcast.HISTORY) {
+                this.size -= this.history.removeFirst().length;
+            }
+            for (Connection conn : this.viewers) {
+                conn.offer(chunk);
+            }
+            conns = new ArrayList<Connection>(this.viewers);
+        }
+        this.selector.touch(conns);
+    }
+
+    /**
+     * Stream is over, close all viewers when they get everything.
+     */
+    private void finish() {
+        final Collection<Connection> conns;
+        synchronized (this) {
+            this.pump = null;
+            if (!this.done) {
+                this.done = true;
+                this.selector.forget(this.key, this);
+            }
+            for (Connection conn : this.viewers) {
+                conn.finish();
+            }
+            conns = new ArrayList<Connection>(this.viewers);
+        }
+        this.selector.touch(conns);
+    }
+
+}
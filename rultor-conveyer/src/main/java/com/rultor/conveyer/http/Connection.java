@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.conveyer.http;
+
+import com.jcabi.aspects.Tv;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.apache.commons.lang3.CharEncoding;
+
+/**
+ * One HTTP client connection, served by {@link HttpThread}.
+ *
+ * <p>Bytes to send are queued by any thread with {@link #offer(byte[])},
+ * while reading and writing happens only in the selector thread.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@ToString(of = { "channel", "queued", "last" })
+@EqualsAndHashCode(of = "channel")
+final class Connection {
+
+    /**
+     * Maximum amount of bytes waiting for delivery, in one connection.
+     */
+    private static final long MAX = (long) Tv.MILLION;
+
+    /**
+     * Socket channel.
+     */
+    private final transient SocketChannel channel;
+
+    /**
+     * Bytes of the request received so far.
+     */
+    private final transient ByteBuffer request =
+        ByteBuffer.allocate(Tv.FOUR * Tv.THOUSAND);
+
+    /**
+     * Chunks waiting for delivery.
+     */
+    private final transient Queue<ByteBuffer> pending =
+        new ConcurrentLinkedQueue<ByteBuffer>();
+
+    /**
+     * Total amount of bytes waiting for delivery.
+     */
+    private final transient AtomicLong queued = new AtomicLong();
+
+    /**
+     * Close the connection when everything is delivered.
+     */
+    private transient volatile boolean last;
+
+    /**
+     * Too many bytes are waiting for delivery, the client is too slow.
+     */
+    private transient volatile boolean overflow;
+
+    /**
+     * The request line was already received.
+     */
+    private transient boolean started;
+
+    /**
+     * Broadcast we're listening to, if any.
+     */
+    private transient Broadcast broadcast;
+
+    /**
+     * Public ctor.
+     * @param chnl Socket channel
+     */
+    protected Connection(final SocketChannel chnl) {
+        this.channel = chnl;
+    }
+
+    /**
+     * Get its channel.
+     * @return Channel
+     */
+    public SocketChannel channel() {
+        return this.channel;
+    }
+
+    /**
+     * Read what is available in the channel.
+     * @return The request line (only once, when it is complete) or NULL
+     * @throws IOException If fails or the client closed the connection
+     */
+    public String read() throws IOException {
+        String line = null;
+        if (this.started) {
+            this.request.clear();
+        }
+        if (this.channel.read(this.request) < 0) {
+            throw new EOFException("closed by client");
+        }
+        if (!this.started) {
+            final byte[] bytes = this.request.array();
+            for (int pos = 0; pos < this.request.position(); ++pos) {
+                if (bytes[pos] == '\n') {
+                    line = new String(bytes, 0, pos, CharEncoding.UTF_8)
+                        .trim();
+                    this.started = true;
+                    break;
+                }
+            }
+            if (line == null && !this.request.hasRemaining()) {
+                throw new IOException("request line is too long");
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Queue a chunk for delivery (the array is shared, not copied, and
+     * must not be modified afterwards).
+     * @param chunk The chunk
+     */
+    public void offer(final byte[] chunk) {
+        if (this.queued.addAndGet(chunk.length) > Connection.MAX) {
+            this.overflow = true;
+        } else {
+            this.pending.add(ByteBuffer.wrap(chunk));
+        }
+    }
+
+    /**
+     * Close the connection after all queued bytes are delivered.
+     */
+    public void finish() {
+        this.last = true;
+    }
+
+    /**
+     * The client doesn't read as fast as we write and has to be dropped.
+     * @return TRUE if it is too slow
+     */
+    public boolean overflow() {
+        return this.overflow;
+    }
+
+    /**
+     * Anything waiting for delivery?
+     * @return TRUE if there is something to write
+     */
+    public boolean waiting() {
+        return !this.pending.isEmpty();
+    }
+
+    /**
+     * Write as much as the channel can accept now.
+     * @return TRUE if everything is delivered and the connection can be closed
+     * @throws IOException If fails
+     */
+    public boolean flush() throws IOException {
+        while (true) {
+            final ByteBuffer buffer = this.pending.peek();
+            if (buffer == null) {
+                break;
+            }
+            final int size = this.channel.write(buffer);
+            this.queued.addAndGet(-size);
+            if (buffer.hasRemaining()) {
+                break;
+            }
+            this.pending.poll();
+        }
+        return this.last && this.pending.isEmpty();
+    }
+
+    /**
+     * Remember the broadcast we're listening to.
+     * @param bcast The broadcast
+     */
+    public void listen(final Broadcast bcast) {
+        this.broadcast = bcast;
+    }
+
+    /**
+     * The broadcast we're listening to.
+     * @return Broadcast or NULL if none
+     */
+    public Broadcast broadcast() {
+        return this.broadcast;
+    }
+
+}
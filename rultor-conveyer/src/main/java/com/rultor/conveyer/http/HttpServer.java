@@ -30,18 +30,18 @@
 package com.rultor.conveyer.http;
 
 import com.jcabi.aspects.Loggable;
-import com.jcabi.aspects.Tv;
 import com.jcabi.log.Logger;
 import com.jcabi.log.VerboseRunnable;
 import com.jcabi.log.VerboseThreads;
 import java.io.Closeable;
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.concurrent.BlockingQueue;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.TimeUnit;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
@@ -49,6 +49,11 @@ import lombok.ToString;
 /**
  * Http server in front of streams.
  *
+ * <p>All connections are served by one thread, through a non-blocking
+ * selector (see {@link HttpThread}). Every stream is read once, by one
+ * thread from the backend executor, no matter how many clients are
+ * watching it (see {@link Broadcast}).
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
@@ -56,41 +61,36 @@ import lombok.ToString;
  */
 @ToString
 @Loggable(Loggable.INFO)
-@EqualsAndHashCode(of = { "frontend", "backend", "sockets", "server" })
+@EqualsAndHashCode(of = { "frontend", "backend", "selector", "server" })
 @SuppressWarnings("PMD.DoNotUseThreads")
 public final class HttpServer implements Closeable {
 
     /**
-     * How many threads to use.
+     * Executor service, with the selector thread.
      */
-    private static final int THREADS =
-        Runtime.getRuntime().availableProcessors() * 8;
+    private final transient ScheduledExecutorService frontend =
+        Executors.newSingleThreadScheduledExecutor(new VerboseThreads("front"));
 
     /**
-     * Executor service, with socket openers.
+     * Executor service, with threads reading streams, one per key.
      */
-    private final transient ScheduledExecutorService frontend =
-        Executors.newSingleThreadScheduledExecutor(new VerboseThreads("front"));
+    private final transient ExecutorService backend =
+        Executors.newCachedThreadPool(new VerboseThreads("back"));
 
     /**
-     * Executor service, with consuming threads.
+     * Selector.
      */
-    private final transient ScheduledExecutorService backend =
-        Executors.newScheduledThreadPool(
-            HttpServer.THREADS,
-            new VerboseThreads("back")
-        );
+    private final transient Selector selector;
 
     /**
-     * Blocking queue of ready-to-be-processed sockets.
+     * Server socket channel.
      */
-    private final transient BlockingQueue<Socket> sockets =
-        new SynchronousQueue<Socket>();
+    private final transient ServerSocketChannel server;
 
     /**
-     * Server socket.
+     * HTTP thread.
      */
-    private final transient ServerSocket server;
+    private final transient HttpThread thread;
 
     /**
      * Public ctor.
@@ -100,31 +100,15 @@ public final class HttpServer implements Closeable {
      */
     public HttpServer(final Streams streams, final int port)
         throws IOException {
-        this.server = new ServerSocket(port);
-        final HttpThread thread = new HttpThread(this.sockets, streams);
-        final Runnable runnable = new VerboseRunnable(
-            new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        thread.dispatch();
-                    } catch (InterruptedException ex) {
-                        Thread.currentThread().interrupt();
-                        throw new IllegalStateException(ex);
-                    }
-                }
-            },
-            true, false
-        );
-        for (int idx = 0; idx < HttpServer.THREADS; ++idx) {
-            this.backend.scheduleWithFixedDelay(
-                runnable,
-                TimeUnit.SECONDS.toNanos(Tv.FIVE), 1, TimeUnit.NANOSECONDS
-            );
-        }
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        this.server.socket().setReuseAddress(true);
+        this.server.socket().bind(new InetSocketAddress(port));
+        this.server.configureBlocking(false);
+        this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+        this.thread = new HttpThread(this.selector, streams, this.backend);
         Logger.info(
-            HttpServer.class, "HTTP srv scheduled on TCP port %d, %d thread(s)",
-            port, HttpServer.THREADS
+            HttpServer.class, "HTTP srv scheduled on TCP port %d", port
         );
     }
 
@@ -133,15 +117,7 @@ public final class HttpServer implements Closeable {
      */
     public void listen() {
         this.frontend.scheduleWithFixedDelay(
-            new VerboseRunnable(
-                new Runnable() {
-                    @Override
-                    public void run() {
-                        HttpServer.this.process();
-                    }
-                },
-                true, false
-            ),
+            new VerboseRunnable(this.thread, true, false),
             0, 1, TimeUnit.NANOSECONDS
         );
     }
@@ -151,42 +127,22 @@ public final class HttpServer implements Closeable {
      */
     @Override
     public void close() throws IOException {
-        this.server.close();
         this.shutdown(this.frontend);
         this.shutdown(this.backend);
-    }
-
-    /**
-     * Process one socket.
-     */
-    private void process() {
-        Socket socket;
-        try {
-            socket = this.server.accept();
-        } catch (java.io.IOException ex) {
-            throw new IllegalStateException(ex);
-        }
-        try {
-            final boolean consumed = this.sockets
-                .offer(socket, 1, TimeUnit.SECONDS);
-            if (!consumed) {
-                socket.close();
-                throw new IOException("too many sockets");
-            }
-        } catch (IOException ex) {
-            throw new IllegalStateException(ex);
-        } catch (InterruptedException ex) {
-            Thread.currentThread().interrupt();
-            throw new IllegalStateException(ex);
+        for (SelectionKey key : this.selector.keys()) {
+            key.channel().close();
         }
+        this.selector.close();
+        this.server.close();
     }
 
     /**
      * Shutdown a service.
      * @param service The service to shut down
      */
-    private void shutdown(final ScheduledExecutorService service) {
+    private void shutdown(final ExecutorService service) {
         service.shutdown();
+        this.selector.wakeup();
         try {
             if (service.awaitTermination(1, TimeUnit.SECONDS)) {
                 Logger.info(this, "#shutdown(): succeeded");
@@ -29,17 +29,20 @@
  */
 package com.rultor.conveyer.http;
 
-import com.jcabi.aspects.Loggable;
 import com.jcabi.log.Logger;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.net.Socket;
-import java.util.concurrent.BlockingQueue;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import lombok.EqualsAndHashCode;
@@ -48,18 +51,22 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.CharEncoding;
 
 /**
- * HTTP thread.
+ * HTTP thread, serving all connections through one selector.
+ *
+ * <p>Every call to {@link #run()} makes one round of selection: accepts
+ * new connections, reads requests, and writes whatever is waiting
+ * for delivery. Streams are read by {@link Broadcast}s in the
+ * provided executor, one per key, no matter how many viewers listen.
  *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
  * @checkstyle ClassDataAbstractionCoupling (500 lines)
  */
-@ToString
-@EqualsAndHashCode(of = { "streams", "sockets" })
+@ToString(of = { "selector", "broadcasts" })
+@EqualsAndHashCode(of = { "streams", "selector" })
 @SuppressWarnings("PMD.DoNotUseThreads")
-@Loggable(Loggable.DEBUG)
-final class HttpThread {
+final class HttpThread implements Runnable {
 
     /**
      * TOP line pattern.
@@ -69,101 +76,241 @@ final class HttpThread {
     );
 
     /**
-     * Queue of sockets to get from.
+     * Head of every response.
      */
-    private final transient BlockingQueue<Socket> sockets;
+    private static final String HEAD = new StringBuilder()
+        .append("HTTP/1.1 200 OK\n")
+        .append("Content-Type: text/plain; charset=UTF-8\n")
+        .append("Cache-Control: no-cache\n")
+        .append("\n")
+        .toString();
 
     /**
      * Streams to work with.
      */
     private final transient Streams streams;
 
+    /**
+     * Selector.
+     */
+    private final transient Selector selector;
+
+    /**
+     * Executor for broadcasts.
+     */
+    private final transient Executor pumps;
+
+    /**
+     * Broadcasts by keys.
+     */
+    private final transient ConcurrentMap<String, Broadcast> broadcasts =
+        new ConcurrentHashMap<String, Broadcast>(0);
+
+    /**
+     * Connections with new chunks waiting for delivery.
+     */
+    private final transient Queue<Connection> touched =
+        new ConcurrentLinkedQueue<Connection>();
+
     /**
      * Public ctor.
-     * @param sckts Sockets to read from
+     * @param slctr Selector, with a server channel registered for accepting
      * @param strms Streams
+     * @param exec Executor to run broadcasts in
      */
-    protected HttpThread(final BlockingQueue<Socket> sckts,
-        final Streams strms) {
-        this.sockets = sckts;
+    protected HttpThread(final Selector slctr, final Streams strms,
+        final Executor exec) {
+        this.selector = slctr;
         this.streams = strms;
+        this.pumps = exec;
     }
 
     /**
-     * Dispatch one request from the encapsulated queue.
-     * @throws InterruptedException If interrupted while waiting for the queue
+     * {@inheritDoc}
      */
-    @Loggable(value = Loggable.DEBUG, limit = Integer.MAX_VALUE)
-    public void dispatch() throws InterruptedException {
-        final Socket socket = this.sockets.take();
+    @Override
+    public void run() {
         try {
-            final BufferedReader reader = new BufferedReader(
-                new InputStreamReader(
-                    socket.getInputStream(),
-                    CharEncoding.UTF_8
-                )
-            );
-            final String top = reader.readLine();
+            this.selector.select(TimeUnit.SECONDS.toMillis(1));
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        this.refresh();
+        final Iterator<SelectionKey> keys =
+            this.selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            final SelectionKey key = keys.next();
+            keys.remove();
+            try {
+                this.dispatch(key);
+            } catch (IOException ex) {
+                Logger.debug(this, "#run(): %s dropped: %s", key, ex);
+                this.drop(key);
+            }
+        }
+    }
+
+    /**
+     * Connections have new chunks waiting for delivery (can be called
+     * from any thread).
+     * @param conns Connections
+     */
+    public void touch(final Collection<Connection> conns) {
+        if (!conns.isEmpty()) {
+            this.touched.addAll(conns);
+            this.selector.wakeup();
+        }
+    }
+
+    /**
+     * Broadcast is over and must not be used any more.
+     * @param key The key
+     * @param bcast The broadcast
+     */
+    public void forget(final String key, final Broadcast bcast) {
+        this.broadcasts.remove(key, bcast);
+    }
+
+    /**
+     * Dispatch one selected key.
+     * @param key The key
+     * @throws IOException If fails
+     */
+    private void dispatch(final SelectionKey key) throws IOException {
+        if (key.isValid() && key.isAcceptable()) {
+            final SocketChannel channel =
+                ServerSocketChannel.class.cast(key.channel()).accept();
+            if (channel != null) {
+                channel.configureBlocking(false);
+                channel.register(
+                    this.selector, SelectionKey.OP_READ,
+                    new Connection(channel)
+                );
+            }
+        }
+        if (key.isValid() && key.isReadable()) {
+            final Connection conn = Connection.class.cast(key.attachment());
+            final String top = conn.read();
             if (top != null) {
                 final Matcher matcher = HttpThread.TOP.matcher(top);
-                final OutputStream output = socket.getOutputStream();
-                if (matcher.matches()) {
-                    this.process(matcher.group(1), output);
+                if (!matcher.matches()) {
+                    throw new IOException(
+                        String.format("invalid request '%s'", top)
+                    );
                 }
-                IOUtils.closeQuietly(output);
+                this.process(matcher.group(1), conn);
+                this.write(key, conn);
             }
-        } catch (IOException ex) {
-            Logger.warn(this, "failed to dispatch %s: %s", socket, ex);
-        } finally {
-            IOUtils.closeQuietly(socket);
+        }
+        if (key.isValid() && key.isWritable()) {
+            this.write(key, Connection.class.cast(key.attachment()));
         }
     }
 
     /**
-     * Process this auth key into the given output stream.
+     * Process this auth key into the given connection.
      * @param query HTTP query string, without a leading slash
-     * @param output Output stream
+     * @param conn The connection
      * @throws IOException If fails
      */
-    private void process(final String query, final OutputStream output)
+    private void process(final String query, final Connection conn)
         throws IOException {
-        final PrintWriter writer = new PrintWriter(
-            new OutputStreamWriter(output, CharEncoding.UTF_8)
-        );
-        writer.print("HTTP/1.1 200 OK\n");
-        writer.print("Content-Type: text/plain; charset=UTF-8\n");
-        writer.print("Cache-Control: no-cache\n");
-        writer.print("\n");
-        writer.flush();
+        conn.offer(HttpThread.HEAD.getBytes(CharEncoding.UTF_8));
+        String text = null;
         if (query.endsWith("?interrupt")) {
-            writer.println(
+            text = String.format(
+                "%s\n",
                 this.streams.interrupt(query.substring(0, query.indexOf('?')))
             );
         } else if (query.endsWith("/stats")) {
-            writer.print(new Statistics().toString());
+            text = new Statistics().toString();
         } else if (query.isEmpty()) {
-            writer.print(this.streams.toString());
+            text = this.streams.toString();
         } else {
-            HttpThread.copy(this.streams.stream(query), output);
+            this.subscribe(query, conn);
+        }
+        if (text != null) {
+            conn.offer(text.getBytes(CharEncoding.UTF_8));
+            conn.finish();
+        }
+    }
+
+    /**
+     * Subscribe connection to the broadcast of the given key.
+     * @param name The key of the stream
+     * @param conn The connection
+     */
+    private void subscribe(final String name, final Connection conn) {
+        while (true) {
+            final Broadcast bcast = this.broadcasts.get(name);
+            if (bcast == null) {
+                final Broadcast fresh = new Broadcast(name, this.streams, this);
+                if (this.broadcasts.putIfAbsent(name, fresh) == null) {
+                    fresh.join(conn);
+                    this.pumps.execute(fresh);
+                    break;
+                }
+            } else if (bcast.join(conn)) {
+                break;
+            } else {
+                this.broadcasts.remove(name, bcast);
+            }
         }
-        writer.flush();
-        writer.close();
     }
 
     /**
-     * Copy input stream to output stream without any buffering.
-     * @param input Input stream
-     * @param output Output stream
+     * Write pending chunks to the connection.
+     * @param key Selection key of the connection
+     * @param conn The connection
      * @throws IOException If fails
      */
-    private static void copy(final InputStream input,
-        final OutputStream output) throws IOException {
+    private void write(final SelectionKey key, final Connection conn)
+        throws IOException {
+        if (conn.flush()) {
+            this.drop(key);
+        } else if (conn.waiting()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Enable writing for all connections touched by broadcasts.
+     */
+    private void refresh() {
         while (true) {
-            final int data = input.read();
-            if (data == -1) {
+            final Connection conn = this.touched.poll();
+            if (conn == null) {
                 break;
             }
-            output.write(data);
+            final SelectionKey key = conn.channel().keyFor(this.selector);
+            if (key == null || !key.isValid()) {
+                continue;
+            }
+            if (conn.overflow()) {
+                Logger.warn(this, "#refresh(): %s is too slow", conn);
+                this.drop(key);
+            } else {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    /**
+     * Close the connection and forget about it.
+     * @param key Selection key of the connection
+     */
+    private void drop(final SelectionKey key) {
+        key.cancel();
+        IOUtils.closeQuietly(key.channel());
+        final Object attachment = key.attachment();
+        if (attachment instanceof Connection) {
+            final Broadcast bcast = Connection.class.cast(attachment)
+                .broadcast();
+            if (bcast != null) {
+                bcast.leave(Connection.class.cast(attachment));
+            }
         }
     }
 
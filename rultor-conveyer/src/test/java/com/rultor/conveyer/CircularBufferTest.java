@@ -30,6 +30,14 @@
 package com.rultor.conveyer;
 
 import com.jcabi.aspects.Tv;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.Test;
@@ -49,12 +57,12 @@ public final class CircularBufferTest {
     @Test
     public void writesAndReads() throws Exception {
         final CircularBuffer buf = new CircularBuffer(Tv.FIVE);
-        buf.write((byte) 1);
-        buf.write((byte) 2);
-        MatcherAssert.assertThat(buf.read(), Matchers.equalTo((byte) 1));
-        MatcherAssert.assertThat(buf.isEmpty(), Matchers.equalTo(false));
-        MatcherAssert.assertThat(buf.read(), Matchers.equalTo((byte) 2));
-        MatcherAssert.assertThat(buf.isEmpty(), Matchers.equalTo(true));
+        final InputStream cursor = buf.cursor();
+        buf.write(new byte[] {1, 2}, 0, 2);
+        MatcherAssert.assertThat(cursor.read(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(cursor.available(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(cursor.read(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(cursor.available(), Matchers.equalTo(0));
     }
 
     /**
@@ -64,15 +72,133 @@ public final class CircularBufferTest {
     @Test
     public void writesAndReadsWithOverflow() throws Exception {
         final CircularBuffer buf = new CircularBuffer(Tv.THREE);
-        final byte data = 1;
         for (int idx = 0; idx < Tv.TEN; ++idx) {
-            buf.write(data);
+            buf.write(new byte[] {(byte) idx}, 0, 1);
         }
-        MatcherAssert.assertThat(buf.isEmpty(), Matchers.equalTo(false));
-        for (int idx = 0; idx < 2; ++idx) {
-            MatcherAssert.assertThat(buf.read(), Matchers.equalTo(data));
+        final InputStream cursor = buf.cursor();
+        final byte[] data = new byte[Tv.FIVE];
+        MatcherAssert.assertThat(
+            cursor.read(data, 0, data.length), Matchers.equalTo(Tv.THREE)
+        );
+        MatcherAssert.assertThat(data[0], Matchers.equalTo((byte) Tv.SEVEN));
+        MatcherAssert.assertThat(data[2], Matchers.equalTo((byte) Tv.NINE));
+        MatcherAssert.assertThat(cursor.available(), Matchers.equalTo(0));
+    }
+
+    /**
+     * CircularBuffer can write in bulk across the edge of the ring.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void writesInBulkAcrossTheEdge() throws Exception {
+        final CircularBuffer buf = new CircularBuffer(Tv.FOUR);
+        final InputStream cursor = buf.cursor();
+        buf.write(new byte[] {1, 2, Tv.THREE}, 0, Tv.THREE);
+        MatcherAssert.assertThat(
+            cursor.skip(Tv.THREE), Matchers.equalTo((long) Tv.THREE)
+        );
+        buf.write(new byte[] {0, Tv.FOUR, Tv.FIVE, Tv.SIX}, 1, Tv.THREE);
+        final byte[] data = new byte[Tv.THREE];
+        MatcherAssert.assertThat(
+            cursor.read(data, 0, data.length), Matchers.equalTo(Tv.THREE)
+        );
+        MatcherAssert.assertThat(
+            data, Matchers.equalTo(new byte[] {Tv.FOUR, Tv.FIVE, Tv.SIX})
+        );
+    }
+
+    /**
+     * CircularBuffer can serve many readers independently.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void servesManyReaders() throws Exception {
+        final CircularBuffer buf = new CircularBuffer(Tv.TEN);
+        final InputStream first = buf.cursor();
+        final InputStream second = buf.cursor();
+        buf.write(new byte[] {Tv.FIVE}, 0, 1);
+        MatcherAssert.assertThat(first.read(), Matchers.equalTo(Tv.FIVE));
+        MatcherAssert.assertThat(second.read(), Matchers.equalTo(Tv.FIVE));
+    }
+
+    /**
+     * CircularBuffer can wake up a waiting reader.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void wakesUpWaitingReader() throws Exception {
+        final CircularBuffer buf = new CircularBuffer(Tv.TEN);
+        final InputStream cursor = buf.cursor();
+        final ExecutorService svc = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Integer> future = svc.submit(
+                new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        return cursor.read();
+                    }
+                }
+            );
+            TimeUnit.MILLISECONDS.sleep(Tv.HUNDRED);
+            buf.write(new byte[] {Tv.EIGHT}, 0, 1);
+            MatcherAssert.assertThat(
+                future.get(Tv.FIVE, TimeUnit.SECONDS),
+                Matchers.equalTo(Tv.EIGHT)
+            );
+        } finally {
+            svc.shutdownNow();
+        }
+    }
+
+    /**
+     * CircularBuffer can accept writes from many threads at once.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void acceptsManyWriters() throws Exception {
+        final int threads = Tv.FOUR;
+        final int records = Tv.THOUSAND;
+        final CircularBuffer buf =
+            new CircularBuffer(threads * records * Tv.EIGHT);
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService svc = Executors.newFixedThreadPool(threads);
+        try {
+            for (int thread = 0; thread < threads; ++thread) {
+                final byte[] record = new byte[Tv.EIGHT];
+                Arrays.fill(record, (byte) thread);
+                svc.submit(
+                    new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            start.await();
+                            for (int idx = 0; idx < records; ++idx) {
+                                buf.write(record, 0, record.length);
+                            }
+                            return null;
+                        }
+                    }
+                );
+            }
+            start.countDown();
+            svc.shutdown();
+            MatcherAssert.assertThat(
+                svc.awaitTermination(1, TimeUnit.MINUTES),
+                Matchers.is(true)
+            );
+        } finally {
+            svc.shutdownNow();
+        }
+        final InputStream cursor = buf.cursor();
+        final byte[] record = new byte[Tv.EIGHT];
+        for (int idx = 0; idx < threads * records; ++idx) {
+            MatcherAssert.assertThat(
+                cursor.read(record, 0, record.length),
+                Matchers.equalTo(record.length)
+            );
+            final byte[] expected = new byte[record.length];
+            Arrays.fill(expected, record[0]);
+            MatcherAssert.assertThat(record, Matchers.equalTo(expected));
         }
-        MatcherAssert.assertThat(buf.isEmpty(), Matchers.equalTo(true));
     }
 
 }
@@ -29,10 +29,14 @@
  */
 package com.rultor.conveyer;
 
+import com.jcabi.aspects.Tv;
 import com.jcabi.log.Logger;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang3.CharEncoding;
 import org.apache.log4j.PatternLayout;
@@ -88,4 +92,82 @@ public final class Log4jStreamsTest {
         }
     }
 
+    /**
+     * Log4jStreams can accept lines from many threads of one group.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void writesFromManyThreads() throws Exception {
+        final Log4jStreams streams = new Log4jStreams();
+        streams.setLayout(new PatternLayout("%m\n"));
+        final String key = streams.register();
+        final int threads = Tv.FIVE;
+        final int lines = Tv.HUNDRED;
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final Collection<Thread> writers = new LinkedList<Thread>();
+            for (int thread = 0; thread < threads; ++thread) {
+                final int number = thread;
+                final Thread writer = new Thread(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                start.await();
+                            } catch (InterruptedException ex) {
+                                Thread.currentThread().interrupt();
+                                throw new IllegalStateException(ex);
+                            }
+                            for (int line = 0; line < lines; ++line) {
+                                Logger.info(
+                                    this, "thread %d line %d", number, line
+                                );
+                            }
+                        }
+                    }
+                );
+                writer.start();
+                writers.add(writer);
+            }
+            start.countDown();
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final Thread reader = new Thread(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            final InputStream input = streams.stream(key);
+                            while (true) {
+                                baos.write(input.read());
+                            }
+                        } catch (IOException ex) {
+                            throw new IllegalStateException(ex);
+                        }
+                    }
+                }
+            );
+            reader.start();
+            reader.join(TimeUnit.SECONDS.toMillis(1));
+            reader.interrupt();
+            final String[] all = baos.toString(CharEncoding.UTF_8)
+                .split("\n\n", 2)[1].split("\n");
+            MatcherAssert.assertThat(
+                all.length, Matchers.equalTo(threads * lines)
+            );
+            for (String line : all) {
+                MatcherAssert.assertThat(
+                    line, Matchers.startsWith("thread ")
+                );
+                MatcherAssert.assertThat(
+                    line.split(" "), Matchers.arrayWithSize(Tv.FOUR)
+                );
+            }
+        } finally {
+            streams.unregister(key);
+        }
+    }
+
 }
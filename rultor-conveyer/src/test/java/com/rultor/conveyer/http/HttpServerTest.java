@@ -115,6 +115,54 @@ public final class HttpServerTest {
         server.close();
     }
 
+    /**
+     * HttpServer can render JVM statistics.
+     * @throws Exception If there is some problem inside
+     */
+    @Test
+    public void rendersStatistics() throws Exception {
+        final int port = this.reserve();
+        final HttpServer server =
+            new HttpServer(Mockito.mock(Streams.class), port);
+        server.listen();
+        try {
+            RestTester.start(
+                URI.create(String.format("http://localhost:%d/stats", port))
+            )
+                .get("read statistics")
+                .assertStatus(HttpURLConnection.HTTP_OK)
+                .assertBody(Matchers.startsWith("Java version: "));
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * HttpServer can interrupt a thread group by key.
+     * @throws Exception If there is some problem inside
+     */
+    @Test
+    public void interruptsByKey() throws Exception {
+        final int port = this.reserve();
+        final Streams streams = Mockito.mock(Streams.class);
+        Mockito.doReturn("done").when(streams).interrupt("xyz");
+        final HttpServer server = new HttpServer(streams, port);
+        server.listen();
+        try {
+            RestTester.start(
+                URI.create(
+                    String.format("http://localhost:%d/xyz?interrupt", port)
+                )
+            )
+                .get("interrupt a group")
+                .assertStatus(HttpURLConnection.HTTP_OK)
+                .assertBody(Matchers.equalTo("done\n"));
+            Mockito.verify(streams).interrupt("xyz");
+        } finally {
+            server.close();
+        }
+    }
+
     /**
      * Find and return the first available port.
      * @return The port number
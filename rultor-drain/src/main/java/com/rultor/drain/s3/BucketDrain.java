@@ -46,6 +46,10 @@ import org.apache.commons.io.IOUtils;
 /**
  * Drain shared among multiple S3 objects.
  *
+ * <p>Every append and every listing of pulses registers the area of
+ * the rule with {@link Compactor}, so chunks of all its pulses get merged,
+ * including the ones left by other JVMs.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
@@ -94,6 +98,7 @@ public final class BucketDrain implements Drain {
      */
     @Override
     public Pageable<Time, Time> pulses() {
+        Compactor.watch(this.client, this.prefix());
         return new BucketPulses(this.client, this.prefix(), new Time());
     }
 
@@ -103,6 +108,7 @@ public final class BucketDrain implements Drain {
     @Override
     public void append(final Iterable<String> lines) throws IOException {
         this.obj().append(lines);
+        Compactor.watch(this.client, this.prefix());
     }
 
     /**
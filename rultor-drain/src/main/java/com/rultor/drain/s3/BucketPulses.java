@@ -50,6 +50,11 @@ import lombok.ToString;
 /**
  * Pageable in bucket.
  *
+ * <p>Chunks of the same pulse (see {@link ObjectDrain}) are listed as
+ * separate objects, but the iterator shows every pulse only once. It
+ * keeps listing the bucket, page by page, until it finds a new pulse
+ * or reaches the end of the bucket.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
@@ -111,9 +116,10 @@ final class BucketPulses implements Pageable<Time, Time> {
         return new Iterator<Time>() {
             private final transient Queue<Time> queue = new LinkedList<Time>();
             private transient String marker = mrkr;
+            private transient Time last = BucketPulses.this.top;
             @Override
             public boolean hasNext() {
-                if (this.queue.isEmpty() && this.marker != null) {
+                while (this.queue.isEmpty() && this.marker != null) {
                     this.fetch();
                 }
                 return !this.queue.isEmpty();
@@ -137,14 +143,16 @@ final class BucketPulses implements Pageable<Time, Time> {
                     .withMaxKeys(Tv.TEN)
                     .withPrefix(BucketPulses.this.prefix);
                 final ObjectListing listing = aws.listObjects(request);
+                String after = null;
                 for (S3ObjectSummary sum : listing.getObjectSummaries()) {
-                    this.queue.add(
-                        Key.valueOf(
-                            sum.getKey().substring(
-                                BucketPulses.this.prefix.length()
-                            )
-                        ).time()
-                    );
+                    after = sum.getKey();
+                    final Time time = Key.valueOf(
+                        after.substring(BucketPulses.this.prefix.length())
+                    ).time();
+                    if (time.millis() < this.last.millis()) {
+                        this.queue.add(time);
+                        this.last = time;
+                    }
                 }
                 Logger.info(
                     this,
@@ -155,7 +163,13 @@ final class BucketPulses implements Pageable<Time, Time> {
                     this.marker,
                     listing.getNextMarker()
                 );
-                this.marker = listing.getNextMarker();
+                if (!listing.isTruncated()) {
+                    this.marker = null;
+                } else if (listing.getNextMarker() == null) {
+                    this.marker = after;
+                } else {
+                    this.marker = listing.getNextMarker();
+                }
             }
         };
     }
@@ -0,0 +1,230 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.drain.s3;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.jcabi.aspects.Immutable;
+import com.jcabi.aspects.ScheduleWithFixedDelay;
+import com.jcabi.aspects.Tv;
+import com.jcabi.log.Logger;
+import com.rultor.aws.S3Client;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * Background compactor of chunked drains (see {@link ObjectDrain}).
+ *
+ * <p>Drains to compact are not remembered in memory, they are found by
+ * listing areas of S3 buckets, registered by {@link #watch(S3Client,String)}
+ * when drains are appended to or listed. Thus, chunks left by a conveyer
+ * that was restarted are merged as soon as any JVM touches the same area
+ * again. The background thread starts only with the first registered
+ * area.
+ *
+ * <p>A drain is compacted when its latest chunk is older than ten
+ * minutes (its pulse is most likely finished). Merged chunks are purged
+ * an hour after the compaction, when nobody reads them any more.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@ToString
+@Immutable
+@EqualsAndHashCode
+@ScheduleWithFixedDelay(delay = 1, unit = TimeUnit.MINUTES)
+@SuppressWarnings("PMD.DoNotUseThreads")
+final class Compactor implements Runnable {
+
+    /**
+     * How long a drain should stay idle before compaction, in milliseconds.
+     */
+    private static final long IDLE = TimeUnit.MINUTES.toMillis(Tv.TEN);
+
+    /**
+     * How long merged chunks are kept after compaction, in milliseconds.
+     */
+    private static final long GRACE = TimeUnit.HOURS.toMillis(1L);
+
+    /**
+     * Areas to scan, and times of their registration.
+     */
+    private static final ConcurrentMap<Compactor.Area, Long> AREAS =
+        new ConcurrentHashMap<Compactor.Area, Long>(0);
+
+    /**
+     * Is it started already?
+     */
+    private static final AtomicBoolean STARTED = new AtomicBoolean();
+
+    /**
+     * Register an area of S3 bucket to scan for drains with chunks.
+     * @param client S3 client
+     * @param prefix Prefix of the area
+     */
+    public static void watch(final S3Client client, final String prefix) {
+        Compactor.AREAS.put(
+            new Compactor.Area(client, prefix), System.currentTimeMillis()
+        );
+        if (Compactor.STARTED.compareAndSet(false, true)) {
+            new Compactor();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        for (Map.Entry<Compactor.Area, Long> entry
+            : Compactor.AREAS.entrySet()) {
+            final Compactor.Area area = entry.getKey();
+            try {
+                if (Compactor.scan(area.client, area.prefix,
+                    System.currentTimeMillis()) == 0) {
+                    Compactor.AREAS.remove(area, entry.getValue());
+                }
+            } catch (IOException ex) {
+                Logger.warn(this, "#run(): %s", ex);
+            }
+        }
+    }
+
+    /**
+     * Compact idle drains and purge their merged chunks, in one area.
+     * @param client S3 client
+     * @param prefix Prefix of the area
+     * @param now Current time, in milliseconds
+     * @return How many drains with chunks were found
+     * @throws IOException If fails to list the area
+     */
+    static int scan(final S3Client client, final String prefix,
+        final long now) throws IOException {
+        final Map<String, Long> drains = Compactor.drains(client, prefix);
+        for (Map.Entry<String, Long> drain : drains.entrySet()) {
+            final ObjectDrain obj = new ObjectDrain(client, drain.getKey());
+            try {
+                if (drain.getValue() < now - Compactor.IDLE) {
+                    obj.compact();
+                }
+                obj.purge(now - Compactor.GRACE);
+            } catch (IOException ex) {
+                Logger.warn(Compactor.class, "#scan(): %s", ex);
+            }
+        }
+        return drains.size();
+    }
+
+    /**
+     * Find drains with chunks in the area.
+     * @param client S3 client
+     * @param prefix Prefix of the area
+     * @return Keys of drains and times of their latest chunks
+     * @throws IOException If fails
+     */
+    private static Map<String, Long> drains(final S3Client client,
+        final String prefix) throws IOException {
+        final Map<String, Long> drains = new TreeMap<String, Long>();
+        final AmazonS3 aws = client.get();
+        try {
+            ObjectListing listing = aws.listObjects(
+                new ListObjectsRequest()
+                    .withBucketName(client.bucket())
+                    .withPrefix(prefix)
+            );
+            while (true) {
+                for (S3ObjectSummary sum : listing.getObjectSummaries()) {
+                    final int pos = sum.getKey().indexOf(ObjectDrain.CHUNKS);
+                    if (pos < 0) {
+                        continue;
+                    }
+                    final String name = sum.getKey().substring(0, pos);
+                    final long time = sum.getLastModified().getTime();
+                    final Long before = drains.get(name);
+                    if (before == null || before < time) {
+                        drains.put(name, time);
+                    }
+                }
+                if (!listing.isTruncated()) {
+                    break;
+                }
+                listing = aws.listNextBatchOfObjects(listing);
+            }
+        } catch (AmazonClientException ex) {
+            throw new IOException(
+                String.format(
+                    "failed to list %s in `%s`: %s",
+                    prefix,
+                    client.bucket(),
+                    ex
+                ),
+                ex
+            );
+        }
+        return drains;
+    }
+
+    /**
+     * Area of S3 bucket.
+     */
+    @ToString
+    @EqualsAndHashCode(of = { "client", "prefix" })
+    private static final class Area {
+        /**
+         * S3 client.
+         */
+        private final transient S3Client client;
+        /**
+         * Prefix of keys.
+         */
+        private final transient String prefix;
+        /**
+         * Public ctor.
+         * @param clnt S3 client
+         * @param pfx Prefix
+         */
+        protected Area(final S3Client clnt, final String pfx) {
+            this.client = clnt;
+            this.prefix = pfx;
+        }
+    }
+
+}
@@ -49,6 +49,11 @@ import lombok.EqualsAndHashCode;
  * of pulse start. Such a reverted mechanism is required in order to
  * utilize native sorting provided by Amazon S3.
  *
+ * <p>While a pulse is still running its log may be stored as a number of
+ * chunks (see {@link ObjectDrain}), named like
+ * <code>.../7843.txt.chunks/00000001378901273444</code>. Such names
+ * are parsed to the key of their pulse.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
@@ -61,7 +66,7 @@ final class Key implements Comparable<Key> {
      * Pattern to parse.
      */
     private static final Pattern PATTERN = Pattern.compile(
-        "\\d{4}/\\d{2}/\\d{2}/(\\d+)\\.txt"
+        "\\d{4}/\\d{2}/\\d{2}/(\\d+)\\.txt(?:\\.chunks/\\d+)?"
     );
 
     /**
@@ -29,13 +29,19 @@
  */
 package com.rultor.drain.s3;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectResult;
 import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
+import com.jcabi.aspects.Tv;
 import com.jcabi.log.Logger;
 import com.rultor.aws.S3Client;
 import com.rultor.spi.Drain;
@@ -46,6 +52,11 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.core.MediaType;
 import lombok.EqualsAndHashCode;
@@ -58,16 +69,60 @@ import org.apache.commons.lang3.Validate;
 /**
  * Drain in a single S3 object.
  *
+ * <p>Every call to {@link #append(Iterable)} saves its lines as a new
+ * immutable chunk, named <code>key.chunks/NNN</code>, where
+ * <code>NNN</code> is a monotonically growing number. Thus, the cost of
+ * an append depends only on the size of the batch, not on the size
+ * of the log accumulated so far. {@link #read()} streams the main object
+ * (if it exists) and all its chunks, in order. When a drain stays idle for
+ * a while (its pulse is most likely finished) a background
+ * {@link Compactor} merges all chunks into the main object.
+ *
+ * <p>Merged chunks are not deleted by the compaction itself, since readers
+ * that listed the drain before it may still be streaming them. The main
+ * object records the last merged chunk in its user metadata and
+ * {@link #read()} skips chunks up to it. The main object is read exactly
+ * as it was listed (by its ETag), and the listing is repeated if it was
+ * rewritten in between. Merged chunks are deleted later,
+ * by {@link #purge(long)}.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
  * @checkstyle ClassDataAbstractionCoupling (500 lines)
+ * @checkstyle MultipleStringLiterals (500 lines)
  */
 @Immutable
 @EqualsAndHashCode(of = { "client", "key" })
 @Loggable(Loggable.DEBUG)
+@SuppressWarnings("PMD.TooManyMethods")
 public final class ObjectDrain implements Drain {
 
+    /**
+     * Suffix of the key, which all chunks of an object are stored under.
+     */
+    public static final String CHUNKS = ".chunks/";
+
+    /**
+     * Sequence of chunk numbers.
+     */
+    private static final AtomicLong CLOCK = new AtomicLong();
+
+    /**
+     * User metadata attribute with the name of the last merged chunk.
+     */
+    private static final String MERGED = "merged";
+
+    /**
+     * Maximum number of keys S3 deletes in one request.
+     */
+    private static final int MAX_DELETE = 1000;
+
+    /**
+     * How many times to list the object, if it keeps changing.
+     */
+    private static final int ATTEMPTS = Tv.FIVE;
+
     /**
      * S3 client.
      */
@@ -118,57 +173,40 @@ public final class ObjectDrain implements Drain {
      */
     @Override
     public void append(final Iterable<String> lines) throws IOException {
-        final AmazonS3 aws = this.client.get();
-        final InputStream body;
-        long size;
-        if (aws.listObjects(this.client.bucket(), this.key)
-            .getObjectSummaries().isEmpty()) {
-            body = IOUtils.toInputStream("");
-            size = 0;
-        } else {
-            final S3Object object =
-                aws.getObject(this.client.bucket(), this.key);
-            body = object.getObjectContent();
-            size = object.getObjectMetadata().getContentLength();
-        }
-        final byte[] suffix = new StringBuilder(StringUtils.join(lines, "\n"))
+        final byte[] data = new StringBuilder(StringUtils.join(lines, "\n"))
             .append('\n')
             .toString()
             .getBytes(CharEncoding.UTF_8);
-        Validate.isTrue(suffix.length > 0, "empty input");
-        size += suffix.length;
-        final ObjectMetadata meta = new ObjectMetadata();
-        meta.setContentEncoding(CharEncoding.UTF_8);
-        meta.setContentType(MediaType.TEXT_PLAIN);
-        meta.setContentLength(size);
+        Validate.isTrue(data.length > 0, "empty input");
+        final String chunk = String.format(
+            "%s%s%020d", this.key, ObjectDrain.CHUNKS, ObjectDrain.tick()
+        );
         try {
-            final PutObjectResult result = aws.putObject(
+            final PutObjectResult result = this.client.get().putObject(
                 this.client.bucket(),
-                this.key,
-                new SequenceInputStream(
-                    body,
-                    new ByteArrayInputStream(suffix)
-                ),
-                meta
+                chunk,
+                new ByteArrayInputStream(data),
+                ObjectDrain.meta(data.length)
             );
             Logger.info(
                 this,
                 "`%s` saved %s to S3, etag=`%s`",
-                this.key,
-                FileUtils.byteCountToDisplaySize(size),
+                chunk,
+                FileUtils.byteCountToDisplaySize(data.length),
                 result.getETag()
             );
-        } catch (AmazonS3Exception ex) {
+        } catch (AmazonClientException ex) {
             throw new IOException(
                 String.format(
                     "failed to flush %s to `%s`: %s",
-                    this.key,
+                    chunk,
                     this.client.bucket(),
                     ex
                 ),
                 ex
             );
         }
+        Compactor.watch(this.client, this.key);
     }
 
     /**
@@ -177,10 +215,10 @@ public final class ObjectDrain implements Drain {
     @Override
     public InputStream read() throws IOException {
         final AmazonS3 aws = this.client.get();
-        InputStream stream;
+        final InputStream stream;
         try {
-            if (aws.listObjects(this.client.bucket(), this.key)
-                .getObjectSummaries().isEmpty()) {
+            final ObjectDrain.Parts parts = this.open(aws);
+            if (parts.count() == 0) {
                 throw new IOException(
                     String.format(
                         "S3 object %s not found in %s",
@@ -189,31 +227,25 @@ public final class ObjectDrain implements Drain {
                     )
                 );
             }
-            final S3Object object =
-                aws.getObject(this.client.bucket(), this.key);
             Logger.info(
                 this,
-                "'%s' ready for loading from S3, size=%s, etag=%s",
+                "'%s' ready for loading from S3, size=%s, parts=%d",
                 this.key,
-                FileUtils.byteCountToDisplaySize(
-                    object.getObjectMetadata().getContentLength()
-                ),
-                object.getObjectMetadata().getETag()
+                FileUtils.byteCountToDisplaySize(parts.size()),
+                parts.count()
             );
             stream = new SequenceInputStream(
                 IOUtils.toInputStream(
                     String.format(
-                        "ObjectDrain: etag='%s', size=%s\n\n",
-                        object.getObjectMetadata().getETag(),
-                        FileUtils.byteCountToDisplaySize(
-                            object.getObjectMetadata().getContentLength()
-                        )
+                        "ObjectDrain: parts=%d, size=%s\n\n",
+                        parts.count(),
+                        FileUtils.byteCountToDisplaySize(parts.size())
                     ),
                     CharEncoding.UTF_8
                 ),
-                new ObjectDrain.Wrap(object.getObjectContent(), aws)
+                parts
             );
-        } catch (AmazonS3Exception ex) {
+        } catch (AmazonClientException ex) {
             throw new IOException(
                 String.format(
                     "failed to read %s from %s: %s",
@@ -237,6 +269,339 @@ public final class ObjectDrain implements Drain {
         );
     }
 
+    /**
+     * Merge all chunks into the main object.
+     *
+     * <p>Chunks appended while compaction is in progress are not touched
+     * and will be merged next time. Merged chunks stay in place until
+     * {@link #purge(long)}.
+     *
+     * @return How many chunks were merged
+     * @throws IOException If fails
+     */
+    public int compact() throws IOException {
+        final AmazonS3 aws = this.client.get();
+        final int merged;
+        try {
+            final ObjectDrain.Parts parts = this.open(aws);
+            merged = parts.chunks();
+            if (merged > 0) {
+                final ObjectMetadata meta = ObjectDrain.meta(parts.size());
+                meta.addUserMetadata(ObjectDrain.MERGED, parts.last());
+                aws.putObject(this.client.bucket(), this.key, parts, meta);
+                Logger.info(
+                    this,
+                    "`%s` compacted %d chunk(s) in S3, size=%s",
+                    this.key,
+                    merged,
+                    FileUtils.byteCountToDisplaySize(parts.size())
+                );
+            } else {
+                parts.close();
+            }
+        } catch (AmazonClientException ex) {
+            throw new IOException(
+                String.format(
+                    "failed to compact %s in `%s`: %s",
+                    this.key,
+                    this.client.bucket(),
+                    ex
+                ),
+                ex
+            );
+        }
+        return merged;
+    }
+
+    /**
+     * Delete chunks already merged into the main object, if it was
+     * written before the given moment.
+     *
+     * <p>The moment should be far enough in the past for all readers,
+     * which listed the drain before its last compaction, to finish
+     * streaming.
+     *
+     * @param edge Moment, in milliseconds
+     * @return How many chunks were deleted
+     * @throws IOException If fails
+     */
+    public int purge(final long edge) throws IOException {
+        final AmazonS3 aws = this.client.get();
+        final List<String> merged = new ArrayList<String>(0);
+        try {
+            final List<S3ObjectSummary> parts = this.parts(aws);
+            if (!parts.isEmpty() && parts.get(0).getKey().equals(this.key)) {
+                final ObjectMetadata meta = aws.getObjectMetadata(
+                    this.client.bucket(), this.key
+                );
+                final String marker = StringUtils.defaultString(
+                    meta.getUserMetadata().get(ObjectDrain.MERGED)
+                );
+                if (meta.getLastModified().getTime() < edge) {
+                    for (S3ObjectSummary part
+                        : parts.subList(1, parts.size())) {
+                        if (part.getKey().compareTo(marker) <= 0) {
+                            merged.add(part.getKey());
+                        }
+                    }
+                }
+            }
+            for (int pos = 0; pos < merged.size();
+                pos += ObjectDrain.MAX_DELETE) {
+                final List<String> batch = merged.subList(
+                    pos,
+                    Math.min(pos + ObjectDrain.MAX_DELETE, merged.size())
+                );
+                aws.deleteObjects(
+                    new DeleteObjectsRequest(this.client.bucket())
+                        .withKeys(batch.toArray(new String[batch.size()]))
+                );
+            }
+        } catch (AmazonClientException ex) {
+            throw new IOException(
+                String.format(
+                    "failed to purge %s in `%s`: %s",
+                    this.key,
+                    this.client.bucket(),
+                    ex
+                ),
+                ex
+            );
+        }
+        if (!merged.isEmpty()) {
+            Logger.info(
+                this, "`%s` purged %d merged chunk(s) in S3",
+                this.key, merged.size()
+            );
+        }
+        return merged.size();
+    }
+
+    /**
+     * Open the main object, exactly as listed, and find chunks not yet
+     * merged into it.
+     * @param aws Amazon S3 client
+     * @return Parts to read, in order
+     * @throws IOException If the object keeps changing
+     */
+    private ObjectDrain.Parts open(final AmazonS3 aws) throws IOException {
+        for (int attempt = 1; attempt <= ObjectDrain.ATTEMPTS; ++attempt) {
+            final List<S3ObjectSummary> parts = this.parts(aws);
+            if (parts.isEmpty() || !parts.get(0).getKey().equals(this.key)) {
+                return new ObjectDrain.Parts(
+                    aws, this.client.bucket(), null, parts
+                );
+            }
+            final S3Object main = aws.getObject(
+                new GetObjectRequest(this.client.bucket(), this.key)
+                    .withMatchingETagConstraint(parts.get(0).getETag())
+            );
+            if (main != null) {
+                final String marker = StringUtils.defaultString(
+                    main.getObjectMetadata().getUserMetadata()
+                        .get(ObjectDrain.MERGED)
+                );
+                final List<S3ObjectSummary> live =
+                    new ArrayList<S3ObjectSummary>(parts.size());
+                live.add(parts.get(0));
+                for (S3ObjectSummary part : parts.subList(1, parts.size())) {
+                    if (part.getKey().compareTo(marker) > 0) {
+                        live.add(part);
+                    }
+                }
+                return new ObjectDrain.Parts(
+                    aws, this.client.bucket(), main, live
+                );
+            }
+            Logger.info(
+                this, "`%s` was rewritten after listing, attempt #%d",
+                this.key, attempt
+            );
+        }
+        throw new IOException(
+            String.format(
+                "S3 object %s keeps changing in %s",
+                this.key,
+                this.client.bucket()
+            )
+        );
+    }
+
+    /**
+     * Get all parts of the object, the main one and its chunks, in order.
+     * @param aws Amazon S3 client
+     * @return List of them
+     */
+    private List<S3ObjectSummary> parts(final AmazonS3 aws) {
+        final List<S3ObjectSummary> parts = new ArrayList<S3ObjectSummary>(0);
+        final String prefix = this.key + ObjectDrain.CHUNKS;
+        ObjectListing listing = aws.listObjects(
+            new ListObjectsRequest()
+                .withBucketName(this.client.bucket())
+                .withPrefix(this.key)
+        );
+        while (true) {
+            for (S3ObjectSummary sum : listing.getObjectSummaries()) {
+                if (sum.getKey().equals(this.key)
+                    || sum.getKey().startsWith(prefix)) {
+                    parts.add(sum);
+                }
+            }
+            if (!listing.isTruncated()) {
+                break;
+            }
+            listing = aws.listNextBatchOfObjects(listing);
+        }
+        return parts;
+    }
+
+    /**
+     * Make metadata of a new object.
+     * @param size Its size
+     * @return Metadata
+     */
+    private static ObjectMetadata meta(final long size) {
+        final ObjectMetadata meta = new ObjectMetadata();
+        meta.setContentEncoding(CharEncoding.UTF_8);
+        meta.setContentType(MediaType.TEXT_PLAIN);
+        meta.setContentLength(size);
+        return meta;
+    }
+
+    /**
+     * Next unique number of a chunk, growing monotonically.
+     * @return Number
+     */
+    private static long tick() {
+        final long now = System.currentTimeMillis();
+        long prev;
+        long next;
+        do {
+            prev = ObjectDrain.CLOCK.get();
+            next = Math.max(now, prev + 1);
+        } while (!ObjectDrain.CLOCK.compareAndSet(prev, next));
+        return next;
+    }
+
+    /**
+     * Lazy stream of parts, the main object (already opened, if exists)
+     * goes first, every chunk is opened only when its predecessor
+     * is fully read.
+     */
+    private static final class Parts extends SequenceInputStream {
+        /**
+         * Parts to read.
+         */
+        private final transient List<S3ObjectSummary> all;
+        /**
+         * Main object, if exists.
+         */
+        private final transient S3Object main;
+        /**
+         * Public ctor.
+         * @param amazon AmazonS3
+         * @param bkt Bucket name
+         * @param obj Main object opened or NULL if it is absent
+         * @param parts Parts to read, the main one goes first, if exists
+         */
+        protected Parts(final AmazonS3 amazon, final String bkt,
+            final S3Object obj, final List<S3ObjectSummary> parts) {
+            super(new ObjectDrain.Opener(amazon, bkt, obj, parts));
+            this.all = parts;
+            this.main = obj;
+        }
+        /**
+         * How many parts are there.
+         * @return Total number of them
+         */
+        public int count() {
+            return this.all.size();
+        }
+        /**
+         * How many chunks are there, not counting the main object.
+         * @return Number of chunks
+         */
+        public int chunks() {
+            int chunks = this.all.size();
+            if (this.main != null) {
+                --chunks;
+            }
+            return chunks;
+        }
+        /**
+         * Total size of all parts.
+         * @return Size in bytes
+         */
+        public long size() {
+            long size = 0;
+            for (S3ObjectSummary part : this.all) {
+                size += part.getSize();
+            }
+            return size;
+        }
+        /**
+         * Key of the last part.
+         * @return Key
+         */
+        public String last() {
+            return this.all.get(this.all.size() - 1).getKey();
+        }
+    }
+
+    /**
+     * Lazy enumeration of parts, every chunk is opened only when
+     * its predecessor is fully read.
+     */
+    private static final class Opener implements Enumeration<InputStream> {
+        /**
+         * Encapsulated AmazonS3 client.
+         */
+        private final transient AmazonS3 aws;
+        /**
+         * Bucket name.
+         */
+        private final transient String bucket;
+        /**
+         * Main object, not yet returned, or NULL.
+         */
+        private transient S3Object main;
+        /**
+         * Iterator of parts.
+         */
+        private final transient Iterator<S3ObjectSummary> iterator;
+        /**
+         * Public ctor.
+         * @param amazon AmazonS3
+         * @param bkt Bucket name
+         * @param obj Main object opened or NULL if it is absent
+         * @param parts Parts to read, the main one goes first, if exists
+         */
+        protected Opener(final AmazonS3 amazon, final String bkt,
+            final S3Object obj, final List<S3ObjectSummary> parts) {
+            this.aws = amazon;
+            this.bucket = bkt;
+            this.main = obj;
+            this.iterator = parts.iterator();
+        }
+        @Override
+        public boolean hasMoreElements() {
+            return this.iterator.hasNext();
+        }
+        @Override
+        public InputStream nextElement() {
+            final S3ObjectSummary part = this.iterator.next();
+            final InputStream stream;
+            if (this.main == null) {
+                stream = this.aws.getObject(this.bucket, part.getKey())
+                    .getObjectContent();
+            } else {
+                stream = this.main.getObjectContent();
+                this.main = null;
+            }
+            return new ObjectDrain.Wrap(stream, this.aws);
+        }
+    }
+
     /**
      * Wrap around exiting InputStream, to keep AWS object apart from
      * garbage collector, in order not to loose HTTP connection.
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.drain.s3;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.jcabi.aspects.Tv;
+import com.rultor.aws.S3Client;
+import com.rultor.tools.Time;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Test case for {@link BucketPulses}.
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ */
+public final class BucketPulsesTest {
+
+    /**
+     * Prefix of all objects.
+     */
+    private static final String PREFIX = "owner/rule/";
+
+    /**
+     * BucketPulses can list a pulse with many chunks only once.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void listsPulsesBehindManyChunks() throws Exception {
+        final long now = System.currentTimeMillis();
+        final Time first = new Time(now - Tv.THOUSAND);
+        final Time second = new Time(now - Tv.THOUSAND * 2);
+        final NavigableSet<String> keys = new ConcurrentSkipListSet<String>();
+        for (int chunk = 0; chunk < Tv.TWENTY * 2; ++chunk) {
+            keys.add(
+                String.format(
+                    "%s%s%s%020d",
+                    BucketPulsesTest.PREFIX, new Key(first),
+                    ObjectDrain.CHUNKS, chunk
+                )
+            );
+        }
+        keys.add(
+            String.format("%s%s", BucketPulsesTest.PREFIX, new Key(second))
+        );
+        MatcherAssert.assertThat(
+            new BucketPulses(
+                BucketPulsesTest.client(keys),
+                BucketPulsesTest.PREFIX,
+                new Time(now)
+            ),
+            Matchers.contains(first, second)
+        );
+    }
+
+    /**
+     * Make S3 client that lists the given keys page by page, the way
+     * Amazon S3 does without a delimiter.
+     * @param keys Keys of all objects
+     * @return Client
+     */
+    private static S3Client client(final NavigableSet<String> keys) {
+        final AmazonS3 aws = Mockito.mock(AmazonS3.class);
+        Mockito.doAnswer(
+            new Answer<ObjectListing>() {
+                @Override
+                public ObjectListing answer(final InvocationOnMock inv) {
+                    final ListObjectsRequest request = ListObjectsRequest.class
+                        .cast(inv.getArguments()[0]);
+                    final ObjectListing listing = new ObjectListing();
+                    listing.setBucketName(request.getBucketName());
+                    final String marker = request.getMarker();
+                    for (String key : keys.tailSet(marker, false)) {
+                        if (listing.getObjectSummaries().size()
+                            == request.getMaxKeys()) {
+                            listing.setTruncated(true);
+                            break;
+                        }
+                        final S3ObjectSummary sum = new S3ObjectSummary();
+                        sum.setKey(key);
+                        listing.getObjectSummaries().add(sum);
+                    }
+                    return listing;
+                }
+            }
+        ).when(aws).listObjects(Mockito.any(ListObjectsRequest.class));
+        final S3Client client = Mockito.mock(S3Client.class);
+        Mockito.doReturn("bucket").when(client).bucket();
+        Mockito.doReturn(aws).when(client).get();
+        return client;
+    }
+
+}
@@ -72,4 +72,21 @@ public final class KeyTest {
         );
     }
 
+    /**
+     * Key can parse a name of a chunk.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void parsesChunkName() throws Exception {
+        final Time date = new Time(854384894302L);
+        MatcherAssert.assertThat(
+            Key.valueOf(
+                String.format(
+                    "%s%s%020d", new Key(date), ObjectDrain.CHUNKS, 1L
+                )
+            ),
+            Matchers.equalTo(new Key(date))
+        );
+    }
+
 }
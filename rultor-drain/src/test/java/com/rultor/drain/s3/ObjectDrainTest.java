@@ -0,0 +1,475 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.drain.s3;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.rultor.aws.S3Client;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.CharEncoding;
+import org.apache.commons.lang3.StringUtils;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Test case for {@link ObjectDrain}.
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @checkstyle ClassDataAbstractionCoupling (500 lines)
+ * @checkstyle MultipleStringLiterals (500 lines)
+ */
+public final class ObjectDrainTest {
+
+    /**
+     * Name of the object to use in tests.
+     */
+    private static final String KEY = "owner/rule/1/2/3/4.txt";
+
+    /**
+     * ObjectDrain can append chunks and read them back in order.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void appendsAndReadsChunks() throws Exception {
+        final ObjectDrainTest.FakeS3 fake = new ObjectDrainTest.FakeS3();
+        final ObjectDrain drain = new ObjectDrain(fake.client(), KEY);
+        drain.append(Arrays.asList("first \u20ac"));
+        drain.append(Arrays.asList("second", "third"));
+        MatcherAssert.assertThat(
+            fake.objects.keySet(),
+            Matchers.everyItem(
+                Matchers.startsWith(KEY + ObjectDrain.CHUNKS)
+            )
+        );
+        MatcherAssert.assertThat(
+            IOUtils.toString(drain.read(), CharEncoding.UTF_8),
+            Matchers.stringContainsInOrder(
+                Arrays.asList("first \u20ac\n", "second\nthird\n")
+            )
+        );
+    }
+
+    /**
+     * ObjectDrain can compact chunks into one object.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void compactsChunks() throws Exception {
+        final ObjectDrainTest.FakeS3 fake = new ObjectDrainTest.FakeS3();
+        final ObjectDrain drain = new ObjectDrain(fake.client(), KEY);
+        drain.append(Arrays.asList("alpha"));
+        drain.append(Arrays.asList("beta"));
+        MatcherAssert.assertThat(drain.compact(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(
+            fake.objects.keySet(),
+            Matchers.hasItem(KEY)
+        );
+        drain.append(Arrays.asList("gamma"));
+        final String text = IOUtils.toString(drain.read(), CharEncoding.UTF_8);
+        MatcherAssert.assertThat(
+            text,
+            Matchers.stringContainsInOrder(
+                Arrays.asList("alpha\n", "beta\n", "gamma\n")
+            )
+        );
+        MatcherAssert.assertThat(
+            StringUtils.countMatches(text, "alpha"),
+            Matchers.equalTo(1)
+        );
+        MatcherAssert.assertThat(drain.compact(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(drain.compact(), Matchers.equalTo(0));
+    }
+
+    /**
+     * ObjectDrain can purge merged chunks only after a grace period.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void purgesMergedChunksLater() throws Exception {
+        final ObjectDrainTest.FakeS3 fake = new ObjectDrainTest.FakeS3();
+        final ObjectDrain drain = new ObjectDrain(fake.client(), KEY);
+        drain.append(Arrays.asList("delta"));
+        drain.append(Arrays.asList("epsilon"));
+        drain.compact();
+        drain.append(Arrays.asList("zeta"));
+        MatcherAssert.assertThat(drain.purge(0L), Matchers.equalTo(0));
+        MatcherAssert.assertThat(fake.objects.size(), Matchers.equalTo(2 + 2));
+        MatcherAssert.assertThat(
+            drain.purge(Long.MAX_VALUE), Matchers.equalTo(2)
+        );
+        MatcherAssert.assertThat(fake.objects.size(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(
+            IOUtils.toString(drain.read(), CharEncoding.UTF_8),
+            Matchers.stringContainsInOrder(
+                Arrays.asList("delta\n", "epsilon\n", "zeta\n")
+            )
+        );
+    }
+
+    /**
+     * ObjectDrain can ignore chunks left after failed purge.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void ignoresMergedChunks() throws Exception {
+        final ObjectDrainTest.FakeS3 fake = new ObjectDrainTest.FakeS3();
+        final AmazonS3 aws = fake.client().get();
+        final ObjectDrain drain = new ObjectDrain(fake.client(), KEY);
+        drain.append(Arrays.asList("omega"));
+        drain.compact();
+        Mockito.doThrow(new AmazonServiceException("oops"))
+            .when(aws).deleteObjects(Mockito.any(DeleteObjectsRequest.class));
+        try {
+            drain.purge(Long.MAX_VALUE);
+            Assert.fail("purge should fail");
+        } catch (IOException ex) {
+            MatcherAssert.assertThat(
+                ex.getMessage(), Matchers.containsString("oops")
+            );
+        }
+        MatcherAssert.assertThat(fake.objects.size(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(
+            StringUtils.countMatches(
+                IOUtils.toString(drain.read(), CharEncoding.UTF_8), "omega"
+            ),
+            Matchers.equalTo(1)
+        );
+    }
+
+    /**
+     * ObjectDrain can read an object compacted right after listing.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void readsObjectCompactedAfterListing() throws Exception {
+        final ObjectDrainTest.FakeS3 fake = new ObjectDrainTest.FakeS3();
+        final ObjectDrain drain = new ObjectDrain(fake.client(), KEY);
+        drain.append(Arrays.asList("first"));
+        drain.compact();
+        drain.append(Arrays.asList("second"));
+        fake.hook.set(
+            new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        drain.compact();
+                    } catch (IOException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+            }
+        );
+        final String text = IOUtils.toString(drain.read(), CharEncoding.UTF_8);
+        MatcherAssert.assertThat(fake.hook.get(), Matchers.nullValue());
+        MatcherAssert.assertThat(
+            text,
+            Matchers.stringContainsInOrder(
+                Arrays.asList("first\n", "second\n")
+            )
+        );
+        MatcherAssert.assertThat(
+            StringUtils.countMatches(text, "second"),
+            Matchers.equalTo(1)
+        );
+    }
+
+    /**
+     * ObjectDrain can be compacted by Compactor, found in S3 listing.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void compactsIdleDrainsFoundInListing() throws Exception {
+        final ObjectDrainTest.FakeS3 fake = new ObjectDrainTest.FakeS3();
+        final ObjectDrain drain = new ObjectDrain(fake.client(), KEY);
+        drain.append(Arrays.asList("eta"));
+        final String other = "owner/rule/5/6/7/8.txt";
+        new ObjectDrain(fake.client(), other).append(Arrays.asList("theta"));
+        final long now = System.currentTimeMillis();
+        MatcherAssert.assertThat(
+            Compactor.scan(fake.client(), "owner/rule/", now),
+            Matchers.equalTo(2)
+        );
+        MatcherAssert.assertThat(fake.objects.size(), Matchers.equalTo(2));
+        Compactor.scan(
+            fake.client(), "owner/rule/", now + TimeUnit.HOURS.toMillis(1L)
+        );
+        MatcherAssert.assertThat(
+            fake.objects.keySet(),
+            Matchers.hasItems(KEY, other)
+        );
+        MatcherAssert.assertThat(fake.objects.size(), Matchers.equalTo(2 + 2));
+        MatcherAssert.assertThat(
+            Compactor.scan(
+                fake.client(), "owner/rule/",
+                now + TimeUnit.HOURS.toMillis(2L)
+            ),
+            Matchers.equalTo(2)
+        );
+        MatcherAssert.assertThat(
+            fake.objects.keySet(),
+            Matchers.contains(KEY, other)
+        );
+        MatcherAssert.assertThat(
+            Compactor.scan(fake.client(), "owner/rule/", now),
+            Matchers.equalTo(0)
+        );
+    }
+
+    /**
+     * In-memory stand-in for Amazon S3.
+     */
+    private static final class FakeS3 {
+        /**
+         * Objects stored.
+         */
+        private final transient ConcurrentNavigableMap<String, byte[]>
+            objects = new ConcurrentSkipListMap<String, byte[]>();
+        /**
+         * User metadata of objects.
+         */
+        private final transient Map<String, ObjectMetadata> metas =
+            new ConcurrentSkipListMap<String, ObjectMetadata>();
+        /**
+         * ETags of objects.
+         */
+        private final transient Map<String, String> etags =
+            new ConcurrentSkipListMap<String, String>();
+        /**
+         * Sequence of ETags.
+         */
+        private final transient AtomicLong version = new AtomicLong();
+        /**
+         * What to do right after the next listing.
+         */
+        private final transient AtomicReference<Runnable> hook =
+            new AtomicReference<Runnable>();
+        /**
+         * Mocked Amazon S3 client.
+         */
+        private final transient AmazonS3 aws = Mockito.mock(AmazonS3.class);
+        /**
+         * Public ctor.
+         */
+        FakeS3() {
+            this.mockPut();
+            this.mockGet();
+            this.mockList();
+            this.mockDelete();
+        }
+        /**
+         * Make S3 client.
+         * @return Client
+         */
+        public S3Client client() {
+            final S3Client client = Mockito.mock(S3Client.class);
+            Mockito.doReturn("bucket").when(client).bucket();
+            Mockito.doReturn(this.aws).when(client).get();
+            return client;
+        }
+        /**
+         * Mock PUT requests.
+         */
+        private void mockPut() {
+            Mockito.doAnswer(
+                new Answer<PutObjectResult>() {
+                    @Override
+                    public PutObjectResult answer(final InvocationOnMock inv)
+                        throws Exception {
+                        final String key = inv.getArguments()[1].toString();
+                        FakeS3.this.objects.put(
+                            key,
+                            IOUtils.toByteArray(
+                                InputStream.class.cast(inv.getArguments()[2])
+                            )
+                        );
+                        final ObjectMetadata meta = ObjectMetadata.class
+                            .cast(inv.getArguments()[2 + 1]);
+                        meta.setLastModified(new Date());
+                        FakeS3.this.metas.put(key, meta);
+                        final String etag = Long.toString(
+                            FakeS3.this.version.incrementAndGet()
+                        );
+                        FakeS3.this.etags.put(key, etag);
+                        final PutObjectResult result = new PutObjectResult();
+                        result.setETag(etag);
+                        return result;
+                    }
+                }
+            ).when(this.aws).putObject(
+                Mockito.anyString(), Mockito.anyString(),
+                Mockito.any(InputStream.class),
+                Mockito.any(ObjectMetadata.class)
+            );
+        }
+        /**
+         * Mock GET requests.
+         */
+        private void mockGet() {
+            Mockito.doAnswer(
+                new Answer<S3Object>() {
+                    @Override
+                    public S3Object answer(final InvocationOnMock inv) {
+                        final S3Object object = new S3Object();
+                        object.setObjectContent(
+                            new ByteArrayInputStream(
+                                FakeS3.this.objects.get(
+                                    inv.getArguments()[1].toString()
+                                )
+                            )
+                        );
+                        return object;
+                    }
+                }
+            ).when(this.aws).getObject(
+                Mockito.anyString(), Mockito.anyString()
+            );
+            Mockito.doAnswer(
+                new Answer<S3Object>() {
+                    @Override
+                    public S3Object answer(final InvocationOnMock inv) {
+                        final GetObjectRequest req = GetObjectRequest.class
+                            .cast(inv.getArguments()[0]);
+                        final String key = req.getKey();
+                        S3Object object = null;
+                        if (req.getMatchingETagConstraints().isEmpty()
+                            || req.getMatchingETagConstraints().contains(
+                                FakeS3.this.etags.get(key)
+                            )) {
+                            object = new S3Object();
+                            object.setObjectMetadata(
+                                FakeS3.this.metas.get(key)
+                            );
+                            object.setObjectContent(
+                                new ByteArrayInputStream(
+                                    FakeS3.this.objects.get(key)
+                                )
+                            );
+                        }
+                        return object;
+                    }
+                }
+            ).when(this.aws).getObject(Mockito.any(GetObjectRequest.class));
+            Mockito.doAnswer(
+                new Answer<ObjectMetadata>() {
+                    @Override
+                    public ObjectMetadata answer(final InvocationOnMock inv) {
+                        return FakeS3.this.metas.get(
+                            inv.getArguments()[1].toString()
+                        );
+                    }
+                }
+            ).when(this.aws).getObjectMetadata(
+                Mockito.anyString(), Mockito.anyString()
+            );
+        }
+        /**
+         * Mock LIST requests.
+         */
+        private void mockList() {
+            Mockito.doAnswer(
+                new Answer<ObjectListing>() {
+                    @Override
+                    public ObjectListing answer(final InvocationOnMock inv) {
+                        final String prefix = ListObjectsRequest.class
+                            .cast(inv.getArguments()[0]).getPrefix();
+                        final ObjectListing listing = new ObjectListing();
+                        for (Map.Entry<String, byte[]> entry
+                            : FakeS3.this.objects.tailMap(prefix).entrySet()) {
+                            if (!entry.getKey().startsWith(prefix)) {
+                                break;
+                            }
+                            final S3ObjectSummary sum = new S3ObjectSummary();
+                            sum.setKey(entry.getKey());
+                            sum.setSize(entry.getValue().length);
+                            sum.setETag(FakeS3.this.etags.get(entry.getKey()));
+                            sum.setLastModified(
+                                FakeS3.this.metas.get(entry.getKey())
+                                    .getLastModified()
+                            );
+                            listing.getObjectSummaries().add(sum);
+                        }
+                        final Runnable after = FakeS3.this.hook.getAndSet(null);
+                        if (after != null) {
+                            after.run();
+                        }
+                        return listing;
+                    }
+                }
+            ).when(this.aws).listObjects(Mockito.any(ListObjectsRequest.class));
+        }
+        /**
+         * Mock DELETE requests.
+         */
+        private void mockDelete() {
+            Mockito.doAnswer(
+                new Answer<Void>() {
+                    @Override
+                    public Void answer(final InvocationOnMock inv) {
+                        for (DeleteObjectsRequest.KeyVersion ver
+                            : DeleteObjectsRequest.class
+                                .cast(inv.getArguments()[0]).getKeys()) {
+                            FakeS3.this.objects.remove(ver.getKey());
+                            FakeS3.this.metas.remove(ver.getKey());
+                            FakeS3.this.etags.remove(ver.getKey());
+                        }
+                        return null;
+                    }
+                }
+            ).when(this.aws).deleteObjects(
+                Mockito.any(DeleteObjectsRequest.class)
+            );
+        }
+    }
+
+}
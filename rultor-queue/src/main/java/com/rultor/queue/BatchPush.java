@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.queue;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.jcabi.aspects.Tv;
+import com.jcabi.log.Logger;
+import com.jcabi.log.VerboseThreads;
+import com.rultor.spi.Coordinates;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * Bulk push of works into SQS queue, with SendMessageBatch.
+ *
+ * <p>Works are grouped by ten (maximum allowed by SQS in one batch),
+ * groups are sent concurrently through the same AWS client. Entries
+ * failed on SQS side are re-sent, up to three times, while
+ * entries accepted are never sent again.
+ *
+ * <p>All pushes share one bounded pool of threads. When it is busy
+ * and its queue is full, groups are sent in the thread of the caller.
+ * Its threads are daemons and die after a minute of idleness, so a JVM
+ * that pushes rarely, like the web front, doesn't keep them alive.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@ToString(of = "url")
+@EqualsAndHashCode(of = { "aws", "url" })
+@SuppressWarnings("PMD.DoNotUseThreads")
+final class BatchPush {
+
+    /**
+     * Maximum number of messages in one batch.
+     */
+    private static final int BATCH = Tv.TEN;
+
+    /**
+     * How many times to try every batch.
+     */
+    private static final int ATTEMPTS = Tv.THREE;
+
+    /**
+     * Maximum number of batches to send concurrently.
+     */
+    private static final int THREADS = Tv.EIGHT;
+
+    /**
+     * Executor shared by all pushes.
+     */
+    private static final ExecutorService SVC = BatchPush.executor();
+
+    /**
+     * AWS client.
+     */
+    private final transient AmazonSQS aws;
+
+    /**
+     * URL of the queue.
+     */
+    private final transient String url;
+
+    /**
+     * Public ctor.
+     * @param client AWS client
+     * @param addr URL of the queue
+     */
+    protected BatchPush(final AmazonSQS client, final String addr) {
+        this.aws = client;
+        this.url = addr;
+    }
+
+    /**
+     * Push them all.
+     * @param works Works to push
+     */
+    public void push(final Collection<Coordinates> works) {
+        final List<List<SendMessageBatchRequestEntry>> groups =
+            BatchPush.groups(works);
+        if (groups.size() == 1) {
+            this.send(groups.get(0));
+        } else if (!groups.isEmpty()) {
+            this.send(groups);
+        }
+        Logger.info(
+            this, "#push(): %d work(s) sent in %d batch(es)",
+            works.size(), groups.size()
+        );
+    }
+
+    /**
+     * Send all groups concurrently.
+     *
+     * <p>Waits for all groups, even when some of them fail, since
+     * the caller may shut down the AWS client right after.
+     *
+     * @param groups Groups to send
+     */
+    private void send(final Collection<List<SendMessageBatchRequestEntry>>
+        groups) {
+        final Collection<Future<Void>> futures =
+            new ArrayList<Future<Void>>(groups.size());
+        for (final List<SendMessageBatchRequestEntry> group : groups) {
+            futures.add(
+                BatchPush.SVC.submit(
+                    new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            BatchPush.this.send(group);
+                            return null;
+                        }
+                    }
+                )
+            );
+        }
+        Throwable error = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(ex);
+            } catch (ExecutionException ex) {
+                if (error == null) {
+                    error = ex.getCause();
+                }
+            }
+        }
+        if (error != null) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    /**
+     * Make an executor for all pushes.
+     * @return Executor
+     */
+    private static ExecutorService executor() {
+        final ThreadPoolExecutor svc = new ThreadPoolExecutor(
+            BatchPush.THREADS, BatchPush.THREADS, 1L, TimeUnit.MINUTES,
+            new ArrayBlockingQueue<Runnable>(Tv.HUNDRED),
+            new VerboseThreads("push", true),
+            new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        svc.allowCoreThreadTimeOut(true);
+        return svc;
+    }
+
+    /**
+     * Send one group, re-sending failed entries.
+     * @param group Entries to send, not more than ten
+     */
+    private void send(final Collection<SendMessageBatchRequestEntry> group) {
+        final ConcurrentMap<String, SendMessageBatchRequestEntry> left =
+            new ConcurrentHashMap<String, SendMessageBatchRequestEntry>(0);
+        for (SendMessageBatchRequestEntry entry : group) {
+            left.put(entry.getId(), entry);
+        }
+        for (int attempt = 1; !left.isEmpty(); ++attempt) {
+            final SendMessageBatchResult result = this.aws.sendMessageBatch(
+                new SendMessageBatchRequest()
+                    .withQueueUrl(this.url)
+                    .withEntries(left.values())
+            );
+            final Collection<BatchResultErrorEntry> fatal =
+                new ArrayList<BatchResultErrorEntry>(0);
+            final Collection<String> failed = new ArrayList<String>(0);
+            for (BatchResultErrorEntry error : result.getFailed()) {
+                if (error.isSenderFault() || attempt >= BatchPush.ATTEMPTS) {
+                    fatal.add(error);
+                } else {
+                    failed.add(error.getId());
+                }
+            }
+            if (!fatal.isEmpty()) {
+                throw new IllegalStateException(
+                    String.format(
+                        "failed to send %d message(s) to %s: %s",
+                        fatal.size(), this.url, fatal
+                    )
+                );
+            }
+            left.keySet().retainAll(failed);
+            if (!left.isEmpty()) {
+                Logger.warn(
+                    this, "#send(): %d message(s) failed, attempt #%d",
+                    left.size(), attempt
+                );
+            }
+        }
+    }
+
+    /**
+     * Split works into groups of entries.
+     * @param works All works
+     * @return Groups, each one not bigger than ten
+     */
+    private static List<List<SendMessageBatchRequestEntry>> groups(
+        final Collection<Coordinates> works) {
+        final List<List<SendMessageBatchRequestEntry>> groups =
+            new ArrayList<List<SendMessageBatchRequestEntry>>(
+                works.size() / BatchPush.BATCH + 1
+            );
+        List<SendMessageBatchRequestEntry> group = null;
+        for (Coordinates work : works) {
+            if (group == null || group.size() == BatchPush.BATCH) {
+                group = new ArrayList<SendMessageBatchRequestEntry>(
+                    BatchPush.BATCH
+                );
+                groups.add(group);
+            }
+            group.add(
+                new SendMessageBatchRequestEntry()
+                    .withId(Integer.toString(group.size()))
+                    .withMessageBody(SQSQueue.serialize(work))
+            );
+        }
+        return groups;
+    }
+
+}
@@ -0,0 +1,374 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.queue;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+import com.jcabi.aspects.Loggable;
+import com.jcabi.aspects.ScheduleWithFixedDelay;
+import com.jcabi.aspects.Tv;
+import com.jcabi.log.Logger;
+import com.rultor.aws.SQSClient;
+import com.rultor.spi.Coordinates;
+import com.rultor.spi.Queue;
+import com.rultor.tools.Exceptions;
+import com.rultor.tools.NormJson;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.validation.constraints.NotNull;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * Queue in Amazon SQS, with a local prefetch buffer.
+ *
+ * <p>All threads pulling from this queue share one AWS client and one
+ * in-memory buffer. When the buffer is empty, one of the threads
+ * long-polls SQS for as many messages as there are threads waiting
+ * (up to ten), while others wait for the buffer to be filled. Messages
+ * are deleted from SQS only after they are handed out, in batches, by
+ * a background flusher.
+ *
+ * <p>Messages received from SQS stay invisible for other consumers
+ * only during visibility timeout of the queue (30 seconds by default).
+ * That's why messages that stay in the buffer longer than twenty
+ * seconds are dropped without deletion and will be re-delivered
+ * by SQS to somebody else.
+ *
+ * <p>The class is thread-safe.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ * @checkstyle ClassDataAbstractionCoupling (500 lines)
+ */
+@ToString(of = "client")
+@EqualsAndHashCode(of = "client")
+@Loggable(Loggable.DEBUG)
+@ScheduleWithFixedDelay(delay = 1, unit = TimeUnit.SECONDS)
+@SuppressWarnings({ "PMD.ExcessiveImports", "PMD.DoNotUseThreads" })
+public final class SQSPrefetchQueue implements Queue, Runnable, Closeable {
+
+    /**
+     * Maximum number of messages SQS receives or deletes in one request.
+     */
+    private static final int BATCH = Tv.TEN;
+
+    /**
+     * Maximum long-polling time supported by SQS, in seconds.
+     */
+    private static final int MAX_WAIT = Tv.TWENTY;
+
+    /**
+     * How long a message may stay in the buffer, in milliseconds.
+     */
+    private static final long LIFETIME = TimeUnit.SECONDS.toMillis(Tv.TWENTY);
+
+    /**
+     * SQS client.
+     */
+    private final transient SQSClient client;
+
+    /**
+     * AWS client, shared by all threads.
+     */
+    private final transient AmazonSQS aws;
+
+    /**
+     * Messages received, but not yet handed out.
+     */
+    private final transient BlockingQueue<SQSPrefetchQueue.Received> buffer =
+        new LinkedBlockingQueue<SQSPrefetchQueue.Received>(
+            SQSPrefetchQueue.BATCH
+        );
+
+    /**
+     * Receipt handles of messages handed out, but not yet deleted.
+     */
+    private final transient ConcurrentLinkedQueue<String> handed =
+        new ConcurrentLinkedQueue<String>();
+
+    /**
+     * Lock held by the thread which is receiving from SQS.
+     */
+    private final transient Lock receiving = new ReentrantLock();
+
+    /**
+     * How many threads are waiting for work right now.
+     */
+    private final transient AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * Public ctor.
+     * @param clnt SQS client
+     */
+    public SQSPrefetchQueue(@NotNull(message = "SQS client can't be NULL")
+        final SQSClient clnt) {
+        this.client = clnt;
+        this.aws = clnt.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void push(
+        @NotNull(message = "work can't be NULL") final Coordinates work) {
+        final SendMessageResult result = this.aws.sendMessage(
+            new SendMessageRequest()
+                .withQueueUrl(this.client.url())
+                .withMessageBody(SQSQueue.serialize(work))
+        );
+        Logger.debug(
+            this,
+            "#push(%s): SQS message %s sent",
+            work, result.getMessageId()
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void pushAll(
+        @NotNull(message = "works can't be NULL")
+        final Collection<Coordinates> works) {
+        new BatchPush(this.aws, this.client.url()).push(works);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @NotNull
+    @Loggable(value = Loggable.DEBUG, limit = Integer.MAX_VALUE)
+    public Coordinates pull(final int limit,
+        @NotNull(message = "unit can't be NULL") final TimeUnit unit)
+        throws InterruptedException {
+        final long deadline = System.currentTimeMillis()
+            + unit.toMillis(limit);
+        Coordinates work = new Coordinates.None();
+        this.waiting.incrementAndGet();
+        try {
+            while (work.equals(new Coordinates.None())) {
+                final long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    break;
+                }
+                SQSPrefetchQueue.Received msg = this.buffer.poll();
+                if (msg == null) {
+                    if (this.receiving.tryLock()) {
+                        try {
+                            this.receive(left);
+                        } finally {
+                            this.receiving.unlock();
+                        }
+                        msg = this.buffer.poll();
+                    } else {
+                        msg = this.buffer.poll(
+                            Math.min(left, TimeUnit.SECONDS.toMillis(1)),
+                            TimeUnit.MILLISECONDS
+                        );
+                    }
+                }
+                if (msg != null) {
+                    work = this.accept(msg);
+                }
+            }
+        } finally {
+            this.waiting.decrementAndGet();
+        }
+        return work;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        while (!this.handed.isEmpty()) {
+            this.delete();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        this.run();
+        this.aws.shutdown();
+    }
+
+    /**
+     * Receive a batch of messages from SQS into the buffer.
+     * @param msec How long to wait for them, in milliseconds
+     */
+    private void receive(final long msec) {
+        final ReceiveMessageResult result = this.aws.receiveMessage(
+            new ReceiveMessageRequest()
+                .withQueueUrl(this.client.url())
+                .withMaxNumberOfMessages(
+                    Math.max(
+                        1,
+                        Math.min(
+                            SQSPrefetchQueue.BATCH - this.buffer.size(),
+                            this.waiting.get()
+                        )
+                    )
+                )
+                .withWaitTimeSeconds(
+                    (int) Math.min(
+                        (long) SQSPrefetchQueue.MAX_WAIT,
+                        TimeUnit.MILLISECONDS.toSeconds(msec)
+                    )
+                )
+        );
+        for (Message msg : result.getMessages()) {
+            if (!this.buffer.offer(new SQSPrefetchQueue.Received(msg))) {
+                Logger.warn(
+                    this, "#receive(): buffer is full, %s dropped",
+                    msg.getMessageId()
+                );
+            }
+        }
+    }
+
+    /**
+     * Accept received message, parse it and schedule for deletion.
+     * @param msg The message received
+     * @return Coordinates or Coordinates.None if message is not valid
+     */
+    private Coordinates accept(final SQSPrefetchQueue.Received msg) {
+        Coordinates work = new Coordinates.None();
+        if (msg.expired()) {
+            Logger.info(
+                this, "#accept(): SQS message %s expired in buffer",
+                msg.message().getMessageId()
+            );
+        } else {
+            try {
+                work = SQSQueue.unserialize(msg.message().getBody());
+            } catch (NormJson.JsonException ex) {
+                Exceptions.warn(this, ex);
+            } finally {
+                this.handed.add(msg.message().getReceiptHandle());
+            }
+        }
+        return work;
+    }
+
+    /**
+     * Delete next batch of handed out messages from SQS.
+     */
+    private void delete() {
+        final Collection<DeleteMessageBatchRequestEntry> entries =
+            new ArrayList<DeleteMessageBatchRequestEntry>(
+                SQSPrefetchQueue.BATCH
+            );
+        while (entries.size() < SQSPrefetchQueue.BATCH) {
+            final String handle = this.handed.poll();
+            if (handle == null) {
+                break;
+            }
+            entries.add(
+                new DeleteMessageBatchRequestEntry()
+                    .withId(Integer.toString(entries.size()))
+                    .withReceiptHandle(handle)
+            );
+        }
+        if (!entries.isEmpty()) {
+            final DeleteMessageBatchResult result = this.aws.deleteMessageBatch(
+                new DeleteMessageBatchRequest()
+                    .withQueueUrl(this.client.url())
+                    .withEntries(entries)
+            );
+            for (BatchResultErrorEntry error : result.getFailed()) {
+                Logger.warn(
+                    this, "#delete(): failed to delete message #%s: %s",
+                    error.getId(), error.getMessage()
+                );
+            }
+        }
+    }
+
+    /**
+     * Message received from SQS.
+     */
+    private static final class Received {
+        /**
+         * The message.
+         */
+        private final transient Message msg;
+        /**
+         * When it was received.
+         */
+        private final transient long start = System.currentTimeMillis();
+        /**
+         * Public ctor.
+         * @param message The message
+         */
+        protected Received(final Message message) {
+            this.msg = message;
+        }
+        /**
+         * Get message.
+         * @return The message
+         */
+        public Message message() {
+            return this.msg;
+        }
+        /**
+         * It stayed in the buffer for too long?
+         * @return TRUE if expired
+         */
+        public boolean expired() {
+            return System.currentTimeMillis() - this.start
+                > SQSPrefetchQueue.LIFETIME;
+        }
+    }
+
+}
@@ -50,6 +50,7 @@ import com.rultor.tools.Exceptions;
 import com.rultor.tools.NormJson;
 import com.rultor.tools.Time;
 import java.io.StringWriter;
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 import javax.json.Json;
 import javax.json.JsonObject;
@@ -141,6 +142,21 @@ public final class SQSQueue implements Queue {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void pushAll(
+        @NotNull(message = "works can't be NULL")
+        final Collection<Coordinates> works) {
+        final AmazonSQS aws = this.client.get();
+        try {
+            new BatchPush(aws, this.client.url()).push(works);
+        } finally {
+            aws.shutdown();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -208,7 +224,7 @@ public final class SQSQueue implements Queue {
      * @param work The work to serialize
      * @return Text
      */
-    private static String serialize(final Coordinates work) {
+    static String serialize(final Coordinates work) {
         final StringWriter writer = new StringWriter();
         final JsonGenerator generator = Json.createGenerator(writer);
         generator.writeStartObject()
@@ -227,7 +243,7 @@ public final class SQSQueue implements Queue {
      * @throws NormJson.JsonException If can't parse it
      * @checkstyle RedundantThrows (5 lines)
      */
-    private static Coordinates unserialize(final String text)
+    static Coordinates unserialize(final String text)
         throws NormJson.JsonException {
         final JsonObject object = SQSQueue.NORM.readObject(text);
         return new Coordinates.Simple(
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.queue;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.jcabi.urn.URN;
+import com.rultor.aws.SQSClient;
+import com.rultor.spi.Coordinates;
+import java.util.concurrent.TimeUnit;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Test case for {@link SQSPrefetchQueue}.
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @checkstyle ClassDataAbstractionCoupling (500 lines)
+ */
+public final class SQSPrefetchQueueTest {
+
+    /**
+     * SQSPrefetchQueue can receive a batch of messages in one call.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void receivesMessagesInBatch() throws Exception {
+        final SQSClient client = Mockito.mock(SQSClient.class);
+        final AmazonSQS aws = Mockito.mock(AmazonSQS.class);
+        Mockito.doReturn(aws).when(client).get();
+        Mockito.doReturn(
+            new ReceiveMessageResult().withMessages(
+                SQSPrefetchQueueTest.message("first"),
+                SQSPrefetchQueueTest.message("second")
+            )
+        ).doReturn(new ReceiveMessageResult())
+            .when(aws).receiveMessage(Mockito.any(ReceiveMessageRequest.class));
+        Mockito.doReturn(new DeleteMessageBatchResult())
+            .when(aws)
+            .deleteMessageBatch(Mockito.any(DeleteMessageBatchRequest.class));
+        final SQSPrefetchQueue queue = new SQSPrefetchQueue(client);
+        try {
+            MatcherAssert.assertThat(
+                queue.pull(1, TimeUnit.SECONDS).rule(),
+                Matchers.equalTo("first")
+            );
+            MatcherAssert.assertThat(
+                queue.pull(1, TimeUnit.SECONDS).rule(),
+                Matchers.equalTo("second")
+            );
+            Mockito.verify(aws, Mockito.times(1))
+                .receiveMessage(Mockito.any(ReceiveMessageRequest.class));
+        } finally {
+            queue.close();
+        }
+        Mockito.verify(aws).deleteMessageBatch(
+            Mockito.argThat(
+                Matchers.<DeleteMessageBatchRequest>hasProperty(
+                    "entries", Matchers.hasSize(2)
+                )
+            )
+        );
+    }
+
+    /**
+     * SQSPrefetchQueue can return NONE when nothing is available.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void returnsNoneWhenEmpty() throws Exception {
+        final SQSClient client = Mockito.mock(SQSClient.class);
+        final AmazonSQS aws = Mockito.mock(AmazonSQS.class);
+        Mockito.doReturn(aws).when(client).get();
+        Mockito.doReturn(new ReceiveMessageResult())
+            .when(aws).receiveMessage(Mockito.any(ReceiveMessageRequest.class));
+        final SQSPrefetchQueue queue = new SQSPrefetchQueue(client);
+        try {
+            MatcherAssert.assertThat(
+                queue.pull(1, TimeUnit.SECONDS),
+                Matchers.<Coordinates>equalTo(new Coordinates.None())
+            );
+        } finally {
+            queue.close();
+        }
+        Mockito.verify(aws, Mockito.never())
+            .deleteMessageBatch(Mockito.any(DeleteMessageBatchRequest.class));
+    }
+
+    /**
+     * Make SQS message with the work inside.
+     * @param rule Name of the rule
+     * @return Message
+     */
+    private static Message message(final String rule) {
+        return new Message()
+            .withReceiptHandle(rule)
+            .withBody(
+                SQSQueue.serialize(
+                    new Coordinates.Simple(URN.create("urn:facebook:7"), rule)
+                )
+            );
+    }
+
+}
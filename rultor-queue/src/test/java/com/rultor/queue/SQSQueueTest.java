@@ -30,11 +30,14 @@
 package com.rultor.queue;
 
 import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
 import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
 import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
 import com.amazonaws.services.sqs.model.Message;
 import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
 import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
 import com.amazonaws.services.sqs.model.SendMessageRequest;
 import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.jcabi.aspects.Tv;
@@ -42,6 +45,9 @@ import com.jcabi.urn.URN;
 import com.rultor.aws.SQSClient;
 import com.rultor.spi.Coordinates;
 import com.rultor.tools.Time;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
@@ -123,4 +129,70 @@ public final class SQSQueueTest {
         );
     }
 
+    /**
+     * SQSQueue can push works in batches.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void pushesWorksInBatches() throws Exception {
+        final SQSClient client = Mockito.mock(SQSClient.class);
+        final AmazonSQS aws = Mockito.mock(AmazonSQS.class);
+        Mockito.doReturn(aws).when(client).get();
+        Mockito.doReturn(new GetQueueAttributesResult())
+            .when(aws)
+            .getQueueAttributes(Mockito.any(GetQueueAttributesRequest.class));
+        Mockito.doReturn(new SendMessageBatchResult())
+            .when(aws)
+            .sendMessageBatch(Mockito.any(SendMessageBatchRequest.class));
+        final Collection<Coordinates> works = new ArrayList<Coordinates>(0);
+        for (int idx = 0; idx < Tv.TWENTY + Tv.FIVE; ++idx) {
+            works.add(new Coordinates.Simple());
+        }
+        new SQSQueue(client).pushAll(works);
+        Mockito.verify(aws, Mockito.times(Tv.THREE))
+            .sendMessageBatch(Mockito.any(SendMessageBatchRequest.class));
+    }
+
+    /**
+     * SQSQueue can re-send only failed messages.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void resendsOnlyFailedMessages() throws Exception {
+        final SQSClient client = Mockito.mock(SQSClient.class);
+        final AmazonSQS aws = Mockito.mock(AmazonSQS.class);
+        Mockito.doReturn(aws).when(client).get();
+        Mockito.doReturn(new GetQueueAttributesResult())
+            .when(aws)
+            .getQueueAttributes(Mockito.any(GetQueueAttributesRequest.class));
+        Mockito.doReturn(
+            new SendMessageBatchResult().withFailed(
+                new BatchResultErrorEntry()
+                    .withId("1")
+                    .withSenderFault(false)
+            )
+        ).doReturn(new SendMessageBatchResult())
+            .when(aws)
+            .sendMessageBatch(Mockito.any(SendMessageBatchRequest.class));
+        new SQSQueue(client).pushAll(
+            Arrays.<Coordinates>asList(
+                new Coordinates.Simple(), new Coordinates.Simple()
+            )
+        );
+        Mockito.verify(aws).sendMessageBatch(
+            Mockito.argThat(
+                Matchers.<SendMessageBatchRequest>hasProperty(
+                    "entries", Matchers.hasSize(2)
+                )
+            )
+        );
+        Mockito.verify(aws).sendMessageBatch(
+            Mockito.argThat(
+                Matchers.<SendMessageBatchRequest>hasProperty(
+                    "entries", Matchers.hasSize(1)
+                )
+            )
+        );
+    }
+
 }
@@ -31,6 +31,7 @@ package com.rultor.repo;
 
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
+import com.jcabi.aspects.Tv;
 import com.jcabi.urn.URN;
 import com.rultor.spi.SpecException;
 import com.rultor.spi.Variable;
@@ -45,6 +46,10 @@ import org.antlr.runtime.TokenStream;
 /**
  * Grammar in ANTLR.
  *
+ * <p>Parsed variables are immutable, so they are cached by owner and
+ * spec text and shared by all parsers, including the ones that work
+ * for local and foreign references.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
@@ -56,6 +61,12 @@ import org.antlr.runtime.TokenStream;
 @Loggable(Loggable.DEBUG)
 final class AntlrGrammar implements Grammar {
 
+    /**
+     * Cache of parsed specs, up to ten million characters of text.
+     */
+    private static final SpecCache CACHE =
+        new SpecCache(Tv.TEN * Tv.MILLION);
+
     /**
      * {@inheritDoc}
      * @checkstyle RedundantThrows (10 lines)
@@ -65,6 +76,32 @@ final class AntlrGrammar implements Grammar {
     public Variable<?> parse(
         @NotNull(message = "URN can't be NULL") final URN urn,
         @NotNull(message = "text can't be NULL") final String text)
+        throws SpecException {
+        Variable<?> var = AntlrGrammar.CACHE.get(urn, text);
+        if (var == null) {
+            var = this.compile(urn, text);
+            AntlrGrammar.CACHE.put(urn, text, var);
+        }
+        return var;
+    }
+
+    /**
+     * Cache of parsed specs, shared by all grammars.
+     * @return The cache
+     */
+    static SpecCache cache() {
+        return AntlrGrammar.CACHE;
+    }
+
+    /**
+     * Parse the text with ANTLR.
+     * @param urn Owner of the spec
+     * @param text Text of the spec
+     * @return The variable
+     * @throws SpecException If fails
+     * @checkstyle RedundantThrows (5 lines)
+     */
+    private Variable<?> compile(final URN urn, final String text)
         throws SpecException {
         final CharStream input = new ANTLRStringStream(text);
         final SpecLexer lexer = new SpecLexer(input);
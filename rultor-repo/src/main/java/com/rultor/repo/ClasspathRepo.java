@@ -71,6 +71,22 @@ public final class ClasspathRepo implements Repo {
         );
     }
 
+    /**
+     * Statistics of the cache of parsed specs, shared by all repos.
+     * @return Size, hits, misses and evictions of the cache
+     */
+    public static String specs() {
+        return AntlrGrammar.cache().toString();
+    }
+
+    /**
+     * Forget all parsed specs, in all repos, in order to parse them
+     * again (for benchmarks).
+     */
+    public static void forget() {
+        AntlrGrammar.cache().clear();
+    }
+
     /**
      * {@inheritDoc}
      * @checkstyle RedundantThrows (8 lines)
@@ -31,6 +31,7 @@ package com.rultor.repo;
 
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
+import com.jcabi.aspects.Tv;
 import com.jcabi.immutable.Array;
 import com.rultor.spi.Arguments;
 import com.rultor.spi.Proxy;
@@ -44,6 +45,7 @@ import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import javassist.CannotCompileException;
@@ -81,6 +83,13 @@ final class Composite implements Variable<Object> {
      */
     private static final String FIELD = "__rultor_toString";
 
+    /**
+     * Resolved constructors (or failures to resolve them), by type
+     * name and types of arguments.
+     */
+    private static final ConcurrentMap<String, Composite.Resolved> CTORS =
+        new ConcurrentHashMap<String, Composite.Resolved>(0);
+
     /**
      * Type name.
      */
@@ -185,13 +194,42 @@ final class Composite implements Variable<Object> {
     }
 
     /**
-     * Find the best matching constructor.
+     * Find the best matching constructor, in cache or by resolving it.
      * @param types Types
      * @return The ctor
      * @throws SpecException If can't get it
      * @checkstyle RedundantThrows (5 lines)
      */
     private Constructor<?> ctor(final Class<?>[] types)
+        throws SpecException {
+        final StringBuilder key = new StringBuilder(this.type);
+        for (Class<?> cls : types) {
+            key.append(' ').append(cls.getName());
+        }
+        final String sig = key.toString();
+        Composite.Resolved resolved = Composite.CTORS.get(sig);
+        if (resolved == null) {
+            try {
+                resolved = new Composite.Resolved(this.resolve(types));
+            } catch (SpecException ex) {
+                resolved = new Composite.Resolved(ex);
+            }
+            if (Composite.CTORS.size() > Tv.TEN * Tv.THOUSAND) {
+                Composite.CTORS.clear();
+            }
+            Composite.CTORS.put(sig, resolved);
+        }
+        return resolved.ctor();
+    }
+
+    /**
+     * Find the best matching constructor.
+     * @param types Types
+     * @return The ctor
+     * @throws SpecException If can't get it
+     * @checkstyle RedundantThrows (5 lines)
+     */
+    private Constructor<?> resolve(final Class<?>[] types)
         throws SpecException {
         final Class<?> cls;
         if (this.type.startsWith("java.")) {
@@ -409,4 +447,48 @@ final class Composite implements Variable<Object> {
         }
     }
 
+    /**
+     * Constructor resolved, or the reason why it can't be.
+     */
+    private static final class Resolved {
+        /**
+         * Constructor, if found.
+         */
+        private final transient Constructor<?> found;
+        /**
+         * Failure, if not found.
+         */
+        private final transient SpecException failure;
+        /**
+         * Ctor, for success.
+         * @param ctor Constructor
+         */
+        Resolved(final Constructor<?> ctor) {
+            this.found = ctor;
+            this.failure = null;
+        }
+        /**
+         * Ctor, for failure.
+         * @param exp Exception
+         */
+        Resolved(final SpecException exp) {
+            this.found = null;
+            this.failure = exp;
+        }
+        /**
+         * Get constructor or throw.
+         * @return Constructor
+         * @throws SpecException If it wasn't found
+         * @checkstyle RedundantThrows (4 lines)
+         */
+        public Constructor<?> ctor() throws SpecException {
+            if (this.failure != null) {
+                throw new SpecException(
+                    this.failure.getMessage(), this.failure
+                );
+            }
+            return this.found;
+        }
+    }
+
 }
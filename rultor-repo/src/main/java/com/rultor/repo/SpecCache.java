@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.repo;
+
+import com.jcabi.log.Logger;
+import com.jcabi.urn.URN;
+import com.rultor.spi.Variable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Cache of parsed specs, bounded by the total length of their texts.
+ *
+ * <p>Variables are keyed by owner and normalized spec text (the text
+ * itself is the key, not just its hash code, in order to avoid
+ * collisions). The least recently used ones are evicted first.
+ * The class is thread-safe.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@EqualsAndHashCode(of = "entries")
+final class SpecCache {
+
+    /**
+     * Maximum total length of all cached texts.
+     */
+    private final transient long capacity;
+
+    /**
+     * Cached variables, in access order (guarded by this).
+     */
+    private final transient Map<String, Variable<?>> entries =
+        new LinkedHashMap<String, Variable<?>>(0, 0.75f, true);
+
+    /**
+     * Total length of all cached texts (guarded by this).
+     */
+    private transient long weight;
+
+    /**
+     * How many times the cache had the variable.
+     */
+    private final transient AtomicLong hits = new AtomicLong();
+
+    /**
+     * How many times the cache didn't have the variable.
+     */
+    private final transient AtomicLong misses = new AtomicLong();
+
+    /**
+     * How many variables were evicted.
+     */
+    private final transient AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Public ctor.
+     * @param max Maximum total length of all cached texts
+     */
+    protected SpecCache(final long max) {
+        this.capacity = max;
+    }
+
+    /**
+     * Get cached variable.
+     * @param urn Owner of the spec
+     * @param text Text of the spec
+     * @return Variable or NULL if it is absent
+     */
+    public Variable<?> get(final URN urn, final String text) {
+        final String key = SpecCache.key(urn, text);
+        final Variable<?> var;
+        synchronized (this) {
+            var = this.entries.get(key);
+        }
+        if (var == null) {
+            this.misses.incrementAndGet();
+        } else {
+            this.hits.incrementAndGet();
+        }
+        return var;
+    }
+
+    /**
+     * Save variable in cache, evicting least recently used ones if
+     * necessary.
+     * @param urn Owner of the spec
+     * @param text Text of the spec
+     * @param var The variable parsed from this text
+     */
+    public void put(final URN urn, final String text, final Variable<?> var) {
+        final String key = SpecCache.key(urn, text);
+        if (key.length() > this.capacity) {
+            return;
+        }
+        int evicted = 0;
+        synchronized (this) {
+            if (this.entries.put(key, var) == null) {
+                this.weight += key.length();
+            }
+            final Iterator<String> keys = this.entries.keySet().iterator();
+            while (this.weight > this.capacity) {
+                this.weight -= keys.next().length();
+                keys.remove();
+                ++evicted;
+            }
+        }
+        if (evicted > 0) {
+            this.evictions.addAndGet(evicted);
+            Logger.debug(this, "#put(): %d spec(s) evicted, %s", evicted, this);
+        }
+    }
+
+    /**
+     * Remove all variables, keeping statistics.
+     */
+    public void clear() {
+        synchronized (this) {
+            this.entries.clear();
+            this.weight = 0L;
+        }
+    }
+
+    /**
+     * How many times variables were found in cache.
+     * @return Total hits
+     */
+    public long hits() {
+        return this.hits.get();
+    }
+
+    /**
+     * How many times variables were not found in cache.
+     * @return Total misses
+     */
+    public long misses() {
+        return this.misses.get();
+    }
+
+    /**
+     * How many variables were evicted.
+     * @return Total evictions
+     */
+    public long evictions() {
+        return this.evictions.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        synchronized (this) {
+            return String.format(
+                "%d spec(s), %d chars of %d, hits=%d, misses=%d, evictions=%d",
+                this.entries.size(), this.weight, this.capacity,
+                this.hits.get(), this.misses.get(), this.evictions.get()
+            );
+        }
+    }
+
+    /**
+     * Make a key.
+     * @param urn Owner of the spec
+     * @param text Text of the spec
+     * @return Key
+     */
+    private static String key(final URN urn, final String text) {
+        return new StringBuilder(urn.toString())
+            .append(' ')
+            .append(text.trim())
+            .toString();
+    }
+
+}
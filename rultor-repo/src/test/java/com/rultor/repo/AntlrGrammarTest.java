@@ -68,4 +68,26 @@ public final class AntlrGrammarTest {
         }
     }
 
+    /**
+     * AntlrGrammar can report statistics of its cache.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void reportsCacheStatistics() throws Exception {
+        final Grammar grammar = new AntlrGrammar();
+        final URN urn = new URN("urn:facebook:2");
+        final String text = "java.lang.Integer(55)";
+        final long hits = AntlrGrammar.cache().hits();
+        grammar.parse(urn, text);
+        grammar.parse(urn, text);
+        MatcherAssert.assertThat(
+            AntlrGrammar.cache().hits(),
+            Matchers.greaterThan(hits)
+        );
+        MatcherAssert.assertThat(
+            ClasspathRepo.specs(),
+            Matchers.containsString("hits=")
+        );
+    }
+
 }
@@ -33,6 +33,7 @@ import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Tv;
 import com.rultor.spi.Arguments;
 import com.rultor.spi.Coordinates;
+import com.rultor.spi.SpecException;
 import com.rultor.spi.Users;
 import com.rultor.spi.Variable;
 import com.rultor.spi.Wallet;
@@ -136,6 +137,50 @@ public final class CompositeTest {
         }
     }
 
+    /**
+     * Composite can instantiate the same type many times.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void makesManyInstancesOfOneType() throws Exception {
+        final Arguments args =
+            new Arguments(new Coordinates.None(), new Wallet.Empty());
+        for (int idx = 0; idx < Tv.FIVE; ++idx) {
+            MatcherAssert.assertThat(
+                new Composite(
+                    "java.lang.Long",
+                    Arrays.<Variable<?>>asList(new Constant<Long>((long) idx))
+                ).instantiate(Mockito.mock(Users.class), args),
+                Matchers.<Object>equalTo((long) idx)
+            );
+        }
+    }
+
+    /**
+     * Composite can report absent constructor more than once.
+     * @throws Exception If some problem inside
+     */
+    @Test(expected = SpecException.class)
+    public void reportsAbsentConstructorRepeatedly() throws Exception {
+        final Variable<Object> var = new Composite(
+            "java.lang.Integer",
+            Arrays.<Variable<?>>asList(
+                new Constant<Integer>(1), new Constant<Integer>(2)
+            )
+        );
+        final Arguments args =
+            new Arguments(new Coordinates.None(), new Wallet.Empty());
+        try {
+            var.instantiate(Mockito.mock(Users.class), args);
+        } catch (SpecException ex) {
+            MatcherAssert.assertThat(
+                ex.getMessage(),
+                Matchers.containsString("can't find constructor")
+            );
+        }
+        var.instantiate(Mockito.mock(Users.class), args);
+    }
+
     /**
      * Test class.
      */
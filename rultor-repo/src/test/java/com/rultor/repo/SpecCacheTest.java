@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.repo;
+
+import com.jcabi.urn.URN;
+import com.rultor.spi.Variable;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Test case for {@link SpecCache}.
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ */
+public final class SpecCacheTest {
+
+    /**
+     * SpecCache can cache variables by owner and text.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void cachesVariablesByOwnerAndText() throws Exception {
+        final SpecCache cache = new SpecCache(Long.MAX_VALUE);
+        final URN urn = new URN("urn:facebook:1");
+        final Variable<?> var = Mockito.mock(Variable.class);
+        MatcherAssert.assertThat(cache.get(urn, "a()"), Matchers.nullValue());
+        cache.put(urn, "a()", var);
+        MatcherAssert.assertThat(
+            cache.get(urn, " a()\n"),
+            Matchers.<Variable<?>>sameInstance(var)
+        );
+        MatcherAssert.assertThat(
+            cache.get(new URN("urn:facebook:2"), "a()"),
+            Matchers.nullValue()
+        );
+        MatcherAssert.assertThat(cache.hits(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(cache.misses(), Matchers.equalTo(2L));
+    }
+
+    /**
+     * SpecCache can evict least recently used variables.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        final URN urn = new URN("urn:facebook:1");
+        final int size = SpecCacheTest.weight(urn, "first()");
+        final SpecCache cache = new SpecCache(size * 2);
+        final Variable<?> var = Mockito.mock(Variable.class);
+        cache.put(urn, "first()", var);
+        cache.put(urn, "secnd()", var);
+        cache.get(urn, "first()");
+        cache.put(urn, "third()", var);
+        MatcherAssert.assertThat(
+            cache.get(urn, "first()"), Matchers.notNullValue()
+        );
+        MatcherAssert.assertThat(
+            cache.get(urn, "secnd()"), Matchers.nullValue()
+        );
+        MatcherAssert.assertThat(cache.evictions(), Matchers.equalTo(1L));
+    }
+
+    /**
+     * SpecCache can forget all variables and take new ones.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void clearsAllVariables() throws Exception {
+        final URN urn = new URN("urn:facebook:1");
+        final SpecCache cache =
+            new SpecCache(SpecCacheTest.weight(urn, "one()"));
+        final Variable<?> var = Mockito.mock(Variable.class);
+        cache.put(urn, "one()", var);
+        cache.clear();
+        MatcherAssert.assertThat(cache.get(urn, "one()"), Matchers.nullValue());
+        cache.put(urn, "two()", var);
+        MatcherAssert.assertThat(
+            cache.get(urn, "two()"), Matchers.notNullValue()
+        );
+        MatcherAssert.assertThat(cache.evictions(), Matchers.equalTo(0L));
+    }
+
+    /**
+     * AntlrGrammar can reuse parsed variables.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void sharesParsedVariablesBetweenGrammars() throws Exception {
+        final URN urn = new URN("urn:facebook:7");
+        final String text = "java.lang.String(\"shared spec\")";
+        MatcherAssert.assertThat(
+            new AntlrGrammar().parse(urn, text),
+            Matchers.<Variable<?>>sameInstance(
+                new AntlrGrammar().parse(urn, text)
+            )
+        );
+    }
+
+    /**
+     * Weight of the entry in cache.
+     * @param urn Owner
+     * @param text Text
+     * @return Weight
+     */
+    private static int weight(final URN urn, final String text) {
+        return urn.toString().length() + 1 + text.length();
+    }
+
+}
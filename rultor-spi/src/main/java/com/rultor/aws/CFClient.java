@@ -29,11 +29,13 @@
  */
 package com.rultor.aws;
 
+import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.cloudformation.AmazonCloudFormation;
 import com.amazonaws.services.cloudformation.AmazonCloudFormationClient;
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
+import java.util.Arrays;
 import javax.validation.constraints.NotNull;
 import lombok.EqualsAndHashCode;
 
@@ -91,8 +93,19 @@ public interface CFClient {
          */
         @Override
         public AmazonCloudFormation get() {
-            return new AmazonCloudFormationClient(
-                new BasicAWSCredentials(this.key, this.secret)
+            final AWSCredentials creds =
+                new BasicAWSCredentials(this.key, this.secret);
+            return Registry.SHARED.get(
+                AmazonCloudFormation.class,
+                Arrays.<Object>asList(this.key, this.secret),
+                new Registry.Factory<AmazonCloudFormation>() {
+                    @Override
+                    public AmazonCloudFormation create() {
+                        return new AmazonCloudFormationClient(
+                            creds, Registry.config()
+                        );
+                    }
+                }
             );
         }
     }
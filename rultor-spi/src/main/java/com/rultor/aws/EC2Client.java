@@ -29,12 +29,14 @@
  */
 package com.rultor.aws;
 
+import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.regions.RegionUtils;
 import com.amazonaws.services.ec2.AmazonEC2;
 import com.amazonaws.services.ec2.AmazonEC2Client;
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
+import java.util.Arrays;
 import javax.validation.constraints.NotNull;
 import lombok.EqualsAndHashCode;
 import org.apache.commons.lang3.Validate;
@@ -93,8 +95,17 @@ public interface EC2Client {
          */
         @Override
         public AmazonEC2 get() {
-            return new AmazonEC2Client(
-                new BasicAWSCredentials(this.key, this.secret)
+            final AWSCredentials creds =
+                new BasicAWSCredentials(this.key, this.secret);
+            return Registry.SHARED.get(
+                AmazonEC2.class,
+                Arrays.<Object>asList(this.key, this.secret),
+                new Registry.Factory<AmazonEC2>() {
+                    @Override
+                    public AmazonEC2 create() {
+                        return new AmazonEC2Client(creds, Registry.config());
+                    }
+                }
             );
         }
     }
@@ -0,0 +1,503 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.aws;
+
+import com.amazonaws.ClientConfiguration;
+import com.jcabi.aspects.ScheduleWithFixedDelay;
+import com.jcabi.aspects.Tv;
+import com.jcabi.log.Logger;
+import java.io.Closeable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of AWS clients shared by the entire JVM.
+ *
+ * <p>Every call to {@link #get(Class,List,Registry.Factory)} returns a
+ * lightweight lease of a client, which is created once per key
+ * (service, credentials and region) and is kept alive, together with
+ * its HTTP connection pool, while it's in use. Method {@code shutdown()}
+ * of the lease only releases it; the client itself is shut down when
+ * nobody uses it for {@link #IDLE} milliseconds. Methods
+ * {@code setEndpoint()} and {@code setRegion()} of the lease switch it
+ * to another shared client, configured accordingly, instead of changing
+ * the client shared with others.
+ *
+ * <p>Size of HTTP connection pool of every client is configured by
+ * {@code rultor.aws.connections} system property.
+ *
+ * <p>The class is thread-safe.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+@ScheduleWithFixedDelay(delay = 1, unit = TimeUnit.MINUTES)
+public final class Registry implements Runnable, Closeable {
+
+    /**
+     * Registry shared by all clients.
+     */
+    public static final Registry SHARED = new Registry();
+
+    /**
+     * How long an unused client stays alive, in milliseconds.
+     */
+    private static final long IDLE = TimeUnit.MINUTES.toMillis(Tv.FIVE);
+
+    /**
+     * Clients by their keys, guarded by itself.
+     */
+    private final transient Map<List<Object>, Registry.Entry> entries =
+        new HashMap<List<Object>, Registry.Entry>(0);
+
+    /**
+     * Statistics by services.
+     */
+    private final transient ConcurrentMap<String, Registry.Stats> stats =
+        new ConcurrentHashMap<String, Registry.Stats>(0);
+
+    /**
+     * Factory of clients.
+     * @param <T> Type of client
+     */
+    public interface Factory<T> {
+        /**
+         * Make a new client.
+         * @return Client
+         */
+        T create();
+    }
+
+    /**
+     * Configuration for new clients.
+     * @return Configuration
+     */
+    public static ClientConfiguration config() {
+        final ClientConfiguration config = new ClientConfiguration();
+        config.setMaxConnections(
+            Integer.getInteger(
+                "rultor.aws.connections",
+                ClientConfiguration.DEFAULT_MAX_CONNECTIONS
+            )
+        );
+        return config;
+    }
+
+    /**
+     * Get a lease of the client.
+     * @param type Type of client
+     * @param key Unique key of the client (credentials, etc.)
+     * @param factory Factory of the client, if it's not here yet
+     * @return Client
+     * @param <T> Type of client
+     */
+    public <T> T get(final Class<T> type, final List<Object> key,
+        final Registry.Factory<T> factory) {
+        final List<Object> full = new ArrayList<Object>(key.size() + 1);
+        full.add(type.getName());
+        full.addAll(key);
+        return type.cast(
+            Proxy.newProxyInstance(
+                type.getClassLoader(), new Class<?>[] {type},
+                new Registry.Lease<T>(type, full, factory)
+            )
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        final StringBuilder text = new StringBuilder();
+        synchronized (this.entries) {
+            int leased = 0;
+            for (Registry.Entry entry : this.entries.values()) {
+                leased += entry.refs;
+            }
+            text.append(
+                Logger.format(
+                    "%d client(s), %d lease(s)",
+                    this.entries.size(), leased
+                )
+            );
+        }
+        for (Map.Entry<String, Registry.Stats> entry
+            : this.stats.entrySet()) {
+            text.append('\n').append(entry.getKey()).append(": ")
+                .append(entry.getValue());
+        }
+        return text.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        this.evict(System.currentTimeMillis() - Registry.IDLE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        this.evict(Long.MAX_VALUE);
+    }
+
+    /**
+     * Acquire a client.
+     * @param type Type of client
+     * @param key Key of it
+     * @param factory Factory to make it, if necessary
+     * @return Client
+     */
+    private Object acquire(final Class<?> type, final List<Object> key,
+        final Registry.Factory<?> factory) {
+        synchronized (this.entries) {
+            Registry.Entry entry = this.entries.get(key);
+            if (entry == null) {
+                entry = new Registry.Entry(type, factory.create());
+                this.entries.put(key, entry);
+            }
+            ++entry.refs;
+            return entry.client;
+        }
+    }
+
+    /**
+     * Release a client.
+     * @param key Key of it
+     */
+    private void release(final List<Object> key) {
+        synchronized (this.entries) {
+            final Registry.Entry entry = this.entries.get(key);
+            if (entry != null) {
+                --entry.refs;
+                entry.touched = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Shut down clients which are not used since the given moment.
+     * @param since Moment of time, in milliseconds
+     */
+    private void evict(final long since) {
+        final Collection<Registry.Entry> dead =
+            new LinkedList<Registry.Entry>();
+        synchronized (this.entries) {
+            final Iterator<Registry.Entry> iterator =
+                this.entries.values().iterator();
+            while (iterator.hasNext()) {
+                final Registry.Entry entry = iterator.next();
+                if (entry.refs <= 0 && entry.touched < since) {
+                    iterator.remove();
+                    dead.add(entry);
+                }
+            }
+        }
+        for (Registry.Entry entry : dead) {
+            try {
+                entry.type.getMethod("shutdown").invoke(entry.client);
+            } catch (NoSuchMethodException ex) {
+                throw new IllegalStateException(ex);
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException(ex);
+            } catch (InvocationTargetException ex) {
+                Logger.warn(this, "failed to shut down: %s", ex.getCause());
+            }
+        }
+    }
+
+    /**
+     * Statistics of a service.
+     * @param type Type of client
+     * @return Stats
+     */
+    private Registry.Stats stats(final Class<?> type) {
+        final String name = type.getSimpleName();
+        Registry.Stats sts = this.stats.get(name);
+        if (sts == null) {
+            this.stats.putIfAbsent(name, new Registry.Stats());
+            sts = this.stats.get(name);
+        }
+        return sts;
+    }
+
+    /**
+     * Shared client.
+     */
+    private static final class Entry {
+        /**
+         * Type of client.
+         */
+        private final transient Class<?> type;
+        /**
+         * The client.
+         */
+        private final transient Object client;
+        /**
+         * How many leases use it now.
+         */
+        private transient int refs;
+        /**
+         * When it was released last time.
+         */
+        private transient long touched;
+        /**
+         * Public ctor.
+         * @param tpe Type of client
+         * @param clnt Client
+         */
+        Entry(final Class<?> tpe, final Object clnt) {
+            this.type = tpe;
+            this.client = clnt;
+            this.touched = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Statistics of requests to one service.
+     */
+    private static final class Stats {
+        /**
+         * Total requests.
+         */
+        private final transient AtomicLong requests = new AtomicLong();
+        /**
+         * Failed requests.
+         */
+        private final transient AtomicLong errors = new AtomicLong();
+        /**
+         * Total time, in nanoseconds.
+         */
+        private final transient AtomicLong nanos = new AtomicLong();
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            final long total = this.requests.get();
+            return Logger.format(
+                "%d request(s), %d error(s), %[nano]s in total, %[nano]s avg",
+                total, this.errors.get(), this.nanos.get(),
+                this.nanos.get() / Math.max(total, 1L)
+            );
+        }
+        /**
+         * Record one request.
+         * @param time Time it took, in nanoseconds
+         * @param success TRUE if it was successful
+         */
+        public void record(final long time, final boolean success) {
+            this.requests.incrementAndGet();
+            this.nanos.addAndGet(time);
+            if (!success) {
+                this.errors.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Lease of a shared client.
+     * @param <T> Type of client
+     */
+    private final class Lease<T> implements InvocationHandler {
+        /**
+         * Type of client.
+         */
+        private final transient Class<T> type;
+        /**
+         * Statistics of its service.
+         */
+        private final transient Registry.Stats sts;
+        /**
+         * Released already?
+         */
+        private final transient AtomicBoolean released = new AtomicBoolean();
+        /**
+         * Key of the current client.
+         */
+        private transient List<Object> key;
+        /**
+         * Factory of the current client.
+         */
+        private transient Registry.Factory<T> factory;
+        /**
+         * Current client.
+         */
+        private transient Object client;
+        /**
+         * Public ctor.
+         * @param tpe Type of client
+         * @param label Key of the client
+         * @param fct Factory of the client
+         */
+        Lease(final Class<T> tpe, final List<Object> label,
+            final Registry.Factory<T> fct) {
+            this.type = tpe;
+            this.sts = Registry.this.stats(tpe);
+            this.key = label;
+            this.factory = fct;
+            this.client = Registry.this.acquire(tpe, label, fct);
+        }
+        /**
+         * {@inheritDoc}
+         * @checkstyle IllegalThrows (4 lines)
+         */
+        @Override
+        @SuppressWarnings("PMD.AvoidCatchingGenericException")
+        public Object invoke(final Object proxy, final Method method,
+            final Object[] args) throws Throwable {
+            final String name = method.getName();
+            final Object result;
+            if (method.getDeclaringClass().equals(Object.class)) {
+                result = this.object(proxy, method, args);
+            } else if ("shutdown".equals(name)) {
+                if (this.released.compareAndSet(false, true)) {
+                    Registry.this.release(this.current());
+                }
+                result = null;
+            } else if ("setEndpoint".equals(name)
+                || "setRegion".equals(name)) {
+                this.rebind(method, args);
+                result = null;
+            } else {
+                final long start = System.nanoTime();
+                boolean success = false;
+                try {
+                    result = method.invoke(this.target(), args);
+                    success = true;
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                } finally {
+                    this.sts.record(System.nanoTime() - start, success);
+                }
+            }
+            return result;
+        }
+        /**
+         * Call method of Object.
+         * @param proxy The proxy
+         * @param method The method
+         * @param args Arguments
+         * @return Result
+         */
+        private Object object(final Object proxy, final Method method,
+            final Object[] args) {
+            final Object result;
+            if ("equals".equals(method.getName())) {
+                result = proxy == args[0];
+            } else if ("hashCode".equals(method.getName())) {
+                result = System.identityHashCode(proxy);
+            } else {
+                result = String.format(
+                    "shared %s", this.type.getSimpleName()
+                );
+            }
+            return result;
+        }
+        /**
+         * Switch to the client configured by this setter.
+         * @param method The setter
+         * @param args Its arguments
+         */
+        private void rebind(final Method method, final Object[] args) {
+            synchronized (this) {
+                final List<Object> label = new ArrayList<Object>(this.key);
+                label.add(method.getName());
+                for (Object arg : args) {
+                    label.add(String.valueOf(arg));
+                }
+                final Registry.Factory<T> origin = this.factory;
+                final Registry.Factory<T> fct = new Registry.Factory<T>() {
+                    @Override
+                    public T create() {
+                        final T clnt = origin.create();
+                        try {
+                            method.invoke(clnt, args);
+                        } catch (IllegalAccessException ex) {
+                            throw new IllegalStateException(ex);
+                        } catch (InvocationTargetException ex) {
+                            throw new IllegalArgumentException(ex.getCause());
+                        }
+                        return clnt;
+                    }
+                };
+                final Object clnt =
+                    Registry.this.acquire(this.type, label, fct);
+                if (!this.released.get()) {
+                    Registry.this.release(this.key);
+                }
+                this.released.set(false);
+                this.key = label;
+                this.factory = fct;
+                this.client = clnt;
+            }
+        }
+        /**
+         * Current key.
+         * @return Key
+         */
+        private List<Object> current() {
+            synchronized (this) {
+                return this.key;
+            }
+        }
+        /**
+         * Current client.
+         * @return Client
+         */
+        private Object target() {
+            synchronized (this) {
+                return this.client;
+            }
+        }
+    }
+
+}
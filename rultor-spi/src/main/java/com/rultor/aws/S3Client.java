@@ -29,11 +29,13 @@
  */
 package com.rultor.aws;
 
+import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
+import java.util.Arrays;
 import javax.validation.constraints.NotNull;
 import lombok.EqualsAndHashCode;
 
@@ -104,8 +106,17 @@ public interface S3Client {
          */
         @Override
         public AmazonS3 get() {
-            return new AmazonS3Client(
-                new BasicAWSCredentials(this.key, this.secret)
+            final AWSCredentials creds =
+                new BasicAWSCredentials(this.key, this.secret);
+            return Registry.SHARED.get(
+                AmazonS3.class,
+                Arrays.<Object>asList(this.key, this.secret),
+                new Registry.Factory<AmazonS3>() {
+                    @Override
+                    public AmazonS3 create() {
+                        return new AmazonS3Client(creds, Registry.config());
+                    }
+                }
             );
         }
         /**
@@ -29,11 +29,13 @@
  */
 package com.rultor.aws;
 
+import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.simpledb.AmazonSimpleDB;
 import com.amazonaws.services.simpledb.AmazonSimpleDBClient;
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
+import java.util.Arrays;
 import javax.validation.constraints.NotNull;
 import lombok.EqualsAndHashCode;
 
@@ -105,8 +107,19 @@ public interface SDBClient {
          */
         @Override
         public AmazonSimpleDB get() {
-            return new AmazonSimpleDBClient(
-                new BasicAWSCredentials(this.key, this.secret)
+            final AWSCredentials creds =
+                new BasicAWSCredentials(this.key, this.secret);
+            return Registry.SHARED.get(
+                AmazonSimpleDB.class,
+                Arrays.<Object>asList(this.key, this.secret),
+                new Registry.Factory<AmazonSimpleDB>() {
+                    @Override
+                    public AmazonSimpleDB create() {
+                        return new AmazonSimpleDBClient(
+                            creds, Registry.config()
+                        );
+                    }
+                }
             );
         }
         /**
@@ -29,11 +29,13 @@
  */
 package com.rultor.aws;
 
+import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailService;
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClient;
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
+import java.util.Arrays;
 import javax.validation.constraints.NotNull;
 import lombok.EqualsAndHashCode;
 
@@ -91,8 +93,19 @@ public interface SESClient {
          */
         @Override
         public AmazonSimpleEmailService get() {
-            return new AmazonSimpleEmailServiceClient(
-                new BasicAWSCredentials(this.key, this.secret)
+            final AWSCredentials creds =
+                new BasicAWSCredentials(this.key, this.secret);
+            return Registry.SHARED.get(
+                AmazonSimpleEmailService.class,
+                Arrays.<Object>asList(this.key, this.secret),
+                new Registry.Factory<AmazonSimpleEmailService>() {
+                    @Override
+                    public AmazonSimpleEmailService create() {
+                        return new AmazonSimpleEmailServiceClient(
+                            creds, Registry.config()
+                        );
+                    }
+                }
             );
         }
     }
@@ -29,11 +29,13 @@
  */
 package com.rultor.aws;
 
+import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.sns.AmazonSNS;
 import com.amazonaws.services.sns.AmazonSNSClient;
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
+import java.util.Arrays;
 import javax.validation.constraints.NotNull;
 import lombok.EqualsAndHashCode;
 
@@ -91,8 +93,17 @@ public interface SNSClient {
          */
         @Override
         public AmazonSNS get() {
-            return new AmazonSNSClient(
-                new BasicAWSCredentials(this.key, this.secret)
+            final AWSCredentials creds =
+                new BasicAWSCredentials(this.key, this.secret);
+            return Registry.SHARED.get(
+                AmazonSNS.class,
+                Arrays.<Object>asList(this.key, this.secret),
+                new Registry.Factory<AmazonSNS>() {
+                    @Override
+                    public AmazonSNS create() {
+                        return new AmazonSNSClient(creds, Registry.config());
+                    }
+                }
             );
         }
     }
@@ -29,11 +29,13 @@
  */
 package com.rultor.aws;
 
+import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.AmazonSQSClient;
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
+import java.util.Arrays;
 import javax.validation.constraints.NotNull;
 import lombok.EqualsAndHashCode;
 
@@ -104,8 +106,17 @@ public interface SQSClient {
          */
         @Override
         public AmazonSQS get() {
-            return new AmazonSQSClient(
-                new BasicAWSCredentials(this.key, this.secret)
+            final AWSCredentials creds =
+                new BasicAWSCredentials(this.key, this.secret);
+            return Registry.SHARED.get(
+                AmazonSQS.class,
+                Arrays.<Object>asList(this.key, this.secret),
+                new Registry.Factory<AmazonSQS>() {
+                    @Override
+                    public AmazonSQS create() {
+                        return new AmazonSQSClient(creds, Registry.config());
+                    }
+                }
             );
         }
         /**
@@ -148,7 +159,16 @@ public interface SQSClient {
          */
         @Override
         public AmazonSQS get() {
-            return new AmazonSQSClient();
+            return Registry.SHARED.get(
+                AmazonSQS.class,
+                Arrays.<Object>asList("assumed"),
+                new Registry.Factory<AmazonSQS>() {
+                    @Override
+                    public AmazonSQS create() {
+                        return new AmazonSQSClient(Registry.config());
+                    }
+                }
+            );
         }
         /**
          * {@inheritDoc}
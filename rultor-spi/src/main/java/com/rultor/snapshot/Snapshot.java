@@ -34,16 +34,13 @@ import com.jcabi.aspects.Loggable;
 import com.jcabi.immutable.Array;
 import com.rexsl.test.SimpleXml;
 import com.rexsl.test.XmlDocument;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.dom.DOMSource;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
-import org.apache.commons.lang3.CharEncoding;
 import org.w3c.dom.Document;
 import org.xembly.Directive;
 import org.xembly.Directives;
@@ -162,33 +159,17 @@ public final class Snapshot {
     }
 
     /**
-     * Fetch script from the stream.
+     * Fetch directives from the stream.
      * @param stream Input stream where to find details
-     * @return The script
+     * @return The directives
      * @throws IOException If IO problem inside
      * @throws XemblySyntaxException If broken syntax
      * @checkstyle ThrowsCount (5 lines)
      * @checkstyle RedundantThrows (4 lines)
      */
-    private static String fetch(final InputStream stream)
+    private static Directives fetch(final InputStream stream)
         throws IOException, XemblySyntaxException {
-        final BufferedReader reader = new BufferedReader(
-            new InputStreamReader(stream, CharEncoding.UTF_8)
-        );
-        final StringBuilder buf = new StringBuilder();
-        while (true) {
-            final String line = reader.readLine();
-            if (line == null) {
-                break;
-            }
-            if (XemblyLine.existsIn(line)) {
-                buf.append(XemblyLine.parse(line).xembly());
-            }
-        }
-        if (buf.length() == 0) {
-            buf.append("XPATH '/snapshot';");
-        }
-        return buf.toString();
+        return new SnapshotStream().consume(stream).directives();
     }
 
 }
@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.snapshot;
+
+import com.jcabi.aspects.Tv;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Collection;
+import java.util.LinkedList;
+import lombok.EqualsAndHashCode;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.CharEncoding;
+import org.xembly.Directive;
+import org.xembly.Directives;
+import org.xembly.XemblySyntaxException;
+
+/**
+ * Output stream that collects a snapshot from log lines written to it.
+ *
+ * <p>Lines are recognized on the fly and only Xembly directives of
+ * {@link XemblyLine}s are kept, the rest of the output is thrown away,
+ * so memory consumption doesn't depend on the size of the log. Only
+ * the first {@link #PREFIX} bytes of a line are checked for
+ * {@link XemblyLine#MARK}; longer lines without it are skipped without
+ * buffering. The class is thread-safe.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@EqualsAndHashCode(callSuper = false, of = "dirs")
+public final class SnapshotStream extends OutputStream {
+
+    /**
+     * How many bytes of a line to check for the mark.
+     */
+    public static final int PREFIX = Tv.FOUR * Tv.THOUSAND;
+
+    /**
+     * Bytes of the current line (guarded by this).
+     */
+    private final transient ByteArrayOutputStream line =
+        new ByteArrayOutputStream();
+
+    /**
+     * Directives found so far (guarded by this).
+     */
+    private final transient Collection<Directive> dirs =
+        new LinkedList<Directive>();
+
+    /**
+     * The current line has no mark, skip it till its end.
+     */
+    private transient boolean skip;
+
+    /**
+     * The current line has the mark, keep it whole.
+     */
+    private transient boolean marked;
+
+    /**
+     * First syntax error found, if any.
+     */
+    private transient XemblySyntaxException error;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final int data) {
+        this.write(new byte[] {(byte) data}, 0, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final byte[] data, final int off, final int len) {
+        synchronized (this) {
+            int start = off;
+            final int end = off + len;
+            for (int pos = off; pos < end; ++pos) {
+                if (data[pos] == '\n') {
+                    this.append(data, start, pos - start);
+                    this.eol();
+                    start = pos + 1;
+                }
+            }
+            this.append(data, start, end - start);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            this.eol();
+        }
+    }
+
+    /**
+     * Read the entire stream into it.
+     * @param stream Stream to read
+     * @return This object
+     * @throws IOException If fails to read
+     */
+    public SnapshotStream consume(final InputStream stream)
+        throws IOException {
+        IOUtils.copy(stream, this);
+        this.close();
+        return this;
+    }
+
+    /**
+     * All directives found so far.
+     * @return Directives
+     * @throws XemblySyntaxException If some of them were broken
+     * @checkstyle RedundantThrows (4 lines)
+     */
+    public Directives directives() throws XemblySyntaxException {
+        synchronized (this) {
+            if (this.error != null) {
+                throw this.error;
+            }
+            final Directives result;
+            if (this.dirs.isEmpty()) {
+                result = new Directives().xpath("/snapshot");
+            } else {
+                result = new Directives(this.dirs);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Snapshot of all directives found so far.
+     * @return Snapshot
+     * @throws XemblySyntaxException If some of directives were broken
+     * @checkstyle RedundantThrows (4 lines)
+     */
+    public Snapshot snapshot() throws XemblySyntaxException {
+        return new Snapshot(this.directives());
+    }
+
+    /**
+     * Append bytes to the current line, unless it is skipped.
+     * @param data Bytes
+     * @param off Offset
+     * @param len Length
+     */
+    private void append(final byte[] data, final int off, final int len) {
+        if (this.skip || len == 0) {
+            return;
+        }
+        this.line.write(data, off, len);
+        if (!this.marked && this.line.size() >= SnapshotStream.PREFIX) {
+            if (this.text().contains(XemblyLine.MARK)) {
+                this.marked = true;
+            } else {
+                this.skip = true;
+                this.line.reset();
+            }
+        }
+    }
+
+    /**
+     * End of line found.
+     */
+    private void eol() {
+        if (this.line.size() > 0) {
+            final String text = this.text().replaceAll("\r$", "");
+            if (XemblyLine.existsIn(text)) {
+                try {
+                    this.dirs.addAll(XemblyLine.parse(text).directives());
+                } catch (XemblySyntaxException ex) {
+                    if (this.error == null) {
+                        this.error = ex;
+                    }
+                }
+            }
+        }
+        this.line.reset();
+        this.skip = false;
+        this.marked = false;
+    }
+
+    /**
+     * Text of the current line.
+     * @return Text
+     */
+    private String text() {
+        try {
+            return this.line.toString(CharEncoding.UTF_8);
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.snapshot;
+
+import com.jcabi.log.Logger;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Cache of compiled XSL stylesheets, loaded from classpath resources.
+ *
+ * <p>Compiled {@link Templates} are thread-safe and are kept forever,
+ * keyed by the URL of the resource (there are just a few of them, all
+ * bundled with the application). Stylesheets are loaded with their
+ * URLs as system IDs, so relative includes work. The class is
+ * thread-safe.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@EqualsAndHashCode(of = "templates")
+public final class Stylesheets {
+
+    /**
+     * Factory.
+     */
+    private static final TransformerFactory FACTORY =
+        TransformerFactory.newInstance();
+
+    /**
+     * Compiled templates by URLs of resources.
+     */
+    private final transient ConcurrentMap<String, Templates> templates =
+        new ConcurrentHashMap<String, Templates>(0);
+
+    /**
+     * How many times templates were found in cache.
+     */
+    private final transient AtomicLong hits = new AtomicLong();
+
+    /**
+     * How many times templates were compiled.
+     */
+    private final transient AtomicLong misses = new AtomicLong();
+
+    /**
+     * Total time spent in compilation, in nanoseconds.
+     */
+    private final transient AtomicLong nanos = new AtomicLong();
+
+    /**
+     * Get compiled templates of a resource, compiling them if necessary.
+     * @param type Class to load the resource with
+     * @param name Name of the resource, relative to the class
+     * @return Templates
+     * @throws TransformerConfigurationException If can't compile
+     */
+    public Templates get(final Class<?> type, final String name)
+        throws TransformerConfigurationException {
+        final URL url = type.getResource(name);
+        if (url == null) {
+            throw new IllegalArgumentException(
+                String.format("XSL resource '%s' not found near %s", name, type)
+            );
+        }
+        final String key = url.toString();
+        Templates tpl = this.templates.get(key);
+        if (tpl == null) {
+            synchronized (this.templates) {
+                tpl = this.templates.get(key);
+                if (tpl == null) {
+                    tpl = this.compile(key);
+                    this.templates.put(key, tpl);
+                }
+            }
+        } else {
+            this.hits.incrementAndGet();
+        }
+        return tpl;
+    }
+
+    /**
+     * Compile all these resources in advance.
+     * @param type Class to load resources with
+     * @param names Names of the resources, relative to the class
+     * @throws TransformerConfigurationException If can't compile
+     */
+    public void warm(final Class<?> type, final String... names)
+        throws TransformerConfigurationException {
+        for (String name : names) {
+            this.get(type, name);
+        }
+        Logger.info(this, "#warm(): %s", this);
+    }
+
+    /**
+     * How many times templates were found in cache.
+     * @return Total hits
+     */
+    public long hits() {
+        return this.hits.get();
+    }
+
+    /**
+     * How many times templates were compiled.
+     * @return Total misses
+     */
+    public long misses() {
+        return this.misses.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return Logger.format(
+            "%d stylesheet(s), hits=%d, misses=%d, compiled in %[ms]s",
+            this.templates.size(), this.hits.get(), this.misses.get(),
+            TimeUnit.NANOSECONDS.toMillis(this.nanos.get())
+        );
+    }
+
+    /**
+     * Compile the stylesheet.
+     * @param url URL of it
+     * @return Templates
+     * @throws TransformerConfigurationException If can't compile
+     */
+    private Templates compile(final String url)
+        throws TransformerConfigurationException {
+        final long start = System.nanoTime();
+        final Templates tpl;
+        synchronized (Stylesheets.FACTORY) {
+            tpl = Stylesheets.FACTORY.newTemplates(new StreamSource(url));
+        }
+        final long time = System.nanoTime() - start;
+        this.nanos.addAndGet(time);
+        this.misses.incrementAndGet();
+        Logger.debug(
+            this, "#compile('%s'): compiled in %[nano]s", url, time
+        );
+        return tpl;
+    }
+
+}
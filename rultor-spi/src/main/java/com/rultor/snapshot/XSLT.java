@@ -34,11 +34,14 @@ import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.util.Properties;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMResult;
@@ -62,6 +65,11 @@ import org.xembly.ImpossibleModificationException;
 @Loggable(Loggable.DEBUG)
 public final class XSLT {
 
+    /**
+     * Compiled stylesheets from classpath resources, shared by all.
+     */
+    public static final Stylesheets STYLESHEETS = new Stylesheets();
+
     /**
      * Factory.
      */
@@ -82,7 +90,7 @@ public final class XSLT {
     /**
      * XSL.
      */
-    private final transient Source xsl;
+    private final transient Templates xsl;
 
     /**
      * Ctor.
@@ -108,6 +116,33 @@ public final class XSLT {
         this(new DOMSource(snapshot.dom()), new StreamSource(stream));
     }
 
+    /**
+     * Ctor, with a stylesheet from {@link #STYLESHEETS}.
+     * @param snapshot Snapshot
+     * @param type Class to load the stylesheet with
+     * @param name Name of the stylesheet resource, relative to the class
+     * @throws ImpossibleModificationException If can't build
+     * @throws TransformerConfigurationException If can't compile XSL
+     * @checkstyle RedundantThrows (5 lines)
+     */
+    public XSLT(final Snapshot snapshot, final Class<?> type,
+        final String name) throws ImpossibleModificationException,
+        TransformerConfigurationException {
+        this(new DOMSource(snapshot.dom()), XSLT.STYLESHEETS.get(type, name));
+    }
+
+    /**
+     * Ctor, with a stylesheet from {@link #STYLESHEETS}.
+     * @param dom DOM source
+     * @param type Class to load the stylesheet with
+     * @param name Name of the stylesheet resource, relative to the class
+     * @throws TransformerConfigurationException If can't compile XSL
+     */
+    public XSLT(final Node dom, final Class<?> type, final String name)
+        throws TransformerConfigurationException {
+        this(new DOMSource(dom), XSLT.STYLESHEETS.get(type, name));
+    }
+
     /**
      * Ctor.
      * @param dom DOM source
@@ -124,8 +159,17 @@ public final class XSLT {
      * @param style Stylesheet
      */
     public XSLT(final Source src, final Source style) {
+        this(src, new XSLT.Uncompiled(style));
+    }
+
+    /**
+     * Ctor.
+     * @param src Source
+     * @param tpl Compiled stylesheet
+     */
+    public XSLT(final Source src, final Templates tpl) {
         this.source = src;
-        this.xsl = style;
+        this.xsl = tpl;
     }
 
     /**
@@ -134,7 +178,7 @@ public final class XSLT {
      * @throws TransformerException If fails
      */
     public Document dom() throws TransformerException {
-        final Transformer trans = XSLT.FACTORY.newTransformer(this.xsl);
+        final Transformer trans = this.xsl.newTransformer();
         final Document dom;
         try {
             dom = XSLT.DFACTORY.newDocumentBuilder().newDocument();
@@ -151,7 +195,10 @@ public final class XSLT {
      * @throws TransformerException If fails
      */
     public String xml() throws TransformerException {
-        final Transformer trans = XSLT.FACTORY.newTransformer();
+        final Transformer trans;
+        synchronized (XSLT.FACTORY) {
+            trans = XSLT.FACTORY.newTransformer();
+        }
         trans.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
         trans.setOutputProperty(OutputKeys.METHOD, "xml");
         trans.setOutputProperty(OutputKeys.ENCODING, CharEncoding.UTF_8);
@@ -169,4 +216,41 @@ public final class XSLT {
         }
     }
 
+    /**
+     * Stylesheet compiled on every use.
+     */
+    private static final class Uncompiled implements Templates {
+        /**
+         * XSL.
+         */
+        private final transient Source xsl;
+        /**
+         * Ctor.
+         * @param style Stylesheet
+         */
+        Uncompiled(final Source style) {
+            this.xsl = style;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Transformer newTransformer()
+            throws TransformerConfigurationException {
+            synchronized (XSLT.FACTORY) {
+                return XSLT.FACTORY.newTransformer(this.xsl);
+            }
+        }
+        /**
+         * {@inheritDoc}
+         *
+         * <p>The stylesheet is not compiled yet (and its source may be
+         * readable only once), so no output properties are known.
+         */
+        @Override
+        public Properties getOutputProperties() {
+            return new Properties();
+        }
+    }
+
 }
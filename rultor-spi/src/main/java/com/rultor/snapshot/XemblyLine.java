@@ -95,6 +95,14 @@ public final class XemblyLine {
             .append(';').toString();
     }
 
+    /**
+     * Get Xembly directives.
+     * @return Directives
+     */
+    public Collection<Directive> directives() {
+        return this.directives;
+    }
+
     /**
      * Does it look like xembly line.
      * @param line Line to check
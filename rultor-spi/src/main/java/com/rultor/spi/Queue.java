@@ -31,6 +31,7 @@ package com.rultor.spi;
 
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
+import java.util.Collection;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -54,6 +55,13 @@ public interface Queue {
      */
     void push(@NotNull(message = "work can't be NULL") Coordinates work);
 
+    /**
+     * Push a number of works into it, in bulk.
+     * @param works The works to do
+     */
+    void pushAll(@NotNull(message = "works can't be NULL")
+        Collection<Coordinates> works);
+
     /**
      * Pull the next available work (waits until it is available).
      * @param limit How many time rules to wait for, maximum
@@ -89,6 +97,14 @@ public interface Queue {
          * {@inheritDoc}
          */
         @Override
+        public void pushAll(@NotNull(message = "works can't be NULL")
+            final Collection<Coordinates> works) {
+            this.list.addAll(works);
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
         @NotNull
         @Loggable(value = Loggable.DEBUG, limit = Integer.MAX_VALUE)
         public Coordinates pull(final int limit,
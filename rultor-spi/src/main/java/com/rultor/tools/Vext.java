@@ -31,20 +31,35 @@ package com.rultor.tools;
 
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
+import com.jcabi.aspects.Tv;
 import com.jcabi.log.Logger;
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.validation.constraints.NotNull;
 import lombok.EqualsAndHashCode;
-import org.apache.commons.lang3.Validate;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
-import org.apache.velocity.context.Context;
 import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.parser.ParseException;
 
 /**
  * Velocity text.
  *
+ * <p>All instances share one Velocity runtime, initialized once, and
+ * a cache of parsed templates, keyed by their texts. Parsed templates
+ * are thread-safe and are rendered without any engine bootstrap.
+ *
+ * <p>Every template is named by a digest of its text, so that its inline
+ * macros live in a namespace of the runtime that a reparse of the same
+ * text replaces. When the cache is full, namespaces of all evicted
+ * templates are dumped from the runtime together with them.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
@@ -54,6 +69,22 @@ import org.apache.velocity.runtime.RuntimeConstants;
 @Loggable(Loggable.DEBUG)
 public final class Vext {
 
+    /**
+     * Maximum number of parsed templates to keep.
+     */
+    private static final int MAX = Tv.THOUSAND;
+
+    /**
+     * Velocity runtime shared by all templates.
+     */
+    private static final RuntimeInstance ENGINE = Vext.engine();
+
+    /**
+     * Parsed templates, by their texts.
+     */
+    private static final ConcurrentMap<String, Template> TEMPLATES =
+        new ConcurrentHashMap<String, Template>(0);
+
     /**
      * Template encapsulated.
      */
@@ -90,12 +121,76 @@ public final class Vext {
      */
     public String print(@NotNull(message = "args can't be NULL")
         final Map<String, Object> args) {
-        final StringWriter writer = new StringWriter();
-        final Context context = new VelocityContext();
-        for (Map.Entry<String, Object> entry : args.entrySet()) {
-            context.put(entry.getKey(), entry.getValue());
+        final StringWriter writer = new StringWriter(this.template.length());
+        Vext.parsed(this.template).merge(
+            new VelocityContext(new HashMap<String, Object>(args)), writer
+        );
+        return writer.toString();
+    }
+
+    /**
+     * Get parsed template from cache or parse it.
+     * @param text Template text
+     * @return Parsed template
+     */
+    private static Template parsed(final String text) {
+        Template tpl = Vext.TEMPLATES.get(text);
+        if (tpl == null) {
+            synchronized (Vext.ENGINE) {
+                tpl = Vext.TEMPLATES.get(text);
+                if (tpl == null) {
+                    if (Vext.TEMPLATES.size() >= Vext.MAX) {
+                        Vext.evict();
+                    }
+                    tpl = Vext.parse(text);
+                    Vext.TEMPLATES.put(text, tpl);
+                }
+            }
+        }
+        return tpl;
+    }
+
+    /**
+     * Remove all parsed templates and their macro namespaces.
+     */
+    private static void evict() {
+        for (Template tpl : Vext.TEMPLATES.values()) {
+            Vext.ENGINE.dumpVMNamespace(tpl.getName());
+        }
+        Vext.TEMPLATES.clear();
+    }
+
+    /**
+     * Parse template text.
+     * @param text Template text
+     * @return Parsed template
+     */
+    private static Template parse(final String text) {
+        final String name = String.format(
+            "%s-%s", Vext.class.getName(), DigestUtils.md5Hex(text)
+        );
+        final Template tpl = new Template();
+        tpl.setRuntimeServices(Vext.ENGINE);
+        tpl.setName(name);
+        try {
+            tpl.setData(Vext.ENGINE.parse(new StringReader(text), name));
+        } catch (ParseException ex) {
+            throw new IllegalArgumentException("failed to compile VTL", ex);
         }
-        final VelocityEngine engine = new VelocityEngine();
+        tpl.initDocument();
+        return tpl;
+    }
+
+    /**
+     * Make and initialize Velocity runtime.
+     *
+     * <p>Inline macros are local to their templates, as they were
+     * when every template had an engine of its own.
+     *
+     * @return Runtime
+     */
+    private static RuntimeInstance engine() {
+        final RuntimeInstance engine = new RuntimeInstance();
         engine.setProperty(
             RuntimeConstants.RUNTIME_LOG_LOGSYSTEM_CLASS,
             "org.apache.velocity.runtime.log.Log4JLogChute"
@@ -104,13 +199,11 @@ public final class Vext {
             "runtime.log.logsystem.log4j.logger",
             "org.apache.velocity"
         );
-        engine.init();
-        final boolean success = engine.evaluate(
-            context, writer,
-            this.getClass().getName(), this.template
+        engine.setProperty(
+            RuntimeConstants.VM_PERM_INLINE_LOCAL, Boolean.TRUE.toString()
         );
-        Validate.isTrue(success, "failed to compile VTL");
-        return writer.toString();
+        engine.init();
+        return engine;
     }
 
 }
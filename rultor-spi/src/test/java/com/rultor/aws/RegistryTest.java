@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.aws;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Test case for {@link Registry}.
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ */
+public final class RegistryTest {
+
+    /**
+     * Registry can share one client between leases.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void sharesClientBetweenLeases() throws Exception {
+        final Registry registry = new Registry();
+        final RegistryTest.Counting factory = new RegistryTest.Counting();
+        final RegistryTest.Service first = registry.get(
+            RegistryTest.Service.class, Arrays.<Object>asList("a"), factory
+        );
+        final RegistryTest.Service second = registry.get(
+            RegistryTest.Service.class, Arrays.<Object>asList("a"), factory
+        );
+        MatcherAssert.assertThat(first.endpoint(), Matchers.equalTo("none"));
+        first.shutdown();
+        first.shutdown();
+        MatcherAssert.assertThat(second.endpoint(), Matchers.equalTo("none"));
+        second.shutdown();
+        MatcherAssert.assertThat(factory.total(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(
+            registry,
+            Matchers.hasToString(
+                Matchers.containsString("Service: 2 request(s), 0 error(s)")
+            )
+        );
+        registry.close();
+        MatcherAssert.assertThat(factory.down(), Matchers.equalTo(1));
+    }
+
+    /**
+     * Registry can switch a lease to another client, instead of
+     * configuring the shared one.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void switchesLeaseOnSetter() throws Exception {
+        final Registry registry = new Registry();
+        final RegistryTest.Counting factory = new RegistryTest.Counting();
+        final RegistryTest.Service plain = registry.get(
+            RegistryTest.Service.class, Arrays.<Object>asList("b"), factory
+        );
+        final RegistryTest.Service custom = registry.get(
+            RegistryTest.Service.class, Arrays.<Object>asList("b"), factory
+        );
+        custom.setEndpoint("example.com");
+        MatcherAssert.assertThat(
+            custom.endpoint(), Matchers.equalTo("example.com")
+        );
+        MatcherAssert.assertThat(plain.endpoint(), Matchers.equalTo("none"));
+        MatcherAssert.assertThat(factory.total(), Matchers.equalTo(2));
+        plain.shutdown();
+        custom.shutdown();
+        registry.close();
+        MatcherAssert.assertThat(factory.down(), Matchers.equalTo(2));
+    }
+
+    /**
+     * Service.
+     */
+    public interface Service {
+        /**
+         * Set endpoint.
+         * @param url URL of it
+         */
+        void setEndpoint(String url);
+        /**
+         * Get endpoint.
+         * @return URL of it
+         */
+        String endpoint();
+        /**
+         * Shut it down.
+         */
+        void shutdown();
+    }
+
+    /**
+     * Factory that counts clients.
+     */
+    private static final class Counting
+        implements Registry.Factory<RegistryTest.Service> {
+        /**
+         * Clients created.
+         */
+        private final transient AtomicInteger created = new AtomicInteger();
+        /**
+         * Clients shut down.
+         */
+        private final transient AtomicInteger closed = new AtomicInteger();
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public RegistryTest.Service create() {
+            this.created.incrementAndGet();
+            final AtomicInteger counter = this.closed;
+            return new RegistryTest.Service() {
+                private transient String url = "none";
+                @Override
+                public void setEndpoint(final String addr) {
+                    this.url = addr;
+                }
+                @Override
+                public String endpoint() {
+                    return this.url;
+                }
+                @Override
+                public void shutdown() {
+                    counter.incrementAndGet();
+                }
+            };
+        }
+        /**
+         * How many were created.
+         * @return Total
+         */
+        public int total() {
+            return this.created.get();
+        }
+        /**
+         * How many were shut down.
+         * @return Total
+         */
+        public int down() {
+            return this.closed.get();
+        }
+    }
+
+}
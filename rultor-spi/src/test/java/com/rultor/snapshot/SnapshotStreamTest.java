@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.snapshot;
+
+import com.rexsl.test.XhtmlMatchers;
+import org.apache.commons.io.Charsets;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.hamcrest.MatcherAssert;
+import org.junit.Test;
+import org.xembly.Directives;
+import org.xembly.XemblySyntaxException;
+
+/**
+ * Test case for {@link SnapshotStream}.
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ */
+public final class SnapshotStreamTest {
+
+    /**
+     * SnapshotStream can collect directives written in pieces.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void collectsDirectivesWrittenInPieces() throws Exception {
+        final String text = new StringBuilder()
+            .append("first line\r\n")
+            .append(
+                new XemblyLine(
+                    new Directives().xpath("/snapshot").add("alpha").set("1")
+                ).toString()
+            )
+            .append("\r\nsecond line\n")
+            .append(
+                new XemblyLine(
+                    new Directives().xpath("/snapshot").add("beta").set("\u20ac")
+                ).toString()
+            )
+            .toString();
+        final byte[] bytes = text.getBytes(Charsets.UTF_8);
+        final SnapshotStream stream = new SnapshotStream();
+        for (int pos = 0; pos < bytes.length; pos += 2) {
+            stream.write(bytes, pos, Math.min(2, bytes.length - pos));
+        }
+        stream.close();
+        MatcherAssert.assertThat(
+            stream.snapshot().xml().toString(),
+            XhtmlMatchers.hasXPaths(
+                "/snapshot/alpha[.='1']",
+                "/snapshot/beta[.='\u20ac']"
+            )
+        );
+    }
+
+    /**
+     * SnapshotStream can skip long lines without marks.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void skipsLongLines() throws Exception {
+        final SnapshotStream stream = new SnapshotStream();
+        IOUtils.write(
+            new StringBuilder()
+                .append(StringUtils.repeat('x', SnapshotStream.PREFIX * 2))
+                .append(
+                    new XemblyLine(
+                        new Directives().xpath("/snapshot").add("hidden")
+                    ).toString()
+                )
+                .append('\n')
+                .append(
+                    new XemblyLine(
+                        new Directives().xpath("/snapshot").add("visible")
+                    ).toString()
+                )
+                .toString(),
+            stream, Charsets.UTF_8
+        );
+        stream.close();
+        MatcherAssert.assertThat(
+            stream.snapshot().xml().toString(),
+            XhtmlMatchers.hasXPaths(
+                "/snapshot/visible",
+                "/snapshot[not(hidden)]"
+            )
+        );
+    }
+
+    /**
+     * SnapshotStream can report broken directives.
+     * @throws Exception If some problem inside
+     */
+    @Test(expected = XemblySyntaxException.class)
+    public void reportsBrokenDirectives() throws Exception {
+        final SnapshotStream stream = new SnapshotStream();
+        IOUtils.write(
+            String.format("%s 'ADD \"broken;'\n", XemblyLine.MARK),
+            stream, Charsets.UTF_8
+        );
+        stream.close();
+        stream.snapshot();
+    }
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.snapshot;
+
+import com.rexsl.test.XhtmlMatchers;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.xembly.Directives;
+
+/**
+ * Test case for {@link Stylesheets}.
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ */
+public final class StylesheetsTest {
+
+    /**
+     * Stylesheets can compile a resource once and reuse it.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void compilesResourceOnce() throws Exception {
+        final Stylesheets sheets = new Stylesheets();
+        sheets.warm(this.getClass(), "test.xsl");
+        MatcherAssert.assertThat(
+            sheets.get(this.getClass(), "test.xsl"),
+            Matchers.sameInstance(sheets.get(this.getClass(), "test.xsl"))
+        );
+        MatcherAssert.assertThat(sheets.misses(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(sheets.hits(), Matchers.equalTo(2L));
+    }
+
+    /**
+     * Stylesheets can transform a snapshot with compiled templates.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void transformsWithCompiledTemplates() throws Exception {
+        MatcherAssert.assertThat(
+            XhtmlMatchers.xhtml(
+                new XSLT(
+                    new Snapshot(
+                        new Directives()
+                            .xpath("/snapshot")
+                            .add("start")
+                            .set("2012-08-23T13:00:00Z")
+                    ),
+                    this.getClass(), "test.xsl"
+                ).dom()
+            ),
+            XhtmlMatchers.hasXPath("/test[.='2012-08-23T13:00:00Z']")
+        );
+    }
+
+    /**
+     * Stylesheets can reject an absent resource.
+     * @throws Exception If some problem inside
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAbsentResource() throws Exception {
+        new Stylesheets().get(this.getClass(), "absent.xsl");
+    }
+
+}
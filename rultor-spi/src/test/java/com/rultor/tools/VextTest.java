@@ -57,4 +57,48 @@ public final class VextTest {
         );
     }
 
+    /**
+     * Vext can print the same template with different arguments.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void printsSameTemplateWithDifferentArguments() throws Exception {
+        final String text = "#set($x = \"hi, $name\")$x!";
+        MatcherAssert.assertThat(
+            new Vext(text).print(
+                ImmutableMap.<String, Object>of("name", "Jeff")
+            ),
+            Matchers.equalTo("hi, Jeff!")
+        );
+        MatcherAssert.assertThat(
+            new Vext(text).print(
+                ImmutableMap.<String, Object>of("name", "Walter")
+            ),
+            Matchers.equalTo("hi, Walter!")
+        );
+    }
+
+    /**
+     * Vext can keep inline macros local to their templates.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void keepsMacrosLocalToTemplates() throws Exception {
+        final ImmutableMap<String, Object> map =
+            ImmutableMap.<String, Object>of();
+        final String first = "#macro(say)one#end#say()";
+        MatcherAssert.assertThat(
+            new Vext(first).print(map),
+            Matchers.equalTo("one")
+        );
+        MatcherAssert.assertThat(
+            new Vext("#macro(say)two#end#say()").print(map),
+            Matchers.equalTo("two")
+        );
+        MatcherAssert.assertThat(
+            new Vext(first).print(map),
+            Matchers.equalTo("one")
+        );
+    }
+
 }
@@ -36,6 +36,7 @@ import com.jcabi.aspects.Loggable;
 import com.jcabi.aspects.Tv;
 import com.jcabi.dynamo.Attributes;
 import com.jcabi.dynamo.Item;
+import com.jcabi.dynamo.Region;
 import com.jcabi.urn.URN;
 import com.rultor.aws.SQSClient;
 import com.rultor.spi.Coordinates;
@@ -83,6 +84,11 @@ final class AwsRule implements Rule {
      */
     public static final String FIELD_SPEC = "spec";
 
+    /**
+     * Dynamo.
+     */
+    private final transient Region region;
+
     /**
      * Item.
      */
@@ -95,10 +101,12 @@ final class AwsRule implements Rule {
 
     /**
      * Public ctor.
+     * @param reg Region in Dynamo
      * @param sqs SQS client
      * @param itm Item from Dynamo
      */
-    protected AwsRule(final SQSClient sqs, final Item itm) {
+    protected AwsRule(final Region reg, final SQSClient sqs, final Item itm) {
+        this.region = reg;
         this.client = sqs;
         this.item = itm;
     }
@@ -117,6 +125,7 @@ final class AwsRule implements Rule {
                     new AttributeValue(spec.asText())
             )
         );
+        Catalog.of(this.region).refresh(this.owner());
     }
 
     /**
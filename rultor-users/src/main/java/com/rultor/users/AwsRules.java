@@ -97,7 +97,8 @@ final class AwsRules implements Rules {
     @Override
     @NotNull(message = "list of rules of a user is never NULL")
     public Iterator<Rule> iterator() {
-        final Iterator<Item> items = this.fetch().iterator();
+        final Iterator<Item> items = Catalog.of(this.region)
+            .rules(this.owner).iterator();
         return new Iterator<Rule>() {
             @Override
             public boolean hasNext() {
@@ -105,7 +106,9 @@ final class AwsRules implements Rules {
             }
             @Override
             public Rule next() {
-                return new AwsRule(AwsRules.this.client, items.next());
+                return new AwsRule(
+                    AwsRules.this.region, AwsRules.this.client, items.next()
+                );
             }
             @Override
             public void remove() {
@@ -137,6 +140,7 @@ final class AwsRules implements Rules {
                 .with(AwsRule.RANGE_NAME, unt)
                 .with(AwsRule.FIELD_SPEC, new Spec.Simple().asText())
         );
+        Catalog.of(this.region).refresh(this.owner);
     }
 
     /**
@@ -158,6 +162,7 @@ final class AwsRules implements Rules {
         }
         items.next();
         items.remove();
+        Catalog.of(this.region).refresh(this.owner);
     }
 
     /**
@@ -179,7 +184,9 @@ final class AwsRules implements Rules {
                 String.format("Rule `%s` doesn't exist", rule)
             );
         }
-        return new AwsRule(this.client, items.iterator().next());
+        return new AwsRule(
+            this.region, this.client, items.iterator().next()
+        );
     }
 
     /**
@@ -199,16 +206,4 @@ final class AwsRules implements Rules {
             .isEmpty();
     }
 
-    /**
-     * Fetch them all.
-     * @return All Rules
-     */
-    @Cacheable(lifetime = Tv.FIVE, unit = TimeUnit.MINUTES)
-    private Collection<Item> fetch() {
-        return this.region.table(AwsRule.TABLE)
-            .frame()
-            .where(AwsRule.HASH_OWNER, this.owner.toString())
-            .through(new QueryValve());
-    }
-
 }
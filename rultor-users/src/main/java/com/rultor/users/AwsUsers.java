@@ -45,8 +45,8 @@ import com.rultor.spi.Stand;
 import com.rultor.spi.User;
 import com.rultor.spi.Users;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 import javax.validation.constraints.NotNull;
@@ -56,6 +56,9 @@ import lombok.ToString;
 /**
  * All users in Dynamo DB.
  *
+ * <p>Users and their rules are listed from {@link Catalog}, which is
+ * shared by all instances of this class working with the same region.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
@@ -103,15 +106,9 @@ public final class AwsUsers implements Users {
     @NotNull(message = "list of users is never NULL")
     @SuppressWarnings("PMD.AvoidInstantiatingObjectsInLoops")
     public Iterator<User> iterator() {
-        final Collection<User> users = new HashSet<User>(0);
-        for (Item item : this.region.table(AwsRule.TABLE).frame()) {
-            users.add(
-                new AwsUser(
-                    AwsUsers.this.region,
-                    AwsUsers.this.client,
-                    URN.create(item.get(AwsRule.HASH_OWNER).getS())
-                )
-            );
+        final Collection<User> users = new LinkedList<User>();
+        for (URN owner : Catalog.of(this.region).owners()) {
+            users.add(new AwsUser(this.region, this.client, owner));
         }
         return users.iterator();
     }
@@ -0,0 +1,298 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.users;
+
+import com.jcabi.aspects.ScheduleWithFixedDelay;
+import com.jcabi.aspects.Tv;
+import com.jcabi.dynamo.Item;
+import com.jcabi.dynamo.QueryValve;
+import com.jcabi.dynamo.Region;
+import com.jcabi.log.Logger;
+import com.jcabi.urn.URN;
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory catalog of all rules in DynamoDB, by their owners.
+ *
+ * <p>The catalog is loaded by one paginated scan of the table and is
+ * scanned again every few minutes, in background, in order to see
+ * changes made by other servers. Changes made through this server
+ * are visible immediately, since they reload rules of their owner only
+ * (see {@link #refresh(URN)}), with one query. Every change increments
+ * the version of the catalog.
+ *
+ * <p>The class is thread-safe.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+@ScheduleWithFixedDelay(delay = Tv.FIVE, unit = TimeUnit.MINUTES)
+final class Catalog implements Runnable, Closeable {
+
+    /**
+     * All catalogs, by their regions.
+     */
+    private static final ConcurrentMap<Region, Catalog> ALL =
+        new ConcurrentHashMap<Region, Catalog>(0);
+
+    /**
+     * Dynamo.
+     */
+    private final transient Region region;
+
+    /**
+     * Owners refreshed since the beginning of the last scan,
+     * guarded by this object.
+     */
+    private final transient Collection<URN> touched = new HashSet<URN>(0);
+
+    /**
+     * Rules by owners (never modified, but replaced), guarded by
+     * this object, or NULL if not loaded yet.
+     */
+    private transient Map<URN, Collection<Item>> rules;
+
+    /**
+     * Current version, guarded by this object.
+     */
+    private transient long version;
+
+    /**
+     * Public ctor.
+     * @param reg Region in Dynamo
+     */
+    Catalog(final Region reg) {
+        this.region = reg;
+    }
+
+    /**
+     * Get the catalog of the region, shared by all its users.
+     * @param region Region in Dynamo
+     * @return Catalog
+     */
+    public static Catalog of(final Region region) {
+        Catalog catalog = Catalog.ALL.get(region);
+        if (catalog == null) {
+            final Catalog fresh = new Catalog(region);
+            catalog = Catalog.ALL.putIfAbsent(region, fresh);
+            if (catalog == null) {
+                catalog = fresh;
+            } else {
+                fresh.close();
+            }
+        }
+        return catalog;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        synchronized (this) {
+            final int total;
+            if (this.rules == null) {
+                total = 0;
+            } else {
+                total = this.rules.size();
+            }
+            return Logger.format(
+                "catalog v%d with %d owner(s)", this.version, total
+            );
+        }
+    }
+
+    /**
+     * Current version.
+     * @return Version, incremented on every change
+     */
+    public long version() {
+        synchronized (this) {
+            return this.version;
+        }
+    }
+
+    /**
+     * All owners of rules.
+     * @return Owners
+     */
+    public Collection<URN> owners() {
+        return this.current().keySet();
+    }
+
+    /**
+     * All rules of the owner, ordered by names.
+     * @param owner Owner
+     * @return Items, empty if the owner doesn't have any rules
+     */
+    public Collection<Item> rules(final URN owner) {
+        Collection<Item> items = this.current().get(owner);
+        if (items == null) {
+            items = Collections.emptyList();
+        }
+        return items;
+    }
+
+    /**
+     * Reload all rules of the owner, after they were changed.
+     * @param owner Owner
+     */
+    public void refresh(final URN owner) {
+        final Map<URN, Collection<Item>> fresh = Catalog.group(
+            this.region.table(AwsRule.TABLE)
+                .frame()
+                .where(AwsRule.HASH_OWNER, owner.toString())
+                .through(new QueryValve())
+        );
+        synchronized (this) {
+            if (this.rules != null) {
+                final Map<URN, Collection<Item>> all =
+                    new HashMap<URN, Collection<Item>>(this.rules);
+                Catalog.replace(all, owner, fresh.get(owner));
+                this.rules = Collections.unmodifiableMap(all);
+                this.touched.add(owner);
+                ++this.version;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        synchronized (this) {
+            this.touched.clear();
+        }
+        final long start = System.currentTimeMillis();
+        final Map<URN, Collection<Item>> all = this.scan();
+        synchronized (this) {
+            if (this.rules != null) {
+                for (URN owner : this.touched) {
+                    Catalog.replace(all, owner, this.rules.get(owner));
+                }
+            }
+            this.rules = Collections.unmodifiableMap(all);
+            this.touched.clear();
+            ++this.version;
+            Logger.info(
+                this, "%d owner(s) scanned in %[ms]s, version %d",
+                all.size(), System.currentTimeMillis() - start, this.version
+            );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        Catalog.ALL.remove(this.region, this);
+    }
+
+    /**
+     * Get current rules, loading them if necessary.
+     * @return Rules by owners
+     */
+    private Map<URN, Collection<Item>> current() {
+        synchronized (this) {
+            if (this.rules == null) {
+                this.run();
+            }
+            return this.rules;
+        }
+    }
+
+    /**
+     * Scan the entire table, page by page.
+     * @return Rules by owners
+     */
+    private Map<URN, Collection<Item>> scan() {
+        return Catalog.group(this.region.table(AwsRule.TABLE).frame());
+    }
+
+    /**
+     * Group items by owners and order them by names.
+     * @param items Items
+     * @return Rules by owners
+     */
+    private static Map<URN, Collection<Item>> group(
+        final Iterable<Item> items) {
+        final Map<URN, Map<String, Item>> sorted =
+            new HashMap<URN, Map<String, Item>>(0);
+        for (Item item : items) {
+            final URN owner = URN.create(
+                item.get(AwsRule.HASH_OWNER).getS()
+            );
+            Map<String, Item> names = sorted.get(owner);
+            if (names == null) {
+                names = new TreeMap<String, Item>();
+                sorted.put(owner, names);
+            }
+            names.put(item.get(AwsRule.RANGE_NAME).getS(), item);
+        }
+        final Map<URN, Collection<Item>> all =
+            new HashMap<URN, Collection<Item>>(sorted.size());
+        for (Map.Entry<URN, Map<String, Item>> entry : sorted.entrySet()) {
+            all.put(
+                entry.getKey(),
+                Collections.unmodifiableCollection(entry.getValue().values())
+            );
+        }
+        return all;
+    }
+
+    /**
+     * Replace rules of the owner.
+     * @param all All rules by owners
+     * @param owner Owner
+     * @param items Its rules or NULL if there are none
+     */
+    private static void replace(final Map<URN, Collection<Item>> all,
+        final URN owner, final Collection<Item> items) {
+        if (items == null) {
+            all.remove(owner);
+        } else {
+            all.put(owner, items);
+        }
+    }
+
+}
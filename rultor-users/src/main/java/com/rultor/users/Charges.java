@@ -0,0 +1,337 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.users;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.jcabi.aspects.ScheduleWithFixedDelay;
+import com.jcabi.aspects.Tv;
+import com.jcabi.log.Logger;
+import com.rultor.aws.SQSClient;
+import com.rultor.spi.Coordinates;
+import com.rultor.tools.Dollars;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Charges made by wallets, not sent to SQS yet.
+ *
+ * <p>Charges between the same creditor and debitor (and their rules)
+ * made in the same work are summed up and sent as one receipt, in
+ * batches of {@link #BATCH} SQS messages. They are sent every few
+ * seconds and when the work is done (see {@link #flush(Coordinates)}).
+ * Charges that SQS failed to accept stay here till the next attempt.
+ *
+ * <p>The class is thread-safe.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+@ScheduleWithFixedDelay(delay = Tv.FIVE, unit = TimeUnit.SECONDS)
+public final class Charges implements Runnable, Closeable {
+
+    /**
+     * Singleton.
+     */
+    private static final Charges INSTANCE = new Charges();
+
+    /**
+     * Maximum number of messages in one SQS batch.
+     */
+    private static final int BATCH = Tv.TEN;
+
+    /**
+     * Maximum number of distinct details to keep in one receipt.
+     */
+    private static final int DETAILS = Tv.FIVE;
+
+    /**
+     * Pending charges by wallets, guarded by itself.
+     */
+    private final transient Map<SQSWallet, Charges.Pending> pending =
+        new HashMap<SQSWallet, Charges.Pending>(0);
+
+    /**
+     * Private ctor.
+     */
+    private Charges() {
+        // intentionally empty
+    }
+
+    /**
+     * Send all charges made in this work.
+     * @param work The work
+     */
+    public static void flush(final Coordinates work) {
+        Charges.INSTANCE.send(Charges.INSTANCE.take(work, false));
+    }
+
+    /**
+     * Send all charges.
+     */
+    public static void flush() {
+        Charges.INSTANCE.run();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        this.send(this.take(new Coordinates.None(), true));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        this.run();
+    }
+
+    /**
+     * Add a charge.
+     * @param wallet Wallet charged
+     * @param details Details of the charge
+     * @param amount Amount
+     */
+    static void add(final SQSWallet wallet, final String details,
+        final Dollars amount) {
+        final Charges.Pending charge = new Charges.Pending();
+        charge.add(details, amount.points());
+        Charges.INSTANCE.add(wallet, charge);
+    }
+
+    /**
+     * Add charges.
+     * @param wallet Wallet charged
+     * @param charge Charges to add
+     */
+    private void add(final SQSWallet wallet, final Charges.Pending charge) {
+        synchronized (this.pending) {
+            final Charges.Pending before = this.pending.get(wallet);
+            if (before == null) {
+                this.pending.put(wallet, charge);
+            } else {
+                before.merge(charge);
+            }
+        }
+    }
+
+    /**
+     * Take pending charges out.
+     * @param work Work to take charges of
+     * @param all TRUE if charges of all works are needed
+     * @return Charges taken
+     */
+    private Map<SQSWallet, Charges.Pending> take(final Coordinates work,
+        final boolean all) {
+        final Map<SQSWallet, Charges.Pending> taken =
+            new HashMap<SQSWallet, Charges.Pending>(0);
+        synchronized (this.pending) {
+            final Iterator<Map.Entry<SQSWallet, Charges.Pending>> iterator =
+                this.pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<SQSWallet, Charges.Pending> entry =
+                    iterator.next();
+                if (all || entry.getKey().work().equals(work)) {
+                    taken.put(entry.getKey(), entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Send charges to SQS.
+     * @param charges Charges to send
+     */
+    private void send(final Map<SQSWallet, Charges.Pending> charges) {
+        final Map<SQSClient, List<SQSWallet>> queues =
+            new HashMap<SQSClient, List<SQSWallet>>(0);
+        for (SQSWallet wallet : charges.keySet()) {
+            List<SQSWallet> wallets = queues.get(wallet.client());
+            if (wallets == null) {
+                wallets = new ArrayList<SQSWallet>(1);
+                queues.put(wallet.client(), wallets);
+            }
+            wallets.add(wallet);
+        }
+        for (Map.Entry<SQSClient, List<SQSWallet>> queue
+            : queues.entrySet()) {
+            final List<SQSWallet> wallets = queue.getValue();
+            for (int start = 0; start < wallets.size();
+                start += Charges.BATCH) {
+                this.send(
+                    queue.getKey(),
+                    wallets.subList(
+                        start, Math.min(start + Charges.BATCH, wallets.size())
+                    ),
+                    charges
+                );
+            }
+        }
+    }
+
+    /**
+     * Send one batch of charges to SQS.
+     * @param client SQS client
+     * @param wallets Wallets to send
+     * @param charges Charges by wallets
+     */
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private void send(final SQSClient client, final List<SQSWallet> wallets,
+        final Map<SQSWallet, Charges.Pending> charges) {
+        final Collection<SendMessageBatchRequestEntry> entries =
+            new LinkedList<SendMessageBatchRequestEntry>();
+        for (int idx = 0; idx < wallets.size(); ++idx) {
+            final Charges.Pending charge = charges.get(wallets.get(idx));
+            entries.add(
+                new SendMessageBatchRequestEntry()
+                    .withId(Integer.toString(idx))
+                    .withMessageBody(
+                        wallets.get(idx).json(
+                            charge.details(), new Dollars(charge.points)
+                        )
+                    )
+            );
+        }
+        final Collection<Integer> failed = new LinkedList<Integer>();
+        final AmazonSQS aws = client.get();
+        try {
+            final SendMessageBatchResult result = aws.sendMessageBatch(
+                new SendMessageBatchRequest()
+                    .withQueueUrl(client.url())
+                    .withEntries(entries)
+            );
+            if (result != null) {
+                for (BatchResultErrorEntry error : result.getFailed()) {
+                    Logger.warn(
+                        this, "receipt #%s rejected by SQS: %s",
+                        error.getId(), error.getMessage()
+                    );
+                    failed.add(Integer.valueOf(error.getId()));
+                }
+            }
+        // @checkstyle IllegalCatch (1 line)
+        } catch (RuntimeException ex) {
+            Logger.warn(this, "failed to send receipts: %s", ex);
+            for (int idx = 0; idx < wallets.size(); ++idx) {
+                failed.add(idx);
+            }
+        } finally {
+            aws.shutdown();
+        }
+        for (Integer idx : failed) {
+            final SQSWallet wallet = wallets.get(idx);
+            this.add(wallet, charges.get(wallet));
+        }
+        Logger.info(
+            this, "%d receipt(s) sent to %s, %d failed",
+            wallets.size() - failed.size(), client, failed.size()
+        );
+    }
+
+    /**
+     * Charges of one wallet, summed up.
+     */
+    private static final class Pending {
+        /**
+         * Distinct details.
+         */
+        private final transient Collection<String> texts =
+            new LinkedHashSet<String>(0);
+        /**
+         * Total amount, in points.
+         */
+        private transient long points;
+        /**
+         * Total number of charges.
+         */
+        private transient int count;
+        /**
+         * Add one charge.
+         * @param details Details
+         * @param amount Amount in points
+         */
+        public void add(final String details, final long amount) {
+            if (this.texts.size() < Charges.DETAILS) {
+                this.texts.add(details);
+            }
+            this.points += amount;
+            ++this.count;
+        }
+        /**
+         * Add other charges.
+         * @param other Charges to add
+         */
+        public void merge(final Charges.Pending other) {
+            for (String text : other.texts) {
+                if (this.texts.size() < Charges.DETAILS) {
+                    this.texts.add(text);
+                }
+            }
+            this.points += other.points;
+            this.count += other.count;
+        }
+        /**
+         * Details of all charges.
+         * @return Text
+         */
+        public String details() {
+            final String text;
+            if (this.count == 1) {
+                text = this.texts.iterator().next();
+            } else {
+                text = String.format(
+                    "%d charges: %s", this.count,
+                    StringUtils.join(this.texts, "; ")
+                );
+            }
+            return text;
+        }
+    }
+
+}
@@ -29,8 +29,6 @@
  */
 package com.rultor.users;
 
-import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.model.SendMessageRequest;
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
 import com.jcabi.log.Logger;
@@ -48,6 +46,9 @@ import org.apache.commons.lang3.Validate;
 /**
  * Wallet into Amazon SQS.
  *
+ * <p>Charges are not sent immediately, but summed up and sent in
+ * batches by {@link Charges}.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
@@ -119,21 +120,12 @@ final class SQSWallet implements Wallet {
     @Override
     public void charge(final String details, final Dollars amount) {
         if (!this.creditor.equals(this.debitor)) {
-            final AmazonSQS aws = this.client.get();
-            try {
-                aws.sendMessage(
-                    new SendMessageRequest()
-                        .withQueueUrl(this.client.url())
-                        .withMessageBody(this.json(details, amount))
-                );
-                Logger.info(
-                    this,
-                    "charged %s from %s to %s for \"%s\"",
-                    amount, this.creditor, this.debitor, details
-                );
-            } finally {
-                aws.shutdown();
-            }
+            Charges.add(this, details, amount);
+            Logger.info(
+                this,
+                "charged %s from %s to %s for \"%s\"",
+                amount, this.creditor, this.debitor, details
+            );
         }
     }
 
@@ -161,12 +153,28 @@ final class SQSWallet implements Wallet {
     }
 
     /**
-     * Make JSON.
+     * SQS client to send receipts to.
+     * @return Client
+     */
+    SQSClient client() {
+        return this.client;
+    }
+
+    /**
+     * Coordinates of the work being charged.
+     * @return Coordinates
+     */
+    Coordinates work() {
+        return this.work;
+    }
+
+    /**
+     * Make JSON of a receipt.
      * @param details Payment details
      * @param amount Dollar amount
      * @return JSON
      */
-    private String json(final String details, final Dollars amount) {
+    String json(final String details, final Dollars amount) {
         final StringWriter writer = new StringWriter();
         Json.createGenerator(writer)
             .writeStartObject()
@@ -77,9 +77,8 @@ final class MongoPulse implements Pulse {
      */
     @Override
     public String xembly() throws IOException {
-        final String xembly = this.map.get(MongoStand.ATTR_XEMBLY).toString();
         return new StringBuilder()
-            .append(MongoStand.decode(xembly))
+            .append(MongoStand.decode(this.map))
             .append("XPATH '/snapshot'; ADDIF 'updated';")
             .append("SET '")
             .append(this.map.get(MongoStand.ATTR_UPDATED))
@@ -31,6 +31,7 @@ package com.rultor.users.mongo;
 
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
+import com.jcabi.aspects.Tv;
 import com.jcabi.urn.URN;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
@@ -48,17 +49,21 @@ import com.rultor.tools.Time;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.logging.Level;
+import java.util.regex.Pattern;
 import javax.xml.transform.dom.DOMSource;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xembly.Directives;
 import org.xembly.ImpossibleModificationException;
 import org.xembly.XemblySyntaxException;
 
@@ -66,15 +71,33 @@ import org.xembly.XemblySyntaxException;
  * Stand in Mongo.
  *
  * <pre>
- * pulses {
- *   pulse: String,
+ * stands {
  *   stand: String,
+ *   coordinates: Object,
  *   updated: Time,
+ *   directives: { nano: Long, xembly: String }[],
  *   xembly: String,
- *   tags: String[]
+ *   tags: Object[],
+ *   dom: String,
+ *   latest: Long,
+ *   rev: Long
  * };
  * </pre>
  *
+ * <p>Every post is appended to {@code directives} as is, without reading
+ * what is already there, and the snapshot is built only when the pulse
+ * is read (see {@link MongoPulse#xembly()}). {@code xembly} is
+ * a legacy text of all directives, prefixed with their nanos, it is
+ * only read, never written.
+ *
+ * <p>Tags are maintained incrementally. {@code dom} is a Xembly script
+ * that builds {@code /snapshot/tags} as it was after the post with nano
+ * {@code latest}. Only posts that add {@code /snapshot/tags} or move
+ * into it are applied to it, one by one, and {@code rev} guards it from
+ * concurrent updates, which are retried a few times. When a post
+ * arrives after a later one (posts are not ordered), the script is
+ * rebuilt from all tag posts of the pulse.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
@@ -109,15 +132,53 @@ final class MongoStand implements Stand {
     public static final String ATTR_UPDATED = "updated";
 
     /**
-     * MongoDB table column.
+     * MongoDB table column (also a column of a directive).
      */
     public static final String ATTR_XEMBLY = "xembly";
 
+    /**
+     * MongoDB table column.
+     */
+    public static final String ATTR_DIRECTIVES = "directives";
+
+    /**
+     * MongoDB column of a directive.
+     */
+    public static final String ATTR_NANO = "nano";
+
     /**
      * MongoDB table column.
      */
     public static final String ATTR_TAGS = "tags";
 
+    /**
+     * MongoDB table column.
+     */
+    public static final String ATTR_DOM = "dom";
+
+    /**
+     * MongoDB table column.
+     */
+    public static final String ATTR_LATEST = "latest";
+
+    /**
+     * MongoDB table column.
+     */
+    public static final String ATTR_REV = "rev";
+
+    /**
+     * How many times to try to update tags.
+     */
+    private static final int ATTEMPTS = Tv.TEN;
+
+    /**
+     * Directive that builds or changes tags, like {@code ADDIF "tags"}
+     * or {@code XPATH "/snapshot/tags/tag[label='x']"}.
+     */
+    private static final Pattern TAGS = Pattern.compile(
+        "\\bADD(?:IF)?\\s*(['\"])tags\\1|\\bXPATH\\s*['\"]/snapshot/tags"
+    );
+
     /**
      * Mongo container.
      */
@@ -145,9 +206,16 @@ final class MongoStand implements Stand {
     @Override
     public void post(final Coordinates pulse, final long nano,
         final String xembly) {
-        while (true) {
-            if (this.save(pulse, nano, xembly)) {
-                break;
+        this.append(pulse, nano, xembly);
+        if (MongoStand.tagged(xembly)) {
+            int attempt = 1;
+            while (!this.retag(pulse, nano, xembly)) {
+                Validate.validState(
+                    attempt < MongoStand.ATTEMPTS,
+                    "tags of pulse `%s` are updated concurrently, %d failures",
+                    pulse, attempt
+                );
+                ++attempt;
             }
         }
     }
@@ -209,123 +277,245 @@ final class MongoStand implements Stand {
     }
 
     /**
-     * Attempt to save.
+     * Append directives to the pulse.
      * @param pulse The pulse name
      * @param nano Nano ID
      * @param xembly Xembly script to append
-     * @return TRUE if success
      */
-    @SuppressWarnings("unchecked")
-    private boolean save(final Coordinates pulse, final long nano,
+    private void append(final Coordinates pulse, final long nano,
         final String xembly) {
-        final DBObject object = this.collection().findAndModify(
+        final WriteResult result = this.collection().update(
+            this.query(pulse),
             new BasicDBObject()
-                .append(MongoStand.ATTR_STAND, this.name())
                 .append(
-                    MongoStand.ATTR_COORDS,
-                    new MongoCoords(pulse).asObject()
+                    "$set",
+                    new BasicDBObject().append(
+                        MongoStand.ATTR_UPDATED, new Time().toString()
+                    )
+                )
+                .append(
+                    "$setOnInsert",
+                    new BasicDBObject().append(
+                        MongoStand.ATTR_TAGS, new Object[0]
+                    )
+                )
+                .append(
+                    "$push",
+                    new BasicDBObject().append(
+                        MongoStand.ATTR_DIRECTIVES,
+                        new BasicDBObject()
+                            .append(MongoStand.ATTR_NANO, nano)
+                            .append(MongoStand.ATTR_XEMBLY, xembly)
+                    )
                 ),
-            new BasicDBObject()
-                .append(MongoStand.ATTR_COORDS, 1)
-                .append(MongoStand.ATTR_STAND, 1)
-                .append(MongoStand.ATTR_TAGS, 1)
-                .append(MongoStand.ATTR_XEMBLY, 1),
-            new BasicDBObject(),
-            false,
-            new BasicDBObject().append(
-                "$setOnInsert",
-                new BasicDBObject().append(MongoStand.ATTR_XEMBLY, "")
-            ),
             true,
-            true
+            false
         );
-        final String after = new StringBuilder()
-            .append(object.get(MongoStand.ATTR_XEMBLY))
-            .append(nano).append(' ')
-            .append(xembly).append('\n').toString();
+        Validate.isTrue(
+            result.getLastError().ok(),
+            "failed to update pulse `%s`: %s",
+            pulse, result.getLastError().getErrorMessage()
+        );
+    }
+
+    /**
+     * Attempt to update tags of the pulse.
+     * @param pulse The pulse name
+     * @param nano Nano ID
+     * @param xembly Xembly script just appended
+     * @return TRUE if success
+     */
+    private boolean retag(final Coordinates pulse, final long nano,
+        final String xembly) {
+        final DBObject query = this.query(pulse);
+        final DBObject object = this.collection().findOne(
+            query,
+            new BasicDBObject()
+                .append(MongoStand.ATTR_DOM, 1)
+                .append(MongoStand.ATTR_LATEST, 1)
+                .append(MongoStand.ATTR_REV, 1)
+        );
+        Document dom;
+        long latest;
+        if (object.containsField(MongoStand.ATTR_DOM)
+            && nano > Number.class.cast(object.get(MongoStand.ATTR_LATEST))
+                .longValue()) {
+            dom = MongoStand.apply(
+                MongoStand.apply(
+                    Snapshot.empty(),
+                    object.get(MongoStand.ATTR_DOM).toString()
+                ),
+                xembly
+            );
+            latest = nano;
+        } else {
+            dom = Snapshot.empty();
+            latest = nano;
+            final Map<Long, String> lines = MongoStand.lines(
+                this.collection().findOne(
+                    query,
+                    new BasicDBObject()
+                        .append(MongoStand.ATTR_DIRECTIVES, 1)
+                        .append(MongoStand.ATTR_XEMBLY, 1)
+                ).toMap()
+            );
+            for (Map.Entry<Long, String> line : lines.entrySet()) {
+                if (MongoStand.tagged(line.getValue())) {
+                    dom = MongoStand.apply(dom, line.getValue());
+                    latest = Math.max(latest, line.getKey());
+                }
+            }
+        }
         final WriteResult result = this.collection().update(
-            object,
+            new BasicDBObject(query.toMap()).append(
+                MongoStand.ATTR_REV, object.get(MongoStand.ATTR_REV)
+            ),
             new BasicDBObject()
-                .append(MongoStand.ATTR_STAND, this.name())
-                .append(MongoStand.ATTR_UPDATED, new Time().toString())
-                .append(MongoStand.ATTR_XEMBLY, after)
                 .append(
-                    MongoStand.ATTR_COORDS,
-                    new MongoCoords(pulse).asObject()
+                    "$set",
+                    new BasicDBObject()
+                        .append(MongoStand.ATTR_DOM, MongoStand.script(dom))
+                        .append(MongoStand.ATTR_LATEST, latest)
+                        .append(MongoStand.ATTR_TAGS, this.tags(dom))
                 )
                 .append(
-                    MongoStand.ATTR_TAGS,
-                    this.tags(MongoStand.decode(after))
+                    "$inc",
+                    new BasicDBObject().append(MongoStand.ATTR_REV, 1L)
                 )
         );
         Validate.isTrue(
             result.getLastError().ok(),
-            "failed to update pulse `%s`: %s",
+            "failed to update tags of pulse `%s`: %s",
             pulse, result.getLastError().getErrorMessage()
         );
         return result.getN() == 1;
     }
 
     /**
-     * Xembly to DOM.
+     * Query of the pulse.
+     * @param pulse The pulse name
+     * @return Query
+     */
+    private DBObject query(final Coordinates pulse) {
+        return new BasicDBObject()
+            .append(MongoStand.ATTR_STAND, this.name())
+            .append(MongoStand.ATTR_COORDS, new MongoCoords(pulse).asObject());
+    }
+
+    /**
+     * Fetch all visible tags.
+     * @param dom DOM with tags
+     * @return Array of tags
+     */
+    private Collection<DBObject> tags(final Document dom) {
+        final Collection<DBObject> tags = new HashSet<DBObject>(0);
+        for (XmlDocument node : new SimpleXml(new DOMSource(dom)).nodes(
+            "/snapshot/tags/tag[label and level]"
+        )) {
+            tags.add(this.tag(node).asObject());
+        }
+        return tags;
+    }
+
+    /**
+     * Does this script touch tags?
+     *
+     * <p>Scripts that neither add {@code tags} nor move into
+     * {@code /snapshot/tags} can't change tags, and there is no need
+     * to apply them. Words like "stage" in texts they set don't count.
+     *
+     * @param xembly Xembly script
+     * @return TRUE if it may change tags
+     */
+    private static boolean tagged(final String xembly) {
+        return MongoStand.TAGS.matcher(xembly).find();
+    }
+
+    /**
+     * Apply Xembly script to a copy of the DOM.
      *
      * <p>All exceptions are swallowed here since we can't be sure
      * that at this moment Xembly script is fully complete. It may contain
-     * broken parts, which will be completed later. That's why we're
-     * returning our best guess here.
+     * broken parts, which will be completed later, or it may refer to
+     * nodes that are not tags. In this case the DOM is returned as is.
      *
+     * @param dom DOM document
      * @param xembly Xembly script
-     * @return DOM document
-     * @throws Stand.BrokenXemblyException If fails
-     * @checkstyle RedundantThrows (5 lines)
+     * @return Modified copy of the DOM, or the same DOM if fails
      */
-    private Document dom(final String xembly)
-        throws Stand.BrokenXemblyException {
+    private static Document apply(final Document dom, final String xembly) {
+        final Document copy = Document.class.cast(dom.cloneNode(true));
+        Document result;
         try {
-            return new Snapshot(xembly).dom();
+            new Snapshot(xembly).apply(copy);
+            result = copy;
         } catch (XemblySyntaxException ex) {
-            throw new BrokenXemblyException(ex);
+            result = dom;
         } catch (ImpossibleModificationException ex) {
-            throw new BrokenXemblyException(ex);
+            result = dom;
         }
+        return result;
     }
 
     /**
-     * Fetch all visible tags.
-     * @param after Xembly after changes
-     * @return Array of tags
+     * Xembly script that builds all tags of the DOM.
+     * @param dom DOM document
+     * @return Xembly script
      */
-    private Collection<DBObject> tags(final String after) {
-        final Collection<DBObject> tags = new HashSet<DBObject>(0);
-        final List<XmlDocument> nodes = new LinkedList<XmlDocument>();
-        try {
-            nodes.addAll(
-                new SimpleXml(new DOMSource(this.dom(after))).nodes(
-                    "/snapshot/tags/tag[label and level]"
-                )
-            );
-        } catch (BrokenXemblyException ex) {
-            assert ex != null;
-        }
-        for (XmlDocument node : nodes) {
-            tags.add(this.tag(node).asObject());
+    private static String script(final Document dom) {
+        final Directives dirs = new Directives()
+            .xpath("/snapshot").addIfAbsent(MongoStand.ATTR_TAGS);
+        final NodeList tags = dom.getElementsByTagName("tag");
+        for (int idx = 0; idx < tags.getLength(); ++idx) {
+            dirs.xpath("/snapshot/tags").add("tag");
+            final NodeList kids = tags.item(idx).getChildNodes();
+            for (int kid = 0; kid < kids.getLength(); ++kid) {
+                final Node node = kids.item(kid);
+                if (node instanceof Element) {
+                    dirs.add(node.getNodeName())
+                        .set(node.getTextContent()).up();
+                }
+            }
         }
-        return tags;
+        return dirs.toString();
     }
 
     /**
-     * Decode the text into clean xembly.
-     * @param script Script with prefixes
+     * Decode all directives of the pulse into clean xembly.
+     * @param map Mongo data map of the pulse
      * @return Clean xembly
      */
-    public static String decode(final String script) {
+    public static String decode(final Map<?, ?> map) {
+        return StringUtils.join(MongoStand.lines(map).values(), "\n");
+    }
+
+    /**
+     * All scripts of the pulse, ordered by their nanos.
+     * @param map Mongo data map of the pulse
+     * @return Scripts by nanos
+     */
+    private static Map<Long, String> lines(final Map<?, ?> map) {
         final ConcurrentMap<Long, String> lines =
             new ConcurrentSkipListMap<Long, String>();
-        for (String line : script.split("\n+")) {
-            final String[] parts = line.split(" ", 2);
-            lines.put(Long.parseLong(parts[0]), parts[1]);
+        final Object legacy = map.get(MongoStand.ATTR_XEMBLY);
+        if (legacy != null && !legacy.toString().isEmpty()) {
+            for (String line : legacy.toString().split("\n+")) {
+                final String[] parts = line.split(" ", 2);
+                lines.put(Long.parseLong(parts[0]), parts[1]);
+            }
+        }
+        final Object dirs = map.get(MongoStand.ATTR_DIRECTIVES);
+        if (dirs != null) {
+            for (Object dir : Collection.class.cast(dirs)) {
+                final DBObject line = DBObject.class.cast(dir);
+                lines.put(
+                    Number.class.cast(line.get(MongoStand.ATTR_NANO))
+                        .longValue(),
+                    line.get(MongoStand.ATTR_XEMBLY).toString()
+                );
+            }
         }
-        return StringUtils.join(lines.values(), "\n");
+        return lines;
     }
 
     /**
@@ -44,6 +44,10 @@ import lombok.ToString;
 /**
  * Archives old data in PostgreSQL.
  *
+ * <p>Old receipts are rolled up into weekly totals per pair of
+ * accounts. Balances in {@code balance} table are kept in sync by
+ * the trigger on {@code receipt}, no matter how it is archived.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
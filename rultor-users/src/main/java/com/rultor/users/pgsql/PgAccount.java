@@ -29,10 +29,8 @@
  */
 package com.rultor.users.pgsql;
 
-import com.jcabi.aspects.Cacheable;
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
-import com.jcabi.aspects.Tv;
 import com.jcabi.jdbc.JdbcSession;
 import com.jcabi.jdbc.SingleHandler;
 import com.jcabi.urn.URN;
@@ -41,7 +39,6 @@ import com.rultor.spi.InvalidCouponException;
 import com.rultor.spi.Sheet;
 import com.rultor.tools.Dollars;
 import java.sql.SQLException;
-import java.util.concurrent.TimeUnit;
 import javax.validation.constraints.NotNull;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
@@ -49,6 +46,10 @@ import lombok.ToString;
 /**
  * Account in PostgreSQL.
  *
+ * <p>Balance is read from {@code balance} table, which is updated by
+ * a trigger on every change of {@code receipt} table, so it is never
+ * stale and doesn't depend on the number of receipts.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @since 1.0
@@ -83,15 +84,12 @@ final class PgAccount implements Account {
      * {@inheritDoc}
      */
     @Override
-    @Cacheable(lifetime = Tv.FIFTEEN, unit = TimeUnit.MINUTES)
     public Dollars balance() {
         try {
             return new Dollars(
                 new JdbcSession(this.client.get())
                     // @checkstyle LineLength (1 line)
-                    .sql("SELECT SUM(CASE WHEN dt=? THEN amount ELSE -amount END) FROM receipt WHERE dt=? OR ct=?")
-                    .set(this.owner)
-                    .set(this.owner)
+                    .sql("SELECT COALESCE(SUM(amount), 0) FROM balance WHERE urn=?")
                     .set(this.owner)
                     .select(new SingleHandler<Long>(Long.class))
             );
@@ -112,7 +110,6 @@ final class PgAccount implements Account {
      * {@inheritDoc}
      */
     @Override
-    @Cacheable.FlushAfter
     public void fund(final Dollars amount, final String details) {
         try {
             new JdbcSession(this.client.get())
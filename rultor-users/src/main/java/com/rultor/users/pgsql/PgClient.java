@@ -33,10 +33,14 @@ import com.jcabi.aspects.Cacheable;
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
 import com.jcabi.aspects.Tv;
+import com.jcabi.log.Logger;
+import com.jolbox.bonecp.BoneCP;
 import com.jolbox.bonecp.BoneCPDataSource;
+import com.jolbox.bonecp.Statistics;
+import java.util.concurrent.TimeUnit;
 import javax.sql.DataSource;
 import lombok.EqualsAndHashCode;
-import lombok.ToString;
+import org.apache.commons.lang3.Validate;
 
 /**
  * PostgreSQL client.
@@ -56,12 +60,32 @@ public interface PgClient {
 
     /**
      * Simple implementation.
+     *
+     * <p>The pool grows from {@code min} to {@code max} connections
+     * on demand and shrinks back when connections stay idle. Prepared
+     * statements are cached per connection, since all our queries use
+     * fixed SQL. {@link #toString()} reports pool statistics.
      */
     @Immutable
-    @ToString
-    @EqualsAndHashCode(of = "jdbc")
+    @EqualsAndHashCode(of = { "jdbc", "min", "max" })
     @Loggable(Loggable.DEBUG)
     final class Simple implements PgClient {
+        /**
+         * Default maximum of connections.
+         *
+         * <p>Don't increase this number, since Heroku limits
+         * the number of connections to PostgreSQL. Maximum we can have is
+         * twenty, but keep in mind that this class is used by multiple
+         * instances of the module, including web and conveyer. And each
+         * of them may have multiple instances of themselves. Thus, it's
+         * better to keep this number as little as possible. We don't have
+         * long-running transactions - no need to have many connections.
+         */
+        private static final int MAX = Tv.THREE;
+        /**
+         * How many prepared statements to cache per connection.
+         */
+        private static final int STATEMENTS = Tv.TWENTY;
         /**
          * JDBC URL.
          */
@@ -70,25 +94,72 @@ public interface PgClient {
          * JDBC password.
          */
         private final transient String password;
+        /**
+         * Minimum number of connections.
+         */
+        private final transient int min;
+        /**
+         * Maximum number of connections.
+         */
+        private final transient int max;
         /**
          * Public ctor.
          * @param url JDBC URL
          * @param pwd Password
          */
         public Simple(final String url, final String pwd) {
+            this(url, pwd, 1, PgClient.Simple.MAX);
+        }
+        /**
+         * Public ctor.
+         * @param url JDBC URL
+         * @param pwd Password
+         * @param low Minimum number of connections
+         * @param high Maximum number of connections
+         * @checkstyle ParameterNumber (4 lines)
+         */
+        public Simple(final String url, final String pwd,
+            final int low, final int high) {
+            Validate.isTrue(low > 0, "minimum must be positive: %d", low);
+            Validate.isTrue(
+                high >= low, "maximum %d is less than minimum %d", high, low
+            );
             this.jdbc = url;
             this.password = pwd;
+            this.min = low;
+            this.max = high;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            final BoneCP pool = BoneCPDataSource.class.cast(this.get())
+                .getPool();
+            final String stats;
+            if (pool == null) {
+                stats = "not connected yet";
+            } else {
+                final Statistics sts = pool.getStatistics();
+                stats = Logger.format(
+                    // @checkstyle LineLength (1 line)
+                    "%d leased, %d free, %d created, %.1fms avg wait, %[ms]s total wait, %d statements cached, %.0f%% cache hits",
+                    sts.getTotalLeased(), sts.getTotalFree(),
+                    sts.getTotalCreatedConnections(),
+                    sts.getConnectionWaitTimeAvg(),
+                    sts.getCumulativeConnectionWaitTime(),
+                    sts.getStatementsCached(),
+                    // @checkstyle MagicNumber (1 line)
+                    sts.getCacheHitRatio() * 100
+                );
+            }
+            return String.format(
+                "PostgreSQL at `%s` with %d..%d connection(s): %s",
+                this.jdbc, this.min, this.max, stats
+            );
         }
         /**
          * {@inheritDoc}
-         *
-         * <p>Don't increase numbers here, since Heroku limits
-         * the number of connections to PostgreSQL. Maximum we can have is
-         * twenty, but keep in mind that this class is used by multiple
-         * instances of the module, including web and conveyer. And each
-         * of them may have multiple instances of themselves. Thus, it's
-         * better to keep this number as little as possible. We don't have
-         * long-running transactions - no need to have many connections.
          */
         @Override
         @Cacheable(forever = true)
@@ -97,10 +168,13 @@ public interface PgClient {
             src.setDriverClass("org.postgresql.Driver");
             src.setJdbcUrl(this.jdbc);
             src.setPassword(this.password);
-            src.setPartitionCount(Tv.THREE);
-            src.setMaxConnectionsPerPartition(1);
-            src.setMinConnectionsPerPartition(1);
+            src.setPartitionCount(1);
+            src.setMinConnectionsPerPartition(this.min);
+            src.setMaxConnectionsPerPartition(this.max);
             src.setAcquireIncrement(1);
+            src.setIdleMaxAge(1, TimeUnit.MINUTES);
+            src.setStatementsCacheSize(PgClient.Simple.STATEMENTS);
+            src.setStatisticsEnabled(true);
             src.setDisableConnectionTracking(true);
             return src;
         }
@@ -30,20 +30,30 @@
 package com.rultor.users.pgsql;
 
 import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.model.DeleteMessageRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
 import com.amazonaws.services.sqs.model.Message;
 import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
 import com.amazonaws.services.sqs.model.ReceiveMessageResult;
 import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
 import com.jcabi.aspects.Tv;
-import com.jcabi.jdbc.JdbcSession;
-import com.jcabi.jdbc.VoidHandler;
+import com.jcabi.log.Logger;
 import com.rultor.aws.SQSClient;
 import com.rultor.tools.Exceptions;
 import com.rultor.tools.NormJson;
 import com.rultor.tools.Time;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import javax.json.JsonObject;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
@@ -68,6 +78,11 @@ final class SQSReceipts {
         SQSReceipts.class.getResourceAsStream("receipt.json")
     );
 
+    /**
+     * How many times to try a transaction that conflicts with others.
+     */
+    private static final int ATTEMPTS = Tv.FIVE;
+
     /**
      * Mongo container.
      */
@@ -90,56 +105,329 @@ final class SQSReceipts {
 
     /**
      * Fetch and process next portions of them.
+     *
+     * <p>All valid receipts received are inserted in one JDBC batch, in
+     * one transaction. If it fails, they are inserted one by one. Receipts
+     * rejected because of their data are logged and deleted from SQS,
+     * while on any other failure they stay in SQS and will be received
+     * again. Receipts inserted are always deleted.
+     *
+     * <p>The trigger on {@code receipt} updates {@code balance} rows of
+     * both parties of every receipt. Rows of different receipts would be
+     * locked out of any global order, and concurrent batches (in the web
+     * app and in every conveyer) would deadlock. That's why every
+     * transaction locks all balance rows of its batch in URN order before
+     * the first insert, and is retried when PostgreSQL still aborts it
+     * because of a deadlock or a serialization failure.
+     *
      * @return How many messages were processed
      * @throws SQLException If fails
      */
     @SuppressWarnings("PMD.AvoidInstantiatingObjectsInLoops")
     public int process() throws SQLException {
         final AmazonSQS aws = this.queue.get();
-        final ReceiveMessageResult result = aws.receiveMessage(
-            new ReceiveMessageRequest()
-                .withQueueUrl(this.queue.url())
-                .withWaitTimeSeconds(Tv.TWENTY)
-                .withVisibilityTimeout(Tv.FIVE)
-                .withMaxNumberOfMessages(Tv.TEN)
-        );
-        for (Message msg : result.getMessages()) {
+        try {
+            final ReceiveMessageResult result = aws.receiveMessage(
+                new ReceiveMessageRequest()
+                    .withQueueUrl(this.queue.url())
+                    .withWaitTimeSeconds(Tv.TWENTY)
+                    .withVisibilityTimeout(Tv.FIVE)
+                    .withMaxNumberOfMessages(Tv.TEN)
+            );
+            final Map<String, JsonObject> receipts =
+                new LinkedHashMap<String, JsonObject>(0);
+            final Collection<String> done = new LinkedList<String>();
+            for (Message msg : result.getMessages()) {
+                try {
+                    receipts.put(
+                        msg.getReceiptHandle(),
+                        SQSReceipts.NORM.readObject(msg.getBody())
+                    );
+                } catch (NormJson.JsonException ex) {
+                    Exceptions.warn(this, ex);
+                    done.add(msg.getReceiptHandle());
+                }
+            }
             try {
-                this.process(SQSReceipts.NORM.readObject(msg.getBody()));
-            } catch (NormJson.JsonException ex) {
-                Exceptions.warn(this, ex);
+                if (!receipts.isEmpty()) {
+                    this.insert(receipts, done);
+                }
             } finally {
-                aws.deleteMessage(
-                    new DeleteMessageRequest()
-                        .withQueueUrl(this.queue.url())
-                        .withReceiptHandle(msg.getReceiptHandle())
+                this.delete(aws, done);
+            }
+            return result.getMessages().size();
+        } finally {
+            aws.shutdown();
+        }
+    }
+
+    /**
+     * Insert JSON receipts, in one batch if possible.
+     * @param receipts Receipts in JSON, by their SQS receipt handles
+     * @param done Handles of messages to delete from SQS
+     * @throws SQLException If fails
+     */
+    private void insert(final Map<String, JsonObject> receipts,
+        final Collection<String> done) throws SQLException {
+        final Connection conn = this.client.get().getConnection();
+        try {
+            try {
+                SQSReceipts.insert(conn, receipts.values());
+                done.addAll(receipts.keySet());
+            } catch (SQLException ex) {
+                Logger.warn(
+                    this, "batch of %d receipt(s) failed, one by one now: %s",
+                    receipts.size(), ex
                 );
+                for (Map.Entry<String, JsonObject> entry
+                    : receipts.entrySet()) {
+                    this.insert(conn, entry.getValue());
+                    done.add(entry.getKey());
+                }
+            }
+        } finally {
+            conn.close();
+        }
+    }
+
+    /**
+     * Insert one JSON receipt, dropping it if it is broken.
+     * @param conn Connection
+     * @param receipt Receipt in JSON
+     * @throws SQLException If fails and the receipt is not broken
+     */
+    private void insert(final Connection conn, final JsonObject receipt)
+        throws SQLException {
+        try {
+            SQSReceipts.insert(conn, Collections.singleton(receipt));
+        } catch (SQLException ex) {
+            if (!SQSReceipts.broken(ex)) {
+                throw ex;
             }
+            Logger.error(this, "receipt %s dropped: %s", receipt, ex);
         }
-        aws.shutdown();
-        return result.getMessages().size();
     }
 
     /**
-     * Process one JSON message.
-     * @param json Message in JSON
+     * Delete messages from SQS.
+     * @param aws SQS client
+     * @param handles Receipt handles of messages
+     */
+    @SuppressWarnings("PMD.AvoidInstantiatingObjectsInLoops")
+    private void delete(final AmazonSQS aws, final Collection<String> handles) {
+        if (!handles.isEmpty()) {
+            final Collection<DeleteMessageBatchRequestEntry> entries =
+                new LinkedList<DeleteMessageBatchRequestEntry>();
+            for (String handle : handles) {
+                entries.add(
+                    new DeleteMessageBatchRequestEntry()
+                        .withId(Integer.toString(entries.size()))
+                        .withReceiptHandle(handle)
+                );
+            }
+            aws.deleteMessageBatch(
+                new DeleteMessageBatchRequest()
+                    .withQueueUrl(this.queue.url())
+                    .withEntries(entries)
+            );
+        }
+    }
+
+    /**
+     * Insert JSON receipts in one batch, in one transaction, retrying
+     * it on conflicts with concurrent transactions.
+     *
+     * <p>Receipts that can't be converted to SQL parameters are reported
+     * as data exceptions (SQL state {@code 22000}).
+     *
+     * @param conn Connection
+     * @param receipts Receipts in JSON
+     * @throws SQLException If fails, nothing is inserted then
+     */
+    private static void insert(final Connection conn,
+        final Collection<JsonObject> receipts) throws SQLException {
+        final SortedSet<String> urns = SQSReceipts.accounts(receipts);
+        for (int attempt = 1;; ++attempt) {
+            try {
+                SQSReceipts.create(conn, urns);
+                SQSReceipts.transaction(conn, urns, receipts);
+                break;
+            } catch (SQLException ex) {
+                if (attempt >= SQSReceipts.ATTEMPTS
+                    || !SQSReceipts.conflict(ex)) {
+                    throw ex;
+                }
+                Logger.warn(
+                    SQSReceipts.class,
+                    "#insert(): conflict at attempt #%d: %s", attempt, ex
+                );
+            }
+        }
+    }
+
+    /**
+     * Insert JSON receipts in one batch, in one transaction, after
+     * locking balance rows of all their accounts in URN order.
+     * @param conn Connection
+     * @param urns Accounts of all receipts
+     * @param receipts Receipts in JSON
+     * @throws SQLException If fails, nothing is inserted then
+     */
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private static void transaction(final Connection conn,
+        final SortedSet<String> urns, final Collection<JsonObject> receipts)
+        throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            final PreparedStatement lock = conn.prepareStatement(
+                // @checkstyle LineLength (1 line)
+                "SELECT urn FROM balance WHERE urn = ANY(?) ORDER BY urn FOR UPDATE"
+            );
+            try {
+                lock.setArray(1, conn.createArrayOf("varchar", urns.toArray()));
+                final ResultSet rset = lock.executeQuery();
+                int locked = 0;
+                try {
+                    while (rset.next()) {
+                        ++locked;
+                    }
+                } finally {
+                    rset.close();
+                }
+                Logger.debug(
+                    SQSReceipts.class,
+                    "#transaction(): %d balance(s) of %d locked",
+                    locked, urns.size()
+                );
+            } finally {
+                lock.close();
+            }
+            final PreparedStatement stmt = conn.prepareStatement(
+                // @checkstyle LineLength (1 line)
+                "INSERT INTO receipt (time, wowner, wrule, wscheduled, ct, ctrule, dt, dtrule, details, amount) VALUES (now(), ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+            );
+            try {
+                for (JsonObject json : receipts) {
+                    try {
+                        SQSReceipts.bind(stmt, json);
+                    // @checkstyle IllegalCatch (1 line)
+                    } catch (RuntimeException ex) {
+                        throw new SQLException(ex.getMessage(), "22000", ex);
+                    }
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            } finally {
+                stmt.close();
+            }
+            conn.commit();
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Create balance rows of accounts that don't have them yet, each
+     * in its own tiny transaction (outside of the batch).
+     * @param conn Connection, in auto-commit mode
+     * @param urns Accounts
      * @throws SQLException If fails
      */
-    private void process(final JsonObject json) throws SQLException {
-        final JsonObject work = json.getJsonObject("work");
-        new JdbcSession(this.client.get())
+    private static void create(final Connection conn,
+        final SortedSet<String> urns) throws SQLException {
+        final PreparedStatement stmt = conn.prepareStatement(
             // @checkstyle LineLength (1 line)
-            .sql("INSERT INTO receipt (time, wowner, wrule, wscheduled, ct, ctrule, dt, dtrule, details, amount) VALUES (now(), ?, ?, ?, ?, ?, ?, ?, ?, ?)")
-            .set(work.getString("owner"))
-            .set(work.getString("rule"))
-            .set(new Time(work.getString("scheduled")).toString())
-            .set(json.getString("ct"))
-            .set(json.getString("ctrule"))
-            .set(json.getString("dt"))
-            .set(json.getString("dtrule"))
-            .set(json.getString("details"))
-            .set(json.getJsonNumber("amount").longValue())
-            .insert(new VoidHandler());
+            "INSERT INTO balance (urn) SELECT ? WHERE NOT EXISTS (SELECT urn FROM balance WHERE urn = ?)"
+        );
+        try {
+            for (String urn : urns) {
+                stmt.setString(1, urn);
+                stmt.setString(2, urn);
+                try {
+                    stmt.executeUpdate();
+                } catch (SQLException ex) {
+                    // somebody else has just created it
+                    if (!"23505".equals(ex.getSQLState())) {
+                        throw ex;
+                    }
+                }
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Accounts of all receipts, in URN order.
+     * @param receipts Receipts in JSON
+     * @return URNs of accounts
+     * @throws SQLException If some receipt is broken
+     */
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private static SortedSet<String> accounts(
+        final Collection<JsonObject> receipts) throws SQLException {
+        final SortedSet<String> urns = new TreeSet<String>();
+        for (JsonObject json : receipts) {
+            try {
+                urns.add(json.getString("ct"));
+                urns.add(json.getString("dt"));
+            // @checkstyle IllegalCatch (1 line)
+            } catch (RuntimeException ex) {
+                throw new SQLException(ex.getMessage(), "22000", ex);
+            }
+        }
+        return urns;
+    }
+
+    /**
+     * Bind JSON receipt to the statement.
+     * @param stmt Statement
+     * @param json Receipt in JSON
+     * @throws SQLException If fails
+     */
+    private static void bind(final PreparedStatement stmt,
+        final JsonObject json) throws SQLException {
+        final JsonObject work = json.getJsonObject("work");
+        int pos = 0;
+        stmt.setObject(++pos, work.getString("owner"));
+        stmt.setObject(++pos, work.getString("rule"));
+        stmt.setObject(
+            ++pos, new Time(work.getString("scheduled")).toString()
+        );
+        stmt.setObject(++pos, json.getString("ct"));
+        stmt.setObject(++pos, json.getString("ctrule"));
+        stmt.setObject(++pos, json.getString("dt"));
+        stmt.setObject(++pos, json.getString("dtrule"));
+        stmt.setObject(++pos, json.getString("details"));
+        stmt.setLong(++pos, json.getJsonNumber("amount").longValue());
+    }
+
+    /**
+     * Is it a failure caused by the data of the receipt, which will
+     * never succeed (SQL states of classes 22 and 23, data exception
+     * and integrity constraint violation)?
+     * @param ex Failure
+     * @return TRUE if the receipt is broken
+     */
+    private static boolean broken(final SQLException ex) {
+        final String state = ex.getSQLState();
+        return state != null
+            && (state.startsWith("22") || state.startsWith("23"));
+    }
+
+    /**
+     * Is it a conflict with a concurrent transaction, which may succeed
+     * if tried again (SQL states {@code 40P01} and {@code 40001}, deadlock
+     * and serialization failure)?
+     * @param ex Failure
+     * @return TRUE if the transaction should be retried
+     */
+    private static boolean conflict(final SQLException ex) {
+        final String state = ex.getSQLState();
+        return "40P01".equals(state) || "40001".equals(state);
     }
 
 }
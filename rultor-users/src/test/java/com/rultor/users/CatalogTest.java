@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.users;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.jcabi.dynamo.Frame;
+import com.jcabi.dynamo.Item;
+import com.jcabi.dynamo.Region;
+import com.jcabi.dynamo.Table;
+import com.jcabi.dynamo.Valve;
+import com.jcabi.urn.URN;
+import java.util.Arrays;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Test case for {@link Catalog}.
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ */
+public final class CatalogTest {
+
+    /**
+     * Catalog can group rules by owners in one scan.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void groupsRulesByOwners() throws Exception {
+        final URN first = new URN("urn:test:1");
+        final URN second = new URN("urn:test:2");
+        final Frame scan = Mockito.mock(Frame.class);
+        Mockito.doReturn(
+            Arrays.asList(
+                CatalogTest.item(first, "beta"),
+                CatalogTest.item(second, "gamma"),
+                CatalogTest.item(first, "alpha")
+            ).iterator()
+        ).when(scan).iterator();
+        final Catalog catalog = new Catalog(CatalogTest.region(scan));
+        try {
+            MatcherAssert.assertThat(
+                catalog.owners(),
+                Matchers.containsInAnyOrder(first, second)
+            );
+            MatcherAssert.assertThat(
+                catalog.rules(first).iterator().next()
+                    .get(AwsRule.RANGE_NAME).getS(),
+                Matchers.equalTo("alpha")
+            );
+            MatcherAssert.assertThat(
+                catalog.rules(new URN("urn:test:3")),
+                Matchers.<Item>emptyIterable()
+            );
+            MatcherAssert.assertThat(catalog.version(), Matchers.equalTo(1L));
+            Mockito.verify(scan, Mockito.times(1)).iterator();
+        } finally {
+            catalog.close();
+        }
+    }
+
+    /**
+     * Catalog can refresh rules of one owner.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void refreshesRulesOfOneOwner() throws Exception {
+        final URN owner = new URN("urn:test:5");
+        final Frame scan = Mockito.mock(Frame.class);
+        Mockito.doReturn(
+            Arrays.asList(CatalogTest.item(owner, "first")).iterator()
+        ).when(scan).iterator();
+        final Frame query = Mockito.mock(Frame.class);
+        Mockito.doReturn(query).when(scan)
+            .where(AwsRule.HASH_OWNER, owner.toString());
+        Mockito.doReturn(query).when(query)
+            .through(Mockito.any(Valve.class));
+        Mockito.doReturn(
+            Arrays.asList(
+                CatalogTest.item(owner, "first"),
+                CatalogTest.item(owner, "second")
+            ).iterator()
+        ).when(query).iterator();
+        final Catalog catalog = new Catalog(CatalogTest.region(scan));
+        try {
+            MatcherAssert.assertThat(
+                catalog.rules(owner),
+                Matchers.<Item>iterableWithSize(1)
+            );
+            catalog.refresh(owner);
+            MatcherAssert.assertThat(
+                catalog.rules(owner),
+                Matchers.<Item>iterableWithSize(2)
+            );
+            MatcherAssert.assertThat(catalog.version(), Matchers.equalTo(2L));
+        } finally {
+            catalog.close();
+        }
+    }
+
+    /**
+     * Create region with the given frame in its table.
+     * @param frame Frame of the table
+     * @return Region
+     */
+    private static Region region(final Frame frame) {
+        final Region region = Mockito.mock(Region.class);
+        final Table table = Mockito.mock(Table.class);
+        Mockito.doReturn(table).when(region).table(AwsRule.TABLE);
+        Mockito.doReturn(frame).when(table).frame();
+        return region;
+    }
+
+    /**
+     * Create item of a rule.
+     * @param owner Owner of the rule
+     * @param name Name of the rule
+     * @return Item
+     */
+    private static Item item(final URN owner, final String name) {
+        final Item item = Mockito.mock(Item.class);
+        Mockito.doReturn(new AttributeValue(owner.toString()))
+            .when(item).get(AwsRule.HASH_OWNER);
+        Mockito.doReturn(new AttributeValue(name))
+            .when(item).get(AwsRule.RANGE_NAME);
+        return item;
+    }
+
+}
@@ -30,7 +30,8 @@
 package com.rultor.users;
 
 import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
 import com.jcabi.aspects.Tv;
 import com.jcabi.urn.URN;
 import com.rultor.aws.SQSClient;
@@ -62,28 +63,38 @@ public final class SQSWalletTest {
         final SQSClient client = Mockito.mock(SQSClient.class);
         final AmazonSQS aws = Mockito.mock(AmazonSQS.class);
         Mockito.doReturn(aws).when(client).get();
+        final Coordinates work = new Coordinates.Simple();
         final Wallet wallet = new SQSWallet(
-            client, new Coordinates.Simple(),
+            client, work,
             new URN("urn:creditor:1"), "credit-rule",
             new URN("urn:debitor:1"), "debit-rule"
         );
         wallet.charge("payment детали", new Dollars(Tv.MILLION));
-        Mockito.verify(aws).sendMessage(
+        wallet.charge("another payment", new Dollars(Tv.MILLION));
+        Charges.flush(work);
+        Mockito.verify(aws).sendMessageBatch(
             Mockito.argThat(
-                Matchers.<SendMessageRequest>hasProperty(
-                    "messageBody",
-                    new CustomMatcher<String>("valid JSON") {
-                        @Override
-                        public boolean matches(final Object obj) {
-                            final JsonObject json = Json.createReader(
-                                new StringReader(obj.toString())
-                            ).readObject();
-                            return new Time(
-                                json.getJsonObject("work")
-                                    .getString("scheduled")
-                            ).millis() > 0;
-                        }
-                    }
+                Matchers.<SendMessageBatchRequest>hasProperty(
+                    "entries",
+                    Matchers.contains(
+                        Matchers.<SendMessageBatchRequestEntry>hasProperty(
+                            "messageBody",
+                            new CustomMatcher<String>("valid JSON") {
+                                @Override
+                                public boolean matches(final Object obj) {
+                                    final JsonObject json = Json.createReader(
+                                        new StringReader(obj.toString())
+                                    ).readObject();
+                                    return new Time(
+                                        json.getJsonObject("work")
+                                            .getString("scheduled")
+                                    ).millis() > 0
+                                        && json.getJsonNumber("amount")
+                                            .longValue() == Tv.MILLION * 2;
+                                }
+                            }
+                        )
+                    )
                 )
             )
         );
@@ -115,6 +115,45 @@ public final class MongoStandITCase {
         );
     }
 
+    /**
+     * MongoStand can build tags from posts coming in any order.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void buildsTagsFromUnorderedPosts() throws Exception {
+        final Stand stand = this.stand();
+        final Coordinates pulse = this.pulse();
+        stand.post(pulse, 1, "ADD 'test'; SET 'hello';");
+        stand.post(
+            pulse, Tv.THREE,
+            new Directives()
+                .xpath("/snapshot/tags/tag[label='first']").strict(1)
+                .add("level").set("INFO").toString()
+        );
+        stand.post(
+            pulse, 2,
+            new Directives()
+                .xpath("/snapshot").addIfAbsent("tags")
+                .add("tag").add("label").set("first").toString()
+        );
+        stand.post(
+            pulse, Tv.FOUR,
+            new Directives()
+                .xpath("/snapshot").addIfAbsent("tags")
+                .add("tag").add("label").set("second").up()
+                .add("level").set("SEVERE").toString()
+        );
+        final Pulse saved = stand.pulses().tail(pulse).iterator().next();
+        MatcherAssert.assertThat(
+            saved.tags().contains("first"),
+            Matchers.is(true)
+        );
+        MatcherAssert.assertThat(
+            saved.tags().contains("second"),
+            Matchers.is(true)
+        );
+    }
+
     /**
      * MongoStand can update the same pulse concurrently.
      * @throws Exception If some problem inside
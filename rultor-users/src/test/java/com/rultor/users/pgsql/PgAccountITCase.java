@@ -85,6 +85,22 @@ public final class PgAccountITCase {
         );
     }
 
+    /**
+     * PgAccount can see its funds without delay.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void seesFundsImmediately() throws Exception {
+        final Account account = this.account();
+        final long before = account.balance().points();
+        final long amount = Math.abs((long) new Random().nextInt()) + 1;
+        account.fund(new Dollars(amount), "for a balance check");
+        MatcherAssert.assertThat(
+            account.balance().points(),
+            Matchers.equalTo(before + amount)
+        );
+    }
+
     /**
      * Get account to test against.
      * @return Account to test
@@ -30,17 +30,23 @@
 package com.rultor.users.pgsql;
 
 import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
 import com.amazonaws.services.sqs.model.Message;
 import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
 import com.amazonaws.services.sqs.model.ReceiveMessageResult;
 import com.rultor.aws.SQSClient;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import javax.sql.DataSource;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
+import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 /**
@@ -51,6 +57,16 @@ import org.mockito.Mockito;
  */
 public final class SQSReceiptsTest {
 
+    /**
+     * Valid receipt in JSON.
+     */
+    // @checkstyle StringLiteralsConcatenation (5 lines)
+    private static final String BODY = "{\"work\": {\"owner\": \"urn:test:1\","
+        + " \"rule\": \"test\", \"scheduled\": \"2012-08-23T13:25:33Z\"},"
+        + "\"ct\":\"urn:test:2\", \"ctrule\":\"some-other-2\","
+        + "\"dt\":\"urn:test:3\", \"dtrule\":\"some-other-4\","
+        + "\"details\":\"test\", \"amount\": 15}";
+
     /**
      * SQSReceipts can process JSON and post to PostrgreSQL.
      * @throws Exception If some problem inside
@@ -120,18 +136,155 @@ public final class SQSReceiptsTest {
         Mockito.verify(pgsql, Mockito.never()).get();
     }
 
+    /**
+     * SQSReceipts can insert all receipts in one batch.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void insertsReceiptsInOneBatch() throws Exception {
+        final SQSClient client = Mockito.mock(SQSClient.class);
+        final AmazonSQS aws = Mockito.mock(AmazonSQS.class);
+        Mockito.doReturn(aws).when(client).get();
+        // @checkstyle StringLiteralsConcatenation (5 lines)
+        final String body = "{\"work\": {\"owner\": \"urn:test:1\","
+            + " \"rule\": \"test\", \"scheduled\": \"2012-08-23T13:25:33Z\"},"
+            + "\"ct\":\"urn:test:2\", \"ctrule\":\"some-other-2\","
+            + "\"dt\":\"urn:test:3\", \"dtrule\":\"some-other-4\","
+            + "\"details\":\"test\", \"amount\": 15}";
+        Mockito.doReturn(
+            new ReceiveMessageResult().withMessages(
+                new Message().withBody(body).withReceiptHandle("a"),
+                new Message().withBody(body).withReceiptHandle("b")
+            )
+        ).when(aws).receiveMessage(Mockito.any(ReceiveMessageRequest.class));
+        final PreparedStatement stmt = Mockito.mock(PreparedStatement.class);
+        MatcherAssert.assertThat(
+            new SQSReceipts(this.pgsql(stmt), client).process(),
+            Matchers.equalTo(2)
+        );
+        Mockito.verify(stmt, Mockito.times(2)).addBatch();
+        Mockito.verify(stmt).executeBatch();
+        Mockito.verify(aws).deleteMessageBatch(
+            Mockito.any(DeleteMessageBatchRequest.class)
+        );
+    }
+
+    /**
+     * SQSReceipts can drop a broken receipt and keep the others.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void dropsBrokenReceiptsOnly() throws Exception {
+        final SQSClient client = Mockito.mock(SQSClient.class);
+        final AmazonSQS aws = Mockito.mock(AmazonSQS.class);
+        Mockito.doReturn(aws).when(client).get();
+        Mockito.doReturn(
+            new ReceiveMessageResult().withMessages(
+                new Message().withBody(SQSReceiptsTest.BODY)
+                    .withReceiptHandle("first"),
+                new Message().withBody(SQSReceiptsTest.BODY)
+                    .withReceiptHandle("second")
+            )
+        ).when(aws).receiveMessage(Mockito.any(ReceiveMessageRequest.class));
+        final PreparedStatement stmt = Mockito.mock(PreparedStatement.class);
+        Mockito.doThrow(new SQLException("batch failed"))
+            .doThrow(new SQLException("value too long", "22001"))
+            .doReturn(new int[] {1})
+            .when(stmt).executeBatch();
+        new SQSReceipts(this.pgsql(stmt), client).process();
+        final ArgumentCaptor<DeleteMessageBatchRequest> captor =
+            ArgumentCaptor.forClass(DeleteMessageBatchRequest.class);
+        Mockito.verify(aws).deleteMessageBatch(captor.capture());
+        MatcherAssert.assertThat(
+            captor.getValue().getEntries(),
+            Matchers.<DeleteMessageBatchRequestEntry>iterableWithSize(2)
+        );
+    }
+
+    /**
+     * SQSReceipts can keep receipts in SQS when database is down.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void keepsReceiptsWhenDatabaseFails() throws Exception {
+        final SQSClient client = Mockito.mock(SQSClient.class);
+        final AmazonSQS aws = Mockito.mock(AmazonSQS.class);
+        Mockito.doReturn(aws).when(client).get();
+        Mockito.doReturn(
+            new ReceiveMessageResult().withMessages(
+                new Message().withBody(SQSReceiptsTest.BODY)
+                    .withReceiptHandle("alpha")
+            )
+        ).when(aws).receiveMessage(Mockito.any(ReceiveMessageRequest.class));
+        final PreparedStatement stmt = Mockito.mock(PreparedStatement.class);
+        Mockito.doThrow(new SQLException("connection lost", "08006"))
+            .when(stmt).executeBatch();
+        try {
+            new SQSReceipts(this.pgsql(stmt), client).process();
+            Assert.fail("exception expected");
+        } catch (SQLException ex) {
+            MatcherAssert.assertThat(
+                ex.getSQLState(), Matchers.equalTo("08006")
+            );
+        }
+        Mockito.verify(aws, Mockito.never()).deleteMessageBatch(
+            Mockito.any(DeleteMessageBatchRequest.class)
+        );
+    }
+
+    /**
+     * SQSReceipts can retry a batch aborted because of a deadlock.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void retriesBatchOnDeadlock() throws Exception {
+        final SQSClient client = Mockito.mock(SQSClient.class);
+        final AmazonSQS aws = Mockito.mock(AmazonSQS.class);
+        Mockito.doReturn(aws).when(client).get();
+        Mockito.doReturn(
+            new ReceiveMessageResult().withMessages(
+                new Message().withBody(SQSReceiptsTest.BODY)
+                    .withReceiptHandle("beta")
+            )
+        ).when(aws).receiveMessage(Mockito.any(ReceiveMessageRequest.class));
+        final PreparedStatement stmt = Mockito.mock(PreparedStatement.class);
+        Mockito.doThrow(new SQLException("deadlock detected", "40P01"))
+            .doReturn(new int[] {1})
+            .when(stmt).executeBatch();
+        new SQSReceipts(this.pgsql(stmt), client).process();
+        Mockito.verify(stmt, Mockito.times(2)).executeBatch();
+        Mockito.verify(stmt, Mockito.times(2)).executeQuery();
+        Mockito.verify(aws).deleteMessageBatch(
+            Mockito.any(DeleteMessageBatchRequest.class)
+        );
+    }
+
     /**
      * Get PgSql client.
      * @return Sheet to test
      * @throws Exception If some problem inside
      */
-    @SuppressWarnings("PMD.CloseResource")
     private PgClient pgsql() throws Exception {
-        final PreparedStatement stmt = Mockito.mock(PreparedStatement.class);
+        return this.pgsql(Mockito.mock(PreparedStatement.class));
+    }
+
+    /**
+     * Get PgSql client.
+     * @param stmt Statement to use
+     * @return Sheet to test
+     * @throws Exception If some problem inside
+     */
+    @SuppressWarnings("PMD.CloseResource")
+    private PgClient pgsql(final PreparedStatement stmt) throws Exception {
         final Connection conn = Mockito.mock(Connection.class);
+        Mockito.doReturn(Mockito.mock(ResultSet.class))
+            .when(stmt).executeQuery();
         Mockito.doReturn(stmt).when(conn).prepareStatement(
             Mockito.anyString(), Mockito.eq(Statement.RETURN_GENERATED_KEYS)
         );
+        Mockito.doReturn(stmt).when(conn).prepareStatement(
+            Mockito.anyString()
+        );
         final DataSource source = Mockito.mock(DataSource.class);
         Mockito.doReturn(conn).when(source).getConnection();
         final PgClient pgsql = Mockito.mock(PgClient.class);
@@ -30,13 +30,17 @@
 package com.rultor.life;
 
 import com.jcabi.aspects.Loggable;
+import com.jcabi.log.Logger;
 import com.jcabi.manifests.Manifests;
+import com.rultor.snapshot.XSLT;
 import com.rultor.spi.Queue;
 import com.rultor.spi.Repo;
 import com.rultor.spi.Users;
+import com.rultor.web.StandRs;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
+import javax.xml.transform.TransformerConfigurationException;
 import org.apache.commons.io.IOUtils;
 
 /**
@@ -76,6 +80,11 @@ public final class Lifespan implements ServletContextListener {
         context.setAttribute(Users.class.getName(), users);
         context.setAttribute(Repo.class.getName(), repo);
         context.setAttribute(Queue.class.getName(), queue);
+        try {
+            XSLT.STYLESHEETS.warm(StandRs.class, "post.xsl", "fetch.xsl");
+        } catch (TransformerConfigurationException ex) {
+            Logger.warn(this, "failed to compile stylesheets: %s", ex);
+        }
     }
 
     /**
@@ -35,12 +35,10 @@ import com.amazonaws.services.sqs.model.Message;
 import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
 import com.amazonaws.services.sqs.model.ReceiveMessageResult;
 import com.amazonaws.services.sqs.model.SendMessageRequest;
-import com.jcabi.aspects.Immutable;
 import com.jcabi.aspects.Loggable;
 import com.jcabi.aspects.ScheduleWithFixedDelay;
 import com.jcabi.aspects.Tv;
 import com.rultor.aws.SQSClient;
-import com.rultor.spi.Coordinates;
 import com.rultor.spi.Queue;
 import com.rultor.spi.Rule;
 import com.rultor.spi.User;
@@ -54,11 +52,13 @@ import lombok.EqualsAndHashCode;
 /**
  * Quartz in Amazon SQS.
  *
+ * <p>Every minute it pushes into the queue only those rules, which are
+ * due at this minute, according to their {@link Schedule}.
+ *
  * @author Yegor Bugayenko (yegor@tpc2.com)
  * @version $Id$
  * @checkstyle ClassDataAbstractionCoupling (500 lines)
  */
-@Immutable
 @Loggable(Loggable.DEBUG)
 @ScheduleWithFixedDelay(delay = 1, unit = TimeUnit.SECONDS)
 @EqualsAndHashCode(of = { "users", "queue", "client" })
@@ -80,6 +80,11 @@ public final class SQSQuartz implements Runnable, Closeable {
      */
     private final transient SQSClient client;
 
+    /**
+     * Schedule of rules.
+     */
+    private final transient Schedule schedule = new Schedule();
+
     /**
      * Public ctor.
      * @param usr Users
@@ -175,11 +180,12 @@ public final class SQSQuartz implements Runnable, Closeable {
     private void publish(final Time time) {
         for (User user : this.users) {
             for (Rule rule : user.rules()) {
-                this.queue.push(
-                    new Coordinates.Simple(user.urn(), rule.name(), time)
+                this.schedule.update(
+                    user.urn(), rule.name(), rule.spec(), time
                 );
             }
         }
+        this.queue.pushAll(this.schedule.due(time));
     }
 
 }
@@ -0,0 +1,289 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.life;
+
+import com.jcabi.aspects.Loggable;
+import com.jcabi.log.Logger;
+import com.jcabi.urn.URN;
+import com.rultor.base.Crontab;
+import com.rultor.base.Empty;
+import com.rultor.spi.Coordinates;
+import com.rultor.spi.Spec;
+import com.rultor.tools.Time;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * Schedule of rules, ordered by the time of their next execution.
+ *
+ * <p>A rule which spec is wrapped into {@link Crontab} is due only at
+ * the moments its crontab expression allows. All other rules are due
+ * every minute. Rules are kept in a priority queue, ordered by their next
+ * execution time, so that only due rules are visited when the next
+ * minute comes.
+ *
+ * <p>Every minute the caller has to
+ * {@link #update(URN,String,Spec,Time)} all rules it knows about and
+ * then call {@link #due(Time)}. Rules not updated since the previous call
+ * to {@link #due(Time)} are removed from the schedule. Rules with
+ * modified specs are re-scheduled.
+ *
+ * <p>The class is thread-safe.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@ToString(of = "entries")
+@EqualsAndHashCode(of = "entries")
+@Loggable(Loggable.DEBUG)
+final class Schedule {
+
+    /**
+     * Crontab at the top level of a spec.
+     */
+    private static final Pattern CRONTAB = Pattern.compile(
+        // @checkstyle LineLength (1 line)
+        "\\s*com\\.rultor\\.base\\.Crontab\\s*\\(\\s*\\$\\{\\s*0\\s*:[^}]*}\\s*,\\s*\"([^\"]+)\".*",
+        Pattern.DOTALL
+    );
+
+    /**
+     * All entries, by owner and rule name.
+     */
+    private final transient Map<String, Schedule.Entry> entries =
+        new HashMap<String, Schedule.Entry>(0);
+
+    /**
+     * Entries ordered by the time of their next execution.
+     */
+    private final transient PriorityQueue<Schedule.Entry> queue =
+        new PriorityQueue<Schedule.Entry>();
+
+    /**
+     * Register a rule or refresh it, if its spec was changed.
+     * @param owner Owner of the rule
+     * @param rule Name of the rule
+     * @param spec Its spec
+     * @param time Current time
+     * @checkstyle ParameterNumber (4 lines)
+     */
+    public void update(final URN owner, final String rule, final Spec spec,
+        final Time time) {
+        final String key = String.format("%s %s", owner, rule);
+        final String text = spec.asText();
+        synchronized (this.entries) {
+            Schedule.Entry entry = this.entries.get(key);
+            if (entry == null || !entry.text().equals(text)) {
+                if (entry != null) {
+                    this.queue.remove(entry);
+                }
+                entry = new Schedule.Entry(owner, rule, text);
+                entry.advance(time.round().millis());
+                this.entries.put(key, entry);
+                this.queue.add(entry);
+            }
+            entry.touch();
+        }
+    }
+
+    /**
+     * Get works due at the given time and re-schedule them.
+     * @param time The time
+     * @return Works to be done now
+     */
+    public Collection<Coordinates> due(final Time time) {
+        final Collection<Coordinates> works = new ArrayList<Coordinates>(0);
+        synchronized (this.entries) {
+            final Iterator<Schedule.Entry> iterator =
+                this.entries.values().iterator();
+            while (iterator.hasNext()) {
+                final Schedule.Entry entry = iterator.next();
+                if (!entry.untouch()) {
+                    iterator.remove();
+                    this.queue.remove(entry);
+                }
+            }
+            final long now = time.round().millis();
+            final Collection<Schedule.Entry> fired =
+                new ArrayList<Schedule.Entry>(0);
+            while (!this.queue.isEmpty() && this.queue.peek().next() <= now) {
+                final Schedule.Entry entry = this.queue.poll();
+                if (entry.next() == now) {
+                    works.add(entry.work(time));
+                }
+                entry.advance(now + TimeUnit.MINUTES.toMillis(1));
+                fired.add(entry);
+            }
+            this.queue.addAll(fired);
+        }
+        Logger.info(
+            this, "%d work(s) due at %s, %d rule(s) in schedule",
+            works.size(), time, this.entries.size()
+        );
+        return works;
+    }
+
+    /**
+     * Entry in the schedule.
+     */
+    @ToString(of = { "owner", "rule", "when" })
+    private static final class Entry implements Comparable<Schedule.Entry> {
+        /**
+         * Owner of the rule.
+         */
+        private final transient URN owner;
+        /**
+         * Name of the rule.
+         */
+        private final transient String rule;
+        /**
+         * Text of its spec.
+         */
+        private final transient String spec;
+        /**
+         * Crontab of the rule or NULL if it is due every minute.
+         */
+        private final transient Crontab crontab;
+        /**
+         * When it should be executed next time, in milliseconds.
+         */
+        private transient long when;
+        /**
+         * Was it updated recently?
+         */
+        private transient boolean touched;
+        /**
+         * Public ctor.
+         * @param urn Owner of the rule
+         * @param name Name of the rule
+         * @param text Spec of the rule
+         */
+        protected Entry(final URN urn, final String name, final String text) {
+            this.owner = urn;
+            this.rule = name;
+            this.spec = text;
+            this.crontab = Schedule.Entry.crontab(text);
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compareTo(final Schedule.Entry entry) {
+            return Long.valueOf(this.when).compareTo(entry.when);
+        }
+        /**
+         * Text of the spec.
+         * @return Text
+         */
+        public String text() {
+            return this.spec;
+        }
+        /**
+         * Mark it as updated.
+         */
+        public void touch() {
+            this.touched = true;
+        }
+        /**
+         * Reset the mark.
+         * @return TRUE if it was updated since the previous reset
+         */
+        public boolean untouch() {
+            final boolean was = this.touched;
+            this.touched = false;
+            return was;
+        }
+        /**
+         * Make a work.
+         * @param time Scheduled time
+         * @return The work
+         */
+        public Coordinates work(final Time time) {
+            return new Coordinates.Simple(this.owner, this.rule, time);
+        }
+        /**
+         * Time of the next execution.
+         * @return Milliseconds
+         */
+        public long next() {
+            return this.when;
+        }
+        /**
+         * Re-schedule it, starting from the given moment.
+         * @param start The moment to start from, in milliseconds
+         */
+        public void advance(final long start) {
+            if (this.crontab == null) {
+                this.when = start;
+            } else {
+                try {
+                    this.when = this.crontab.next(new Time(start)).millis();
+                } catch (IllegalStateException ex) {
+                    Logger.warn(this, "#advance(): %s", ex.getMessage());
+                    this.when = start;
+                }
+            }
+        }
+        /**
+         * Make crontab from spec, if it's there.
+         * @param text Text of the spec
+         * @return Crontab or NULL if spec is not wrapped into crontab
+         */
+        private static Crontab crontab(final String text) {
+            final Matcher matcher = Schedule.CRONTAB.matcher(text);
+            Crontab crontab = null;
+            if (matcher.matches()) {
+                try {
+                    crontab = new Crontab(
+                        new Coordinates.None(),
+                        matcher.group(1),
+                        new Empty()
+                    );
+                } catch (IllegalArgumentException ex) {
+                    Logger.warn(
+                        Schedule.class, "#crontab(): %s", ex.getMessage()
+                    );
+                }
+            }
+            return crontab;
+        }
+    }
+
+}
@@ -32,6 +32,7 @@ package com.rultor.web;
 import com.jcabi.aspects.Loggable;
 import com.jcabi.aspects.Tv;
 import com.jcabi.log.Logger;
+import com.jcabi.urn.URN;
 import com.rexsl.page.JaxbBundle;
 import com.rexsl.page.Link;
 import com.rexsl.page.PageBuilder;
@@ -48,18 +49,26 @@ import com.rultor.spi.Wallet;
 import com.rultor.tools.Exceptions;
 import com.rultor.tools.Time;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.xml.transform.TransformerException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.xembly.ImpossibleModificationException;
 import org.xembly.XemblySyntaxException;
 
@@ -82,6 +91,24 @@ public final class DrainRs extends BaseRs {
      */
     private static final String QUERY_SINCE = "since";
 
+    /**
+     * Query param with the time of a pulse.
+     */
+    private static final String QUERY_PULSE = "pulse";
+
+    /**
+     * Rendered snapshots of finished pulses, saved to the directory
+     * from "rultor.snapshots" system property, if it is set.
+     */
+    private static final SnapshotCache SNAPSHOTS = new SnapshotCache(
+        Tv.FIFTY * Tv.MILLION, System.getProperty("rultor.snapshots")
+    );
+
+    /**
+     * How long to wait for pulses of a page, in milliseconds.
+     */
+    private static final long DEADLINE = TimeUnit.SECONDS.toMillis(Tv.FIVE);
+
     /**
      * Rule name.
      */
@@ -178,6 +205,47 @@ public final class DrainRs extends BaseRs {
             .build();
     }
 
+    /**
+     * Get snapshot HTML for a pulse, which was pending on the page.
+     * @param pulse Time of the pulse, in milliseconds
+     * @return The JAX-RS response
+     */
+    @GET
+    @Path("/fetch")
+    @Produces(MediaType.TEXT_HTML)
+    public Response fetch(@QueryParam(DrainRs.QUERY_PULSE) final String pulse) {
+        final Time time = new Time(Long.parseLong(pulse));
+        final URN owner = this.user().urn();
+        final SnapshotCache.Entry cached =
+            DrainRs.SNAPSHOTS.get(owner, this.name, time);
+        final Rendered rendered;
+        if (cached == null) {
+            rendered = DrainRs.render(owner, this.name, time, this.drain(time));
+        } else {
+            rendered = DrainRs.rendered(cached);
+        }
+        JaxbBundle bundle = new JaxbBundle("div");
+        if (rendered.element() != null) {
+            bundle = bundle.add(rendered.element());
+        }
+        for (Exception bug : rendered.bugs()) {
+            bundle = bundle.add("error", Exceptions.message(bug)).up();
+        }
+        Response resp;
+        try {
+            resp = Response.ok().entity(
+                new XSLT(
+                    bundle.element(), this.getClass(), "fetch.xsl"
+                ).xml()
+            ).build();
+        } catch (TransformerException ex) {
+            resp = Response.serverError().entity(
+                Exceptions.stacktrace(ex)
+            ).build();
+        }
+        return resp;
+    }
+
     /**
      * Get drain.
      * @param time Time where we should create a drain
@@ -252,18 +320,37 @@ public final class DrainRs extends BaseRs {
 
     /**
      * All pulses of the rule.
+     *
+     * <p>Pulses are read and rendered in parallel, and those that are not
+     * ready in {@link #DEADLINE} are shown as pending, to be loaded
+     * by the page through {@link #fetch(String)}.
+     *
      * @param pulses All pulses to show
      * @param maximum Maximum to show
      * @return Collection of JAXB rules
      */
     private JaxbBundle pulses(final Iterator<Time> pulses, final int maximum) {
-        JaxbBundle bundle = new JaxbBundle("pulses");
+        final Collection<Time> times = new LinkedList<Time>();
+        final Parallel<Rendered> tasks =
+            new Parallel<Rendered>();
         int pos;
         for (pos = 0; pos < maximum; ++pos) {
             if (!pulses.hasNext()) {
                 break;
             }
-            bundle = bundle.add(this.pulse(pulses.next()));
+            final Time time = pulses.next();
+            times.add(time);
+            tasks.add(this.task(time));
+        }
+        final Iterator<Rendered> outcomes;
+        try {
+            outcomes = tasks.results(DrainRs.DEADLINE).iterator();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex);
+        }
+        JaxbBundle bundle = new JaxbBundle("pulses");
+        for (Time time : times) {
+            bundle = bundle.add(this.pulse(time, outcomes.next()));
         }
         if (pos == maximum && pulses.hasNext()) {
             bundle = bundle.link(
@@ -281,13 +368,90 @@ public final class DrainRs extends BaseRs {
         return bundle;
     }
 
+    /**
+     * Make a task that renders a pulse.
+     * @param time Date of it
+     * @return Task
+     */
+    private Callable<Rendered> task(final Time time) {
+        final URN owner = this.user().urn();
+        final String rule = this.name;
+        final SnapshotCache.Entry cached =
+            DrainRs.SNAPSHOTS.get(owner, rule, time);
+        final Callable<Rendered> task;
+        if (cached == null) {
+            final Drain drain = this.drain(time);
+            task = new Callable<Rendered>() {
+                @Override
+                public Rendered call() {
+                    return DrainRs.render(owner, rule, time, drain);
+                }
+            };
+        } else {
+            task = new Callable<Rendered>() {
+                @Override
+                public Rendered call() {
+                    return DrainRs.rendered(cached);
+                }
+            };
+        }
+        return task;
+    }
+
+    /**
+     * Rendered pulse from cache.
+     * @param cached Cached snapshot
+     * @return Rendered pulse
+     */
+    private static Rendered rendered(final SnapshotCache.Entry cached) {
+        return new Rendered(
+            cached.xembly(), cached.element(), new ArrayList<Exception>(0)
+        );
+    }
+
+    /**
+     * Read and render a pulse from the drain (in any thread).
+     * @param owner Owner of the rule
+     * @param rule Name of the rule
+     * @param time Date of the pulse
+     * @param drain The drain
+     * @return Rendered pulse
+     * @checkstyle ParameterNumber (4 lines)
+     */
+    private static Rendered render(final URN owner, final String rule,
+        final Time time, final Drain drain) {
+        final Collection<Exception> bugs = new LinkedList<Exception>();
+        String xembly = null;
+        Element element = null;
+        try {
+            final Snapshot snapshot = new Snapshot(drain.read());
+            xembly = snapshot.xembly();
+            try {
+                final Document dom = new XSLT(
+                    snapshot, DrainRs.class, "post.xsl"
+                ).dom();
+                element = dom.getDocumentElement();
+                DrainRs.SNAPSHOTS.put(owner, rule, time, xembly, dom);
+            } catch (ImpossibleModificationException ex) {
+                bugs.add(ex);
+            }
+        } catch (IOException ex) {
+            bugs.add(ex);
+        } catch (XemblySyntaxException ex) {
+            bugs.add(ex);
+        } catch (TransformerException ex) {
+            bugs.add(ex);
+        }
+        return new Rendered(xembly, element, bugs);
+    }
+
     /**
      * Convert pulse to JaxbBundle.
      * @param time Date of it
+     * @param outcome Its rendering or NULL if it's not ready yet
      * @return Bundle
      */
-    private JaxbBundle pulse(final Time time) {
-        final Collection<Exception> bugs = new LinkedList<Exception>();
+    private JaxbBundle pulse(final Time time, final Rendered outcome) {
         JaxbBundle bundle = new JaxbBundle("pulse")
             .add("time", time.toString())
             .up()
@@ -302,41 +466,41 @@ public final class DrainRs extends BaseRs {
                         .build(this.name, time.millis())
                 )
             );
-        final Snapshot snapshot;
-        try {
-            snapshot = new Snapshot(this.drain(time).read());
-            bundle = bundle.add("xembly", snapshot.xembly()).up();
-            try {
-                bundle = bundle.add(
-                    new XSLT(
-                        snapshot,
-                        this.getClass().getResourceAsStream("post.xsl")
-                    ).dom().getDocumentElement()
-                );
-            } catch (ImpossibleModificationException ex) {
-                bugs.add(ex);
+        if (outcome == null) {
+            bundle = bundle.add("pending").up().link(
+                new Link(
+                    "fetch",
+                    this.uriInfo().getBaseUriBuilder()
+                        .clone()
+                        .path(DrainRs.class)
+                        .path(DrainRs.class, "fetch")
+                        .queryParam(DrainRs.QUERY_PULSE, time.millis())
+                        .build(this.name)
+                )
+            );
+        } else {
+            if (outcome.xembly() != null) {
+                bundle = bundle.add("xembly", outcome.xembly()).up();
             }
-        } catch (IOException ex) {
-            bugs.add(ex);
-        } catch (XemblySyntaxException ex) {
-            bugs.add(ex);
-        } catch (TransformerException ex) {
-            bugs.add(ex);
-        }
-        return bundle.add(
-            new JaxbBundle("exceptions").add(
-                new JaxbBundle.Group<Exception>(bugs) {
-                    @Override
-                    public JaxbBundle bundle(final Exception bug) {
-                        return new JaxbBundle("exception")
-                            .add("class", bug.getClass().getCanonicalName())
-                            .up()
-                            .add("message", Exceptions.message(bug))
-                            .up();
+            if (outcome.element() != null) {
+                bundle = bundle.add(outcome.element());
+            }
+            bundle = bundle.add(
+                new JaxbBundle("exceptions").add(
+                    new JaxbBundle.Group<Exception>(outcome.bugs()) {
+                        @Override
+                        public JaxbBundle bundle(final Exception bug) {
+                            return new JaxbBundle("exception")
+                                .add("class", bug.getClass().getCanonicalName())
+                                .up()
+                                .add("message", Exceptions.message(bug))
+                                .up();
+                        }
                     }
-                }
-            )
-        );
+                )
+            );
+        }
+        return bundle;
     }
 
 }
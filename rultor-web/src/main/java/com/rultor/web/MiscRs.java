@@ -31,6 +31,9 @@ package com.rultor.web;
 
 import com.jcabi.aspects.Loggable;
 import com.jcabi.manifests.Manifests;
+import com.rultor.aws.Registry;
+import com.rultor.repo.ClasspathRepo;
+import com.rultor.snapshot.XSLT;
 import java.io.IOException;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -77,4 +80,37 @@ public final class MiscRs extends BaseRs {
         }
     }
 
+    /**
+     * Show statistics of compiled XSL stylesheets.
+     * @return The JAX-RS response
+     */
+    @GET
+    @Path("/stylesheets")
+    @Produces(MediaType.TEXT_PLAIN)
+    public String stylesheets() {
+        return XSLT.STYLESHEETS.toString();
+    }
+
+    /**
+     * Show statistics of shared AWS clients.
+     * @return The JAX-RS response
+     */
+    @GET
+    @Path("/aws")
+    @Produces(MediaType.TEXT_PLAIN)
+    public String aws() {
+        return Registry.SHARED.toString();
+    }
+
+    /**
+     * Show statistics of the cache of parsed specs.
+     * @return The JAX-RS response
+     */
+    @GET
+    @Path("/specs")
+    @Produces(MediaType.TEXT_PLAIN)
+    public String specs() {
+        return ClasspathRepo.specs();
+    }
+
 }
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.web;
+
+import com.jcabi.aspects.Tv;
+import com.jcabi.log.VerboseThreads;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * Tasks of one page, running in parallel, with a deadline.
+ *
+ * <p>All pages share one bounded pool of threads. When it is busy
+ * and its queue is full, new tasks are rejected and never run, their
+ * results are NULL, exactly as for tasks that missed the deadline. Thus,
+ * the thread of the request never renders anything itself.
+ * Tasks must not touch anything injected by JAX-RS (URI info, headers,
+ * etc.), since it is bound to the thread of the request.
+ *
+ * @param <T> Type of results
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@ToString
+@EqualsAndHashCode(of = "futures")
+@SuppressWarnings("PMD.DoNotUseThreads")
+final class Parallel<T> {
+
+    /**
+     * How many threads are in the pool.
+     */
+    static final int THREADS = Tv.TWENTY;
+
+    /**
+     * How many tasks may wait in the queue.
+     */
+    static final int QUEUE = Tv.HUNDRED;
+
+    /**
+     * Executor shared by all pages.
+     */
+    private static final ExecutorService SVC = new ThreadPoolExecutor(
+        Parallel.THREADS, Parallel.THREADS, 1L, TimeUnit.MINUTES,
+        new ArrayBlockingQueue<Runnable>(Parallel.QUEUE),
+        new VerboseThreads("page"),
+        new ThreadPoolExecutor.AbortPolicy()
+    );
+
+    /**
+     * Futures, in order of submission (NULL for rejected tasks).
+     */
+    private final transient List<Future<T>> futures =
+        new ArrayList<Future<T>>(0);
+
+    /**
+     * Submit a task.
+     * @param task The task
+     * @return This object
+     */
+    public Parallel<T> add(final Callable<T> task) {
+        Future<T> future;
+        try {
+            future = Parallel.SVC.submit(task);
+        } catch (RejectedExecutionException ex) {
+            future = null;
+        }
+        this.futures.add(future);
+        return this;
+    }
+
+    /**
+     * Wait for all results, but not longer than the deadline.
+     *
+     * <p>Tasks that didn't finish in time are not cancelled, they
+     * continue in background (and may, for example, fill some cache),
+     * but their results are NULL in the list.
+     *
+     * @param millis Deadline, in milliseconds from now
+     * @return Results in order of submission, NULL for late or rejected ones
+     * @throws ExecutionException If any task fails
+     */
+    public List<T> results(final long millis) throws ExecutionException {
+        final long deadline = System.currentTimeMillis() + millis;
+        final List<T> results = new ArrayList<T>(this.futures.size());
+        for (Future<T> future : this.futures) {
+            if (future == null) {
+                results.add(null);
+                continue;
+            }
+            T result;
+            try {
+                result = future.get(
+                    Math.max(0L, deadline - System.currentTimeMillis()),
+                    TimeUnit.MILLISECONDS
+                );
+            } catch (TimeoutException ex) {
+                result = null;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(ex);
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.web;
+
+import java.util.Collection;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.w3c.dom.Element;
+
+/**
+ * Pulse rendered by {@link Parallel} tasks of a page.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ */
+@ToString
+@EqualsAndHashCode(of = { "script", "snapshot", "exceptions" })
+final class Rendered {
+
+    /**
+     * Xembly script, or NULL if it failed to read.
+     */
+    private final transient String script;
+
+    /**
+     * Rendered snapshot, or NULL if it failed to render.
+     */
+    private final transient Element snapshot;
+
+    /**
+     * Exceptions.
+     */
+    private final transient Collection<Exception> exceptions;
+
+    /**
+     * Public ctor.
+     * @param xembly Xembly script or NULL
+     * @param element Rendered snapshot or NULL
+     * @param bugs Exceptions
+     */
+    protected Rendered(final String xembly, final Element element,
+        final Collection<Exception> bugs) {
+        this.script = xembly;
+        this.snapshot = element;
+        this.exceptions = bugs;
+    }
+
+    /**
+     * Xembly script.
+     * @return Script or NULL
+     */
+    public String xembly() {
+        return this.script;
+    }
+
+    /**
+     * Rendered snapshot.
+     * @return Element or NULL
+     */
+    public Element element() {
+        return this.snapshot;
+    }
+
+    /**
+     * Exceptions.
+     * @return All of them
+     */
+    public Collection<Exception> bugs() {
+        return this.exceptions;
+    }
+
+}
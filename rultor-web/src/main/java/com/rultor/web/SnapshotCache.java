@@ -0,0 +1,429 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.web;
+
+import com.jcabi.log.Logger;
+import com.rultor.tools.Time;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import lombok.EqualsAndHashCode;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.CharEncoding;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Cache of rendered snapshots of finished pulses, bounded by the total
+ * length of their texts.
+ *
+ * <p>A pulse is finished when its snapshot has {@code finish} older
+ * than a minute (log lines are flushed to drains much faster than
+ * that). Snapshots of finished pulses don't change any more, that's
+ * why they are never invalidated, only evicted when the cache is full
+ * (least recently used first). Snapshots of running pulses
+ * are not cached at all.
+ *
+ * <p>If a directory is provided, every cached snapshot is saved there
+ * as a file as well, and is loaded from it when it is absent
+ * in memory (after eviction or a restart). The class is thread-safe.
+ *
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ * @since 1.0
+ * @checkstyle ClassDataAbstractionCoupling (500 lines)
+ */
+@EqualsAndHashCode(of = "entries")
+final class SnapshotCache {
+
+    /**
+     * Document factory.
+     */
+    private static final DocumentBuilderFactory DFACTORY =
+        DocumentBuilderFactory.newInstance();
+
+    /**
+     * Transformer factory.
+     */
+    private static final TransformerFactory TFACTORY =
+        TransformerFactory.newInstance();
+
+    /**
+     * Maximum total length of all cached texts.
+     */
+    private final transient long capacity;
+
+    /**
+     * Directory to save snapshots to, or NULL.
+     */
+    private final transient File dir;
+
+    /**
+     * Cached snapshots, in access order (guarded by this).
+     */
+    private final transient Map<String, SnapshotCache.Entry> entries =
+        new LinkedHashMap<String, SnapshotCache.Entry>(0, 0.75f, true);
+
+    /**
+     * Total length of all cached texts (guarded by this).
+     */
+    private transient long weight;
+
+    /**
+     * How many times the cache had the snapshot.
+     */
+    private final transient AtomicLong hits = new AtomicLong();
+
+    /**
+     * How many times the cache didn't have the snapshot.
+     */
+    private final transient AtomicLong misses = new AtomicLong();
+
+    /**
+     * Public ctor.
+     * @param max Maximum total length of all cached texts
+     * @param path Directory to save snapshots to, or NULL if not needed
+     */
+    protected SnapshotCache(final long max, final String path) {
+        this.capacity = max;
+        if (path == null) {
+            this.dir = null;
+        } else {
+            this.dir = new File(path);
+        }
+    }
+
+    /**
+     * Get cached snapshot.
+     * @param owner Owner of the rule
+     * @param rule Name of the rule
+     * @param scheduled When the pulse was scheduled
+     * @return Snapshot or NULL if it is absent
+     */
+    public SnapshotCache.Entry get(final Object owner, final String rule,
+        final Time scheduled) {
+        final String key = SnapshotCache.key(owner, rule, scheduled);
+        SnapshotCache.Entry entry;
+        synchronized (this) {
+            entry = this.entries.get(key);
+        }
+        if (entry == null) {
+            entry = this.load(key);
+            if (entry != null) {
+                this.remember(key, entry);
+            }
+        }
+        if (entry == null) {
+            this.misses.incrementAndGet();
+        } else {
+            this.hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Save snapshot in cache, if the pulse is finished.
+     * @param owner Owner of the rule
+     * @param rule Name of the rule
+     * @param scheduled When the pulse was scheduled
+     * @param xembly Xembly script of the snapshot
+     * @param dom Rendered snapshot
+     * @return TRUE if saved
+     * @checkstyle ParameterNumber (4 lines)
+     */
+    public boolean put(final Object owner, final String rule,
+        final Time scheduled, final String xembly, final Document dom) {
+        final boolean finished = SnapshotCache.finished(dom);
+        if (finished) {
+            final String key = SnapshotCache.key(owner, rule, scheduled);
+            final SnapshotCache.Entry entry =
+                new SnapshotCache.Entry(xembly, SnapshotCache.print(dom));
+            this.remember(key, entry);
+            this.save(key, entry);
+        }
+        return finished;
+    }
+
+    /**
+     * How many times snapshots were found in cache.
+     * @return Total hits
+     */
+    public long hits() {
+        return this.hits.get();
+    }
+
+    /**
+     * How many times snapshots were not found in cache.
+     * @return Total misses
+     */
+    public long misses() {
+        return this.misses.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        synchronized (this) {
+            return String.format(
+                "%d snapshot(s), %d chars of %d, hits=%d, misses=%d",
+                this.entries.size(), this.weight, this.capacity,
+                this.hits.get(), this.misses.get()
+            );
+        }
+    }
+
+    /**
+     * Keep it in memory, evicting least recently used ones if necessary.
+     * @param key The key
+     * @param entry The snapshot
+     */
+    private void remember(final String key, final SnapshotCache.Entry entry) {
+        if (entry.weight() > this.capacity) {
+            return;
+        }
+        synchronized (this) {
+            final SnapshotCache.Entry before = this.entries.put(key, entry);
+            if (before != null) {
+                this.weight -= before.weight();
+            }
+            this.weight += entry.weight();
+            final Iterator<SnapshotCache.Entry> iter =
+                this.entries.values().iterator();
+            while (this.weight > this.capacity) {
+                this.weight -= iter.next().weight();
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Save it to the directory, if any.
+     * @param key The key
+     * @param entry The snapshot
+     */
+    private void save(final String key, final SnapshotCache.Entry entry) {
+        if (this.dir != null) {
+            try {
+                FileUtils.write(
+                    this.file(key),
+                    new StringBuilder()
+                        .append(entry.xembly().length())
+                        .append('\n')
+                        .append(entry.xembly())
+                        .append(entry.xml())
+                        .toString(),
+                    CharEncoding.UTF_8
+                );
+            } catch (IOException ex) {
+                Logger.warn(this, "#save('%s'): %s", key, ex);
+            }
+        }
+    }
+
+    /**
+     * Load it from the directory, if any.
+     * @param key The key
+     * @return The snapshot or NULL if absent
+     */
+    private SnapshotCache.Entry load(final String key) {
+        SnapshotCache.Entry entry = null;
+        if (this.dir != null) {
+            final File file = this.file(key);
+            if (file.exists()) {
+                try {
+                    final String text = FileUtils.readFileToString(
+                        file, CharEncoding.UTF_8
+                    );
+                    final int eol = text.indexOf('\n');
+                    final int start = eol + 1;
+                    final int end = start
+                        + Integer.parseInt(text.substring(0, eol));
+                    entry = new SnapshotCache.Entry(
+                        text.substring(start, end), text.substring(end)
+                    );
+                } catch (IOException ex) {
+                    Logger.warn(this, "#load('%s'): %s", key, ex);
+                }
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * File for the key.
+     * @param key The key
+     * @return File
+     */
+    private File file(final String key) {
+        return new File(
+            this.dir, String.format("%s.xml", DigestUtils.md5Hex(key))
+        );
+    }
+
+    /**
+     * Is this rendered snapshot finished?
+     * @param dom Rendered snapshot
+     * @return TRUE if it is finished long enough ago
+     */
+    private static boolean finished(final Document dom) {
+        boolean finished = false;
+        final NodeList kids = dom.getDocumentElement().getChildNodes();
+        for (int idx = 0; idx < kids.getLength(); ++idx) {
+            final Node kid = kids.item(idx);
+            if (!"finish".equals(kid.getNodeName())) {
+                continue;
+            }
+            try {
+                finished = new Time().delta(new Time(kid.getTextContent()))
+                    > TimeUnit.MINUTES.toMillis(1);
+            } catch (IllegalArgumentException ex) {
+                finished = false;
+            }
+            break;
+        }
+        return finished;
+    }
+
+    /**
+     * Print DOM to text.
+     * @param dom DOM
+     * @return XML text
+     */
+    private static String print(final Document dom) {
+        final StringWriter writer = new StringWriter();
+        try {
+            final Transformer trans;
+            synchronized (SnapshotCache.TFACTORY) {
+                trans = SnapshotCache.TFACTORY.newTransformer();
+            }
+            trans.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            trans.transform(new DOMSource(dom), new StreamResult(writer));
+        } catch (TransformerException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Make a key.
+     * @param owner Owner of the rule
+     * @param rule Name of the rule
+     * @param scheduled When the pulse was scheduled
+     * @return Key
+     */
+    private static String key(final Object owner, final String rule,
+        final Time scheduled) {
+        return String.format("%s %s %d", owner, rule, scheduled.millis());
+    }
+
+    /**
+     * Cached snapshot.
+     */
+    @EqualsAndHashCode(of = { "script", "text" })
+    public static final class Entry {
+        /**
+         * Xembly script of the snapshot.
+         */
+        private final transient String script;
+        /**
+         * Rendered snapshot, as XML text.
+         */
+        private final transient String text;
+        /**
+         * Public ctor.
+         * @param xembly Xembly script
+         * @param xml Rendered snapshot
+         */
+        public Entry(final String xembly, final String xml) {
+            this.script = xembly;
+            this.text = xml;
+        }
+        /**
+         * Xembly script of the snapshot.
+         * @return Script
+         */
+        public String xembly() {
+            return this.script;
+        }
+        /**
+         * Rendered snapshot, as XML text.
+         * @return XML
+         */
+        public String xml() {
+            return this.text;
+        }
+        /**
+         * Rendered snapshot, as a new DOM element.
+         * @return Element
+         */
+        public Element element() {
+            try {
+                return SnapshotCache.DFACTORY.newDocumentBuilder()
+                    .parse(new InputSource(new StringReader(this.text)))
+                    .getDocumentElement();
+            } catch (ParserConfigurationException ex) {
+                throw new IllegalStateException(ex);
+            } catch (SAXException ex) {
+                throw new IllegalStateException(ex);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        /**
+         * Weight of it, in chars.
+         * @return Total length of texts
+         */
+        public long weight() {
+            return (long) this.script.length() + this.text.length();
+        }
+    }
+
+}
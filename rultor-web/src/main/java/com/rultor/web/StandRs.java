@@ -59,10 +59,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.GET;
@@ -108,6 +112,11 @@ public final class StandRs extends BaseRs {
      */
     private static final String QUERY_ID = "id";
 
+    /**
+     * How long to wait for open pulses of a page, in milliseconds.
+     */
+    private static final long DEADLINE = TimeUnit.SECONDS.toMillis(Tv.FIVE);
+
     /**
      * Stand name.
      */
@@ -218,9 +227,12 @@ public final class StandRs extends BaseRs {
                 new XSLT(
                     this.render(
                         new JaxbBundle("div"),
-                        this.stand().pulses().tail(coords).iterator().next()
+                        StandRs.rendered(
+                            this.stand().pulses().tail(coords)
+                                .iterator().next()
+                        )
                     ).element(),
-                    this.getClass().getResourceAsStream("fetch.xsl")
+                    this.getClass(), "fetch.xsl"
                 ).xml()
             ).build();
         } catch (TransformerException ex) {
@@ -259,18 +271,49 @@ public final class StandRs extends BaseRs {
 
     /**
      * All pulses of the stand.
+     *
+     * <p>Open pulses are rendered in parallel, and those that are not
+     * ready in {@link #DEADLINE} are left empty, to be loaded
+     * by the page through {@link #fetch(String)}.
+     *
      * @param pulses All pulses to show
      * @param maximum Maximum to show
      * @return Collection of JAXB stands
      */
     private JaxbBundle pulses(final Iterator<Pulse> pulses, final int maximum) {
-        JaxbBundle bundle = new JaxbBundle("pulses");
+        final Collection<Pulse> all = new LinkedList<Pulse>();
+        final Parallel<Rendered> tasks = new Parallel<Rendered>();
         int pos;
         for (pos = 0; pos < maximum; ++pos) {
             if (!pulses.hasNext()) {
                 break;
             }
-            bundle = bundle.add(this.pulse(pulses.next()));
+            final Pulse pulse = pulses.next();
+            all.add(pulse);
+            if (this.open.contains(StandRs.label(pulse))) {
+                tasks.add(
+                    new Callable<Rendered>() {
+                        @Override
+                        public Rendered call() {
+                            return StandRs.rendered(pulse);
+                        }
+                    }
+                );
+            }
+        }
+        final Iterator<Rendered> rendered;
+        try {
+            rendered = tasks.results(StandRs.DEADLINE).iterator();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex);
+        }
+        JaxbBundle bundle = new JaxbBundle("pulses");
+        for (Pulse pulse : all) {
+            if (this.open.contains(StandRs.label(pulse))) {
+                bundle = bundle.add(this.pulse(pulse, rendered.next()));
+            } else {
+                bundle = bundle.add(this.pulse(pulse, null));
+            }
         }
         return bundle;
     }
@@ -278,9 +321,10 @@ public final class StandRs extends BaseRs {
     /**
      * Convert pulse to JaxbBundle.
      * @param pulse The pulse
+     * @param rendered Its rendering, or NULL if absent
      * @return Bundle
      */
-    private JaxbBundle pulse(final Pulse pulse) {
+    private JaxbBundle pulse(final Pulse pulse, final Rendered rendered) {
         final Coordinates coords = pulse.coordinates();
         JaxbBundle bundle = new JaxbBundle("pulse")
             .add("coordinates")
@@ -288,11 +332,13 @@ public final class StandRs extends BaseRs {
             .add("owner", coords.owner().toString()).up()
             .add("scheduled", coords.scheduled().toString()).up()
             .up();
-        final String label = new Coordinates.Simple(coords).toString();
+        final String label = StandRs.label(pulse);
         final ArraySet<String> now = new ArraySet<String>(this.open);
         if (this.open.contains(label)) {
-            bundle = this
-                .render(bundle, pulse)
+            if (rendered != null) {
+                bundle = this.render(bundle, rendered);
+            }
+            bundle = bundle
                 .link(new Link("close", this.self(now.without(label))))
                 .link(
                     new Link(
@@ -347,31 +393,52 @@ public final class StandRs extends BaseRs {
     }
 
     /**
-     * Render snapshot into bundle.
-     * @param bundle Bundle to render into
+     * Label of the pulse.
      * @param pulse The pulse
-     * @return Bundle
+     * @return Label
      */
-    private JaxbBundle render(final JaxbBundle bundle, final Pulse pulse) {
-        JaxbBundle output = bundle;
+    private static String label(final Pulse pulse) {
+        return new Coordinates.Simple(pulse.coordinates()).toString();
+    }
+
+    /**
+     * Render snapshot of the pulse (in any thread).
+     * @param pulse The pulse
+     * @return Rendered pulse
+     */
+    private static Rendered rendered(final Pulse pulse) {
+        final Collection<Exception> bugs = new LinkedList<Exception>();
+        Element element = null;
         try {
-            final Snapshot snapshot = this.snapshot(pulse.xembly());
-            try {
-                output = output.add(
-                    new XSLT(
-                        snapshot,
-                        this.getClass().getResourceAsStream("post.xsl")
-                    ).dom().getDocumentElement()
-                );
-            } catch (ImpossibleModificationException ex) {
-                output = this.bug(output, ex);
-            } catch (TransformerException ex) {
-                output = this.bug(output, ex);
-            }
+            element = new XSLT(
+                StandRs.snapshot(pulse.xembly()), StandRs.class, "post.xsl"
+            ).dom().getDocumentElement();
+        } catch (ImpossibleModificationException ex) {
+            bugs.add(ex);
+        } catch (TransformerException ex) {
+            bugs.add(ex);
         } catch (IOException ex) {
-            output = this.bug(output, ex);
+            bugs.add(ex);
         } catch (XemblySyntaxException ex) {
-            output = this.bug(output, ex);
+            bugs.add(ex);
+        }
+        return new Rendered(null, element, bugs);
+    }
+
+    /**
+     * Render snapshot into bundle.
+     * @param bundle Bundle to render into
+     * @param rendered Rendered pulse
+     * @return Bundle
+     */
+    private JaxbBundle render(final JaxbBundle bundle,
+        final Rendered rendered) {
+        JaxbBundle output = bundle;
+        if (rendered.element() != null) {
+            output = output.add(rendered.element());
+        }
+        for (Exception bug : rendered.bugs()) {
+            output = this.bug(output, bug);
         }
         return output;
     }
@@ -383,7 +450,7 @@ public final class StandRs extends BaseRs {
      * @throws XemblySyntaxException If fails
      * @checkstyle RedundantThrows (5 lines)
      */
-    private Snapshot snapshot(final String xembly)
+    private static Snapshot snapshot(final String xembly)
         throws XemblySyntaxException {
         return new Snapshot(
             new Directives(xembly).xpath("/snapshot/spec").remove()
@@ -37,6 +37,9 @@
             <xsl:apply-templates select="@*|node()"/>
         </xsl:copy>
     </xsl:template>
+    <xsl:template match="error">
+        <pre class="text-danger"><xsl:value-of select="."/></pre>
+    </xsl:template>
     <xsl:template match="/">
         <div>
             <xsl:apply-templates select="node()" />
@@ -36,6 +36,18 @@
         <title>
             <xsl:apply-templates select="/page/rule"/>
         </title>
+        <script type="text/javascript">
+            <xsl:attribute name="src">
+                <xsl:value-of select="/page/links/link[@rel='root']/@href"/>
+                <xsl:text>js/drain.js</xsl:text>
+                <xsl:if test="/page/@ip">
+                    <xsl:text>?</xsl:text>
+                    <xsl:value-of select="/page/version/revision"/>
+                </xsl:if>
+            </xsl:attribute>
+            <!-- this is for W3C compliance -->
+            <xsl:text> </xsl:text>
+        </script>
     </xsl:template>
     <xsl:template name="content">
         <xsl:choose>
@@ -115,6 +127,14 @@
                 <xsl:if test="xembly">
                     <pre class="xembly" style="display: none;"><xsl:value-of select="xembly"/></pre>
                 </xsl:if>
+                <xsl:if test="pending">
+                    <div class="pending text-muted">
+                        <xsl:attribute name="data-fetch-url">
+                            <xsl:value-of select="links/link[@rel='fetch']/@href"/>
+                        </xsl:attribute>
+                        <xsl:text>The pulse is still loading...</xsl:text>
+                    </div>
+                </xsl:if>
                 <xsl:apply-templates select="snapshot"/>
             </div>
         </div>
@@ -46,6 +46,8 @@ import com.rultor.spi.User;
 import com.rultor.spi.Users;
 import com.rultor.tools.Time;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import org.hamcrest.CustomMatcher;
 import org.hamcrest.Matchers;
 import org.junit.Test;
@@ -112,13 +114,15 @@ public final class SQSQuartzTest {
                 )
             )
         );
-        Mockito.verify(queue).push(
+        Mockito.verify(queue).pushAll(
             Mockito.argThat(
-                new CustomMatcher<Coordinates>("expected work") {
+                new CustomMatcher<Collection<Coordinates>>("expected works") {
                     @Override
-                    public boolean matches(final Object work) {
-                        return Coordinates.class.cast(work)
-                            .scheduled().equals(time);
+                    public boolean matches(final Object works) {
+                        final Iterator<?> iterator =
+                            Collection.class.cast(works).iterator();
+                        return Coordinates.class.cast(iterator.next())
+                            .scheduled().equals(time) && !iterator.hasNext();
                     }
                 }
             )
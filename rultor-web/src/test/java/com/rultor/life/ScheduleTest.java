@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.life;
+
+import com.jcabi.urn.URN;
+import com.rultor.spi.Coordinates;
+import com.rultor.spi.Spec;
+import com.rultor.tools.Time;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Test case for {@link Schedule}.
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ */
+public final class ScheduleTest {
+
+    /**
+     * Spec of a rule executed every five minutes.
+     */
+    private static final Spec CRON = new Spec.Simple(
+        "com.rultor.base.Crontab(${0:?}, \"*/5 * * * *\", foo())"
+    );
+
+    /**
+     * Schedule can make rules without crontab due every minute.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void makesPlainRulesDueEveryMinute() throws Exception {
+        final Schedule schedule = new Schedule();
+        final URN owner = new URN("urn:test:1");
+        final Time first = new Time("2013-07-21T13:36:00Z");
+        schedule.update(owner, "plain", new Spec.Simple(), first);
+        MatcherAssert.assertThat(
+            schedule.due(first),
+            Matchers.<Coordinates>contains(
+                new Coordinates.Simple(owner, "plain", first)
+            )
+        );
+        final Time second = new Time("2013-07-21T13:37:00Z");
+        schedule.update(owner, "plain", new Spec.Simple(), second);
+        MatcherAssert.assertThat(
+            schedule.due(second),
+            Matchers.<Coordinates>contains(
+                new Coordinates.Simple(owner, "plain", second)
+            )
+        );
+    }
+
+    /**
+     * Schedule can make crontab rules due only when allowed.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void makesCrontabRulesDueWhenAllowed() throws Exception {
+        final Schedule schedule = new Schedule();
+        final URN owner = new URN("urn:test:2");
+        final Time first = new Time("2013-07-21T13:36:00Z");
+        schedule.update(owner, "cron", ScheduleTest.CRON, first);
+        MatcherAssert.assertThat(
+            schedule.due(first),
+            Matchers.<Coordinates>emptyIterable()
+        );
+        final Time second = new Time("2013-07-21T13:40:00Z");
+        schedule.update(owner, "cron", ScheduleTest.CRON, second);
+        MatcherAssert.assertThat(
+            schedule.due(second),
+            Matchers.<Coordinates>contains(
+                new Coordinates.Simple(owner, "cron", second)
+            )
+        );
+        final Time third = new Time("2013-07-21T13:41:00Z");
+        schedule.update(owner, "cron", ScheduleTest.CRON, third);
+        MatcherAssert.assertThat(
+            schedule.due(third),
+            Matchers.<Coordinates>emptyIterable()
+        );
+    }
+
+    /**
+     * Schedule can forget rules that are not updated any more.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void forgetsRemovedRules() throws Exception {
+        final Schedule schedule = new Schedule();
+        final URN owner = new URN("urn:test:3");
+        final Time first = new Time("2013-07-21T13:36:00Z");
+        schedule.update(owner, "gone", new Spec.Simple(), first);
+        MatcherAssert.assertThat(
+            schedule.due(first),
+            Matchers.<Coordinates>iterableWithSize(1)
+        );
+        MatcherAssert.assertThat(
+            schedule.due(new Time("2013-07-21T13:37:00Z")),
+            Matchers.<Coordinates>emptyIterable()
+        );
+    }
+
+    /**
+     * Schedule can re-schedule a rule when its spec is modified.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void reschedulesModifiedRules() throws Exception {
+        final Schedule schedule = new Schedule();
+        final URN owner = new URN("urn:test:4");
+        final Time first = new Time("2013-07-21T13:36:00Z");
+        schedule.update(owner, "changed", ScheduleTest.CRON, first);
+        MatcherAssert.assertThat(
+            schedule.due(first),
+            Matchers.<Coordinates>emptyIterable()
+        );
+        final Time second = new Time("2013-07-21T13:37:00Z");
+        schedule.update(owner, "changed", new Spec.Simple(), second);
+        MatcherAssert.assertThat(
+            schedule.due(second),
+            Matchers.<Coordinates>iterableWithSize(1)
+        );
+    }
+
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.web;
+
+import com.jcabi.aspects.Tv;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Test case for {@link Parallel}.
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+public final class ParallelTest {
+
+    /**
+     * Parallel can return results in order of submission.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void returnsResultsInOrder() throws Exception {
+        final Parallel<Integer> tasks = new Parallel<Integer>();
+        for (int idx = 0; idx < Tv.TEN; ++idx) {
+            final int num = idx;
+            tasks.add(
+                new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        TimeUnit.MILLISECONDS.sleep(Tv.TEN - num);
+                        return num;
+                    }
+                }
+            );
+        }
+        MatcherAssert.assertThat(
+            tasks.results(TimeUnit.SECONDS.toMillis(Tv.FIVE)),
+            Matchers.contains(0, 1, 2, Tv.THREE, Tv.FOUR, Tv.FIVE, Tv.SIX,
+                Tv.SEVEN, Tv.EIGHT, Tv.NINE)
+        );
+    }
+
+    /**
+     * Parallel can return NULL for tasks that missed the deadline.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void skipsLateTasks() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Parallel<String> tasks = new Parallel<String>()
+            .add(
+                new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return "fast";
+                    }
+                }
+            )
+            .add(
+                new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        latch.await();
+                        return "slow";
+                    }
+                }
+            );
+        try {
+            MatcherAssert.assertThat(
+                tasks.results(Tv.HUNDRED),
+                Matchers.contains("fast", null)
+            );
+        } finally {
+            latch.countDown();
+        }
+    }
+
+    /**
+     * Parallel can report a failure of a task.
+     * @throws Exception If some problem inside
+     */
+    @Test(expected = ExecutionException.class)
+    public void reportsFailures() throws Exception {
+        new Parallel<String>().add(
+            new Callable<String>() {
+                @Override
+                public String call() {
+                    throw new IllegalStateException("oops");
+                }
+            }
+        ).results(TimeUnit.SECONDS.toMillis(1));
+    }
+
+    /**
+     * Parallel can reject tasks when the pool is saturated.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void rejectsTasksWhenSaturated() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger inside = new AtomicInteger();
+        final Parallel<String> tasks = new Parallel<String>();
+        final int total = Parallel.THREADS + Parallel.QUEUE + 1;
+        for (int idx = 0; idx < total; ++idx) {
+            tasks.add(
+                new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        if (Thread.currentThread().equals(caller)) {
+                            inside.incrementAndGet();
+                        }
+                        latch.await(1L, TimeUnit.SECONDS);
+                        return "done";
+                    }
+                }
+            );
+        }
+        try {
+            MatcherAssert.assertThat(
+                tasks.results(Tv.TEN),
+                Matchers.everyItem(Matchers.nullValue(String.class))
+            );
+            MatcherAssert.assertThat(inside.get(), Matchers.equalTo(0));
+        } finally {
+            latch.countDown();
+        }
+    }
+
+}
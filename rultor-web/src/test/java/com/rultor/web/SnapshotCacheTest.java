@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2009-2013, rultor.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met: 1) Redistributions of source code must retain the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer. 2) Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided
+ * with the distribution. 3) Neither the name of the rultor.com nor
+ * the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ * THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rultor.web;
+
+import com.google.common.io.Files;
+import com.jcabi.aspects.Tv;
+import com.rexsl.test.XhtmlMatchers;
+import com.rultor.snapshot.Snapshot;
+import com.rultor.tools.Time;
+import java.util.concurrent.TimeUnit;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xembly.Directives;
+
+/**
+ * Test case for {@link SnapshotCache}.
+ * @author Yegor Bugayenko (yegor@tpc2.com)
+ * @version $Id$
+ */
+public final class SnapshotCacheTest {
+
+    /**
+     * SnapshotCache can cache snapshots of finished pulses.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void cachesFinishedSnapshots() throws Exception {
+        final SnapshotCache cache = new SnapshotCache(Tv.THOUSAND, null);
+        final Time time = new Time();
+        MatcherAssert.assertThat(
+            cache.put(
+                "urn:test:1", "r", time, "XPATH '/snapshot';",
+                this.dom(
+                    new Time(
+                        System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)
+                    )
+                )
+            ),
+            Matchers.is(true)
+        );
+        final SnapshotCache.Entry entry = cache.get("urn:test:1", "r", time);
+        MatcherAssert.assertThat(
+            entry.xembly(),
+            Matchers.equalTo("XPATH '/snapshot';")
+        );
+        MatcherAssert.assertThat(
+            XhtmlMatchers.xhtml(entry.element()),
+            XhtmlMatchers.hasXPath("/snapshot/finish")
+        );
+        MatcherAssert.assertThat(
+            cache.get("urn:test:1", "r", new Time(time.millis() + 1)),
+            Matchers.nullValue()
+        );
+    }
+
+    /**
+     * SnapshotCache can ignore snapshots of running pulses.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void ignoresRunningSnapshots() throws Exception {
+        final SnapshotCache cache = new SnapshotCache(Tv.THOUSAND, null);
+        final Time time = new Time();
+        MatcherAssert.assertThat(
+            cache.put("urn:test:2", "x", time, "", Snapshot.empty()),
+            Matchers.is(false)
+        );
+        MatcherAssert.assertThat(
+            cache.put("urn:test:2", "x", time, "", this.dom(new Time())),
+            Matchers.is(false)
+        );
+        MatcherAssert.assertThat(
+            cache.get("urn:test:2", "x", time),
+            Matchers.nullValue()
+        );
+    }
+
+    /**
+     * SnapshotCache can evict least recently used snapshots.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        final Document dom = this.dom(new Time(1L));
+        final SnapshotCache cache = new SnapshotCache(Tv.HUNDRED, null);
+        final Time first = new Time(1L);
+        final Time second = new Time(2L);
+        cache.put("urn:test:3", "y", first, "", dom);
+        cache.put("urn:test:3", "y", second, "", dom);
+        MatcherAssert.assertThat(
+            cache.get("urn:test:3", "y", first),
+            Matchers.nullValue()
+        );
+        MatcherAssert.assertThat(
+            cache.get("urn:test:3", "y", second),
+            Matchers.notNullValue()
+        );
+    }
+
+    /**
+     * SnapshotCache can load snapshots saved to disk.
+     * @throws Exception If some problem inside
+     */
+    @Test
+    public void loadsSnapshotsFromDisk() throws Exception {
+        final String dir = Files.createTempDir().getPath();
+        final Time time = new Time();
+        new SnapshotCache(Tv.THOUSAND, dir).put(
+            "urn:test:4", "z", time, "XPATH 'x';\nADD 'y';",
+            this.dom(new Time(1L))
+        );
+        final SnapshotCache.Entry entry = new SnapshotCache(Tv.THOUSAND, dir)
+            .get("urn:test:4", "z", time);
+        MatcherAssert.assertThat(
+            entry.xembly(),
+            Matchers.equalTo("XPATH 'x';\nADD 'y';")
+        );
+        MatcherAssert.assertThat(
+            XhtmlMatchers.xhtml(entry.element()),
+            XhtmlMatchers.hasXPath("/snapshot/finish")
+        );
+    }
+
+    /**
+     * Make DOM of a pulse finished at the given time.
+     * @param finish When it finished
+     * @return DOM
+     * @throws Exception If some problem inside
+     */
+    private Document dom(final Time finish) throws Exception {
+        return new Snapshot(
+            new Directives()
+                .xpath("/snapshot")
+                .add("finish")
+                .set(finish.toString())
+        ).dom();
+    }
+
+}